@@ -0,0 +1,54 @@
+package br.com.servico_mensagens;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+
+// Ida e volta do envelope JSON de NOVA_MENSAGEM pelo mesmo caminho do Cliente: mapa serializado pelo Jackson e lido como Map
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BenchmarkCodecJson {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private Map<String, Object> envelope;
+    private String linha;
+
+    @Setup
+    public void preparar() throws Exception {
+        Mensagem mensagem = BenchmarkMural.novaMensagem(42);
+        envelope = new HashMap<>();
+        envelope.put("tipo", "NOVA_MENSAGEM");
+        envelope.put("mensagem", mensagem);
+        envelope.put("lamportClock", mensagem.getLamportClock());
+        envelope.put("remetente", "Cliente1");
+        linha = objectMapper.writeValueAsString(envelope);
+    }
+
+    @Benchmark
+    public String serializar() throws Exception {
+        return objectMapper.writeValueAsString(envelope);
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public Mensagem desserializar() throws Exception {
+        Map<String, Object> dados = objectMapper.readValue(linha, Map.class);
+        return Mensagem.deMapa((Map<String, Object>) dados.get("mensagem"));
+    }
+}
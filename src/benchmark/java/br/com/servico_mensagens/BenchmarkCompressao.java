@@ -0,0 +1,156 @@
+package br.com.servico_mensagens;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+
+// Compara bytes e tempo de uma resposta RESPOSTA_MURAL_COMPLETO em JSON puro, com deflate e com deflate e dicionário,
+// do mapa montado por quem responde até a lista de mensagens de volta em quem pediu
+public class BenchmarkCompressao {
+    // Tamanhos do mural pela propriedade compressao.tamanhos; com 1.000.000 a JVM precisa de uns 3 GB de heap
+    private static final String TAMANHOS = System.getProperty("compressao.tamanhos", "10000,100000,1000000");
+    // Banda do enlace usada para estimar o tempo de transferência, em Mbit/s
+    private static final double MBPS = Double.parseDouble(System.getProperty("compressao.mbps", "10"));
+    private static final int AMOSTRAS_DICIONARIO = 10_000;
+    private static final int MENSAGENS_POR_LOTE = 128;
+    private static final int LOTES = 500;
+
+    private static final String[] PALAVRAS = ("oi bom dia tarde noite alguém viu a reunião de hoje amanhã às horas " +
+        "o servidor caiu voltou já está funcionando obrigado valeu pessoal vou chegar atrasado no almoço café " +
+        "projeto entrega prazo sexta segunda relatório enviei por email confere depois me avisa quando puder " +
+        "sim não talvez acho que sim combinado beleza ok certo revisão código teste passou falhou deploy produção " +
+        "banco dados mural mensagem cliente sincronização lento rápido rede conexão problema resolvido").split(" ");
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    public static void main(String[] args) throws Exception {
+        byte[] dicionario = treinarDicionario();
+        CompressaoCarga[] formatos = {
+            new CompressaoCarga(objectMapper, ModoCompressao.NENHUMA, null),
+            new CompressaoCarga(objectMapper, ModoCompressao.DEFLATE, null),
+            new CompressaoCarga(objectMapper, ModoCompressao.DEFLATE, dicionario)
+        };
+        String[] nomes = {"JSON", "deflate", "deflate+dic"};
+
+        // Aquecimento do JIT com um mural pequeno antes das medições
+        List<Mensagem> aquecimento = criarMensagens(20_000, 7);
+        for (int rodada = 0; rodada < 3; rodada++) {
+            for (CompressaoCarga formato : formatos) {
+                medir(formato, aquecimento);
+            }
+        }
+
+        System.out.printf("=== RESPOSTA_MURAL_COMPLETO: JSON x deflate (enlace de %.0f Mbit/s, dicionário de %,d bytes) ===%n",
+            MBPS, dicionario.length);
+        System.out.printf("%-10s %-12s %15s %7s %12s %12s %14s %12s%n",
+            "Mensagens", "Formato", "bytes", "razão", "codifica ms", "decodifica ms", "transferência", "total ms");
+        for (String tamanho : TAMANHOS.split(",")) {
+            int quantidade = Integer.parseInt(tamanho.trim());
+            List<Mensagem> mensagens = criarMensagens(quantidade, 42);
+            long bytesJson = 0;
+            for (int i = 0; i < formatos.length; i++) {
+                Medicao medicao = medir(formatos[i], mensagens);
+                if (i == 0) {
+                    bytesJson = medicao.bytes;
+                }
+                imprimir(String.format("%,d", quantidade), nomes[i], medicao, bytesJson);
+            }
+        }
+
+        // Lotes pequenos são onde o dicionário pesa: sem ele o deflate começa cada lote do zero
+        List<Mensagem> mensagens = criarMensagens(MENSAGENS_POR_LOTE * LOTES, 43);
+        long bytesJson = 0;
+        for (int i = 0; i < formatos.length; i++) {
+            Medicao total = new Medicao();
+            for (int lote = 0; lote < LOTES; lote++) {
+                Medicao medicao = medir(formatos[i], mensagens.subList(lote * MENSAGENS_POR_LOTE, (lote + 1) * MENSAGENS_POR_LOTE));
+                total.bytes += medicao.bytes;
+                total.codificacao += medicao.codificacao;
+                total.decodificacao += medicao.decodificacao;
+            }
+            total.bytes /= LOTES;
+            total.codificacao /= LOTES;
+            total.decodificacao /= LOTES;
+            if (i == 0) {
+                bytesJson = total.bytes;
+            }
+            imprimir("lote " + MENSAGENS_POR_LOTE, nomes[i], total, bytesJson);
+        }
+    }
+
+    // Mesmo caminho do Cliente e da ConexaoPeer: mapa da resposta comprimido e serializado, linha lida e lista aberta
+    private static Medicao medir(CompressaoCarga compressao, List<Mensagem> mensagens) throws Exception {
+        Medicao medicao = new Medicao();
+        long inicio = System.nanoTime();
+        Map<String, Object> resposta = new HashMap<>();
+        resposta.put("tipo", "RESPOSTA_MURAL_COMPLETO");
+        resposta.put("contador", mensagens.size());
+        resposta.put("mensagens", mensagens);
+        resposta.put("remetente", "Cliente1");
+        resposta.put("requestId", 1);
+        compressao.comprimir(resposta, compressao.getAceitas());
+        String linha = objectMapper.writeValueAsString(resposta);
+        medicao.codificacao = System.nanoTime() - inicio;
+        medicao.bytes = linha.getBytes(StandardCharsets.UTF_8).length + 1;
+
+        inicio = System.nanoTime();
+        Map<String, Object> lida = objectMapper.readValue(linha, Map.class);
+        compressao.descomprimir(lida);
+        List<Mensagem> recebidas = Mensagem.deLista(lida.get("mensagens"));
+        medicao.decodificacao = System.nanoTime() - inicio;
+        if (recebidas.size() != mensagens.size()) {
+            throw new IllegalStateException("recebidas " + recebidas.size() + " de " + mensagens.size() + " mensagens");
+        }
+        return medicao;
+    }
+
+    private static void imprimir(String quantidade, String formato, Medicao medicao, long bytesJson) {
+        double transferenciaMs = medicao.bytes * 8 / (MBPS * 1_000_000) * 1000;
+        double codificacaoMs = medicao.codificacao / 1e6;
+        double decodificacaoMs = medicao.decodificacao / 1e6;
+        System.out.printf("%-10s %-12s %,15d %6.1fx %12.1f %12.1f %14.1f %12.1f%n", quantidade, formato, medicao.bytes,
+            (double) bytesJson / medicao.bytes, codificacaoMs, decodificacaoMs, transferenciaMs,
+            codificacaoMs + transferenciaMs + decodificacaoMs);
+    }
+
+    // Dicionário treinado com outras mensagens do mesmo tipo, como o TreinadorDicionario faria com o histórico do mural
+    private static byte[] treinarDicionario() throws Exception {
+        List<byte[]> amostras = new ArrayList<>(AMOSTRAS_DICIONARIO);
+        for (Mensagem mensagem : criarMensagens(AMOSTRAS_DICIONARIO, 1)) {
+            amostras.add(objectMapper.writeValueAsBytes(mensagem));
+        }
+        return CompressaoCarga.treinarDicionario(amostras, CompressaoCarga.TAMANHO_DICIONARIO);
+    }
+
+    // Como as postagens do Cliente: ID autor_relógio_millis, origem com sequência e frases de tamanho variado
+    private static List<Mensagem> criarMensagens(int quantidade, long semente) {
+        Random aleatorio = new Random(semente);
+        long millis = 1_760_000_000_000L + semente * 1_000_000;
+        List<Mensagem> mensagens = new ArrayList<>(quantidade);
+        for (int i = 0; i < quantidade; i++) {
+            String autor = "Cliente" + (aleatorio.nextInt(5) + 1);
+            StringBuilder conteudo = new StringBuilder();
+            for (int palavra = 3 + aleatorio.nextInt(15); palavra > 0; palavra--) {
+                conteudo.append(PALAVRAS[aleatorio.nextInt(PALAVRAS.length)]).append(palavra > 1 ? " " : "");
+            }
+            millis += aleatorio.nextInt(2000);
+            Mensagem mensagem = new Mensagem(autor + "_" + (i + 1) + "_" + millis, conteudo.toString(), autor, i + 1,
+                aleatorio.nextInt(4) == 0 ? "privada" : "publica");
+            mensagem.setOrigem(autor, i / 5 + 1);
+            mensagens.add(mensagem);
+        }
+        return mensagens;
+    }
+
+    private static class Medicao {
+        private long bytes;
+        private long codificacao;
+        private long decodificacao;
+    }
+}
@@ -0,0 +1,62 @@
+package br.com.servico_mensagens;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+
+// Relógio de Lamport disputado por várias threads, como no Cliente: quem posta chama tick e quem recebe chama update
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BenchmarkLamportClock {
+    private final LamportClock relogio = new LamportClock();
+
+    @Benchmark
+    @Threads(1)
+    public int tickSemDisputa() {
+        return relogio.tick();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int tick() {
+        return relogio.tick();
+    }
+
+    // O relógio recebido às vezes está à frente do local, como nas mensagens de peers adiantados
+    @Benchmark
+    @Threads(4)
+    public int update() {
+        return relogio.update(relogio.getTime() + ThreadLocalRandom.current().nextInt(-2, 3));
+    }
+
+    @Benchmark
+    @Group("misto")
+    @GroupThreads(2)
+    public int mistoTick() {
+        return relogio.tick();
+    }
+
+    @Benchmark
+    @Group("misto")
+    @GroupThreads(2)
+    public int mistoUpdate() {
+        return relogio.update(relogio.getTime() + ThreadLocalRandom.current().nextInt(-2, 3));
+    }
+}
@@ -0,0 +1,133 @@
+package br.com.servico_mensagens;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+// Custo das operações do mural com murais de tamanhos diferentes, incluindo a persistência de cada modo
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BenchmarkMural {
+    private static final int MENSAGENS_POR_LOTE = 100;
+
+    // Mural já preenchido; é recriado a cada iteração para as escritas não o deixarem crescer sem limite
+    @State(Scope.Benchmark)
+    public static class MuralPreenchido {
+        @Param({"1000", "10000", "100000"})
+        int tamanho;
+
+        @Param({"LOG", "JSON", "SEGMENTOS"})
+        ModoPersistencia persistencia;
+
+        MuralMensagens mural;
+        String nome;
+        long proximoId;
+
+        @Setup(Level.Iteration)
+        public void preencher() throws IOException {
+            nome = "BenchmarkMural_" + tamanho + "_" + persistencia;
+            apagarArquivos(nome);
+            mural = new MuralMensagens(nome, persistencia);
+            List<Mensagem> iniciais = new ArrayList<>(tamanho);
+            for (proximoId = 0; proximoId < tamanho; proximoId++) {
+                iniciais.add(novaMensagem(proximoId));
+            }
+            // Um único snapshot: preencher pelo caminho normal regravaria o JSON inteiro a cada lote
+            mural.substituirMural(iniciais, tamanho);
+        }
+
+        @TearDown(Level.Iteration)
+        public void apagar() throws IOException {
+            mural.fechar();
+            apagarArquivos(nome);
+        }
+
+        Mensagem proxima() {
+            return novaMensagem(proximoId++);
+        }
+    }
+
+    @Benchmark
+    public boolean adicionarMensagem(MuralPreenchido estado) {
+        return estado.mural.adicionarMensagem(estado.proxima());
+    }
+
+    // Tempo por lote de 100 mensagens novas
+    @Benchmark
+    public int adicionarMensagens(MuralPreenchido estado) {
+        List<Mensagem> lote = new ArrayList<>(MENSAGENS_POR_LOTE);
+        for (int i = 0; i < MENSAGENS_POR_LOTE; i++) {
+            lote.add(estado.proxima());
+        }
+        return estado.mural.adicionarMensagens(lote);
+    }
+
+    @Benchmark
+    public int getContador(MuralPreenchido estado) {
+        return estado.mural.getContador();
+    }
+
+    @Benchmark
+    public List<Mensagem> getMensagensPorTipo(MuralPreenchido estado) {
+        return estado.mural.getMensagensPorTipo("privada");
+    }
+
+    // Como na sincronização de um peer que perdeu as últimas 100 mensagens
+    @Benchmark
+    public List<Mensagem> getMensagensAPartirDe(MuralPreenchido estado) {
+        return estado.mural.getMensagensAPartirDe(estado.tamanho - MENSAGENS_POR_LOTE);
+    }
+
+    // A tela do mural: as 50 mensagens mais recentes
+    @Benchmark
+    public List<Mensagem> getUltimas(MuralPreenchido estado) {
+        return estado.mural.getUltimas(50, 0);
+    }
+
+    // Leitura em ordem de Lamport das 50 mensagens depois de um relógio perto do fim do mural
+    @Benchmark
+    public List<Mensagem> consultarDepoisDoClock(MuralPreenchido estado) {
+        return estado.mural.consultarDepoisDoClock(estado.tamanho - 100).proximaPagina(50);
+    }
+
+    static Mensagem novaMensagem(long i) {
+        String autor = "autor" + (i % 10);
+        Mensagem mensagem = new Mensagem(autor + "_" + i, "Mensagem de teste número " + i + " postada no mural",
+            autor, (int) i, i % 3 == 0 ? "privada" : "publica");
+        mensagem.setOrigem(autor, i / 10 + 1);
+        return mensagem;
+    }
+
+    static void apagarArquivos(String nome) throws IOException {
+        Files.deleteIfExists(Path.of(nome + "_mural.json"));
+        Files.deleteIfExists(Path.of(nome + "_mural.log"));
+        Files.deleteIfExists(Path.of(nome + "_mural.idx"));
+        try (DirectoryStream<Path> segmentos = Files.newDirectoryStream(Path.of("."), nome + "_mural_*.seg")) {
+            for (Path segmento : segmentos) {
+                Files.delete(segmento);
+            }
+        }
+    }
+}
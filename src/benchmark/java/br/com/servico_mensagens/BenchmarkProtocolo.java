@@ -0,0 +1,105 @@
+package br.com.servico_mensagens;
+
+import br.com.servico_mensagens.grpc.NovaMensagem;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+// Compara bytes no fio e CPU por mensagem entre o envelope JSON de NOVA_MENSAGEM e o NovaMensagem do protobuf
+public class BenchmarkProtocolo {
+    private static final int MENSAGENS = 100_000;
+    private static final int RODADAS_AQUECIMENTO = 5;
+    private static final int RODADAS_MEDIDAS = 5;
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws Exception {
+        List<Mensagem> mensagens = new ArrayList<>(MENSAGENS);
+        for (int i = 0; i < MENSAGENS; i++) {
+            String autor = "autor" + (i % 10);
+            mensagens.add(new Mensagem(autor + "_" + i + "_" + System.currentTimeMillis(),
+                "Mensagem de teste número " + i + " postada no mural", autor, i, i % 3 == 0 ? "privada" : "publica"));
+        }
+
+        long bytesJson = 0;
+        long bytesProto = 0;
+        for (Mensagem mensagem : mensagens) {
+            bytesJson += codificarJson(mensagem).length + 1;
+            bytesProto += codificarProto(mensagem).length;
+        }
+
+        double cpuJson = 0;
+        double cpuProto = 0;
+        for (int rodada = 0; rodada < RODADAS_AQUECIMENTO + RODADAS_MEDIDAS; rodada++) {
+            double json = medirJson(mensagens);
+            double proto = medirProto(mensagens);
+            if (rodada >= RODADAS_AQUECIMENTO) {
+                cpuJson += json / RODADAS_MEDIDAS;
+                cpuProto += proto / RODADAS_MEDIDAS;
+            }
+        }
+
+        System.out.println("=== NOVA_MENSAGEM: JSON x Protobuf (" + MENSAGENS + " mensagens) ===");
+        System.out.printf("%-10s %14s %22s%n", "Formato", "bytes/msg", "CPU ns/msg (ida+volta)");
+        System.out.printf("%-10s %14.1f %22.0f%n", "JSON", (double) bytesJson / MENSAGENS, cpuJson);
+        System.out.printf("%-10s %14.1f %22.0f%n", "Protobuf", (double) bytesProto / MENSAGENS, cpuProto);
+    }
+
+    // Mesmo caminho do Cliente: mapa com a Mensagem serializado pelo Jackson e lido de volta como Map
+    private static double medirJson(List<Mensagem> mensagens) throws Exception {
+        long inicio = threads.getCurrentThreadCpuTime();
+        long verificacao = 0;
+        for (Mensagem mensagem : mensagens) {
+            byte[] bytes = codificarJson(mensagem);
+            Map<String, Object> dados = objectMapper.readValue(new String(bytes, StandardCharsets.UTF_8), Map.class);
+            Mensagem lida = Mensagem.deMapa((Map<String, Object>) dados.get("mensagem"));
+            verificacao += lida.getLamportClock() + (Integer) dados.get("lamportClock");
+        }
+        return consumir(verificacao, threads.getCurrentThreadCpuTime() - inicio, mensagens.size());
+    }
+
+    private static double medirProto(List<Mensagem> mensagens) throws Exception {
+        long inicio = threads.getCurrentThreadCpuTime();
+        long verificacao = 0;
+        for (Mensagem mensagem : mensagens) {
+            byte[] bytes = codificarProto(mensagem);
+            NovaMensagem lida = NovaMensagem.parseFrom(bytes);
+            verificacao += ConversorProto.deProto(lida.getMensagem()).getLamportClock() + lida.getLamportClock();
+        }
+        return consumir(verificacao, threads.getCurrentThreadCpuTime() - inicio, mensagens.size());
+    }
+
+    private static byte[] codificarJson(Mensagem mensagem) throws Exception {
+        Map<String, Object> dados = new HashMap<>();
+        dados.put("tipo", "NOVA_MENSAGEM");
+        dados.put("mensagem", mensagem);
+        dados.put("lamportClock", mensagem.getLamportClock());
+        dados.put("remetente", "Cliente1");
+        return objectMapper.writeValueAsString(dados).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] codificarProto(Mensagem mensagem) {
+        return NovaMensagem.newBuilder()
+            .setMensagem(ConversorProto.paraProto(mensagem))
+            .setLamportClock(mensagem.getLamportClock())
+            .setRemetente("Cliente1")
+            .build()
+            .toByteArray();
+    }
+
+    // Usa o valor calculado para o JIT não descartar o laço medido
+    private static double consumir(long verificacao, long nanosCpu, int quantidade) {
+        if (verificacao == 42) {
+            System.out.print("");
+        }
+        return (double) nanosCpu / quantidade;
+    }
+}
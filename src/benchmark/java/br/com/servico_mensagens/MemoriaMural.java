@@ -0,0 +1,91 @@
+package br.com.servico_mensagens;
+
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+
+// Mede quanto heap e quanta memória fora do heap um mural ocupa com N mensagens, depois de um GC completo
+public class MemoriaMural {
+    private static final String NOME = "MemoriaMural";
+    // Quantidade pela propriedade memoria.mensagens; o mural é gravado no modo SEGMENTOS, que não guarda nada no heap
+    private static final int MENSAGENS = Integer.getInteger("memoria.mensagens", 1_000_000);
+    private static final int LOTE = 500;
+
+    private static final MemoryMXBean memoria = ManagementFactory.getMemoryMXBean();
+
+    public static void main(String[] args) throws Exception {
+        apagarArquivos();
+        try {
+            long heapAntes = heapUsado();
+            long foraAntes = foraDoHeap();
+            MuralMensagens mural = new MuralMensagens(NOME, ModoPersistencia.SEGMENTOS);
+            long inicio = System.nanoTime();
+            List<Mensagem> lote = new ArrayList<>(LOTE);
+            for (int i = 0; i < MENSAGENS; i++) {
+                lote.add(criarMensagem(i));
+                if (lote.size() == LOTE) {
+                    mural.adicionarMensagens(lote);
+                    lote = new ArrayList<>(LOTE);
+                }
+            }
+            mural.adicionarMensagens(lote);
+            lote = null;
+            long preenchimento = System.nanoTime() - inicio;
+
+            long heap = heapUsado() - heapAntes;
+            long fora = foraDoHeap() - foraAntes;
+            System.out.printf("=== Memória do mural com %,d mensagens (preenchido em %d ms) ===%n",
+                mural.getTamanho(), preenchimento / 1_000_000);
+            System.out.printf("heap:          %,15d bytes  %8.1f bytes/mensagem%n", heap, (double) heap / MENSAGENS);
+            System.out.printf("fora do heap:  %,15d bytes  %8.1f bytes/mensagem%n", fora, (double) fora / MENSAGENS);
+            // Uma leitura depois da medição mantém o mural vivo até aqui
+            System.out.println("última: " + mural.getUltimas(1, 0));
+            mural.fechar();
+        } finally {
+            apagarArquivos();
+        }
+    }
+
+    // Como as postagens do Cliente: ID autor_relógio_millis, origem com sequência e horário do momento
+    private static Mensagem criarMensagem(int i) {
+        String autor = "Cliente" + (i % 5 + 1);
+        Mensagem mensagem = new Mensagem(autor + "_" + i + "_" + System.currentTimeMillis(),
+            "Mensagem de teste número " + i + " postada no mural", autor, i, i % 3 == 0 ? "privada" : "publica");
+        mensagem.setOrigem(autor, i / 5 + 1);
+        return mensagem;
+    }
+
+    private static long heapUsado() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return memoria.getHeapMemoryUsage().getUsed();
+    }
+
+    // Buffers diretos alocados pelo processo; os arquivos mapeados ficam no pool "mapped" e não entram na conta
+    private static long foraDoHeap() {
+        long total = 0;
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if ("direct".equals(pool.getName())) {
+                total += pool.getMemoryUsed();
+            }
+        }
+        return total;
+    }
+
+    private static void apagarArquivos() throws IOException {
+        try (DirectoryStream<Path> arquivos = Files.newDirectoryStream(Path.of("."), NOME + "_*")) {
+            for (Path arquivo : arquivos) {
+                Files.delete(arquivo);
+            }
+        }
+    }
+}
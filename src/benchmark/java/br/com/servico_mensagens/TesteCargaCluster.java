@@ -0,0 +1,230 @@
+package br.com.servico_mensagens;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.ServerSocket;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.LockSupport;
+
+
+// Sobe um cluster de Clientes na mesma JVM, posta a uma taxa fixa e mede o tempo até cada mensagem aparecer em todos os nós
+public class TesteCargaCluster {
+    private static final String PREFIXO = "CargaCluster";
+    private static final String CONTEUDO = "carga ";
+    // Latências registradas em microssegundos, até 1 minuto, com 3 dígitos significativos
+    private static final long MAIOR_LATENCIA_US = TimeUnit.MINUTES.toMicros(1);
+    private static final long ESPERA_ENTREGAS_MS = 30_000;
+    private static final long ESPERA_RECUPERACAO_MS = 60_000;
+
+    // Configuração pelas propriedades carga.nos, carga.taxa (mensagens/s), carga.duracao e carga.pausa (segundos)
+    private static final int NOS = Integer.getInteger("carga.nos", 5);
+    private static final int TAXA = Integer.getInteger("carga.taxa", 200);
+    private static final int DURACAO_S = Integer.getInteger("carga.duracao", 20);
+    private static final int PAUSA_S = Integer.getInteger("carga.pausa", 5);
+    private static final int FANOUT = Integer.getInteger("carga.fanout", Cliente.fanoutPadrao());
+
+    private static final PrintStream saida = System.out;
+
+    private final Cliente[] nos = new Cliente[NOS];
+    private final EnderecoPeer[] enderecos = new EnderecoPeer[NOS];
+    // Horário previsto de cada postagem e quantos nós, além da origem, ainda não a receberam
+    private final long[] inicios = new long[TAXA * (DURACAO_S + PAUSA_S)];
+    private final AtomicIntegerArray faltam = new AtomicIntegerArray(inicios.length);
+    private final Histogram porNo = new ConcurrentHistogram(MAIOR_LATENCIA_US, 3);
+    private final Histogram emTodos = new ConcurrentHistogram(MAIOR_LATENCIA_US, 3);
+    private final ConcurrentLinkedQueue<String> postadas = new ConcurrentLinkedQueue<>();
+    private volatile boolean medindo = true;
+    private int proximaMensagem;
+
+    public static void main(String[] args) throws Exception {
+        // Os clientes escrevem cada mensagem recebida no console; durante a carga só os erros aparecem
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        apagarArquivos();
+        TesteCargaCluster teste = new TesteCargaCluster();
+        try {
+            teste.executar();
+        } finally {
+            teste.pararTodos();
+            apagarArquivos();
+        }
+        System.exit(0);
+    }
+
+    private void executar() throws Exception {
+        for (int i = 0; i < NOS; i++) {
+            enderecos[i] = EnderecoPeer.local(portaLivre());
+        }
+        for (int i = 0; i < NOS; i++) {
+            iniciarNo(i);
+        }
+        // Deixa as batidas marcarem todos os membros como ativos antes de medir
+        Thread.sleep(1000);
+
+        saida.println("=== " + NOS + " nós, fanout " + FANOUT + ", " + TAXA + " mensagens/s por " + DURACAO_S + " s ===");
+        long inicio = System.nanoTime();
+        int postadasCarga = postar(DURACAO_S, NOS);
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+        int pendentes = esperarEntregas(postadasCarga);
+        medindo = false;
+
+        saida.printf("Postadas: %d (%.1f mensagens/s)%n", postadasCarga, postadasCarga / segundos);
+        if (pendentes > 0) {
+            saida.println("Sem chegar a todos os nós depois de " + ESPERA_ENTREGAS_MS / 1000 + " s: " + pendentes);
+        }
+        imprimir("Postagem até aparecer em um nó", porNo);
+        imprimir("Postagem até aparecer em todos os nós", emTodos);
+
+        if (NOS > 1 && PAUSA_S > 0) {
+            medirRecuperacao();
+        }
+    }
+
+    // Para o último nó, segue postando nos demais e mede quanto tempo ele leva para alcançar o cluster ao voltar
+    private void medirRecuperacao() throws Exception {
+        int indice = NOS - 1;
+        nos[indice].parar();
+        nos[indice] = null;
+        int perdidas = postar(PAUSA_S, NOS - 1);
+
+        long inicio = System.nanoTime();
+        iniciarNo(indice);
+        MuralMensagens mural = nos[indice].getMural();
+        List<String> faltando = new ArrayList<>(postadas);
+        long limite = inicio + TimeUnit.MILLISECONDS.toNanos(ESPERA_RECUPERACAO_MS);
+        while (!faltando.isEmpty() && System.nanoTime() < limite) {
+            for (Iterator<String> it = faltando.iterator(); it.hasNext(); ) {
+                if (mural.possuiMensagem(it.next())) {
+                    it.remove();
+                }
+            }
+            Thread.sleep(5);
+        }
+        long ms = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+
+        saida.println();
+        saida.println("=== Recuperação: nó parado por " + PAUSA_S + " s, " + perdidas + " mensagens postadas enquanto isso ===");
+        if (faltando.isEmpty()) {
+            saida.println("Mural completo " + ms + " ms depois de reiniciar");
+        } else {
+            saida.println("Ainda faltavam " + faltando.size() + " mensagens depois de " + ms + " ms");
+        }
+    }
+
+    // Posta TAXA mensagens por segundo divididas entre os primeiros nós, cada um na sua thread; retorna quantas postou
+    private int postar(int segundos, int origens) throws InterruptedException {
+        int quantidade = TAXA * segundos;
+        int base = proximaMensagem;
+        proximaMensagem += quantidade;
+        long intervalo = TimeUnit.SECONDS.toNanos(1) / TAXA;
+        long inicio = System.nanoTime();
+        List<Thread> geradores = new ArrayList<>();
+        for (int o = 0; o < origens; o++) {
+            Cliente origem = nos[o];
+            int primeira = o;
+            Thread gerador = new Thread(() -> {
+                for (int i = primeira; i < quantidade; i += origens) {
+                    int numero = base + i;
+                    long previsto = inicio + i * intervalo;
+                    long espera = previsto - System.nanoTime();
+                    if (espera > 0) {
+                        LockSupport.parkNanos(espera);
+                    }
+                    // A latência conta do horário previsto: um gerador atrasado não esconde a fila que ele mesmo causou
+                    inicios[numero] = previsto;
+                    faltam.set(numero, NOS - 1);
+                    postadas.add(origem.postar(origem.getNome(), CONTEUDO + numero, "publica").getId());
+                }
+            });
+            gerador.start();
+            geradores.add(gerador);
+        }
+        for (Thread gerador : geradores) {
+            gerador.join();
+        }
+        return quantidade;
+    }
+
+    private int esperarEntregas(int quantidade) throws InterruptedException {
+        long limite = System.currentTimeMillis() + ESPERA_ENTREGAS_MS;
+        while (true) {
+            int pendentes = 0;
+            for (int i = 0; i < quantidade; i++) {
+                if (faltam.get(i) > 0) {
+                    pendentes++;
+                }
+            }
+            if (pendentes == 0 || System.currentTimeMillis() > limite) {
+                return pendentes;
+            }
+            Thread.sleep(50);
+        }
+    }
+
+    private void iniciarNo(int indice) throws IOException {
+        List<EnderecoPeer> peers = new ArrayList<>();
+        for (int i = 0; i < NOS; i++) {
+            if (i != indice) {
+                peers.add(enderecos[i]);
+            }
+        }
+        Cliente cliente = new Cliente(PREFIXO + (indice + 1), enderecos[indice], peers, FANOUT);
+        cliente.getMural().adicionarOuvinte(mensagem -> registrarEntrega(cliente, mensagem));
+        nos[indice] = cliente;
+        cliente.iniciarSemInterface();
+    }
+
+    // Chamado pelo mural de cada nó quando uma mensagem da carga passa a ser visível nele
+    private void registrarEntrega(Cliente cliente, Mensagem mensagem) {
+        if (!medindo || cliente.getNome().equals(mensagem.getOrigem()) || !mensagem.getConteudo().startsWith(CONTEUDO)) {
+            return;
+        }
+        int numero = Integer.parseInt(mensagem.getConteudo().substring(CONTEUDO.length()));
+        long latencia = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - inicios[numero]);
+        porNo.recordValue(Math.min(latencia, MAIOR_LATENCIA_US));
+        if (faltam.decrementAndGet(numero) == 0) {
+            emTodos.recordValue(Math.min(latencia, MAIOR_LATENCIA_US));
+        }
+    }
+
+    private static void imprimir(String titulo, Histogram histograma) {
+        saida.printf("%-40s p50 %8.2f ms  p90 %8.2f ms  p99 %8.2f ms  p99.9 %8.2f ms  máx %8.2f ms  (%d)%n", titulo,
+            histograma.getValueAtPercentile(50) / 1000.0, histograma.getValueAtPercentile(90) / 1000.0,
+            histograma.getValueAtPercentile(99) / 1000.0, histograma.getValueAtPercentile(99.9) / 1000.0,
+            histograma.getMaxValue() / 1000.0, histograma.getTotalCount());
+    }
+
+    private void pararTodos() {
+        for (Cliente cliente : nos) {
+            if (cliente != null) {
+                cliente.parar();
+            }
+        }
+    }
+
+    private static int portaLivre() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    // Remove murais e caixas de saída dos nós do teste, de execuções anteriores ou desta
+    private static void apagarArquivos() throws IOException {
+        try (DirectoryStream<Path> arquivos = Files.newDirectoryStream(Path.of("."), PREFIXO + "*_*")) {
+            for (Path arquivo : arquivos) {
+                Files.deleteIfExists(arquivo);
+            }
+        }
+    }
+}
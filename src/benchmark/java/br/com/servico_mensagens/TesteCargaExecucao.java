@@ -0,0 +1,190 @@
+package br.com.servico_mensagens;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+// Dispara requisições simultâneas a um peer lento com cada modo de execução e mede threads e memória
+public class TesteCargaExecucao {
+    private static final int REQUISICOES = 10_000;
+    private static final long LATENCIA_PEER_MS = 500;
+    private static final int PORTA_PEER = 8901;
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws Exception {
+        PeerLento peer = new PeerLento(PORTA_PEER);
+        peer.iniciar();
+        int threadsIniciais = threads.getThreadCount();
+
+        System.out.println("=== " + REQUISICOES + " requisições simultâneas a um peer que responde em "
+            + LATENCIA_PEER_MS + " ms ===");
+        System.out.printf("%-12s %10s %14s %14s %12s%n", "Modo", "threads", "heap (MB)", "RSS (MB)", "tempo (ms)");
+        for (ModoExecucao modo : ModoExecucao.values()) {
+            if (modo == ModoExecucao.VIRTUAL && !ModoExecucao.suportaThreadsVirtuais()) {
+                System.out.printf("%-12s %s%n", modo, "indisponível: exige Java 21 ou mais recente");
+                continue;
+            }
+            esperarThreads(threadsIniciais);
+            medir(modo);
+        }
+        peer.parar();
+        System.exit(0);
+    }
+
+    // Cada tarefa faz o mesmo que o Cliente faz ao falar com um peer: requisição pela conexão persistente e espera bloqueada
+    private static void medir(ModoExecucao modo) throws Exception {
+        System.gc();
+        threads.resetPeakThreadCount();
+        GerenciadorConexoes transporte = new GerenciadorConexoes(objectMapper, modo);
+        ExecutorService executor = modo.criarExecutor();
+        Amostrador amostrador = new Amostrador();
+        amostrador.iniciar();
+
+        long inicio = System.nanoTime();
+        List<Future<?>> tarefas = new ArrayList<>(REQUISICOES);
+        for (int i = 0; i < REQUISICOES; i++) {
+            tarefas.add(executor.submit(() -> {
+                Map<String, Object> dados = new HashMap<>();
+                dados.put("tipo", "SOLICITAR_RESUMO");
+                dados.put("remetente", "TesteCarga");
+                return transporte.requisitar(EnderecoPeer.local(PORTA_PEER), dados);
+            }));
+        }
+        int falhas = 0;
+        for (Future<?> tarefa : tarefas) {
+            try {
+                tarefa.get();
+            } catch (Exception e) {
+                falhas++;
+            }
+        }
+        long tempoMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+        amostrador.parar();
+        executor.shutdown();
+        transporte.fecharTodas();
+
+        System.out.printf("%-12s %10d %14.1f %14s %12d%s%n", modo, threads.getPeakThreadCount(),
+            amostrador.maiorHeap.get() / (1024.0 * 1024.0),
+            amostrador.maiorRss.get() > 0 ? String.format("%.1f", amostrador.maiorRss.get() / 1024.0) : "-",
+            tempoMs, falhas > 0 ? " (" + falhas + " falhas)" : "");
+    }
+
+    // Logo depois do shutdown as threads do pool do modo anterior ainda estão terminando e entrariam no pico do seguinte
+    private static void esperarThreads(int limite) throws InterruptedException {
+        long prazo = System.currentTimeMillis() + 10_000;
+        while (threads.getThreadCount() > limite && System.currentTimeMillis() < prazo) {
+            Thread.sleep(100);
+        }
+    }
+
+    // Guarda o maior uso de heap e de memória residente durante a medição
+    private static class Amostrador {
+        private final AtomicLong maiorHeap = new AtomicLong();
+        private final AtomicLong maiorRss = new AtomicLong();
+        private final ScheduledExecutorService agendador = Executors.newSingleThreadScheduledExecutor();
+
+        void iniciar() {
+            agendador.scheduleAtFixedRate(() -> {
+                Runtime runtime = Runtime.getRuntime();
+                maiorHeap.accumulateAndGet(runtime.totalMemory() - runtime.freeMemory(), Math::max);
+                maiorRss.accumulateAndGet(lerRssKb(), Math::max);
+            }, 0, 20, TimeUnit.MILLISECONDS);
+        }
+
+        void parar() throws InterruptedException {
+            agendador.shutdown();
+            agendador.awaitTermination(1, TimeUnit.SECONDS);
+        }
+
+        // Memória residente do processo em KB, inclui as pilhas das threads; só existe no Linux
+        private static long lerRssKb() {
+            try {
+                for (String linha : Files.readAllLines(Path.of("/proc/self/status"))) {
+                    if (linha.startsWith("VmRSS:")) {
+                        return Long.parseLong(linha.replaceAll("[^0-9]", ""));
+                    }
+                }
+            } catch (IOException | NumberFormatException e) {}
+            return 0;
+        }
+    }
+
+    // Peer que responde a cada requisição só depois da latência configurada, sem segurar uma thread por requisição
+    private static class PeerLento {
+        private final ServerSocket servidor;
+        private final ScheduledExecutorService respostas = Executors.newScheduledThreadPool(2);
+
+        PeerLento(int porta) throws IOException {
+            this.servidor = new ServerSocket(porta);
+        }
+
+        void iniciar() {
+            Thread aceitador = new Thread(() -> {
+                while (!servidor.isClosed()) {
+                    try {
+                        Socket socket = servidor.accept();
+                        Thread leitor = new Thread(() -> atender(socket));
+                        leitor.setDaemon(true);
+                        leitor.start();
+                    } catch (IOException e) {}
+                }
+            });
+            aceitador.setDaemon(true);
+            aceitador.start();
+        }
+
+        private void atender(Socket socket) {
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+                BufferedWriter writer = new BufferedWriter(
+                    new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+                String linha;
+                while ((linha = reader.readLine()) != null) {
+                    Map<String, Object> dados = objectMapper.readValue(linha, Map.class);
+                    Map<String, Object> resposta = new HashMap<>();
+                    resposta.put("tipo", "RESPOSTA_RESUMO");
+                    resposta.put("requestId", dados.get("requestId"));
+                    String json = objectMapper.writeValueAsString(resposta);
+                    respostas.schedule(() -> {
+                        synchronized (writer) {
+                            try {
+                                writer.write(json);
+                                writer.write('\n');
+                                writer.flush();
+                            } catch (IOException e) {}
+                        }
+                    }, LATENCIA_PEER_MS, TimeUnit.MILLISECONDS);
+                }
+            } catch (IOException e) {}
+        }
+
+        void parar() throws IOException {
+            servidor.close();
+            respostas.shutdownNow();
+        }
+    }
+}
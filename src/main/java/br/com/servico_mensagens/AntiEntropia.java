@@ -0,0 +1,102 @@
+package br.com.servico_mensagens;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+class AntiEntropia {
+    private static final int MENSAGENS_POR_DELTA = 500;
+
+    private final String nome;
+    private final MuralMensagens mural;
+    private final TransportePeers transporte;
+
+    AntiEntropia(String nome, MuralMensagens mural, TransportePeers transporte) {
+        this.nome = nome;
+        this.mural = mural;
+        this.transporte = transporte;
+    }
+
+    // Responde com as mensagens que o vetor do solicitante não cobre e com o vetor local
+    Map<String, Object> responderDelta(Map<String, Object> dados) {
+        Map<String, Long> vetor = VetorVersao.deMapa(dados.get("vetor"));
+        int limite = Math.min(((Number) dados.get("limite")).intValue(), MENSAGENS_POR_DELTA);
+        List<Mensagem> mensagens = mural.getMensagensAlemDe(vetor, limite);
+        Map<String, Object> resposta = new HashMap<>();
+        resposta.put("tipo", "RESPOSTA_DELTA");
+        resposta.put("mensagens", mensagens);
+        resposta.put("fim", mensagens.size() < limite);
+        resposta.put("vetor", mural.getVetorVersao());
+        resposta.put("remetente", nome);
+        return resposta;
+    }
+
+    // Guarda as mensagens que o peer percebeu que faltavam aqui
+    Map<String, Object> receberDelta(Map<String, Object> dados) {
+        int adicionadas = mural.adicionarMensagens(Mensagem.deLista(dados.get("mensagens")));
+        Map<String, Object> resposta = new HashMap<>();
+        resposta.put("tipo", "RESPOSTA_ENVIO_DELTA");
+        resposta.put("adicionadas", adicionadas);
+        resposta.put("remetente", nome);
+        return resposta;
+    }
+
+    // Troca com o peer só as mensagens que faltam de cada lado; retorna quantas foram recebidas
+    int reconciliar(EnderecoPeer peer) throws IOException {
+        Map<String, Long> cursor = mural.getVetorVersao();
+        Map<String, Long> vetorPeer = null;
+        String remetente = null;
+        int recebidas = 0;
+        while (true) {
+            Map<String, Object> solicitacao = new HashMap<>();
+            solicitacao.put("tipo", "SOLICITAR_DELTA");
+            solicitacao.put("vetor", cursor);
+            solicitacao.put("limite", MENSAGENS_POR_DELTA);
+            solicitacao.put("remetente", nome);
+            Map<String, Object> resposta = transporte.requisitar(peer, solicitacao);
+            if (vetorPeer == null) {
+                vetorPeer = VetorVersao.deMapa(resposta.get("vetor"));
+                remetente = (String) resposta.get("remetente");
+            }
+            List<Mensagem> mensagens = Mensagem.deLista(resposta.get("mensagens"));
+            recebidas += mural.adicionarMensagens(mensagens);
+            avancar(cursor, mensagens);
+            if (Boolean.TRUE.equals(resposta.get("fim")) || mensagens.isEmpty()) {
+                break;
+            }
+        }
+
+        int enviadas = 0;
+        while (true) {
+            List<Mensagem> mensagens = mural.getMensagensAlemDe(vetorPeer, MENSAGENS_POR_DELTA);
+            if (mensagens.isEmpty()) {
+                break;
+            }
+            Map<String, Object> envio = new HashMap<>();
+            envio.put("tipo", "ENVIO_DELTA");
+            envio.put("mensagens", mensagens);
+            envio.put("remetente", nome);
+            Map<String, Object> resposta = transporte.requisitar(peer, envio);
+            enviadas += ((Number) resposta.get("adicionadas")).intValue();
+            avancar(vetorPeer, mensagens);
+            if (mensagens.size() < MENSAGENS_POR_DELTA) {
+                break;
+            }
+        }
+        if (enviadas > 0) {
+            System.out.println("[ANTI-ENTROPIA] Enviadas " + enviadas + " mensagens que faltavam em " + remetente);
+        }
+        return recebidas;
+    }
+
+    // Avança o cursor até a maior sequência já trocada de cada origem, mesmo com lacunas no caminho
+    private static void avancar(Map<String, Long> cursor, List<Mensagem> mensagens) {
+        for (Mensagem mensagem : mensagens) {
+            if (mensagem.getOrigem() != null) {
+                cursor.merge(mensagem.getOrigem(), mensagem.getSequencia(), Math::max);
+            }
+        }
+    }
+}
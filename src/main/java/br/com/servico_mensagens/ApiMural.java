@@ -0,0 +1,134 @@
+package br.com.servico_mensagens;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+
+// Operações de um cliente para outros programas: postar, consultar, assinar as novidades e sincronizar, sem passar pelo console
+public class ApiMural {
+    // Encerra uma assinatura; depois de fechada o ouvinte não é mais chamado
+    public interface Assinatura extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private final Cliente cliente;
+    private final MuralMensagens mural;
+    private final ServicoMembros membros;
+    private final ExportadorPdf exportador;
+    private final RegistroMetricas metricas;
+
+    ApiMural(Cliente cliente, MuralMensagens mural, ServicoMembros membros, ExportadorPdf exportador, RegistroMetricas metricas) {
+        this.cliente = cliente;
+        this.mural = mural;
+        this.membros = membros;
+        this.exportador = exportador;
+        this.metricas = metricas;
+    }
+
+    // Posta no mural e entrega aos peers pelas caixas de saída; tipo é "publica" ou "privada"
+    public Mensagem postar(String autor, String conteudo, String tipo) {
+        if (autor == null || autor.isBlank()) {
+            throw new IllegalArgumentException("autor não pode estar vazio");
+        }
+        if (conteudo == null || conteudo.isBlank()) {
+            throw new IllegalArgumentException("mensagem não pode estar vazia");
+        }
+        if (!"publica".equals(tipo) && !"privada".equals(tipo)) {
+            throw new IllegalArgumentException("tipo deve ser publica ou privada: " + tipo);
+        }
+        return cliente.postar(autor, conteudo, tipo);
+    }
+
+    // As quantidade mensagens mais recentes depois de pular as pular mais recentes, em ordem de chegada
+    public List<Mensagem> getUltimas(int quantidade, int pular) {
+        return mural.getUltimas(quantidade, pular);
+    }
+
+    public List<Mensagem> getUltimasPorTipo(String tipo, int quantidade, int pular) {
+        return mural.getUltimasPorTipo(tipo, quantidade, pular);
+    }
+
+    public Mensagem getMensagem(String id) {
+        return mural.getMensagem(id);
+    }
+
+    public ConsultaMural consultarAPartirDe(int posicao) {
+        return mural.consultarAPartirDe(posicao);
+    }
+
+    public ConsultaMural consultarPorTipo(String tipo) {
+        return mural.consultarPorTipo(tipo);
+    }
+
+    public ConsultaMural consultarPorAutor(String autor) {
+        return mural.consultarPorAutor(autor);
+    }
+
+    public ConsultaMural consultarPorClock(int de, int ate) {
+        return mural.consultarPorClock(de, ate);
+    }
+
+    // Mensagens com relógio maior que clock, na ordem total de Lamport (relógio, origem e ID)
+    public ConsultaMural consultarDepoisDoClock(int clock) {
+        return mural.consultarDepoisDoClock(clock);
+    }
+
+    public ConsultaMural consultarEmOrdemLamport() {
+        return mural.consultarEmOrdemLamport();
+    }
+
+    public ConsultaMural consultarPorHorario(LocalDateTime de, LocalDateTime ate) {
+        return mural.consultarPorHorario(de, ate);
+    }
+
+    public int getTamanho() {
+        return mural.getTamanho();
+    }
+
+    public int contarPorTipo(String tipo) {
+        return mural.contarPorTipo(tipo);
+    }
+
+    public int getContador() {
+        return mural.getContador();
+    }
+
+    // Chama o ouvinte a cada mensagem que passa a existir no mural, postada aqui ou vinda de um peer.
+    // O ouvinte roda na thread que gravou a mensagem e deve devolvê-la logo
+    public Assinatura assinar(Consumer<Mensagem> ouvinte) {
+        mural.adicionarOuvinte(ouvinte);
+        return () -> mural.removerOuvinte(ouvinte);
+    }
+
+    // Busca nos peers conhecidos o que falta no mural local, como na inicialização, e espera terminar
+    public void sincronizar() {
+        cliente.solicitarSincronizacao();
+    }
+
+    // Membros conhecidos e se cada um está ativo segundo as batidas mais recentes
+    public Map<EnderecoPeer, Boolean> getMembros() {
+        Map<EnderecoPeer, Boolean> situacao = new LinkedHashMap<>();
+        for (EnderecoPeer peer : membros.getConhecidos()) {
+            situacao.put(peer, membros.isVivo(peer));
+        }
+        return situacao;
+    }
+
+    // Gera o PDF do mural em segundo plano; retorna false se já houver uma exportação em andamento
+    public boolean exportarPdf(boolean incluirPrivadas) {
+        return exportador.exportar(incluirPrivadas);
+    }
+
+    // As métricas do cliente no mesmo texto do arquivo <nome>_metricas.txt
+    public String getMetricas() {
+        return metricas.emTexto();
+    }
+
+    public String getNome() {
+        return cliente.getNome();
+    }
+}
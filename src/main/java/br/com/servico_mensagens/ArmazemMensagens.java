@@ -0,0 +1,380 @@
+package br.com.servico_mensagens;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+// Campos das mensagens do mural em colunas: autor e origem como índices de um dicionário de nomes, relógio, horário,
+// tipo e sequência em arrays primitivos e os textos em blocos fora do heap. Uma Mensagem só é montada quando sai do mural.
+// Não é thread-safe: quem grava segura a trava de escrita do mural e quem lê, a de leitura, porque limpar troca todas
+// as colunas de uma vez
+final class ArmazemMensagens {
+    private static final int TAMANHO_BLOCO = 1 << 20;
+    private static final int CAPACIDADE_INICIAL = 16;
+    private static final long SEM_HORARIO = Long.MIN_VALUE;
+
+    private static final byte PUBLICA = 0;
+    private static final byte PRIVADA = 1;
+    private static final byte TIPO_TEXTUAL = 2;
+    private static final byte SEM_TIPO = 3;
+
+    // O que não coube nas colunas e foi para os blocos depois do conteúdo, nesta ordem: ID, horário e tipo
+    private static final byte ID_TEXTUAL = 1;
+    private static final byte HORARIO_TEXTUAL = 2;
+
+    private int[] autores;
+    private int[] origens;
+    private int[] clocks;
+    private byte[] tipos;
+    private byte[] marcas;
+    // Nanossegundos desde a época, lendo o horário local como UTC, igual ao índice por horário do mural
+    private long[] horarios;
+    private long[] sequencias;
+    // Número final dos IDs no formato autor_relógio_número
+    private long[] numerosId;
+    // Onde começam os textos de cada mensagem: bloco nos 32 bits altos e deslocamento nos baixos
+    private long[] textos;
+    // 32 bits baixos do hash de cada ID, que também escolhem a vaga dele na tabela de IDs
+    private int[] resumosId;
+    private int tamanho;
+
+    private String[] nomes;
+    private int quantidadeNomes;
+    private final Map<String, Integer> indicesNomes = new HashMap<>();
+
+    private ByteBuffer[] blocos;
+    private int quantidadeBlocos;
+    private int usadoNoBloco;
+
+    // Endereçamento aberto com sondagem linear: posição + 1 de cada ID, 0 nas vagas livres
+    private int[] tabelaIds;
+
+    ArmazemMensagens() {
+        limpar();
+    }
+
+    // Esquece todas as mensagens; os blocos de texto antigos ficam para o GC liberar
+    void limpar() {
+        tamanho = 0;
+        autores = new int[CAPACIDADE_INICIAL];
+        origens = new int[CAPACIDADE_INICIAL];
+        clocks = new int[CAPACIDADE_INICIAL];
+        tipos = new byte[CAPACIDADE_INICIAL];
+        marcas = new byte[CAPACIDADE_INICIAL];
+        horarios = new long[CAPACIDADE_INICIAL];
+        sequencias = new long[CAPACIDADE_INICIAL];
+        numerosId = new long[CAPACIDADE_INICIAL];
+        textos = new long[CAPACIDADE_INICIAL];
+        resumosId = new int[CAPACIDADE_INICIAL];
+        nomes = new String[CAPACIDADE_INICIAL];
+        quantidadeNomes = 0;
+        indicesNomes.clear();
+        blocos = new ByteBuffer[4];
+        quantidadeBlocos = 0;
+        usadoNoBloco = 0;
+        tabelaIds = new int[CAPACIDADE_INICIAL * 2];
+    }
+
+    // Guarda a mensagem no fim e retorna a posição dela; hashId é o FiltroBloom.hash64 do ID
+    int adicionar(Mensagem mensagem, long hashId) {
+        int posicao = tamanho;
+        if (posicao == clocks.length) {
+            crescer(posicao + (posicao >> 1));
+        }
+        if ((posicao + 1) * 2 > tabelaIds.length) {
+            redistribuirIds(tabelaIds.length * 2);
+        }
+
+        byte marca = 0;
+        String id = mensagem.getId();
+        long numeroId = mensagem.getAutor() != null
+            ? CodecMensagem.numeroDoId(id, mensagem.getAutor() + "_" + mensagem.getLamportClock() + "_")
+            : -1;
+        if (numeroId < 0) {
+            marca |= ID_TEXTUAL;
+        }
+        long horario = SEM_HORARIO;
+        String timestamp = mensagem.getTimestamp();
+        if (timestamp != null) {
+            try {
+                LocalDateTime data = LocalDateTime.parse(timestamp);
+                horario = Math.addExact(Math.multiplyExact(data.toEpochSecond(ZoneOffset.UTC), 1_000_000_000L), data.getNano());
+                // O texto só é dispensado se o horário voltar a ele exatamente
+                if (!formatarHorario(horario).equals(timestamp)) {
+                    marca |= HORARIO_TEXTUAL;
+                }
+            } catch (DateTimeParseException | ArithmeticException e) {
+                horario = SEM_HORARIO;
+                marca |= HORARIO_TEXTUAL;
+            }
+        }
+        String tipo = mensagem.getTipo();
+        byte codigoTipo = tipo == null ? SEM_TIPO : "publica".equals(tipo) ? PUBLICA : "privada".equals(tipo) ? PRIVADA : TIPO_TEXTUAL;
+
+        List<String> partes = new ArrayList<>(4);
+        partes.add(mensagem.getConteudo());
+        if ((marca & ID_TEXTUAL) != 0) {
+            partes.add(id);
+        }
+        if ((marca & HORARIO_TEXTUAL) != 0) {
+            partes.add(timestamp);
+        }
+        if (codigoTipo == TIPO_TEXTUAL) {
+            partes.add(tipo);
+        }
+        textos[posicao] = escreverTextos(partes);
+        autores[posicao] = internar(mensagem.getAutor());
+        origens[posicao] = internar(mensagem.getOrigem());
+        clocks[posicao] = mensagem.getLamportClock();
+        tipos[posicao] = codigoTipo;
+        marcas[posicao] = marca;
+        horarios[posicao] = horario;
+        sequencias[posicao] = mensagem.getSequencia();
+        numerosId[posicao] = numeroId;
+        resumosId[posicao] = (int) hashId;
+        ocuparVaga(posicao);
+        tamanho = posicao + 1;
+        return posicao;
+    }
+
+    int getTamanho() {
+        return tamanho;
+    }
+
+    // Monta a mensagem de uma posição ocupada
+    Mensagem get(int posicao) {
+        if (posicao < 0 || posicao >= tamanho) {
+            throw new IndexOutOfBoundsException("mensagem " + posicao + " de " + tamanho);
+        }
+        byte marca = marcas[posicao];
+        byte codigoTipo = tipos[posicao];
+        String[] lidos = lerTextos(posicao, marca, codigoTipo);
+        int proximo = 1;
+        String autor = nome(autores[posicao]);
+        int clock = clocks[posicao];
+        Mensagem mensagem = new Mensagem();
+        mensagem.setConteudo(lidos[0]);
+        mensagem.setAutor(autor);
+        mensagem.setLamportClock(clock);
+        mensagem.setId((marca & ID_TEXTUAL) != 0 ? lidos[proximo++] : autor + "_" + clock + "_" + numerosId[posicao]);
+        long horario = horarios[posicao];
+        mensagem.setTimestamp((marca & HORARIO_TEXTUAL) != 0 ? lidos[proximo++]
+            : horario == SEM_HORARIO ? null : formatarHorario(horario));
+        mensagem.setTipo(codigoTipo == PUBLICA ? "publica" : codigoTipo == PRIVADA ? "privada"
+            : codigoTipo == TIPO_TEXTUAL ? lidos[proximo] : null);
+        if (origens[posicao] >= 0) {
+            mensagem.setOrigem(nome(origens[posicao]), sequencias[posicao]);
+        }
+        return mensagem;
+    }
+
+    String getId(int posicao) {
+        if ((marcas[posicao] & ID_TEXTUAL) != 0) {
+            return lerTextos(posicao, marcas[posicao], tipos[posicao])[1];
+        }
+        return nome(autores[posicao]) + "_" + clocks[posicao] + "_" + numerosId[posicao];
+    }
+
+    long getSequencia(int posicao) {
+        return sequencias[posicao];
+    }
+
+    boolean temHorario(int posicao) {
+        return horarios[posicao] != SEM_HORARIO;
+    }
+
+    // Horário de criação em milissegundos, a chave do índice por horário do mural
+    long getHorarioMillis(int posicao) {
+        return Math.floorDiv(horarios[posicao], 1_000_000L);
+    }
+
+    // Chave na ordem de Lamport; só IDs fora do formato autor_relógio_número ficam guardados como texto nela
+    ChaveLamport chaveLamport(int posicao) {
+        String autor = nome(autores[posicao]);
+        String origem = nome(origens[posicao]);
+        String desempate = origem != null ? origem : autor != null ? autor : "";
+        String idTexto = (marcas[posicao] & ID_TEXTUAL) != 0 ? getId(posicao) : null;
+        return new ChaveLamport(clocks[posicao], desempate, autor, numerosId[posicao], idTexto, posicao);
+    }
+
+    // Posição da mensagem com o ID informado, ou -1; o ID só é remontado nas vagas com o mesmo resumo de hash
+    int posicaoDe(String id) {
+        int resumo = (int) FiltroBloom.hash64(id);
+        int mascara = tabelaIds.length - 1;
+        for (int vaga = resumo & mascara; ; vaga = (vaga + 1) & mascara) {
+            int posicao = tabelaIds[vaga] - 1;
+            if (posicao < 0) {
+                return -1;
+            }
+            if (resumosId[posicao] == resumo && id.equals(getId(posicao))) {
+                return posicao;
+            }
+        }
+    }
+
+    // O mural inteiro como lista somente leitura, para a persistência; cada get monta a mensagem na hora
+    List<Mensagem> comoLista() {
+        return new AbstractList<Mensagem>() {
+            @Override
+            public Mensagem get(int indice) {
+                return ArmazemMensagens.this.get(indice);
+            }
+
+            @Override
+            public int size() {
+                return tamanho;
+            }
+        };
+    }
+
+    private void crescer(int capacidade) {
+        autores = Arrays.copyOf(autores, capacidade);
+        origens = Arrays.copyOf(origens, capacidade);
+        clocks = Arrays.copyOf(clocks, capacidade);
+        tipos = Arrays.copyOf(tipos, capacidade);
+        marcas = Arrays.copyOf(marcas, capacidade);
+        horarios = Arrays.copyOf(horarios, capacidade);
+        sequencias = Arrays.copyOf(sequencias, capacidade);
+        numerosId = Arrays.copyOf(numerosId, capacidade);
+        textos = Arrays.copyOf(textos, capacidade);
+        resumosId = Arrays.copyOf(resumosId, capacidade);
+    }
+
+    private void redistribuirIds(int vagas) {
+        tabelaIds = new int[vagas];
+        for (int posicao = 0; posicao < tamanho; posicao++) {
+            ocuparVaga(posicao);
+        }
+    }
+
+    private void ocuparVaga(int posicao) {
+        int mascara = tabelaIds.length - 1;
+        int vaga = resumosId[posicao] & mascara;
+        while (tabelaIds[vaga] != 0) {
+            vaga = (vaga + 1) & mascara;
+        }
+        tabelaIds[vaga] = posicao + 1;
+    }
+
+    // Índice do nome no dicionário, acrescentando-o se for novo; -1 para null
+    private int internar(String nome) {
+        if (nome == null) {
+            return -1;
+        }
+        Integer indice = indicesNomes.get(nome);
+        if (indice != null) {
+            return indice;
+        }
+        String[] atuais = nomes;
+        if (quantidadeNomes == atuais.length) {
+            atuais = Arrays.copyOf(atuais, quantidadeNomes * 2);
+        }
+        atuais[quantidadeNomes] = nome;
+        nomes = atuais;
+        indicesNomes.put(nome, quantidadeNomes);
+        return quantidadeNomes++;
+    }
+
+    private String nome(int indice) {
+        return indice < 0 ? null : nomes[indice];
+    }
+
+    // Grava cada texto como [tamanho][UTF-8], com -1 no tamanho de um null; os textos de uma mensagem ficam no mesmo bloco
+    private long escreverTextos(List<String> partes) {
+        List<byte[]> bytes = new ArrayList<>(partes.size());
+        int total = 0;
+        for (String parte : partes) {
+            byte[] codificada = parte != null ? parte.getBytes(StandardCharsets.UTF_8) : null;
+            bytes.add(codificada);
+            total += 4 + (codificada != null ? codificada.length : 0);
+        }
+        if (quantidadeBlocos == 0 || usadoNoBloco + total > blocos[quantidadeBlocos - 1].capacity()) {
+            ByteBuffer[] atuais = blocos;
+            if (quantidadeBlocos == atuais.length) {
+                atuais = Arrays.copyOf(atuais, quantidadeBlocos * 2);
+            }
+            atuais[quantidadeBlocos++] = ByteBuffer.allocateDirect(Math.max(TAMANHO_BLOCO, total));
+            blocos = atuais;
+            usadoNoBloco = 0;
+        }
+        long referencia = ((long) (quantidadeBlocos - 1) << 32) | usadoNoBloco;
+        ByteBuffer destino = blocos[quantidadeBlocos - 1].duplicate();
+        destino.position(usadoNoBloco);
+        for (byte[] codificada : bytes) {
+            destino.putInt(codificada != null ? codificada.length : -1);
+            if (codificada != null) {
+                destino.put(codificada);
+            }
+        }
+        usadoNoBloco = destino.position();
+        return referencia;
+    }
+
+    // Lê o conteúdo e os textos opcionais presentes, na ordem em que foram gravados
+    private String[] lerTextos(int posicao, byte marca, byte codigoTipo) {
+        int quantidade = 1 + ((marca & ID_TEXTUAL) != 0 ? 1 : 0) + ((marca & HORARIO_TEXTUAL) != 0 ? 1 : 0)
+            + (codigoTipo == TIPO_TEXTUAL ? 1 : 0);
+        long referencia = textos[posicao];
+        ByteBuffer origem = blocos[(int) (referencia >>> 32)].duplicate();
+        origem.position((int) referencia);
+        String[] lidos = new String[quantidade];
+        for (int i = 0; i < quantidade; i++) {
+            int comprimento = origem.getInt();
+            if (comprimento >= 0) {
+                byte[] bytes = new byte[comprimento];
+                origem.get(bytes);
+                lidos[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+        }
+        return lidos;
+    }
+
+    // O mesmo texto de DateTimeFormatter.ISO_LOCAL_DATE_TIME, montado à mão por ser refeito a cada mensagem lida
+    private static String formatarHorario(long nanos) {
+        LocalDateTime data = LocalDateTime.ofEpochSecond(Math.floorDiv(nanos, 1_000_000_000L),
+            (int) Math.floorMod(nanos, 1_000_000_000L), ZoneOffset.UTC);
+        if (data.getYear() < 0 || data.getYear() > 9999) {
+            return data.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+        }
+        char[] texto = new char[29];
+        int n = digitos(texto, 0, data.getYear(), 4);
+        texto[n++] = '-';
+        n = digitos(texto, n, data.getMonthValue(), 2);
+        texto[n++] = '-';
+        n = digitos(texto, n, data.getDayOfMonth(), 2);
+        texto[n++] = 'T';
+        n = digitos(texto, n, data.getHour(), 2);
+        texto[n++] = ':';
+        n = digitos(texto, n, data.getMinute(), 2);
+        texto[n++] = ':';
+        n = digitos(texto, n, data.getSecond(), 2);
+        // Fração com só os dígitos necessários, sem zeros à direita
+        int fracao = data.getNano();
+        if (fracao > 0) {
+            texto[n++] = '.';
+            for (int divisor = 100_000_000; fracao > 0; divisor /= 10) {
+                texto[n++] = (char) ('0' + fracao / divisor);
+                fracao %= divisor;
+            }
+        }
+        return new String(texto, 0, n);
+    }
+
+    private static int digitos(char[] texto, int inicio, int valor, int largura) {
+        for (int i = inicio + largura - 1; i >= inicio; i--) {
+            texto[i] = (char) ('0' + valor % 10);
+            valor /= 10;
+        }
+        return inicio + largura;
+    }
+}
@@ -0,0 +1,48 @@
+package br.com.servico_mensagens;
+
+import java.util.Arrays;
+
+
+// Árvore de hashes binária guardada como heap: o nó 1 é a raiz, os filhos de i são 2i e 2i+1
+// e as folhas (nós BALDES até 2*BALDES-1) são os baldes onde os IDs caem pelo hash
+class ArvoreHashes {
+    static final int PROFUNDIDADE = 10;
+    static final int BALDES = 1 << PROFUNDIDADE;
+
+    private final long[] nos = new long[2 * BALDES];
+
+    // Inclui o hash do ID no seu balde e recalcula só o caminho até a raiz
+    void adicionar(long hashId) {
+        int no = BALDES + balde(hashId);
+        nos[no] ^= hashId;
+        for (no >>>= 1; no >= 1; no >>>= 1) {
+            nos[no] = combinar(nos[2 * no], nos[2 * no + 1]);
+        }
+    }
+
+    // Pega o hash de um nó, ou 0 para índices fora da árvore
+    long get(int no) {
+        return no >= 1 && no < nos.length ? nos[no] : 0;
+    }
+
+    void limpar() {
+        Arrays.fill(nos, 0);
+    }
+
+    // Balde de um ID: os bits mais altos do hash
+    static int balde(long hashId) {
+        return (int) (hashId >>> (64 - PROFUNDIDADE));
+    }
+
+    // Hash de um nó interno; subárvores vazias continuam com hash 0
+    private static long combinar(long esquerda, long direita) {
+        if (esquerda == 0 && direita == 0) {
+            return 0;
+        }
+        long hash = esquerda * 0x9e3779b97f4a7c15L + Long.rotateLeft(direita, 31);
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
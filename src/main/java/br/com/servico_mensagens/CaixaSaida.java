@@ -0,0 +1,273 @@
+package br.com.servico_mensagens;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+// Caixa de saída durável de um peer: log com as mensagens a entregar e a posição até onde ele já confirmou
+class CaixaSaida {
+    private static final long TAMANHO_PARA_COMPACTAR = 1024 * 1024;
+    private static final int BYTES_POR_LEITURA = 256 * 1024;
+    private static final int MENSAGENS_POR_DESCARTE = 4096;
+
+    private final ObjectMapper objectMapper;
+    private final Path arquivoSaida;
+    private final Path arquivoConfirmado;
+    private FileChannel canal;
+    // Posição no log e sequência do último registro confirmado pelo peer
+    private long posicaoConfirmada;
+    private long sequenciaConfirmada;
+    private long ultimaSequencia;
+    private boolean pendenteSincronizar;
+
+    // Abre a caixa de saída do peer e recupera o que ainda não foi confirmado
+    CaixaSaida(String nomeCliente, EnderecoPeer peer, ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.arquivoSaida = Path.of(nomeCliente + "_saida_" + peer.paraArquivo() + ".log");
+        this.arquivoConfirmado = Path.of(nomeCliente + "_saida_" + peer.paraArquivo() + ".confirmado");
+        try {
+            this.canal = FileChannel.open(arquivoSaida,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            carregar();
+        } catch (IOException e) {
+            System.err.println("Erro ao abrir caixa de saída do peer " + peer + ": " + e.getMessage());
+        }
+    }
+
+    // Lê a confirmação salva e percorre o log para achar a última sequência; um registro incompleto no fim é descartado.
+    // A posição confirmada sai da sequência confirmada, para valer mesmo se a queda ocorreu no meio de uma compactação
+    private void carregar() throws IOException {
+        sequenciaConfirmada = lerSequenciaConfirmada();
+        ultimaSequencia = sequenciaConfirmada;
+        long posicao = 0;
+        long posicaoValida = 0;
+        ByteBuffer buffer = ByteBuffer.allocate(BYTES_POR_LEITURA);
+        ByteArrayOutputStream linha = new ByteArrayOutputStream();
+        try {
+            while (canal.read(buffer, posicao) > 0) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    byte b = buffer.get();
+                    posicao++;
+                    if (b != '\n') {
+                        linha.write(b);
+                        continue;
+                    }
+                    Map<String, Object> registro = objectMapper.readValue(linha.toByteArray(), Map.class);
+                    long seq = ((Number) registro.get("seq")).longValue();
+                    ultimaSequencia = Math.max(ultimaSequencia, seq);
+                    if (seq <= sequenciaConfirmada) {
+                        posicaoConfirmada = posicao;
+                    }
+                    posicaoValida = posicao;
+                    linha.reset();
+                }
+                buffer.clear();
+            }
+        } catch (IOException e) {
+            System.err.println("Registro inválido na caixa de saída, descartando o restante: " + e.getMessage());
+        }
+        if (canal.size() > posicaoValida) {
+            canal.truncate(posicaoValida);
+        }
+    }
+
+    // Acrescenta uma mensagem no fim do log e retorna a sequência dela
+    synchronized long acrescentar(Map<String, Object> item) {
+        Map<String, Object> registro = new HashMap<>(item);
+        registro.put("seq", ultimaSequencia + 1);
+        try {
+            ByteBuffer bytes = ByteBuffer.wrap((objectMapper.writeValueAsString(registro) + "\n")
+                .getBytes(StandardCharsets.UTF_8));
+            long posicao = canal.size();
+            while (bytes.hasRemaining()) {
+                posicao += canal.write(bytes, posicao);
+            }
+            pendenteSincronizar = true;
+        } catch (IOException e) {
+            System.err.println("Erro ao escrever na caixa de saída: " + e.getMessage());
+            return ultimaSequencia;
+        }
+        notifyAll();
+        return ++ultimaSequencia;
+    }
+
+    // Lê até limite registros ainda não confirmados, a partir da posição confirmada
+    synchronized Lote lerLote(int limite) throws IOException {
+        Lote lote = new Lote();
+        lote.fim = posicaoConfirmada;
+        ByteBuffer buffer = ByteBuffer.allocate(BYTES_POR_LEITURA);
+        ByteArrayOutputStream linha = new ByteArrayOutputStream();
+        long posicao = posicaoConfirmada;
+        while (lote.itens.size() < limite && canal.read(buffer, posicao) > 0) {
+            buffer.flip();
+            while (buffer.hasRemaining() && lote.itens.size() < limite) {
+                byte b = buffer.get();
+                posicao++;
+                if (b != '\n') {
+                    linha.write(b);
+                    continue;
+                }
+                Map<String, Object> registro = objectMapper.readValue(linha.toByteArray(), Map.class);
+                lote.itens.add(registro);
+                lote.ultimaSequencia = ((Number) registro.get("seq")).longValue();
+                lote.fim = posicao;
+                linha.reset();
+            }
+            buffer.clear();
+        }
+        return lote;
+    }
+
+    // Registra que o peer confirmou o lote; quando a parte confirmada passa do limite e é ao menos metade do log,
+    // ela sai do arquivo mesmo que haja mensagens ainda por confirmar, e cada byte é copiado no máximo uma vez por vez
+    // que o log dobra
+    synchronized void confirmar(Lote lote) throws IOException {
+        posicaoConfirmada = lote.fim;
+        sequenciaConfirmada = lote.ultimaSequencia;
+        long tamanho = canal.size();
+        if (posicaoConfirmada >= TAMANHO_PARA_COMPACTAR && posicaoConfirmada * 2 >= tamanho) {
+            if (posicaoConfirmada == tamanho) {
+                canal.truncate(0);
+                canal.force(false);
+            } else {
+                compactar();
+            }
+            posicaoConfirmada = 0;
+        }
+        Path temporario = arquivoConfirmado.resolveSibling(arquivoConfirmado.getFileName() + ".tmp");
+        try (FileChannel arquivo = FileChannel.open(temporario,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer bytes = ByteBuffer.wrap((posicaoConfirmada + " " + sequenciaConfirmada).getBytes(StandardCharsets.UTF_8));
+            while (bytes.hasRemaining()) {
+                arquivo.write(bytes);
+            }
+            arquivo.force(false);
+        }
+        Files.move(temporario, arquivoConfirmado, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        notifyAll();
+    }
+
+    // Sequência salva em .confirmado. Ilegível, vale 0 e a caixa inteira é reenviada, o que não duplica nada porque quem
+    // recebe descarta os IDs que já tem
+    private long lerSequenciaConfirmada() {
+        if (!Files.exists(arquivoConfirmado)) {
+            return 0;
+        }
+        try {
+            String[] partes = Files.readString(arquivoConfirmado, StandardCharsets.UTF_8).trim().split(" ");
+            return Long.parseLong(partes[1]);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Confirmação ilegível em " + arquivoConfirmado + ", reenviando a caixa de saída inteira: " + e);
+            return 0;
+        }
+    }
+
+    // Copia o que falta confirmar para um log novo, que substitui o atual de uma vez
+    private void compactar() throws IOException {
+        Path temporario = arquivoSaida.resolveSibling(arquivoSaida.getFileName() + ".tmp");
+        try (FileChannel novo = FileChannel.open(temporario,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long posicao = posicaoConfirmada;
+            long fim = canal.size();
+            while (posicao < fim) {
+                posicao += canal.transferTo(posicao, fim - posicao, novo);
+            }
+            novo.force(false);
+        }
+        canal.close();
+        Files.move(temporario, arquivoSaida, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        canal = FileChannel.open(arquivoSaida, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        pendenteSincronizar = false;
+    }
+
+    // Dá como entregues as mensagens mais antigas até restarem no máximo limite por confirmar; retorna quantas saíram
+    synchronized long descartarAntigas(long limite) throws IOException {
+        long descartadas = 0;
+        while (getPendentes() > limite) {
+            Lote lote = lerLote((int) Math.min(getPendentes() - limite, MENSAGENS_POR_DESCARTE));
+            if (lote.itens.isEmpty()) {
+                break;
+            }
+            confirmar(lote);
+            descartadas += lote.itens.size();
+        }
+        return descartadas;
+    }
+
+    // Garante no disco os registros acrescentados desde a última chamada
+    synchronized void sincronizar() throws IOException {
+        if (pendenteSincronizar) {
+            canal.force(false);
+            pendenteSincronizar = false;
+        }
+    }
+
+    synchronized long getPendentes() {
+        return ultimaSequencia - sequenciaConfirmada;
+    }
+
+    // Espera até haver algo para enviar; retorna false se o prazo acabar antes
+    synchronized boolean aguardarPendentes(long esperaMs) throws InterruptedException {
+        if (getPendentes() == 0) {
+            wait(esperaMs);
+        }
+        return getPendentes() > 0;
+    }
+
+    // Espera o peer confirmar mensagens até a caixa ficar abaixo do limite, por no máximo esperaMs
+    synchronized void aguardarEspaco(long limite, long esperaMs) throws InterruptedException {
+        long prazo = System.currentTimeMillis() + esperaMs;
+        long restante = esperaMs;
+        while (getPendentes() >= limite && restante > 0) {
+            wait(restante);
+            restante = prazo - System.currentTimeMillis();
+        }
+    }
+
+    // Acorda quem estiver esperando na caixa, para a thread de envio perceber que deve parar
+    synchronized void acordar() {
+        notifyAll();
+    }
+
+    // Fecha a caixa e apaga os arquivos dela, para um peer que saiu do cluster
+    synchronized void apagar() {
+        fechar();
+        try {
+            Files.deleteIfExists(arquivoSaida);
+            Files.deleteIfExists(arquivoConfirmado);
+        } catch (IOException e) {
+            System.err.println("Erro ao apagar caixa de saída: " + e.getMessage());
+        }
+    }
+
+    synchronized void fechar() {
+        try {
+            if (canal != null) {
+                sincronizar();
+                canal.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Erro ao fechar caixa de saída: " + e.getMessage());
+        }
+    }
+
+    static class Lote {
+        final List<Map<String, Object>> itens = new ArrayList<>();
+        long ultimaSequencia;
+        long fim;
+    }
+}
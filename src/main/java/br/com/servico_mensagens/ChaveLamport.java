@@ -0,0 +1,59 @@
+package br.com.servico_mensagens;
+
+import java.util.Objects;
+
+
+// Lugar de uma mensagem na ordem total de Lamport: relógio, depois origem e ID, para todas as réplicas ordenarem igual
+final class ChaveLamport implements Comparable<ChaveLamport> {
+    final int clock;
+    // Posição da mensagem no mural; não entra na ordem
+    final int posicao;
+    // Quem postou: a origem, ou o autor nas mensagens gravadas antes de elas terem origem
+    private final String desempate;
+    // O ID fica como autor e número quando segue o formato autor_relógio_número, sem um String por mensagem
+    private final String autor;
+    private final long numeroId;
+    private final String idTexto;
+
+    ChaveLamport(int clock, String desempate, String autor, long numeroId, String idTexto, int posicao) {
+        this.clock = clock;
+        this.desempate = desempate;
+        this.autor = autor;
+        this.numeroId = numeroId;
+        this.idTexto = idTexto;
+        this.posicao = posicao;
+    }
+
+    // Menor chave com o relógio informado, para começar uma busca nele
+    static ChaveLamport inicio(int clock) {
+        return new ChaveLamport(clock, "", null, -1, "", -1);
+    }
+
+    // Só é remontado quando relógio e origem empatam, o que é raro
+    String getId() {
+        return idTexto != null ? idTexto : autor + "_" + clock + "_" + numeroId;
+    }
+
+    @Override
+    public int compareTo(ChaveLamport outra) {
+        int comparacao = Integer.compare(clock, outra.clock);
+        if (comparacao == 0) {
+            comparacao = desempate.compareTo(outra.desempate);
+        }
+        return comparacao != 0 ? comparacao : getId().compareTo(outra.getId());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof ChaveLamport)) {
+            return false;
+        }
+        ChaveLamport outra = (ChaveLamport) o;
+        return clock == outra.clock && desempate.equals(outra.desempate) && getId().equals(outra.getId());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(clock, desempate, getId());
+    }
+}
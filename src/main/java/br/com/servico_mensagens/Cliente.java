@@ -1,74 +1,168 @@
 package br.com.servico_mensagens;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.itextpdf.kernel.pdf.PdfDocument;
-import com.itextpdf.kernel.pdf.PdfWriter;
-import com.itextpdf.layout.Document;
-import com.itextpdf.layout.element.Paragraph;
-import com.itextpdf.layout.element.Text;
-import com.itextpdf.layout.properties.TextAlignment;
 import java.io.*;
 import java.net.*;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.HashSet;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 
 
 public class Cliente {
+    private static final int FANOUT_PADRAO = 3;
+
     private final String nome;
     private final int porta;
-    private final List<Integer> portasOutrosClientes;
+    // Quantos peers sorteados recebem cada mensagem nova; com todos os peers, vira a malha completa
+    private final int fanout;
     private final MuralMensagens mural;
     private final LamportClock lamportClock;
     private final ObjectMapper objectMapper;
     private final AtomicBoolean ativo;
     private final ExecutorService executorService;
+    private final TransportePeers transporte;
+    private final CompressaoCarga compressao;
+    
+    private final ModoServidor modoServidor;
+    private final ModoExecucao modoExecucao;
+    private final ModoProtocolo modoProtocolo;
+    private final ModoSincronizacao modoSincronizacao;
+    private final AntiEntropia antiEntropia;
+    private final SincronizadorIncremental sincronizador;
+    private final VerificadorConsistencia verificador;
+    private final DifusorMensagens difusor;
+    private final ServicoMembros membros;
+    private final ExportadorPdf exportador;
+    private final RegistroMetricas metricas;
+    // Sequência das mensagens postadas por este cliente, base do vetor de versões
+    private final AtomicLong sequencia;
     
     private ServerSocket serverSocket;
-    private Scanner scanner;
-    private String senhaUsuario;
-    private String nickUsuario;
-    private boolean autenticado;
-    private final Set<Integer> conexoesAtivas;
+    private ServidorNio servidorNio;
+    private ServidorGrpc servidorGrpc;
+    private ServidorApi servidorApi;
+    private final Set<Socket> socketsAceitos;
+    private final ApiMural api;
+    // Liberado por parar(), para quem usa o cliente sem o menu esperar o encerramento
+    private final CountDownLatch encerrado;
+    private boolean parado;
     
-    // Cria um novo cliente com nome, porta e lista de portas dos outros clientes
+    // Cria um novo cliente com nome, porta e lista de portas dos outros clientes na mesma máquina
     public Cliente(String nome, int porta, List<Integer> portasOutrosClientes) {
+        this(nome, EnderecoPeer.local(porta), paraEnderecosLocais(portasOutrosClientes), fanoutPadrao());
+    }
+
+    // Cria um cliente de um cluster com o próprio endereço, como os peers o alcançam, os peers iniciais e o fanout da difusão
+    public Cliente(String nome, EnderecoPeer endereco, List<EnderecoPeer> peers, int fanout) {
         this.nome = nome;
-        this.porta = porta;
-        this.portasOutrosClientes = new ArrayList<>(portasOutrosClientes);
-        this.mural = new MuralMensagens(nome);
+        this.porta = endereco.getPorta();
+        this.fanout = fanout;
+        this.metricas = new RegistroMetricas(nome);
+        this.mural = new MuralMensagens(nome, ModoPersistencia.padrao(), metricas);
         this.lamportClock = new LamportClock();
         this.objectMapper = new ObjectMapper();
         this.ativo = new AtomicBoolean(false);
-        this.executorService = Executors.newCachedThreadPool();
-        this.scanner = new Scanner(System.in);
-        this.conexoesAtivas = new HashSet<>();
-        this.autenticado = false;
-        this.nickUsuario = null;
-        this.senhaUsuario = null;
+        this.modoExecucao = ModoExecucao.padrao();
+        this.executorService = modoExecucao.criarExecutor();
+        this.modoServidor = ModoServidor.padrao();
+        this.modoProtocolo = ModoProtocolo.padrao();
+        this.compressao = CompressaoCarga.padrao(objectMapper);
+        this.transporte = modoProtocolo == ModoProtocolo.GRPC
+            ? new TransporteGrpc(objectMapper, metricas, compressao.isAtiva())
+            : new GerenciadorConexoes(objectMapper, modoExecucao, metricas, compressao);
+        this.modoSincronizacao = ModoSincronizacao.padrao();
+        this.antiEntropia = new AntiEntropia(nome, mural, transporte);
+        this.sincronizador = new SincronizadorIncremental(nome, mural, transporte, executorService, antiEntropia, metricas);
+        this.verificador = new VerificadorConsistencia(nome, mural, transporte, sincronizador);
+        this.difusor = new DifusorMensagens(nome, transporte, objectMapper, modoExecucao, metricas);
+        this.membros = new ServicoMembros(nome, endereco, peers, transporte, executorService);
+        this.exportador = new ExportadorPdf(nome, mural, executorService);
+        this.sequencia = new AtomicLong();
+        this.socketsAceitos = ConcurrentHashMap.newKeySet();
+        this.api = new ApiMural(this, mural, membros, exportador, metricas);
+        this.encerrado = new CountDownLatch(1);
+        registrarMedidores();
+    }
+
+    // Valores lidos só quando as métricas são exportadas
+    private void registrarMedidores() {
+        metricas.registrarMedidor("lamport.clock", lamportClock::getTime);
+        metricas.registrarMedidor("membros.conhecidos", () -> membros.getConhecidos().size());
+        metricas.registrarMedidor("membros.vivos", () -> membros.getVivos().size());
+        metricas.registrarMedidor("conexoes.aceitas", socketsAceitos::size);
+        // No modo VIRTUAL cada tarefa tem a própria thread e não há fila para medir
+        if (executorService instanceof ThreadPoolExecutor) {
+            ThreadPoolExecutor pool = (ThreadPoolExecutor) executorService;
+            metricas.registrarMedidor("executor.fila", () -> pool.getQueue().size());
+            metricas.registrarMedidor("executor.ativas", pool::getActiveCount);
+            metricas.registrarMedidor("executor.threads", pool::getPoolSize);
+        }
     }
     
 
-    // Inicia o cliente: servidor, sincronização e interface do usuário
+    // Inicia o cliente: servidor, sincronização e o menu, ou, com cliente.console=false, só espera o encerramento
     public void iniciar() {
         try {
-            ativo.set(true);
-            
-            iniciarServidor();
-            solicitarSincronizacao();
-            iniciarInterfaceUsuario();
-            
+            iniciarSemInterface();
+            if (usarConsole()) {
+                new InterfaceConsole(api).executar();
+            } else {
+                aguardarEncerramento();
+            }
         } catch (Exception e) {
             System.err.println("Erro ao iniciar cliente: " + e.getMessage());
-            parar();
         }
+        parar();
+    }
+
+    // Inicia servidor, membros, sincronização e difusão sem o menu, para o cliente ser controlado por outro programa
+    public void iniciarSemInterface() throws IOException {
+        ativo.set(true);
+        
+        metricas.iniciar();
+        iniciarServidor();
+        membros.iniciar(this::aoVoltarPeer, this::aoRemoverPeer);
+        solicitarSincronizacao();
+        verificador.iniciar(() -> sortear(membros.getVivos()));
+        difusor.iniciar(membros.getConhecidos());
+        iniciarApiLocal();
+    }
+
+    // Abre o endpoint local da API se a propriedade cliente.api.porta estiver definida
+    private void iniciarApiLocal() throws IOException {
+        Integer portaApi = ServidorApi.portaConfigurada();
+        if (portaApi == null) {
+            return;
+        }
+        servidorApi = new ServidorApi(portaApi, api, objectMapper, executorService);
+        servidorApi.iniciar();
+        System.out.println(nome + " aceitando comandos da API em 127.0.0.1:" + portaApi);
+    }
+
+    // Bloqueia até o cliente ser parado, por exemplo pelo gancho de encerramento da JVM
+    public void aguardarEncerramento() throws InterruptedException {
+        encerrado.await();
     }
     
     // Cria o servidor TCP que vai escutar conexões de outros clientes
     private void iniciarServidor() throws IOException {
+        if (modoProtocolo == ModoProtocolo.GRPC) {
+            servidorGrpc = new ServidorGrpc(porta, this);
+            servidorGrpc.iniciar();
+            System.out.println(nome + " iniciado na porta " + porta + " (gRPC)");
+            return;
+        }
+        if (modoServidor == ModoServidor.NIO) {
+            servidorNio = new ServidorNio(porta, this::processarLinhaRecebida);
+            servidorNio.iniciar();
+            metricas.registrarMedidor("servidor.fila", servidorNio::getFila);
+            metricas.registrarMedidor("servidor.ativas", servidorNio::getTrabalhadoresOcupados);
+            metricas.registrarMedidor("servidor.aguardando", servidorNio::getAguardandoVaga);
+            System.out.println(nome + " iniciado na porta " + porta + " (NIO)");
+            return;
+        }
         serverSocket = new ServerSocket(porta);
         System.out.println(nome + " iniciado na porta " + porta);
 
@@ -87,72 +181,236 @@ public class Cliente {
         });
     }
     
-    // Processa uma conexão recebida de outro cliente
+    // Processa uma conexão recebida de outro cliente; a mesma conexão pode trazer várias requisições
     private void processarConexao(Socket socket) {
+        socketsAceitos.add(socket);
         try (BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-             PrintWriter writer = new PrintWriter(socket.getOutputStream(), true)) {
+             PrintWriter writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(socket.getOutputStream())))) {
+            socket.setTcpNoDelay(true);
             
-            String linha = reader.readLine();
-            if (linha != null) {
-                Map<String, Object> dados = objectMapper.readValue(linha, Map.class);
-                String tipo = (String) dados.get("tipo");
-                
-                switch (tipo) {
-                    case "NOVA_MENSAGEM":
-                        processarNovaMensagem(dados);
-                        writer.println("OK");
-                        break;
-                    case "SOLICITAR_SINCRONIZACAO":
-                        processarSolicitacaoSincronizacao(dados, writer);
-                        break;
-                    case "RESPOSTA_SINCRONIZACAO":
-                        processarRespostaSincronizacao(dados);
-                        break;
-                    case "SOLICITAR_MURAL_COMPLETO":
-                        processarSolicitacaoMuralCompleto(dados, writer);
-                        break;
-                    case "RESPOSTA_MURAL_COMPLETO":
-                        processarRespostaMuralCompleto(dados);
-                        break;
-                }
+            String linha;
+            while (ativo.get() && (linha = reader.readLine()) != null) {
+                // A resposta pode chegar depois, em outra thread, quando depende de outro peer
+                processarLinhaRecebida(linha).thenAccept(resposta -> {
+                    if (resposta != null) {
+                        synchronized (writer) {
+                            writer.println(resposta);
+                            writer.flush();
+                        }
+                    }
+                });
             }
         } catch (Exception e) {
-            System.err.println("Erro ao processar conexão: " + e.getMessage());
+            if (ativo.get()) {
+                System.err.println("Erro ao processar conexão: " + e.getMessage());
+            }
         } finally {
+            socketsAceitos.remove(socket);
             try {
                 socket.close();
             } catch (IOException e) {}
         }
     }
     
+    // Versão de processarLinha usada pelos servidores de sockets, que registra o erro em vez de fechar a conexão
+    CompletableFuture<String> processarLinhaRecebida(String linha) {
+        return processarLinha(linha).exceptionally(e -> {
+            System.err.println("Erro ao processar requisição: " + causa(e).getMessage());
+            return null;
+        });
+    }
+    
+    // Trata uma requisição recebida; o futuro traz a linha de resposta, ou null se não houver resposta,
+    // e só completa depois, em outra thread, quando a resposta depende de outro peer
+    CompletableFuture<String> processarLinha(String linha) {
+        metricas.somar("servidor.bytes_recebidos", MetricasTransporte.bytesUtf8(linha) + 1);
+        CompletableFuture<String> resposta;
+        try {
+            resposta = responder(linha);
+        } catch (IOException e) {
+            resposta = CompletableFuture.failedFuture(e);
+        }
+        return resposta.thenApply(texto -> {
+            if (texto != null) {
+                metricas.somar("servidor.bytes_enviados", MetricasTransporte.bytesUtf8(texto) + 1);
+            }
+            return texto;
+        });
+    }
+
+    private CompletableFuture<String> responder(String linha) throws IOException {
+        Map<String, Object> dados = objectMapper.readValue(linha, Map.class);
+        CompletableFuture<Map<String, Object>> resposta;
+        try {
+            compressao.descomprimir(dados);
+            resposta = processarRequisicaoAssincrona(dados);
+        } catch (IOException | RuntimeException e) {
+            resposta = CompletableFuture.failedFuture(e);
+        }
+        return resposta.handle((mapa, erro) -> {
+            try {
+                return montarResposta(dados, mapa, erro);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private String montarResposta(Map<String, Object> dados, Map<String, Object> resposta, Throwable erro) throws IOException {
+        Object requestId = dados.get("requestId");
+        if (erro != null) {
+            if (requestId == null) {
+                throw new CompletionException(causa(erro));
+            }
+            // Quem pediu recebe o erro na hora, em vez de esperar o timeout
+            System.err.println("Erro ao processar requisição " + dados.get("tipo") + ": " + causa(erro).getMessage());
+            return objectMapper.writeValueAsString(criarErro(requestId, causa(erro)));
+        }
+        
+        if (requestId == null) {
+            // Requisição sem requestId: responde no formato antigo, uma resposta por conexão
+            if ("NOVA_MENSAGEM".equals(dados.get("tipo"))) {
+                return "OK";
+            }
+            return resposta != null ? objectMapper.writeValueAsString(resposta) : null;
+        }
+        if (resposta == null) {
+            resposta = new HashMap<>();
+            resposta.put("tipo", "OK");
+        }
+        resposta.put("requestId", requestId);
+        // Quem anunciou os formatos que aceita recebe a lista de mensagens comprimida e os formatos deste nó, para comprimir os próximos lotes
+        Object aceitas = dados.get("aceitaCompressao");
+        if (aceitas != null && compressao.isAtiva()) {
+            compressao.comprimir(resposta, aceitas);
+            resposta.put("aceitaCompressao", compressao.getAceitas());
+        }
+        return objectMapper.writeValueAsString(resposta);
+    }
+    
+    private static Throwable causa(Throwable erro) {
+        return erro instanceof CompletionException && erro.getCause() != null ? erro.getCause() : erro;
+    }
+
+    private Map<String, Object> criarErro(Object requestId, Throwable causa) {
+        Map<String, Object> erro = new HashMap<>();
+        erro.put("tipo", "ERRO");
+        erro.put("mensagem", causa.getMessage() != null ? causa.getMessage() : causa.getClass().getSimpleName());
+        erro.put("remetente", nome);
+        erro.put("requestId", requestId);
+        return erro;
+    }
+
+    // Como processarRequisicao, mas sem esperar quando a resposta depende de outro peer, como no PING_INDIRETO
+    private CompletableFuture<Map<String, Object>> processarRequisicaoAssincrona(Map<String, Object> dados) {
+        if ("PING_INDIRETO".equals(dados.get("tipo"))) {
+            return membros.responderPingIndireto(dados);
+        }
+        return CompletableFuture.completedFuture(processarRequisicao(dados));
+    }
+
+    // Despacha a requisição de acordo com o tipo e retorna a resposta, se houver
+    private Map<String, Object> processarRequisicao(Map<String, Object> dados) {
+        String tipo = (String) dados.get("tipo");
+        if (tipo == null) {
+            return null;
+        }
+        
+        switch (tipo) {
+            case "NOVA_MENSAGEM":
+                processarNovaMensagem(dados);
+                return null;
+            case "LOTE":
+                return processarLote(dados);
+            case "SOLICITAR_SINCRONIZACAO":
+                return processarSolicitacaoSincronizacao(dados);
+            case "RESPOSTA_SINCRONIZACAO":
+                processarRespostaSincronizacao(dados);
+                return null;
+            case "SOLICITAR_MURAL_COMPLETO":
+                return processarSolicitacaoMuralCompleto(dados);
+            case "RESPOSTA_MURAL_COMPLETO":
+                processarRespostaMuralCompleto(dados);
+                return null;
+            case "SOLICITAR_RESUMO":
+                return sincronizador.responderResumo(dados);
+            case "SOLICITAR_BLOCO":
+                return sincronizador.responderBloco(dados);
+            case "SOLICITAR_IDS":
+                return sincronizador.responderIds(dados);
+            case "SOLICITAR_MENSAGENS":
+                return sincronizador.responderMensagens(dados);
+            case "SOLICITAR_DELTA":
+                return antiEntropia.responderDelta(dados);
+            case "ENVIO_DELTA":
+                return antiEntropia.receberDelta(dados);
+            case "SOLICITAR_ARVORE":
+                return verificador.responderArvore(dados);
+            case "SOLICITAR_BALDES":
+                return verificador.responderBaldes(dados);
+            case "PING":
+                return membros.responderPing(dados);
+            default:
+                return null;
+        }
+    }
+    
     // Processa uma nova mensagem recebida de outro cliente
     private void processarNovaMensagem(Map<String, Object> dados) {
         try {
             Map<String, Object> mensagemData = (Map<String, Object>) dados.get("mensagem");
             int timestampRecebido = (Integer) dados.get("lamportClock");
-            lamportClock.update(timestampRecebido);
-            
-            String tipoMensagem = mensagemData.containsKey("tipo") ? (String) mensagemData.get("tipo") : "publica";
-            Mensagem mensagem = new Mensagem(
-                (String) mensagemData.get("id"),
-                (String) mensagemData.get("conteudo"),
-                (String) mensagemData.get("autor"),
-                (Integer) mensagemData.get("lamportClock"),
-                tipoMensagem
-            );
-            mensagem.setTimestamp((String) mensagemData.get("timestamp"));
-            mural.adicionarMensagem(mensagem);
-            
-            System.out.println("\n[NOVA MENSAGEM RECEBIDA] " + mensagem);
-            System.out.print("Digite uma mensagem (ou 'sair' para encerrar): ");
-            
+            receberNovaMensagem(Mensagem.deMapa(mensagemData), timestampRecebido);
         } catch (Exception e) {
             System.err.println("Erro ao processar nova mensagem: " + e.getMessage());
         }
     }
     
+    // Processa um lote de mensagens novas e confirma até a última sequência da caixa de saída do remetente;
+    // um item malformado é registrado e descartado, com a sequência dele em "descartadas": reenviado, ele falharia de novo
+    // e pararia a caixa de saída do remetente
+    private Map<String, Object> processarLote(Map<String, Object> dados) {
+        List<Object> descartadas = new ArrayList<>();
+        for (Object elemento : (List<?>) dados.get("mensagens")) {
+            try {
+                Map<String, Object> item = (Map<String, Object>) elemento;
+                Map<String, Object> mensagemData = (Map<String, Object>) item.get("mensagem");
+                receberNovaMensagem(Mensagem.deMapa(mensagemData), ((Number) item.get("lamportClock")).intValue());
+            } catch (RuntimeException e) {
+                Object seq = elemento instanceof Map ? ((Map<?, ?>) elemento).get("seq") : null;
+                System.err.println("Mensagem inválida no lote de " + dados.get("remetente") + " (seq " + seq + ") descartada: "
+                    + e.getMessage());
+                metricas.incrementar("mensagens.invalidas");
+                descartadas.add(seq);
+            }
+        }
+        Map<String, Object> resposta = new HashMap<>();
+        resposta.put("tipo", "CONFIRMACAO_LOTE");
+        resposta.put("ate", dados.get("ate"));
+        if (!descartadas.isEmpty()) {
+            resposta.put("descartadas", descartadas);
+        }
+        return resposta;
+    }
+    
+    // Atualiza o relógio e guarda a mensagem recebida, seja qual for o protocolo
+    void receberNovaMensagem(Mensagem mensagem, int timestampRecebido) {
+        lamportClock.update(timestampRecebido);
+        if (!mural.adicionarMensagem(mensagem)) {
+            metricas.incrementar("mensagens.duplicadas");
+            return;
+        }
+        metricas.incrementar("mensagens.recebidas");
+        
+        if (fanout < membros.getConhecidos().size()) {
+            // Fofoca: repassa a novidade a outros peers sorteados; quem já tem a mensagem a descarta
+            difusor.enviar(mensagem, timestampRecebido, escolherDestinos(), false);
+        }
+    }
+
+    
     // Responde a uma solicitação de sincronização enviando mensagens faltantes
-    private void processarSolicitacaoSincronizacao(Map<String, Object> dados, PrintWriter writer) {
+    private Map<String, Object> processarSolicitacaoSincronizacao(Map<String, Object> dados) {
         try {
             int contadorSolicitante = (Integer) dados.get("contador");
             
@@ -161,10 +419,11 @@ public class Cliente {
             resposta.put("contador", mural.getContador());
             resposta.put("mensagens", mural.getMensagensAPartirDe(contadorSolicitante));
             resposta.put("remetente", nome);
-            writer.println(objectMapper.writeValueAsString(resposta));
+            return resposta;
             
         } catch (Exception e) {
             System.err.println("Erro ao processar solicitação de sincronização: " + e.getMessage());
+            return null;
         }
     }
     
@@ -175,21 +434,9 @@ public class Cliente {
             String remetente = (String) dados.get("remetente");
             
             if (contadorRemetente > mural.getContador()) {
-                List<Map<String, Object>> mensagensData = (List<Map<String, Object>>) dados.get("mensagens");
-                List<Mensagem> mensagens = new ArrayList<>();
-                
-                for (Map<String, Object> msgData : mensagensData) {
-                    Mensagem mensagem = new Mensagem(
-                        (String) msgData.get("id"),
-                        (String) msgData.get("conteudo"),
-                        (String) msgData.get("autor"),
-                        (Integer) msgData.get("lamportClock")
-                    );
-                    mensagem.setTimestamp((String) msgData.get("timestamp"));
-                    mensagens.add(mensagem);
-                }
-                mural.adicionarMensagens(mensagens);
-                System.out.println("\n[SINCRONIZAÇÃO] Recebidas " + mensagens.size() + " mensagens de " + remetente);
+                List<Mensagem> mensagens = Mensagem.deLista(dados.get("mensagens"));
+                int adicionadas = mural.adicionarMensagens(mensagens);
+                System.out.println("\n[SINCRONIZAÇÃO] Recebidas " + adicionadas + " mensagens de " + remetente);
             }
         } catch (Exception e) {
             System.err.println("Erro ao processar resposta de sincronização: " + e.getMessage());
@@ -197,12 +444,18 @@ public class Cliente {
     }
 
     // Solicita sincronização com todos os outros clientes para pegar mensagens perdidas
-    private void solicitarSincronizacao() {
+    void solicitarSincronizacao() {
         System.out.println("\n[SINCRONIZAÇÃO] Verificando murais de outros clientes...");
+        if (modoSincronizacao == ModoSincronizacao.INCREMENTAL) {
+            sincronizador.sincronizar(membros.getConhecidos());
+            return;
+        }
+        long inicio = System.nanoTime();
         Map<String, Map<String, Object>> respostasRecebidas = new ConcurrentHashMap<>();
-        CountDownLatch latch = new CountDownLatch(portasOutrosClientes.size());
+        List<EnderecoPeer> peers = membros.getConhecidos();
+        CountDownLatch latch = new CountDownLatch(peers.size());
         
-        for (int portaOutro : portasOutrosClientes) {
+        for (EnderecoPeer peer : peers) {
             executorService.submit(() -> {
                 try {
                     Map<String, Object> solicitacao = new HashMap<>();
@@ -211,12 +464,10 @@ public class Cliente {
                     solicitacao.put("remetente", nome);
                     
 
-                    Map<String, Object> resposta = enviarMensagemComResposta(portaOutro, solicitacao);
+                    Map<String, Object> resposta = enviarMensagemComResposta(peer, solicitacao);
                     if (resposta != null) {
-                        respostasRecebidas.put("Cliente_" + portaOutro, resposta);
+                        respostasRecebidas.put("Cliente_" + peer, resposta);
                     }
-                } catch (Exception e) {
-
                 } finally {
                     latch.countDown();
                 }
@@ -228,35 +479,32 @@ public class Cliente {
             Thread.currentThread().interrupt();
         }
         analisarEAtualizarMural(respostasRecebidas);
+        metricas.registrarTempo("sincronizacao", System.nanoTime() - inicio);
     }
 
     // Responde com o mural completo quando outro cliente solicita
-    private void processarSolicitacaoMuralCompleto(Map<String, Object> dados, PrintWriter writer) {
+    private Map<String, Object> processarSolicitacaoMuralCompleto(Map<String, Object> dados) {
         try {
             Map<String, Object> resposta = new HashMap<>();
             resposta.put("tipo", "RESPOSTA_MURAL_COMPLETO");
             resposta.put("contador", mural.getContador());
             resposta.put("mensagens", mural.getMensagens());
             resposta.put("remetente", nome);
-            writer.println(objectMapper.writeValueAsString(resposta));
+            return resposta;
             
         } catch (Exception e) {
             System.err.println("Erro ao processar solicitação de mural completo: " + e.getMessage());
+            return null;
         }
     }
 
-    // Processa a resposta do mural completo e substitui o mural local se necessário
+    // Processa a resposta do mural completo juntando ao mural local as mensagens que faltavam
     private void processarRespostaMuralCompleto(Map<String, Object> dados) {
         try {
-            int contadorRemetente = (Integer) dados.get("contador");
             String remetente = (String) dados.get("remetente");
-            
-            if (contadorRemetente > mural.getContador()) {
-                List<Map<String, Object>> mensagensData = (List<Map<String, Object>>) dados.get("mensagens");
-                mural.substituirMural(mensagensData, contadorRemetente);
-
-                System.out.println("\n[SINCRONIZAÇÃO COMPLETA] Mural atualizado com " + contadorRemetente + " mensagens de " + remetente);
-                System.out.println("Seu mural foi sincronizado com o mais recente disponível.");
+            int adicionadas = mural.adicionarMensagens(Mensagem.deLista(dados.get("mensagens")));
+            if (adicionadas > 0) {
+                System.out.println("\n[SINCRONIZAÇÃO COMPLETA] Recebidas " + adicionadas + " mensagens de " + remetente);
             }
             
         } catch (Exception e) {
@@ -264,417 +512,121 @@ public class Cliente {
          }
      }
 
-     // Envia uma mensagem para outro cliente e espera uma resposta
-     private Map<String, Object> enviarMensagemComResposta(int porta, Map<String, Object> dados) {
-         try (Socket socket = new Socket("localhost", porta);
-              PrintWriter writer = new PrintWriter(socket.getOutputStream(), true);
-              BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()))) {
-             
-             writer.println(objectMapper.writeValueAsString(dados));
-             String resposta = reader.readLine();
-             
-             if (resposta != null && !resposta.equals("OK")) {
-                 return objectMapper.readValue(resposta, Map.class);
+     // Envia uma mensagem para outro cliente pela conexão persistente e espera uma resposta
+     private Map<String, Object> enviarMensagemComResposta(EnderecoPeer peer, Map<String, Object> dados) {
+         try {
+             Map<String, Object> resposta = transporte.requisitar(peer, dados);
+             if (resposta != null && !"OK".equals(resposta.get("tipo"))) {
+                 return resposta;
              }
-         } catch (Exception e) {}
+         } catch (IOException e) {
+             System.err.println("[SINCRONIZAÇÃO] Erro ao pedir " + dados.get("tipo") + " ao peer " + peer + ": " + e.getMessage());
+         }
          return null;
      }
 
-     // Analisa as respostas de sincronização e atualiza o mural com o mais recente
+     // Junta ao mural local as mensagens de todas as respostas, sem descartar as que só existem aqui
      private void analisarEAtualizarMural(Map<String, Map<String, Object>> respostas) {
          if (respostas.isEmpty()) {
              System.out.println("[SINCRONIZAÇÃO] Nenhum cliente respondeu. Mantendo mural local.");
              return;
          }
          
-         String melhorCliente = null;
-         int maiorContador = mural.getContador();
-         Map<String, Object> melhorResposta = null;
-         
-         for (Map.Entry<String, Map<String, Object>> entry : respostas.entrySet()) {
-             Map<String, Object> resposta = entry.getValue();
-             int contador = (Integer) resposta.get("contador");
-             
-             if (contador > maiorContador) {
-                 maiorContador = contador;
-                 melhorCliente = entry.getKey();
-                 melhorResposta = resposta;
-             }
+         int adicionadas = 0;
+         for (Map<String, Object> resposta : respostas.values()) {
+             adicionadas += mural.adicionarMensagens(Mensagem.deLista(resposta.get("mensagens")));
          }
+         metricas.somar("sincronizacao.mensagens", adicionadas);
 
-         if (melhorResposta != null) {
-             List<Map<String, Object>> mensagensData = (List<Map<String, Object>>) melhorResposta.get("mensagens");
-             mural.substituirMural(mensagensData, maiorContador);
-             
-             System.out.println("[SINCRONIZAÇÃO] Mural atualizado com " + maiorContador + " mensagens de " + melhorCliente);
+         if (adicionadas > 0) {
+             System.out.println("[SINCRONIZAÇÃO] Mural atualizado com " + adicionadas + " mensagens de " + respostas.size() + " clientes");
          } else {
              System.out.println("[SINCRONIZAÇÃO] Mural local está atualizado.");
          }
      }
      
-    // Faz o login do usuário com nick e senha
-    private void realizarAutenticacao() {
-        if (autenticado) {
-            System.out.println("\nVocê já está autenticado como: " + nickUsuario);
-            System.out.print("Deseja fazer login com outro usuário? (s/n): ");
-            String resposta = scanner.nextLine().trim().toLowerCase();
-            if (!resposta.equals("s") && !resposta.equals("sim")) {
-                return;
-            }
-        }
-        System.out.println("\n=== AUTENTICAÇÃO - " + nome.toUpperCase() + " ===");
-        
-        while (true) {
-            System.out.print("Digite seu nick: ");
-            String nick = scanner.nextLine().trim();
-            
-            if (nick.isEmpty()) {
-                System.out.println("Nick não pode estar vazio. Tente novamente.");
-                continue;
-            }
-            
-            this.nickUsuario = nick;
-            break;
-        }
-        
-        while (true) {
-            System.out.print("Digite sua senha: ");
-            String senha = scanner.nextLine().trim();
-            
-            if (senha.isEmpty()) {
-                System.out.println("Senha não pode estar vazia. Tente novamente.");
-                continue;
-            }
-            
-            System.out.print("Confirme sua senha: ");
-            String confirmacao = scanner.nextLine().trim();
-            
-            if (senha.equals(confirmacao)) {
-                this.senhaUsuario = senha;
-                this.autenticado = true;
-                System.out.println("Autenticação realizada com sucesso!\n");
-                System.out.println("Bem-vindo, " + nickUsuario + "!");
-                return;
-            } else {
-                System.out.println("Senhas não coincidem. Tente novamente.\n");
-            }
-        }
-    }
-    
-    // Inicia o menu principal do cliente
-    private void iniciarInterfaceUsuario() {
-        System.out.println("\n=== " + nome.toUpperCase() + " ===");
-        
-        while (ativo.get()) {
-            exibirMenu();
-            String opcao = scanner.nextLine().trim();
-            
-            switch (opcao) {
-                case "1":
-                    realizarAutenticacao();
-                    break;
-                case "2":
-                    solicitarMensagem();
-                    break;
-                case "3":
-                    verMural();
-                    break;
-                case "4":
-                    extrairMuralPDF();
-                    break;
-                case "5":
-                    conectarComOutrosClientes();
-                    break;
-                case "6":
-                    System.out.println("Encerrando " + nome + "...");
-                    return;
-                default:
-                    System.out.println("Opção inválida. Tente novamente.\n");
-            }
-        }
-        parar();
-    }
-    
-    // Mostra o menu de opções para o usuário
-    private void exibirMenu() {
-        System.out.println("\n=== MENU PRINCIPAL ===");
-        if (autenticado) {
-            System.out.println("[Usuário: " + nickUsuario + " - Autenticado]");
-        } else {
-            System.out.println("[Não autenticado]");
-        }
-        System.out.println("1. Fazer login/autenticação");
-        System.out.println("2. Postar mensagem");
-        System.out.println("3. Ver mural");
-        System.out.println("4. Extrair mural em PDF");
-        System.out.println("5. Conectar com outros clientes");
-        System.out.println("6. Sair");
-        System.out.print("Escolha uma opção: ");
-    }
-    
-    // Exibe submenu para visualizar mensagens públicas ou privadas
-    private void verMural() {
-        System.out.println("\n=== VER MURAL ===");
-        System.out.println("1. Ver mensagens públicas");
-        System.out.println("2. Ver mensagens privadas");
-        System.out.println("3. Ver todas as mensagens");
-        System.out.print("Escolha uma opção: ");
-        
-        String opcao = scanner.nextLine().trim();
-        
-        switch (opcao) {
-            case "1":
-                exibirMensagensPorTipo("publica");
-                break;
-            case "2":
-                if (!autenticado) {
-                    System.out.println("\nVocê precisa estar autenticado para ver mensagens privadas.");
-                    System.out.print("Deseja fazer login agora? (s/n): ");
-                    String resposta = scanner.nextLine().trim().toLowerCase();
-                    if (resposta.equals("s") || resposta.equals("sim")) {
-                        realizarAutenticacao();
-                        if (autenticado) {
-                            exibirMensagensPorTipo("privada");
-                        }
-                    }
-                } else {
-                    exibirMensagensPorTipo("privada");
-                }
-                break;
-            case "3":
-                if (!autenticado) {
-                    System.out.println("\nVocê precisa estar autenticado para ver todas as mensagens.");
-                    System.out.print("Deseja fazer login agora? (s/n): ");
-                    String resposta = scanner.nextLine().trim().toLowerCase();
-                    if (resposta.equals("s") || resposta.equals("sim")) {
-                        realizarAutenticacao();
-                        if (autenticado) {
-                            exibirTodasMensagens();
-                        }
-                    } else {
-                        // Se não autenticado, mostra apenas as públicas
-                        exibirMensagensPorTipo("publica");
-                    }
-                } else {
-                    exibirTodasMensagens();
-                }
-                break;
-            default:
-                System.out.println("Opção inválida.");
+    // Destinos de uma mensagem nova: todos os membros se o fanout os cobre, senão até fanout membros ativos sorteados
+    private List<EnderecoPeer> escolherDestinos() {
+        List<EnderecoPeer> conhecidos = membros.getConhecidos();
+        if (fanout >= conhecidos.size()) {
+            return conhecidos;
         }
+        List<EnderecoPeer> vivos = membros.getVivos();
+        return sortear(vivos.isEmpty() ? conhecidos : vivos);
     }
-    
-    // Exibe mensagens filtradas por tipo
-    private void exibirMensagensPorTipo(String tipo) {
-        List<Mensagem> mensagens = mural.getMensagensPorTipo(tipo);
-        if (mensagens.isEmpty()) {
-            System.out.println("\nNenhuma mensagem " + tipo + " encontrada.");
-        } else {
-            System.out.println("\n=== MENSAGENS " + tipo.toUpperCase() + "S ===");
-            for (Mensagem msg : mensagens) {
-                System.out.println(msg.toString());
-            }
+
+    private List<EnderecoPeer> sortear(List<EnderecoPeer> candidatos) {
+        if (fanout >= candidatos.size()) {
+            return candidatos;
         }
+        Collections.shuffle(candidatos, ThreadLocalRandom.current());
+        return candidatos.subList(0, fanout);
     }
-    
-    // Exibe todas as mensagens (públicas e privadas)
-    private void exibirTodasMensagens() {
-        System.out.println(mural.toString());
+
+    // Um peer ficou inativo por mais que o tempo de remoção e saiu da lista de membros
+    private void aoRemoverPeer(EnderecoPeer peer) {
+        difusor.descartar(peer);
+        transporte.fechar(peer);
     }
-    
-    // Pede para o usuário digitar uma mensagem e a envia
-    private void solicitarMensagem() {
-        if (!autenticado) {
-            System.out.println("\nVocê precisa estar autenticado para enviar mensagens.");
-            System.out.print("Deseja fazer login agora? (s/n): ");
-            String resposta = scanner.nextLine().trim().toLowerCase();
-            if (resposta.equals("s") || resposta.equals("sim")) {
-                realizarAutenticacao();
-                if (!autenticado) {
-                    return;
-                }
-            } else {
-                return;
+
+    // Um peer que estava inativo voltou: retoma a caixa de saída dele e troca o que faltou durante a queda
+    private void aoVoltarPeer(EnderecoPeer peer) {
+        difusor.retomar(peer);
+        executorService.submit(() -> {
+            long inicio = System.nanoTime();
+            try {
+                metricas.somar("sincronizacao.mensagens", antiEntropia.reconciliar(peer));
+                metricas.registrarTempo("reconciliacao", System.nanoTime() - inicio);
+            } catch (IOException e) {
+                System.err.println("Erro ao reconciliar com o peer " + peer + ": " + e.getMessage());
             }
-        }
-        System.out.print("\nDigite sua mensagem: ");
-        String mensagem = scanner.nextLine().trim();
-        
-        if (mensagem.isEmpty()) {
-            System.out.println("Mensagem não pode estar vazia.");
-            return;
-        }
-        
-        System.out.println("\nTipo de mensagem:");
-        System.out.println("1. Pública (visível para todos)");
-        System.out.println("2. Privada (apenas para usuários autenticados)");
-        System.out.print("Escolha o tipo (1 ou 2): ");
-        String tipoEscolha = scanner.nextLine().trim();
-        
-        String tipoMensagem = "publica"; // padrão
-        if ("2".equals(tipoEscolha)) {
-            tipoMensagem = "privada";
-        } else if (!"1".equals(tipoEscolha)) {
-            System.out.println("Opção inválida. Usando tipo público como padrão.");
-        }
-        
-        System.out.print("Digite seu nick: ");
-        String nickConfirmacao = scanner.nextLine().trim();
-        System.out.print("Digite sua senha: ");
-        String senhaConfirmacao = scanner.nextLine().trim();
-        
-        if (!nickConfirmacao.equals(this.nickUsuario) || !senhaConfirmacao.equals(this.senhaUsuario)) {
-            System.out.println("Nick ou senha incorretos. Mensagem não enviada.");
-            return;
-        }
-        postarMensagem(mensagem, tipoMensagem);
+        });
     }
 
-    // Testa conexão com todos os outros clientes e atualiza lista de conexões ativas
-    private void conectarComOutrosClientes() {
-        System.out.println("\n=== CONECTAR COM OUTROS CLIENTES ===");
-        conexoesAtivas.clear();
-    
-        for (int porta : portasOutrosClientes) {
-            System.out.print("Testando conexão com porta " + porta + "... ");
-            if (testarConexao(porta)) {
-                conexoesAtivas.add(porta);
-                System.out.println("✓ Conectado");
-            } else {
-                System.out.println("✗ Falhou");
-            }
-        }
-        System.out.println("\nConexões ativas: " + conexoesAtivas.size() + "/" + portasOutrosClientes.size());
-        if (!conexoesAtivas.isEmpty()) {
-            System.out.println("Portas conectadas: " + conexoesAtivas);
-        } else {
-            System.out.println("Nenhuma conexão ativa. Mensagens serão armazenadas localmente.");
+    private static List<EnderecoPeer> paraEnderecosLocais(List<Integer> portas) {
+        List<EnderecoPeer> enderecos = new ArrayList<>();
+        for (int porta : portas) {
+            enderecos.add(EnderecoPeer.local(porta));
         }
+        return enderecos;
     }
 
-    // Gera um arquivo PDF com todas as mensagens do mural
-    private void extrairMuralPDF() {
-        try {
-            String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
-            String nomeArquivo = nome + "_mural_" + timestamp + ".pdf";
-            PdfWriter writer = new PdfWriter(nomeArquivo);
-            PdfDocument pdfDoc = new PdfDocument(writer);
-            Document document = new Document(pdfDoc);
-            
-            Paragraph titulo = new Paragraph("MURAL DE MENSAGENS - " + nome.toUpperCase())
-                    .setTextAlignment(TextAlignment.CENTER)
-                    .setFontSize(16)
-                    .setBold();
-            document.add(titulo);
-            
-            Paragraph dataGeracao = new Paragraph("Gerado em: " + 
-                    LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss")))
-                    .setTextAlignment(TextAlignment.CENTER)
-                    .setFontSize(10);
-            document.add(dataGeracao);
-            document.add(new Paragraph("\n" + "=".repeat(50) + "\n"));
-            
-            List<Mensagem> mensagens = mural.getMensagens();
-            if (mensagens.isEmpty()) {
-                document.add(new Paragraph("Nenhuma mensagem encontrada no mural."));
-            } else {
-                document.add(new Paragraph("Total de mensagens: " + mensagens.size() + "\n"));
-                
-                for (int i = 0; i < mensagens.size(); i++) {
-                    Mensagem msg = mensagens.get(i);
-                
-                    Paragraph cabecalho = new Paragraph()
-                            .add(new Text("Mensagem #" + (i + 1)).setBold())
-                            .add(new Text(" | Autor: " + msg.getAutor()))
-                            .add(new Text(" | Timestamp: " + msg.getTimestamp()))
-                            .add(new Text(" | Clock: " + msg.getLamportClock()));
-                    document.add(cabecalho);
-                    
-                    Paragraph conteudo = new Paragraph("Conteúdo: " + msg.getConteudo())
-                            .setMarginLeft(20);
-                    document.add(conteudo);
-                    
-                    Paragraph id = new Paragraph("ID: " + msg.getId())
-                            .setMarginLeft(20)
-                            .setFontSize(8)
-                            .setItalic();
-                    document.add(id);
-                    
-                    if (i < mensagens.size() - 1) {
-                        document.add(new Paragraph("-".repeat(30)));
-                    }
-                }
-            }
-            document.close();
-            System.out.println("\n✓ PDF gerado com sucesso: " + nomeArquivo);
-            System.out.println("Arquivo salvo no diretório: " + System.getProperty("user.dir"));
-            
-        } catch (Exception e) {
-            System.err.println("Erro ao gerar PDF: " + e.getMessage());
-            e.printStackTrace();
-        }
+    // Lê o fanout da propriedade de sistema "cliente.fanout"; o padrão 3 cobre os três clientes fixos
+    static int fanoutPadrao() {
+        return Math.max(1, Integer.getInteger("cliente.fanout", FANOUT_PADRAO));
     }
 
-    // Testa se consegue conectar com um cliente em uma porta específica
-    private boolean testarConexao(int porta) {
-        try (Socket socket = new Socket()) {
-            socket.connect(new InetSocketAddress("localhost", porta), 2000);
-            return true;
-        } catch (IOException e) {
-            return false;
-        }
+    // A propriedade de sistema "cliente.console=false" inicia o cliente sem o menu, controlado só pela API
+    static boolean usarConsole() {
+        return Boolean.parseBoolean(System.getProperty("cliente.console", "true"));
     }
 
-    // Posta uma mensagem no mural e envia para outros clientes conectados
-    private void postarMensagem(String conteudo, String tipo) {
-        try {
-            int timestamp = lamportClock.tick();
-            String autor = autenticado ? nickUsuario : nome;
-            String id = autor + "_" + timestamp + "_" + System.currentTimeMillis();
-            Mensagem mensagem = new Mensagem(id, conteudo, autor, timestamp, tipo);
-            mural.adicionarMensagem(mensagem);
-            
-            Map<String, Object> dados = new HashMap<>();
-            dados.put("tipo", "NOVA_MENSAGEM");
-            dados.put("mensagem", mensagem);
-            dados.put("lamportClock", timestamp);
-            dados.put("remetente", nome);
-            
-            if (conexoesAtivas.isEmpty()) {
-                System.out.println("[AVISO] Nenhuma conexão ativa. Use a opção 3 do menu para conectar com outros clientes.");
-            } else {
-                for (int portaOutro : conexoesAtivas) {
-                    executorService.submit(() -> {
-                        try {
-                            enviarMensagem(portaOutro, dados);
-                        } catch (Exception e) {
-                            System.err.println("Erro ao enviar mensagem para porta " + portaOutro + ": " + e.getMessage());
-                            conexoesAtivas.remove(portaOutro);
-                        }
-                    });
-                }
-            }
-            System.out.println("[MENSAGEM POSTADA] " + mensagem);
-            
-        } catch (Exception e) {
-            System.err.println("Erro ao postar mensagem: " + e.getMessage());
-        }
+    // Cria a mensagem com o próximo relógio de Lamport, guarda no mural e a coloca nas caixas de saída dos destinos
+    public Mensagem postar(String autor, String conteudo, String tipo) {
+        int timestamp = lamportClock.tick();
+        String id = autor + "_" + timestamp + "_" + System.currentTimeMillis();
+        Mensagem mensagem = new Mensagem(id, conteudo, autor, timestamp, tipo);
+        // Continua depois da maior sequência conhecida, inclusive a recuperada dos peers na sincronização
+        mensagem.setOrigem(nome, sequencia.updateAndGet(s -> Math.max(s, mural.getUltimaSequencia(nome)) + 1));
+        mural.adicionarMensagem(mensagem);
+        metricas.incrementar("mensagens.postadas");
+        
+        difusor.enviar(mensagem, timestamp, escolherDestinos(), true);
+        return mensagem;
     }
     
 
-    // Envia uma mensagem para outro cliente 
-    private void enviarMensagem(int porta, Map<String, Object> dados) throws IOException {
-        try (Socket socket = new Socket("localhost", porta);
-             PrintWriter writer = new PrintWriter(socket.getOutputStream(), true);
-             BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()))) {
-            writer.println(objectMapper.writeValueAsString(dados));
-            reader.readLine();
-        }
-    }
     
-    // Para o cliente: fecha servidor, threads e salva o mural
-    public void parar() {
+    // Para o cliente: fecha servidor, threads e salva o mural; chamadas seguintes esperam a primeira e não fazem nada
+    public synchronized void parar() {
+        if (parado) {
+            return;
+        }
+        parado = true;
         ativo.set(false);
+        if (servidorApi != null) {
+            servidorApi.parar();
+        }
         
         try {
             if (serverSocket != null && !serverSocket.isClosed()) {
@@ -683,6 +635,21 @@ public class Cliente {
         } catch (IOException e) {
             System.err.println("Erro ao fechar servidor: " + e.getMessage());
         }
+        if (servidorNio != null) {
+            servidorNio.parar();
+        }
+        if (servidorGrpc != null) {
+            servidorGrpc.parar();
+        }
+        for (Socket socket : socketsAceitos) {
+            try {
+                socket.close();
+            } catch (IOException e) {}
+        }
+        membros.parar();
+        verificador.parar();
+        difusor.parar();
+        transporte.fecharTodas();
         executorService.shutdown();
         try {
             if (!executorService.awaitTermination(5, TimeUnit.SECONDS)) {
@@ -691,7 +658,9 @@ public class Cliente {
         } catch (InterruptedException e) {
             executorService.shutdownNow();
         }
-        mural.salvar();
+        mural.fechar();
+        metricas.parar();
+        encerrado.countDown();
         
         System.out.println(nome + " encerrado.");
     }
@@ -708,7 +677,15 @@ public class Cliente {
         return mural;
     }
     
+    CompressaoCarga getCompressao() {
+        return compressao;
+    }
+    
     public LamportClock getLamportClock() {
         return lamportClock;
     }
+
+    public ApiMural getApi() {
+        return api;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,291 @@
+package br.com.servico_mensagens;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+
+// Registro binário de uma mensagem no disco, versão 1:
+//   versão | marcas | tipo | autor | relógio | horário | id | conteúdo | [origem | sequência] | CRC32
+// Números são varints (os com sinal em zigzag) e textos são o tamanho em varint seguido do UTF-8.
+// Autor e origem vêm de um dicionário que cresce com os registros: a primeira ocorrência de cada nome traz o texto.
+// Campos null não são gravados; as marcas dizem quais faltam, para não voltarem como texto vazio
+class CodecMensagem {
+    static final byte VERSAO = 1;
+
+    private static final int COM_ORIGEM = 1;
+    // Horário gravado como milissegundos desde a época mais os nanossegundos restantes, em vez do texto ISO
+    private static final int HORARIO_NUMERICO = 2;
+    // ID no formato autor_relógio_número: só o número é gravado
+    private static final int ID_PADRAO = 4;
+    private static final int SEM_HORARIO = 8;
+    private static final int SEM_ID = 16;
+    private static final int SEM_AUTOR = 32;
+    private static final int SEM_CONTEUDO = 64;
+
+    private static final byte PUBLICA = 0;
+    private static final byte PRIVADA = 1;
+    private static final byte TIPO_TEXTO = 2;
+    private static final byte SEM_TIPO = 3;
+
+    private final List<String> dicionario = new ArrayList<>();
+    private final Map<String, Integer> indicesDicionario = new HashMap<>();
+    private final CRC32 crc = new CRC32();
+    private byte[] buffer = new byte[256];
+    private int tamanho;
+
+    // Codifica a mensagem; nomes ainda fora do dicionário entram nele e seguem por extenso neste registro
+    byte[] codificar(Mensagem mensagem) {
+        tamanho = 0;
+        String horario = mensagem.getTimestamp();
+        long millis = 0;
+        int nanosRestantes = 0;
+        boolean horarioNumerico = false;
+        try {
+            LocalDateTime data = LocalDateTime.parse(horario);
+            millis = data.toInstant(ZoneOffset.UTC).toEpochMilli();
+            nanosRestantes = data.getNano() % 1_000_000;
+            // Só vale o número se ele voltar exatamente ao mesmo texto
+            horarioNumerico = formatarHorario(millis, nanosRestantes).equals(horario);
+        } catch (DateTimeParseException | NullPointerException e) {
+            horarioNumerico = false;
+        }
+        long numeroId = mensagem.getAutor() != null
+            ? numeroDoId(mensagem.getId(), mensagem.getAutor() + "_" + mensagem.getLamportClock() + "_")
+            : -1;
+
+        int marcas = (mensagem.getOrigem() != null ? COM_ORIGEM : 0)
+            | (horarioNumerico ? HORARIO_NUMERICO : 0)
+            | (numeroId >= 0 ? ID_PADRAO : 0)
+            | (horario == null ? SEM_HORARIO : 0)
+            | (mensagem.getId() == null ? SEM_ID : 0)
+            | (mensagem.getAutor() == null ? SEM_AUTOR : 0)
+            | (mensagem.getConteudo() == null ? SEM_CONTEUDO : 0);
+        escreverByte(VERSAO);
+        escreverByte(marcas);
+        if (mensagem.getTipo() == null) {
+            escreverByte(SEM_TIPO);
+        } else if ("publica".equals(mensagem.getTipo())) {
+            escreverByte(PUBLICA);
+        } else if ("privada".equals(mensagem.getTipo())) {
+            escreverByte(PRIVADA);
+        } else {
+            escreverByte(TIPO_TEXTO);
+            escreverTexto(mensagem.getTipo());
+        }
+        if (mensagem.getAutor() != null) {
+            escreverNome(mensagem.getAutor());
+        }
+        escreverVarint(zigzag(mensagem.getLamportClock()));
+        if (horarioNumerico) {
+            escreverVarint(zigzag(millis));
+            escreverVarint(nanosRestantes);
+        } else if (horario != null) {
+            escreverTexto(horario);
+        }
+        if (numeroId >= 0) {
+            escreverVarint(numeroId);
+        } else if (mensagem.getId() != null) {
+            escreverTexto(mensagem.getId());
+        }
+        if (mensagem.getConteudo() != null) {
+            escreverTexto(mensagem.getConteudo());
+        }
+        if (mensagem.getOrigem() != null) {
+            escreverNome(mensagem.getOrigem());
+            escreverVarint(mensagem.getSequencia());
+        }
+        crc.reset();
+        crc.update(buffer, 0, tamanho);
+        int soma = (int) crc.getValue();
+        garantir(4);
+        for (int i = 3; i >= 0; i--) {
+            buffer[tamanho++] = (byte) (soma >>> (i * 8));
+        }
+        return Arrays.copyOf(buffer, tamanho);
+    }
+
+    // Decodifica o registro entre a posição e o limite do buffer, conferindo o CRC antes de ler os campos
+    Mensagem decodificar(ByteBuffer registro) throws IOException {
+        if (registro.remaining() < 7) {
+            throw new IOException("registro curto demais: " + registro.remaining() + " bytes");
+        }
+        ByteBuffer entrada = registro.duplicate();
+        entrada.limit(registro.limit() - 4);
+        crc.reset();
+        crc.update(entrada.duplicate());
+        if ((int) crc.getValue() != registro.getInt(registro.limit() - 4)) {
+            throw new IOException("CRC do registro não confere");
+        }
+        byte versao = entrada.get();
+        if (versao != VERSAO) {
+            throw new IOException("versão de registro desconhecida: " + versao);
+        }
+        int marcas = entrada.get();
+        byte codigoTipo = entrada.get();
+        String tipo = codigoTipo == PUBLICA ? "publica" : codigoTipo == PRIVADA ? "privada"
+            : codigoTipo == SEM_TIPO ? null : lerTexto(entrada);
+        String autor = (marcas & SEM_AUTOR) != 0 ? null : lerNome(entrada);
+        int clock = (int) dezigzag(lerVarint(entrada));
+        String horario = (marcas & HORARIO_NUMERICO) != 0
+            ? formatarHorario(dezigzag(lerVarint(entrada)), (int) lerVarint(entrada))
+            : (marcas & SEM_HORARIO) != 0 ? null : lerTexto(entrada);
+        String id = (marcas & ID_PADRAO) != 0 ? autor + "_" + clock + "_" + lerVarint(entrada)
+            : (marcas & SEM_ID) != 0 ? null : lerTexto(entrada);
+        Mensagem mensagem = new Mensagem();
+        mensagem.setId(id);
+        mensagem.setConteudo((marcas & SEM_CONTEUDO) != 0 ? null : lerTexto(entrada));
+        mensagem.setAutor(autor);
+        mensagem.setLamportClock(clock);
+        mensagem.setTipo(tipo);
+        mensagem.setTimestamp(horario);
+        if ((marcas & COM_ORIGEM) != 0) {
+            String origem = lerNome(entrada);
+            mensagem.setOrigem(origem, lerVarint(entrada));
+        }
+        return mensagem;
+    }
+
+    int getTamanhoDicionario() {
+        return dicionario.size();
+    }
+
+    // Esquece os nomes acrescentados depois de tamanho, quando o registro que os trazia não chegou a ser gravado
+    void truncarDicionario(int tamanho) {
+        while (dicionario.size() > tamanho) {
+            indicesDicionario.remove(dicionario.remove(dicionario.size() - 1));
+        }
+    }
+
+    void limpar() {
+        truncarDicionario(0);
+    }
+
+    // Número final de um ID autor_relógio_número, ou -1 se o ID não seguir esse formato exatamente
+    static long numeroDoId(String id, String prefixo) {
+        if (id == null || !id.startsWith(prefixo) || id.length() == prefixo.length() || id.length() - prefixo.length() > 18) {
+            return -1;
+        }
+        String numero = id.substring(prefixo.length());
+        if (numero.length() > 1 && numero.charAt(0) == '0') {
+            return -1;
+        }
+        for (int i = 0; i < numero.length(); i++) {
+            if (numero.charAt(i) < '0' || numero.charAt(i) > '9') {
+                return -1;
+            }
+        }
+        return Long.parseLong(numero);
+    }
+
+    private static String formatarHorario(long millis, int nanosRestantes) {
+        long segundos = Math.floorDiv(millis, 1000);
+        int nanos = (int) Math.floorMod(millis, 1000) * 1_000_000 + nanosRestantes;
+        return LocalDateTime.ofEpochSecond(segundos, nanos, ZoneOffset.UTC).format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+    }
+
+    // Referência ao dicionário: índice << 1, com o bit 0 marcando que o texto vem a seguir
+    private void escreverNome(String texto) {
+        Integer indice = indicesDicionario.get(texto);
+        if (indice != null) {
+            escreverVarint((long) indice << 1);
+            return;
+        }
+        indice = dicionario.size();
+        dicionario.add(texto);
+        indicesDicionario.put(texto, indice);
+        escreverVarint(((long) indice << 1) | 1);
+        escreverTexto(texto);
+    }
+
+    // Um nome definido de novo, como ao reler um registro antigo, é só conferido com o que já se conhece
+    private String lerNome(ByteBuffer entrada) throws IOException {
+        long referencia = lerVarint(entrada);
+        int indice = (int) (referencia >>> 1);
+        if ((referencia & 1) == 0) {
+            if (indice >= dicionario.size()) {
+                throw new IOException("nome " + indice + " ainda não definido no dicionário");
+            }
+            return dicionario.get(indice);
+        }
+        String texto = lerTexto(entrada);
+        if (indice == dicionario.size()) {
+            dicionario.add(texto);
+            indicesDicionario.put(texto, indice);
+        } else if (indice > dicionario.size() || !dicionario.get(indice).equals(texto)) {
+            throw new IOException("definição fora de ordem no dicionário: " + indice);
+        }
+        return texto;
+    }
+
+    private void escreverTexto(String texto) {
+        byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+        escreverVarint(bytes.length);
+        garantir(bytes.length);
+        System.arraycopy(bytes, 0, buffer, tamanho, bytes.length);
+        tamanho += bytes.length;
+    }
+
+    private static String lerTexto(ByteBuffer entrada) throws IOException {
+        long comprimento = lerVarint(entrada);
+        if (comprimento > entrada.remaining()) {
+            throw new IOException("texto de " + comprimento + " bytes além do fim do registro");
+        }
+        byte[] bytes = new byte[(int) comprimento];
+        entrada.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void escreverByte(int valor) {
+        garantir(1);
+        buffer[tamanho++] = (byte) valor;
+    }
+
+    private void escreverVarint(long valor) {
+        garantir(10);
+        while ((valor & ~0x7FL) != 0) {
+            buffer[tamanho++] = (byte) ((valor & 0x7F) | 0x80);
+            valor >>>= 7;
+        }
+        buffer[tamanho++] = (byte) valor;
+    }
+
+    private static long lerVarint(ByteBuffer entrada) throws IOException {
+        long valor = 0;
+        for (int deslocamento = 0; deslocamento < 64; deslocamento += 7) {
+            if (!entrada.hasRemaining()) {
+                throw new IOException("varint além do fim do registro");
+            }
+            byte b = entrada.get();
+            valor |= (long) (b & 0x7F) << deslocamento;
+            if ((b & 0x80) == 0) {
+                return valor;
+            }
+        }
+        throw new IOException("varint longo demais");
+    }
+
+    private static long zigzag(long valor) {
+        return (valor << 1) ^ (valor >> 63);
+    }
+
+    private static long dezigzag(long valor) {
+        return (valor >>> 1) ^ -(valor & 1);
+    }
+
+    private void garantir(int bytes) {
+        if (tamanho + bytes > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, tamanho + bytes));
+        }
+    }
+}
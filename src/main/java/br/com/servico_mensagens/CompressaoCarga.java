@@ -0,0 +1,316 @@
+package br.com.servico_mensagens;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+
+// Compressão das listas de mensagens nas linhas JSON: "mensagens" vira "mensagensComprimidas", deflate em pedaços de Base64,
+// só quando o outro lado anunciou em "aceitaCompressao" que sabe abrir o formato escolhido
+final class CompressaoCarga {
+    static final String DEFLATE = "deflate";
+    // Deflate com dicionário; o sufixo é o CRC32 do dicionário, para só o usar com quem carregou o mesmo arquivo
+    private static final String PREFIXO_DICIONARIO = "deflate-dic:";
+    // Listas menores seguem como JSON puro: o ganho não paga o Base64 e a montagem do compressor
+    static final int MENSAGENS_MINIMAS = 16;
+    // O deflate só alcança 32 KB para trás, então um dicionário maior não seria usado
+    static final int TAMANHO_DICIONARIO = 32 * 1024;
+    private static final int NIVEL = Deflater.DEFAULT_COMPRESSION;
+    private static final int BYTES_BUFFER = 16 * 1024;
+    // O Jackson recusa textos de mais de 20 milhões de caracteres; o Base64 segue em pedaços de 1 MB, múltiplo de 4,
+    // que se decodificam um depois do outro como se fossem um texto só
+    private static final int CARACTERES_POR_PEDACO = 1024 * 1024;
+    // Tipos de requisição que levam listas de mensagens ou cuja resposta as traz
+    private static final Set<String> TIPOS_COM_MENSAGENS = Set.of("LOTE", "ENVIO_DELTA", "SOLICITAR_SINCRONIZACAO",
+        "SOLICITAR_MURAL_COMPLETO", "SOLICITAR_BLOCO", "SOLICITAR_MENSAGENS", "SOLICITAR_DELTA");
+
+    // Treino do dicionário: sequências de 8 bytes pontuam os trechos de 64 bytes candidatos, um a cada 8 bytes das amostras
+    private static final int BYTES_SEQUENCIA = 8;
+    private static final int BYTES_TRECHO = 64;
+    private static final int PASSO_TRECHO = 8;
+
+    private final ObjectMapper objectMapper;
+    // Sem descarregar a cada mensagem, o que entregaria ao deflate pedaços pequenos demais
+    private final ObjectWriter escritor;
+    private final ModoCompressao modo;
+    private final byte[] dicionario;
+    private final String formatoDicionario;
+    private final List<String> aceitas;
+
+    CompressaoCarga(ObjectMapper objectMapper, ModoCompressao modo, byte[] dicionario) {
+        this.objectMapper = objectMapper;
+        this.escritor = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.modo = modo;
+        this.dicionario = modo == ModoCompressao.DEFLATE ? dicionario : null;
+        this.formatoDicionario = this.dicionario != null ? PREFIXO_DICIONARIO + identificar(this.dicionario) : null;
+        List<String> formatos = new ArrayList<>();
+        if (modo == ModoCompressao.DEFLATE) {
+            if (formatoDicionario != null) {
+                formatos.add(formatoDicionario);
+            }
+            formatos.add(DEFLATE);
+        }
+        this.aceitas = Collections.unmodifiableList(formatos);
+    }
+
+    // Usa o modo de cliente.compressao e o dicionário do arquivo em cliente.compressao.dicionario, se houver
+    static CompressaoCarga padrao(ObjectMapper objectMapper) {
+        ModoCompressao modo = ModoCompressao.padrao();
+        String arquivo = System.getProperty("cliente.compressao.dicionario");
+        byte[] dicionario = null;
+        if (modo == ModoCompressao.DEFLATE && arquivo != null && !arquivo.isBlank()) {
+            try {
+                dicionario = Files.readAllBytes(Path.of(arquivo.trim()));
+            } catch (IOException e) {
+                System.err.println("Erro ao ler o dicionário de compressão, usando deflate sem dicionário: " + e.getMessage());
+            }
+        }
+        return new CompressaoCarga(objectMapper, modo, dicionario);
+    }
+
+    boolean isAtiva() {
+        return modo == ModoCompressao.DEFLATE;
+    }
+
+    // Formatos que este nó sabe abrir, em ordem de preferência
+    List<String> getAceitas() {
+        return aceitas;
+    }
+
+    // Marca na requisição os formatos aceitos, se ela leva ou pede listas de mensagens
+    void anunciar(Map<String, Object> requisicao) {
+        if (isAtiva() && TIPOS_COM_MENSAGENS.contains(requisicao.get("tipo"))) {
+            requisicao.put("aceitaCompressao", aceitas);
+        }
+    }
+
+    // Primeiro formato em comum, preferindo o dicionário, ou null se o outro lado não anunciou nenhum
+    String escolher(Object aceitasPeloOutro) {
+        if (!isAtiva() || !(aceitasPeloOutro instanceof List)) {
+            return null;
+        }
+        List<?> formatos = (List<?>) aceitasPeloOutro;
+        if (formatoDicionario != null && formatos.contains(formatoDicionario)) {
+            return formatoDicionario;
+        }
+        return formatos.contains(DEFLATE) ? DEFLATE : null;
+    }
+
+    // Troca a lista "mensagens" pela versão comprimida, gerando o JSON direto no deflate sem montar o texto inteiro
+    boolean comprimir(Map<String, Object> carga, Object aceitasPeloOutro) throws IOException {
+        String formato = escolher(aceitasPeloOutro);
+        Object mensagens = carga.get("mensagens");
+        if (formato == null || !(mensagens instanceof List) || ((List<?>) mensagens).size() < MENSAGENS_MINIMAS) {
+            return false;
+        }
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(NIVEL, true);
+        try {
+            if (!DEFLATE.equals(formato)) {
+                deflater.setDictionary(dicionario);
+            }
+            DeflaterOutputStream comprimido = new DeflaterOutputStream(Base64.getEncoder().wrap(saida), deflater, BYTES_BUFFER);
+            try (JsonGenerator gerador = objectMapper.getFactory().createGenerator(comprimido, JsonEncoding.UTF8)) {
+                gerador.writeStartArray();
+                for (Object mensagem : (List<?>) mensagens) {
+                    escritor.writeValue(gerador, mensagem);
+                }
+                gerador.writeEndArray();
+            }
+        } finally {
+            deflater.end();
+        }
+        byte[] base64 = saida.toByteArray();
+        List<String> pedacos = new ArrayList<>(base64.length / CARACTERES_POR_PEDACO + 1);
+        for (int inicio = 0; inicio < base64.length; inicio += CARACTERES_POR_PEDACO) {
+            pedacos.add(new String(base64, inicio, Math.min(CARACTERES_POR_PEDACO, base64.length - inicio), StandardCharsets.ISO_8859_1));
+        }
+        carga.remove("mensagens");
+        carga.put("mensagensComprimidas", pedacos);
+        carga.put("compressao", formato);
+        return true;
+    }
+
+    // Devolve a lista "mensagens" de uma carga comprimida, lendo uma mensagem por vez de dentro do inflate. Os pedaços de
+    // Base64 já chegam inteiros na carga, lida da linha JSON; só o JSON descomprimido não é montado de uma vez
+    void descomprimir(Map<String, Object> carga) throws IOException {
+        Object comprimidas = carga.remove("mensagensComprimidas");
+        if (comprimidas == null) {
+            return;
+        }
+        Object formato = carga.remove("compressao");
+        if (!(comprimidas instanceof List)) {
+            throw new IOException("Lista de mensagens comprimida inválida");
+        }
+        for (Object pedaco : (List<?>) comprimidas) {
+            if (!(pedaco instanceof String)) {
+                throw new IOException("Pedaço da lista de mensagens comprimida não é texto: " + pedaco);
+            }
+        }
+        Inflater inflater = new Inflater(true);
+        try {
+            if (!DEFLATE.equals(formato)) {
+                if (formatoDicionario == null || !formatoDicionario.equals(formato)) {
+                    throw new IOException("Formato de compressão não suportado: " + formato);
+                }
+                inflater.setDictionary(dicionario);
+            }
+            Iterator<?> pedacos = ((List<?>) comprimidas).iterator();
+            InputStream base64 = new SequenceInputStream(new Enumeration<InputStream>() {
+                @Override
+                public boolean hasMoreElements() {
+                    return pedacos.hasNext();
+                }
+
+                @Override
+                public InputStream nextElement() {
+                    return new ByteArrayInputStream(((String) pedacos.next()).getBytes(StandardCharsets.ISO_8859_1));
+                }
+            });
+            List<Object> mensagens = new ArrayList<>();
+            try (JsonParser parser = objectMapper.getFactory().createParser(
+                    new InflaterInputStream(Base64.getDecoder().wrap(base64), inflater, BYTES_BUFFER))) {
+                if (parser.nextToken() != JsonToken.START_ARRAY) {
+                    throw new IOException("Lista de mensagens comprimida inválida");
+                }
+                JsonToken token;
+                while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                    if (token == null) {
+                        throw new IOException("Lista de mensagens comprimida incompleta");
+                    }
+                    mensagens.add(objectMapper.readValue(parser, Object.class));
+                }
+            }
+            carga.put("mensagens", mensagens);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static String identificar(byte[] dicionario) {
+        CRC32 crc = new CRC32();
+        crc.update(dicionario);
+        return String.format("%08x", crc.getValue());
+    }
+
+    // Monta um dicionário com os trechos das amostras que mais se repetem entre elas, à maneira do COVER do zstd:
+    // cada trecho vale a soma das frequências das suas sequências de 8 bytes ainda não cobertas por trechos já escolhidos
+    static byte[] treinarDicionario(List<byte[]> amostras, int tamanho) {
+        Map<Long, Integer> frequencias = new HashMap<>();
+        for (byte[] amostra : amostras) {
+            Set<Long> vistas = new HashSet<>();
+            for (int i = 0; i + BYTES_SEQUENCIA <= amostra.length; i++) {
+                long sequencia = sequencia(amostra, i);
+                if (vistas.add(sequencia)) {
+                    frequencias.merge(sequencia, 1, Integer::sum);
+                }
+            }
+        }
+
+        PriorityQueue<Trecho> candidatos = new PriorityQueue<>((a, b) -> Long.compare(b.valor, a.valor));
+        for (byte[] amostra : amostras) {
+            for (int inicio = 0; inicio + BYTES_SEQUENCIA <= amostra.length; inicio += PASSO_TRECHO) {
+                Trecho trecho = new Trecho(amostra, inicio, Math.min(inicio + BYTES_TRECHO, amostra.length));
+                trecho.valor = valor(trecho, frequencias);
+                if (trecho.valor > 0) {
+                    candidatos.add(trecho);
+                }
+            }
+        }
+
+        // Escolha gulosa com reavaliação preguiçosa: o valor de um trecho só cai quando outro cobre suas sequências
+        List<Trecho> escolhidos = new ArrayList<>();
+        int total = 0;
+        while (total < tamanho && !candidatos.isEmpty()) {
+            Trecho trecho = candidatos.poll();
+            long atual = valor(trecho, frequencias);
+            if (atual <= 0) {
+                continue;
+            }
+            if (!candidatos.isEmpty() && atual < candidatos.peek().valor) {
+                trecho.valor = atual;
+                candidatos.add(trecho);
+                continue;
+            }
+            escolhidos.add(trecho);
+            total += trecho.fim - trecho.inicio;
+            for (int i = trecho.inicio; i + BYTES_SEQUENCIA <= trecho.fim; i++) {
+                frequencias.put(sequencia(trecho.amostra, i), 0);
+            }
+        }
+
+        // O deflate alcança o fim do dicionário com distâncias menores, então os trechos mais valiosos vão por último
+        ByteArrayOutputStream dicionario = new ByteArrayOutputStream(total);
+        for (int i = escolhidos.size() - 1; i >= 0; i--) {
+            Trecho trecho = escolhidos.get(i);
+            dicionario.write(trecho.amostra, trecho.inicio, trecho.fim - trecho.inicio);
+        }
+        byte[] bytes = dicionario.toByteArray();
+        return bytes.length <= tamanho ? bytes : Arrays.copyOfRange(bytes, bytes.length - tamanho, bytes.length);
+    }
+
+    // Sequências que aparecem em uma amostra só não ajudam a comprimir as outras e não contam
+    private static long valor(Trecho trecho, Map<Long, Integer> frequencias) {
+        Set<Long> contadas = new HashSet<>();
+        long valor = 0;
+        for (int i = trecho.inicio; i + BYTES_SEQUENCIA <= trecho.fim; i++) {
+            long sequencia = sequencia(trecho.amostra, i);
+            int frequencia = frequencias.getOrDefault(sequencia, 0);
+            if (frequencia > 1 && contadas.add(sequencia)) {
+                valor += frequencia;
+            }
+        }
+        return valor;
+    }
+
+    private static long sequencia(byte[] bytes, int inicio) {
+        long valor = 0;
+        for (int i = 0; i < BYTES_SEQUENCIA; i++) {
+            valor = (valor << 8) | (bytes[inicio + i] & 0xFF);
+        }
+        return valor;
+    }
+
+    private static final class Trecho {
+        private final byte[] amostra;
+        private final int inicio;
+        private final int fim;
+        private long valor;
+
+        Trecho(byte[] amostra, int inicio, int fim) {
+            this.amostra = amostra;
+            this.inicio = inicio;
+            this.fim = fim;
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package br.com.servico_mensagens;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+
+class ConexaoPeer {
+    private static final int TIMEOUT_CONEXAO_MS = 2000;
+    private static final long ESPERA_INICIAL_MS = 100;
+    private static final long ESPERA_MAXIMA_MS = 5000;
+
+    private final String host;
+    private final int porta;
+    private final ObjectMapper objectMapper;
+    private final Map<Long, Pendente> pendentes = new ConcurrentHashMap<>();
+    private final AtomicLong proximoRequestId = new AtomicLong();
+    // ReentrantLock em vez de synchronized: uma thread virtual bloqueada no socket não prende a thread que a carrega
+    private final ReentrantLock trava = new ReentrantLock();
+    private final ModoExecucao modoExecucao;
+    private final MetricasTransporte metricas;
+    private final CompressaoCarga compressao;
+
+    private Socket socket;
+    private BufferedWriter writer;
+    private long esperaAtualMs = ESPERA_INICIAL_MS;
+    private long proximaTentativa;
+    private volatile boolean fechada;
+    // Formatos de compressão que o peer anunciou na última resposta; esquecidos a cada queda, pois ele pode voltar com outra configuração
+    private volatile Object aceitasPeloPeer;
+
+    // Cria uma conexão persistente com um peer; o socket só é aberto no primeiro uso
+    ConexaoPeer(String host, int porta, ObjectMapper objectMapper, ModoExecucao modoExecucao, MetricasTransporte metricas,
+                CompressaoCarga compressao) {
+        this.host = host;
+        this.porta = porta;
+        this.objectMapper = objectMapper;
+        this.modoExecucao = modoExecucao;
+        this.metricas = metricas;
+        this.compressao = compressao;
+    }
+
+    // Envia uma requisição pela conexão compartilhada; a resposta é associada pelo requestId
+    CompletableFuture<Map<String, Object>> enviar(Map<String, Object> dados) {
+        return enviar(novoRequestId(), dados);
+    }
+
+    // Reserva o requestId de um envio, para quem desistir da resposta poder chamar cancelar com ele
+    long novoRequestId() {
+        return proximoRequestId.incrementAndGet();
+    }
+
+    CompletableFuture<Map<String, Object>> enviar(long requestId, Map<String, Object> dados) {
+        Pendente pendente = new Pendente(String.valueOf(dados.get("tipo")));
+        Map<String, Object> requisicao = new HashMap<>(dados);
+        requisicao.put("requestId", requestId);
+        try {
+            compressao.anunciar(requisicao);
+            compressao.comprimir(requisicao, aceitasPeloPeer);
+            String linha = objectMapper.writeValueAsString(requisicao);
+            trava.lock();
+            try {
+                garantirConexao();
+                pendentes.put(requestId, pendente);
+                try {
+                    writer.write(linha);
+                    writer.write('\n');
+                    writer.flush();
+                } catch (IOException e) {
+                    desconectar(socket, e);
+                    throw e;
+                }
+            } finally {
+                trava.unlock();
+            }
+            metricas.enviado(host + ":" + porta, pendente.tipo, MetricasTransporte.bytesUtf8(linha) + 1);
+        } catch (IOException e) {
+            pendentes.remove(requestId);
+            pendente.resposta.completeExceptionally(e);
+        }
+        return pendente.resposta;
+    }
+
+    // Esquece uma requisição cuja resposta não interessa mais, como depois de um timeout; se ela chegar, é descartada
+    void cancelar(long requestId) {
+        Pendente pendente = pendentes.remove(requestId);
+        if (pendente != null) {
+            pendente.resposta.cancel(false);
+        }
+    }
+
+    // Libera uma nova tentativa de conexão já na próxima requisição, sem esperar o intervalo da última queda
+    void reconectar() {
+        trava.lock();
+        try {
+            esperaAtualMs = ESPERA_INICIAL_MS;
+            proximaTentativa = 0;
+        } finally {
+            trava.unlock();
+        }
+    }
+
+    boolean isConectada() {
+        trava.lock();
+        try {
+            return socket != null && !socket.isClosed();
+        } finally {
+            trava.unlock();
+        }
+    }
+
+    // Abre o socket respeitando o intervalo de espera entre tentativas depois de uma queda
+    private void garantirConexao() throws IOException {
+        if (fechada) {
+            throw new IOException("Conexão com " + host + ":" + porta + " encerrada");
+        }
+        if (isConectada()) {
+            return;
+        }
+        long agora = System.currentTimeMillis();
+        if (agora < proximaTentativa) {
+            throw new IOException(host + ":" + porta + " indisponível, nova tentativa em "
+                + (proximaTentativa - agora) + " ms");
+        }
+        Socket novoSocket = new Socket();
+        try {
+            novoSocket.connect(new InetSocketAddress(host, porta), TIMEOUT_CONEXAO_MS);
+            novoSocket.setTcpNoDelay(true);
+            novoSocket.setKeepAlive(true);
+        } catch (IOException e) {
+            novoSocket.close();
+            proximaTentativa = agora + esperaAtualMs;
+            esperaAtualMs = Math.min(esperaAtualMs * 2, ESPERA_MAXIMA_MS);
+            throw e;
+        }
+        socket = novoSocket;
+        writer = new BufferedWriter(new OutputStreamWriter(novoSocket.getOutputStream(), StandardCharsets.UTF_8));
+        esperaAtualMs = ESPERA_INICIAL_MS;
+        proximaTentativa = 0;
+
+        modoExecucao.novaThread("peer-" + host + ":" + porta, () -> lerRespostas(novoSocket)).start();
+    }
+
+    // Lê as respostas da conexão, uma linha inteira por vez, e completa as requisições pendentes correspondentes
+    private void lerRespostas(Socket socketLeitura) {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(socketLeitura.getInputStream(), StandardCharsets.UTF_8))) {
+            String linha;
+            while ((linha = reader.readLine()) != null) {
+                Map<String, Object> resposta = objectMapper.readValue(linha, Map.class);
+                Object aceitas = resposta.remove("aceitaCompressao");
+                if (aceitas != null) {
+                    aceitasPeloPeer = aceitas;
+                }
+                Object requestId = resposta.get("requestId");
+                if (requestId instanceof Number) {
+                    Pendente pendente = pendentes.remove(((Number) requestId).longValue());
+                    if (pendente != null) {
+                        metricas.respondido(host + ":" + porta, pendente.tipo, MetricasTransporte.bytesUtf8(linha) + 1,
+                            System.nanoTime() - pendente.inicio);
+                        completar(pendente, resposta);
+                    }
+                }
+            }
+            desconectar(socketLeitura, new IOException("Conexão encerrada por " + host + ":" + porta));
+        } catch (IOException e) {
+            desconectar(socketLeitura, e);
+        } catch (RuntimeException e) {
+            // Sem a thread de leitura a conexão pareceria aberta e ninguém receberia mais respostas
+            desconectar(socketLeitura, new IOException("Resposta inválida de " + host + ":" + porta + ": " + e.getMessage(), e));
+        }
+    }
+
+    // Abre a lista de mensagens comprimida antes de entregar a resposta; uma lista corrompida ou um erro relatado
+    // pelo peer falham só esta requisição, sem derrubar a thread que lê a conexão
+    private void completar(Pendente pendente, Map<String, Object> resposta) {
+        if ("ERRO".equals(resposta.get("tipo"))) {
+            pendente.resposta.completeExceptionally(
+                new IOException("Erro no peer " + host + ":" + porta + ": " + resposta.get("mensagem")));
+            return;
+        }
+        try {
+            compressao.descomprimir(resposta);
+            pendente.resposta.complete(resposta);
+        } catch (IOException e) {
+            pendente.resposta.completeExceptionally(e);
+        } catch (RuntimeException e) {
+            pendente.resposta.completeExceptionally(
+                new IOException("Resposta inválida de " + host + ":" + porta + ": " + e.getMessage(), e));
+        }
+    }
+
+    // Fecha o socket com problema e falha as requisições que aguardavam resposta nele
+    private void desconectar(Socket socketComFalha, IOException causa) {
+        List<Pendente> aguardando;
+        trava.lock();
+        try {
+            if (socket != socketComFalha) {
+                return;
+            }
+            try {
+                socketComFalha.close();
+            } catch (IOException e) {}
+            socket = null;
+            writer = null;
+            aceitasPeloPeer = null;
+            if (!fechada) {
+                proximaTentativa = System.currentTimeMillis() + esperaAtualMs;
+                esperaAtualMs = Math.min(esperaAtualMs * 2, ESPERA_MAXIMA_MS);
+            }
+            // Separa as pendentes ainda sob a trava, para não falhar as que já forem de uma conexão nova
+            aguardando = new ArrayList<>(pendentes.values());
+            pendentes.clear();
+        } finally {
+            trava.unlock();
+        }
+        for (Pendente pendente : aguardando) {
+            pendente.resposta.completeExceptionally(causa);
+        }
+    }
+
+    // Encerra a conexão de vez
+    void fechar() {
+        fechada = true;
+        Socket atual;
+        trava.lock();
+        try {
+            atual = socket;
+        } finally {
+            trava.unlock();
+        }
+        if (atual != null) {
+            desconectar(atual, new IOException("Conexão com " + host + ":" + porta + " encerrada"));
+        }
+    }
+
+    int getPorta() {
+        return porta;
+    }
+
+    // Requisições enviadas que ainda esperam resposta
+    int getPendentes() {
+        return pendentes.size();
+    }
+
+    // Requisição aguardando resposta, com o tipo e o instante do envio para as métricas
+    private static class Pendente {
+        private final CompletableFuture<Map<String, Object>> resposta = new CompletableFuture<>();
+        private final String tipo;
+        private final long inicio = System.nanoTime();
+
+        Pendente(String tipo) {
+            this.tipo = tipo;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package br.com.servico_mensagens;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+
+// Resultado de uma consulta ao mural lido aos poucos: cada página é buscada só quando pedida
+public class ConsultaMural implements Iterable<Mensagem> {
+    private static final int MENSAGENS_POR_PAGINA = 256;
+
+    // Lê a próxima página da consulta com a trava de leitura do mural e avança o cursor
+    interface Leitor {
+        List<Mensagem> ler(ConsultaMural consulta, int limite);
+    }
+
+    private final Leitor leitor;
+    // Cursor: chave do índice e posição no mural da última mensagem entregue
+    long chave;
+    int posicao;
+    // Cursor das consultas na ordem total de Lamport: chave da última mensagem entregue
+    ChaveLamport ultimaChave;
+    private boolean fim;
+
+    ConsultaMural(long chave, int posicao, Leitor leitor) {
+        this.chave = chave;
+        this.posicao = posicao;
+        this.leitor = leitor;
+    }
+
+    // Pega as próximas até limite mensagens; a consulta segue de onde a página anterior parou
+    public List<Mensagem> proximaPagina(int limite) {
+        if (fim || limite <= 0) {
+            return Collections.emptyList();
+        }
+        List<Mensagem> pagina = leitor.ler(this, limite);
+        if (pagina.size() < limite) {
+            fim = true;
+        }
+        return pagina;
+    }
+
+    // Diz se ainda pode haver mensagens depois da última página lida
+    public boolean temMais() {
+        return !fim;
+    }
+
+    // Percorre o resultado uma página por vez, sem montar a lista inteira
+    @Override
+    public Iterator<Mensagem> iterator() {
+        return new Iterator<Mensagem>() {
+            private Iterator<Mensagem> pagina = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!pagina.hasNext() && temMais()) {
+                    pagina = proximaPagina(MENSAGENS_POR_PAGINA).iterator();
+                }
+                return pagina.hasNext();
+            }
+
+            @Override
+            public Mensagem next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return pagina.next();
+            }
+        };
+    }
+}
@@ -0,0 +1,84 @@
+package br.com.servico_mensagens;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+
+// Converte o mural salvo em <nome>_mural.json e <nome>_mural.log para os segmentos binários do modo SEGMENTOS
+// e compara o espaço em disco e o tempo de carga dos dois formatos
+public class ConversorMural {
+
+    // Uso: ConversorMural --nome Cliente1 [--nome Cliente2 ...]; os arquivos JSON e de log são mantidos como estão
+    public static void main(String[] args) {
+        List<String> nomes = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!"--nome".equals(args[i]) || i + 1 >= args.length) {
+                System.err.println("Opção inválida: " + args[i]);
+                exibirUso();
+                return;
+            }
+            nomes.add(args[++i]);
+        }
+        if (nomes.isEmpty()) {
+            exibirUso();
+            return;
+        }
+        for (String nome : nomes) {
+            try {
+                converter(nome);
+            } catch (IOException | IllegalStateException e) {
+                System.err.println("Erro ao converter o mural de " + nome + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private static void converter(String nome) throws IOException {
+        Path json = Path.of(nome + "_mural.json");
+        Path log = Path.of(nome + "_mural.log");
+        Path indice = Path.of(nome + "_mural.idx");
+        if (!Files.exists(json) && !Files.exists(log)) {
+            throw new IllegalStateException("não há " + json + " nem " + log);
+        }
+        if (Files.exists(indice) && Files.size(indice) > 0) {
+            throw new IllegalStateException(indice + " já existe; apague-o junto com os arquivos .seg para converter de novo");
+        }
+        long bytesJson = (Files.exists(json) ? Files.size(json) : 0) + (Files.exists(log) ? Files.size(log) : 0);
+
+        long inicio = System.nanoTime();
+        List<Mensagem> mensagens = new ArrayList<>();
+        PersistenciaLog anterior = new PersistenciaLog(nome);
+        anterior.carregar(mensagens::add);
+        anterior.fechar();
+        long cargaJson = System.nanoTime() - inicio;
+
+        // A primeira carga dos segmentos importa o JSON e o log
+        PersistenciaSegmentos conversao = new PersistenciaSegmentos(nome);
+        conversao.carregar(mensagem -> {});
+        conversao.fechar();
+
+        inicio = System.nanoTime();
+        List<Mensagem> relidas = new ArrayList<>();
+        PersistenciaSegmentos segmentos = new PersistenciaSegmentos(nome);
+        segmentos.carregar(relidas::add);
+        long cargaBinaria = System.nanoTime() - inicio;
+        long bytesBinarios = segmentos.getBytesOcupados();
+        segmentos.fechar();
+
+        if (relidas.size() != mensagens.size()) {
+            throw new IllegalStateException("os segmentos têm " + relidas.size() + " mensagens e o JSON " + mensagens.size());
+        }
+        System.out.printf("%s: %d mensagens%n", nome, mensagens.size());
+        System.out.printf("  JSON:    %,d bytes, carregado em %d ms%n", bytesJson, cargaJson / 1_000_000);
+        System.out.printf("  binário: %,d bytes, carregado em %d ms (%.1fx menor, %.1fx mais rápido)%n",
+            bytesBinarios, cargaBinaria / 1_000_000,
+            (double) bytesJson / Math.max(bytesBinarios, 1), (double) cargaJson / Math.max(cargaBinaria, 1));
+        System.out.println("  Para usar os segmentos, inicie o cliente com -Dmural.persistencia=SEGMENTOS");
+    }
+
+    private static void exibirUso() {
+        System.out.println("Uso: ConversorMural --nome <cliente> [--nome <cliente> ...]");
+    }
+}
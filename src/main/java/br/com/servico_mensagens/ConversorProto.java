@@ -0,0 +1,59 @@
+package br.com.servico_mensagens;
+
+import br.com.servico_mensagens.grpc.MensagemProto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+final class ConversorProto {
+    private ConversorProto() {}
+
+    static MensagemProto paraProto(Mensagem mensagem) {
+        // Os setters do protobuf não aceitam null: campo null fica sem valor e volta como null em deProto
+        MensagemProto.Builder proto = MensagemProto.newBuilder()
+            .setLamportClock(mensagem.getLamportClock());
+        if (mensagem.getId() != null) {
+            proto.setId(mensagem.getId());
+        }
+        if (mensagem.getConteudo() != null) {
+            proto.setConteudo(mensagem.getConteudo());
+        }
+        if (mensagem.getAutor() != null) {
+            proto.setAutor(mensagem.getAutor());
+        }
+        if (mensagem.getTimestamp() != null) {
+            proto.setTimestamp(mensagem.getTimestamp());
+        }
+        if (mensagem.getTipo() != null) {
+            proto.setTipo(mensagem.getTipo());
+        }
+        if (mensagem.getOrigem() != null) {
+            proto.setOrigem(mensagem.getOrigem()).setSequencia(mensagem.getSequencia());
+        }
+        return proto.build();
+    }
+
+    static Mensagem deProto(MensagemProto proto) {
+        Mensagem mensagem = new Mensagem(
+            proto.hasId() ? proto.getId() : null,
+            proto.hasConteudo() ? proto.getConteudo() : null,
+            proto.hasAutor() ? proto.getAutor() : null,
+            proto.getLamportClock(),
+            proto.hasTipo() ? proto.getTipo() : "publica"
+        );
+        mensagem.setTimestamp(proto.hasTimestamp() ? proto.getTimestamp() : null);
+        if (!proto.getOrigem().isEmpty()) {
+            mensagem.setOrigem(proto.getOrigem(), proto.getSequencia());
+        }
+        return mensagem;
+    }
+
+    static List<Mensagem> deProto(List<MensagemProto> protos) {
+        List<Mensagem> mensagens = new ArrayList<>(protos.size());
+        for (MensagemProto proto : protos) {
+            mensagens.add(deProto(proto));
+        }
+        return mensagens;
+    }
+}
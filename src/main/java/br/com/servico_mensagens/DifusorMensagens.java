@@ -0,0 +1,244 @@
+package br.com.servico_mensagens;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+
+// Envia as mensagens postadas para os peers em lotes, a partir de uma caixa de saída durável por peer
+class DifusorMensagens {
+    private static final int MENSAGENS_POR_LOTE = 128;
+    // Quanto o primeiro item de um lote espera por outros antes de o lote seguir incompleto
+    private static final long ESPERA_LOTE_MS = 5;
+    // Com um peer disponível mas lento, quem posta espera a caixa dele baixar deste limite
+    private static final int LIMITE_PENDENTES = 1024;
+    private static final long ESPERA_CAIXA_CHEIA_MS = 200;
+    // Um peer fora do ar guarda no máximo tantas mensagens na caixa; as mais antigas saem, e ele as recebe pela
+    // anti-entropia quando voltar. Fora do ar por mais tempo que o de remoção dos membros, a caixa inteira é apagada
+    private static final long LIMITE_CAIXA_INATIVO = 100_000;
+    private static final long ESPERA_INICIAL_MS = 100;
+    private static final long ESPERA_MAXIMA_MS = 30_000;
+
+    private final String nome;
+    private final TransportePeers transporte;
+    private final ObjectMapper objectMapper;
+    private final ModoExecucao modoExecucao;
+    private final Metricas metricas;
+    private final Map<EnderecoPeer, SaidaPeer> saidas = new ConcurrentHashMap<>();
+    private volatile boolean ativo = true;
+
+    DifusorMensagens(String nome, TransportePeers transporte, ObjectMapper objectMapper, ModoExecucao modoExecucao,
+                     Metricas metricas) {
+        this.nome = nome;
+        this.transporte = transporte;
+        this.objectMapper = objectMapper;
+        this.modoExecucao = modoExecucao;
+        this.metricas = metricas;
+    }
+
+    // Abre a caixa de saída de cada peer e volta a entregar o que ficou de uma execução anterior
+    void iniciar(Collection<EnderecoPeer> peers) {
+        for (EnderecoPeer peer : peers) {
+            saida(peer);
+        }
+    }
+
+    private SaidaPeer saida(EnderecoPeer peer) {
+        return saidas.computeIfAbsent(peer, SaidaPeer::new);
+    }
+
+    // Grava a mensagem na caixa de saída de cada peer; com aguardar, bloqueia por no máximo 200 ms, somando todos os peers,
+    // se algum peer disponível estiver atrasado. Quem repassa uma fofoca não espera, para não prender o servidor
+    void enviar(Mensagem mensagem, int lamportClock, Collection<EnderecoPeer> peers, boolean aguardar) {
+        Map<String, Object> item = new HashMap<>();
+        item.put("mensagem", mensagem);
+        item.put("lamportClock", lamportClock);
+        long inicio = System.nanoTime();
+        for (EnderecoPeer peer : peers) {
+            saida(peer).caixa.acrescentar(item);
+        }
+        metricas.registrarTempo("caixa_saida.escrita", System.nanoTime() - inicio);
+        if (!aguardar) {
+            return;
+        }
+        long prazo = System.currentTimeMillis() + ESPERA_CAIXA_CHEIA_MS;
+        for (EnderecoPeer peer : peers) {
+            SaidaPeer saida = saida(peer);
+            long restante = prazo - System.currentTimeMillis();
+            if (restante <= 0) {
+                return;
+            }
+            if (saida.disponivel) {
+                try {
+                    saida.caixa.aguardarEspaco(LIMITE_PENDENTES, restante);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    // O peer voltou a responder: a caixa de saída dele é entregue já, sem esperar o fim da espera exponencial
+    void retomar(EnderecoPeer peer) {
+        SaidaPeer saida = saidas.get(peer);
+        if (saida != null) {
+            saida.retomada.release();
+        }
+    }
+
+    // O peer saiu do cluster: a thread de envio para e a caixa de saída dele é apagada com o que não foi entregue;
+    // se ele voltar, recebe o que perdeu pela anti-entropia
+    void descartar(EnderecoPeer peer) {
+        SaidaPeer saida = saidas.remove(peer);
+        if (saida == null) {
+            return;
+        }
+        long pendentes = saida.caixa.getPendentes();
+        saida.parar();
+        saida.caixa.apagar();
+        metricas.removerMedidor("peer." + peer + ".caixa_saida");
+        if (pendentes > 0) {
+            System.out.println("\n[ENVIO] Caixa de saída do peer " + peer + " descartada com " + pendentes + " mensagens");
+        }
+    }
+
+    // Para as threads de envio; o que não foi confirmado continua nas caixas de saída
+    void parar() {
+        ativo = false;
+        for (SaidaPeer saida : saidas.values()) {
+            saida.parar();
+        }
+    }
+
+    private class SaidaPeer {
+        private final EnderecoPeer peer;
+        private final CaixaSaida caixa;
+        private final Thread thread;
+        private final Semaphore retomada = new Semaphore(0);
+        private volatile boolean disponivel = true;
+        private volatile boolean parada;
+        private long esperaAtualMs = ESPERA_INICIAL_MS;
+
+        SaidaPeer(EnderecoPeer peer) {
+            this.peer = peer;
+            this.caixa = new CaixaSaida(nome, peer, objectMapper);
+            metricas.registrarMedidor("peer." + peer + ".caixa_saida", caixa::getPendentes);
+            this.thread = modoExecucao.novaThread(nome + "-envio-" + peer, this::executar);
+            thread.start();
+        }
+
+        // Junta o que chegar até o lote encher ou o prazo do primeiro item vencer e envia de uma vez
+        private void executar() {
+            while (ativo && !parada) {
+                try {
+                    if (!caixa.aguardarPendentes(ESPERA_MAXIMA_MS)) {
+                        continue;
+                    }
+                    if (caixa.getPendentes() < MENSAGENS_POR_LOTE) {
+                        Thread.sleep(ESPERA_LOTE_MS);
+                    }
+                    CaixaSaida.Lote lote = caixa.lerLote(MENSAGENS_POR_LOTE);
+                    caixa.sincronizar();
+                    enviarLote(lote);
+                    caixa.confirmar(lote);
+                    metricas.incrementar("difusao.lotes");
+                    metricas.somar("difusao.mensagens", lote.itens.size());
+                    if (!disponivel) {
+                        System.out.println("\n[ENVIO] Peer " + peer + " voltou; entregando a caixa de saída");
+                    }
+                    disponivel = true;
+                    esperaAtualMs = ESPERA_INICIAL_MS;
+                } catch (IOException e) {
+                    metricas.incrementar("difusao.falhas");
+                    if (disponivel) {
+                        System.err.println("Erro ao enviar para o peer " + peer + ": " + e.getMessage()
+                            + " (" + caixa.getPendentes() + " mensagens aguardando na caixa de saída)");
+                    }
+                    disponivel = false;
+                    limitarCaixa();
+                    if (!aguardarNovaTentativa()) {
+                        return;
+                    }
+                } catch (RuntimeException e) {
+                    // Um erro inesperado não pode encerrar a thread, senão a caixa de saída do peer para de ser entregue
+                    metricas.incrementar("difusao.falhas");
+                    System.err.println("Erro inesperado ao enviar para o peer " + peer + ": " + e
+                        + " (" + caixa.getPendentes() + " mensagens aguardando na caixa de saída)");
+                    if (!aguardarNovaTentativa()) {
+                        return;
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        // Espera antes de tentar de novo, dobrando a espera a cada falha seguida; retorna false se a thread foi interrompida
+        private boolean aguardarNovaTentativa() {
+            try {
+                if (retomada.tryAcquire(esperaAtualMs, TimeUnit.MILLISECONDS)) {
+                    retomada.drainPermits();
+                    esperaAtualMs = ESPERA_INICIAL_MS;
+                    return true;
+                }
+            } catch (InterruptedException e) {
+                return false;
+            }
+            esperaAtualMs = Math.min(esperaAtualMs * 2, ESPERA_MAXIMA_MS);
+            return true;
+        }
+
+        private void limitarCaixa() {
+            try {
+                long descartadas = caixa.descartarAntigas(LIMITE_CAIXA_INATIVO);
+                if (descartadas > 0) {
+                    metricas.somar("difusao.descartadas_caixa_cheia", descartadas);
+                    System.err.println("Caixa de saída do peer " + peer + " cheia: " + descartadas
+                        + " mensagens mais antigas descartadas, a anti-entropia as entrega quando ele voltar");
+                }
+            } catch (IOException e) {
+                System.err.println("Erro ao limitar a caixa de saída do peer " + peer + ": " + e.getMessage());
+            }
+        }
+
+        // Envia o lote e só retorna se o peer confirmar até a última sequência dele
+        private void enviarLote(CaixaSaida.Lote lote) throws IOException {
+            Map<String, Object> dados = new HashMap<>();
+            dados.put("tipo", "LOTE");
+            dados.put("mensagens", lote.itens);
+            dados.put("ate", lote.ultimaSequencia);
+            dados.put("remetente", nome);
+            Map<String, Object> resposta = transporte.requisitar(peer, dados);
+            if (resposta == null || !"CONFIRMACAO_LOTE".equals(resposta.get("tipo"))
+                    || ((Number) resposta.get("ate")).longValue() != lote.ultimaSequencia) {
+                throw new IOException("Lote não confirmado pelo peer " + peer);
+            }
+            // O peer confirmou o lote mas recusou itens que não conseguiu ler; reenviá-los não adiantaria
+            Object descartadas = resposta.get("descartadas");
+            if (descartadas instanceof List && !((List<?>) descartadas).isEmpty()) {
+                metricas.somar("difusao.descartadas", ((List<?>) descartadas).size());
+                System.err.println("Peer " + peer + " descartou mensagens inválidas do lote, seq " + descartadas);
+            }
+        }
+
+        void parar() {
+            parada = true;
+            caixa.acordar();
+            retomada.release();
+            try {
+                thread.join(ESPERA_CAIXA_CHEIA_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            caixa.fechar();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package br.com.servico_mensagens;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+
+public final class EnderecoPeer {
+    private final String host;
+    private final int porta;
+
+    public EnderecoPeer(String host, int porta) {
+        this.host = host;
+        this.porta = porta;
+    }
+
+    // Endereço de um peer na mesma máquina, como nos clientes fixos 8001 a 8003
+    public static EnderecoPeer local(int porta) {
+        return new EnderecoPeer("localhost", porta);
+    }
+
+    // Lê "host:porta"; só a porta também é aceita e significa localhost
+    public static EnderecoPeer deTexto(String texto) {
+        String valor = texto.trim();
+        int separador = valor.lastIndexOf(':');
+        try {
+            if (separador < 0) {
+                return local(Integer.parseInt(valor));
+            }
+            return new EnderecoPeer(valor.substring(0, separador), Integer.parseInt(valor.substring(separador + 1)));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Endereço de peer inválido: " + texto);
+        }
+    }
+
+    // Lê uma lista separada por vírgulas, como "10.0.0.1:9001,10.0.0.2:9001"
+    public static List<EnderecoPeer> deLista(String texto) {
+        List<EnderecoPeer> enderecos = new ArrayList<>();
+        for (String parte : texto.split(",")) {
+            if (!parte.isBlank()) {
+                enderecos.add(deTexto(parte));
+            }
+        }
+        return enderecos;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPorta() {
+        return porta;
+    }
+
+    // Nome usado nos arquivos do peer, como host_porta
+    String paraArquivo() {
+        return host.replaceAll("[^A-Za-z0-9.-]", "_") + "_" + porta;
+    }
+
+    @Override
+    public boolean equals(Object outro) {
+        if (this == outro) {
+            return true;
+        }
+        if (!(outro instanceof EnderecoPeer)) {
+            return false;
+        }
+        EnderecoPeer endereco = (EnderecoPeer) outro;
+        return porta == endereco.porta && host.equals(endereco.host);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(host, porta);
+    }
+
+    @Override
+    public String toString() {
+        return host + ":" + porta;
+    }
+}
@@ -0,0 +1,146 @@
+package br.com.servico_mensagens;
+
+import com.itextpdf.kernel.geom.PageSize;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.layout.Document;
+import com.itextpdf.layout.element.Paragraph;
+import com.itextpdf.layout.element.Text;
+import com.itextpdf.layout.properties.TextAlignment;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+// Gera o PDF do mural em segundo plano, lendo as mensagens em páginas e descarregando cada página do PDF pronta
+class ExportadorPdf {
+    private static final int MENSAGENS_POR_LEITURA = 500;
+    // O progresso é mostrado a cada 10% das mensagens
+    private static final int PASSOS_PROGRESSO = 10;
+
+    private final String nome;
+    private final MuralMensagens mural;
+    private final ExecutorService executor;
+    private final AtomicBoolean emAndamento = new AtomicBoolean();
+
+    ExportadorPdf(String nome, MuralMensagens mural, ExecutorService executor) {
+        this.nome = nome;
+        this.mural = mural;
+        this.executor = executor;
+    }
+
+    // Começa a exportação; retorna false se já houver uma em andamento. As privadas só entram se incluirPrivadas
+    boolean exportar(boolean incluirPrivadas) {
+        if (!emAndamento.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            executor.submit(() -> {
+                try {
+                    gerar(incluirPrivadas);
+                } finally {
+                    emAndamento.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            emAndamento.set(false);
+            return false;
+        }
+        return true;
+    }
+
+    private void gerar(boolean incluirPrivadas) {
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
+        Path arquivo = Path.of(nome + "_mural_" + timestamp + ".pdf");
+        // O PDF é escrito em um arquivo temporário e só ganha o nome final depois de completo
+        Path temporario = Path.of(arquivo + ".parcial");
+        // O total é fixado no início: mensagens que chegarem durante a exportação ficam para a próxima
+        int total = incluirPrivadas ? mural.getTamanho() : mural.contarPorTipo("publica");
+        ConsultaMural consulta = incluirPrivadas ? mural.consultarAPartirDe(0) : mural.consultarPorTipo("publica");
+
+        try {
+            // Com immediateFlush, cada página do PDF é escrita no arquivo e liberada da memória assim que fica cheia
+            try (PdfDocument pdfDoc = new PdfDocument(new PdfWriter(temporario.toString()));
+                 Document document = new Document(pdfDoc, PageSize.A4, true)) {
+                Paragraph titulo = new Paragraph("MURAL DE MENSAGENS - " + nome.toUpperCase())
+                        .setTextAlignment(TextAlignment.CENTER)
+                        .setFontSize(16)
+                        .setBold();
+                document.add(titulo);
+
+                Paragraph dataGeracao = new Paragraph("Gerado em: " +
+                        LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss")))
+                        .setTextAlignment(TextAlignment.CENTER)
+                        .setFontSize(10);
+                document.add(dataGeracao);
+                if (!incluirPrivadas) {
+                    document.add(new Paragraph("Somente mensagens públicas")
+                            .setTextAlignment(TextAlignment.CENTER)
+                            .setFontSize(10));
+                }
+                document.add(new Paragraph("\n" + "=".repeat(50) + "\n"));
+
+                if (total == 0) {
+                    document.add(new Paragraph("Nenhuma mensagem encontrada no mural."));
+                } else {
+                    document.add(new Paragraph("Total de mensagens: " + total + "\n"));
+                    escreverMensagens(document, consulta, total);
+                }
+            }
+            Files.move(temporario, arquivo, StandardCopyOption.REPLACE_EXISTING);
+            System.out.println("\n✓ PDF gerado com sucesso: " + arquivo);
+            System.out.println("Arquivo salvo no diretório: " + System.getProperty("user.dir"));
+        } catch (Exception e) {
+            System.err.println("Erro ao gerar PDF: " + e.getMessage());
+            try {
+                Files.deleteIfExists(temporario);
+            } catch (IOException erroRemocao) {}
+        }
+    }
+
+    private void escreverMensagens(Document document, ConsultaMural consulta, int total) {
+        int escritas = 0;
+        int proximoAviso = 1;
+        while (escritas < total) {
+            List<Mensagem> pagina = consulta.proximaPagina(Math.min(MENSAGENS_POR_LEITURA, total - escritas));
+            if (pagina.isEmpty()) {
+                break;
+            }
+            for (Mensagem msg : pagina) {
+                escritas++;
+                Paragraph cabecalho = new Paragraph()
+                        .add(new Text("Mensagem #" + escritas).setBold())
+                        .add(new Text(" | Autor: " + msg.getAutor()))
+                        .add(new Text(" | Timestamp: " + msg.getTimestamp()))
+                        .add(new Text(" | Clock: " + msg.getLamportClock()));
+                document.add(cabecalho);
+
+                Paragraph conteudo = new Paragraph("Conteúdo: " + msg.getConteudo())
+                        .setMarginLeft(20);
+                document.add(conteudo);
+
+                Paragraph id = new Paragraph("ID: " + msg.getId())
+                        .setMarginLeft(20)
+                        .setFontSize(8)
+                        .setItalic();
+                document.add(id);
+
+                if (escritas < total) {
+                    document.add(new Paragraph("-".repeat(30)));
+                }
+                if ((long) escritas * PASSOS_PROGRESSO >= (long) proximoAviso * total && escritas < total) {
+                    System.out.println("\n[PDF] " + (escritas * 100L / total) + "% (" + escritas + "/" + total + " mensagens)");
+                    proximoAviso++;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package br.com.servico_mensagens;
+
+
+class FiltroBloom {
+    private static final int FUNCOES_HASH = 7;
+
+    private final long[] bits;
+    private final int totalBits;
+    private final int capacidade;
+    private int elementos;
+
+    // Cria um filtro dimensionado para a capacidade informada com ~1% de falsos positivos
+    FiltroBloom(int capacidade) {
+        this.capacidade = Math.max(capacidade, 64);
+        this.totalBits = this.capacidade * 10;
+        this.bits = new long[(totalBits + 63) / 64];
+    }
+
+    void adicionar(String valor) {
+        long hash = hash64(valor);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < FUNCOES_HASH; i++) {
+            int bit = Math.floorMod(h1 + i * h2, totalBits);
+            bits[bit >>> 6] |= 1L << bit;
+        }
+        elementos++;
+    }
+
+    // Retorna false quando o valor com certeza nunca foi adicionado
+    boolean talvezContenha(String valor) {
+        long hash = hash64(valor);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < FUNCOES_HASH; i++) {
+            int bit = Math.floorMod(h1 + i * h2, totalBits);
+            if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Indica que o filtro passou da capacidade e a taxa de falsos positivos começou a subir
+    boolean cheio() {
+        return elementos >= capacidade;
+    }
+
+    int getCapacidade() {
+        return capacidade;
+    }
+
+    // Hash FNV-1a de 64 bits sobre os caracteres, com mistura final para espalhar os bits
+    static long hash64(String valor) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < valor.length(); i++) {
+            hash ^= valor.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,100 @@
+package br.com.servico_mensagens;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+
+class GerenciadorConexoes implements TransportePeers {
+    private static final long TIMEOUT_RESPOSTA_MS = 5000;
+
+    private final ObjectMapper objectMapper;
+    private final ModoExecucao modoExecucao;
+    private final MetricasTransporte metricas;
+    private final CompressaoCarga compressao;
+    private final Map<EnderecoPeer, ConexaoPeer> conexoes = new ConcurrentHashMap<>();
+
+    GerenciadorConexoes(ObjectMapper objectMapper, ModoExecucao modoExecucao) {
+        this(objectMapper, modoExecucao, Metricas.NENHUMA, new CompressaoCarga(objectMapper, ModoCompressao.NENHUMA, null));
+    }
+
+    GerenciadorConexoes(ObjectMapper objectMapper, ModoExecucao modoExecucao, Metricas metricas, CompressaoCarga compressao) {
+        this.objectMapper = objectMapper;
+        this.modoExecucao = modoExecucao;
+        this.metricas = new MetricasTransporte(metricas);
+        this.compressao = compressao;
+    }
+
+    // Pega a conexão persistente com o peer, criando-a no primeiro uso
+    ConexaoPeer conexao(EnderecoPeer peer) {
+        return conexoes.computeIfAbsent(peer, p -> new ConexaoPeer(p.getHost(), p.getPorta(), objectMapper, modoExecucao, metricas, compressao));
+    }
+
+    // Envia uma requisição e espera a resposta correspondente
+    @Override
+    public Map<String, Object> requisitar(EnderecoPeer peer, Map<String, Object> dados) throws IOException {
+        return requisitar(peer, dados, TIMEOUT_RESPOSTA_MS);
+    }
+
+    @Override
+    public Map<String, Object> requisitar(EnderecoPeer peer, Map<String, Object> dados, long timeoutMs) throws IOException {
+        ConexaoPeer conexao = conexao(peer);
+        long requestId = conexao.novoRequestId();
+        try {
+            return conexao.enviar(requestId, dados).get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            metricas.falhou(peer.toString(), String.valueOf(dados.get("tipo")));
+            Throwable causa = e.getCause();
+            throw causa instanceof IOException ? (IOException) causa : new IOException(causa);
+        } catch (TimeoutException e) {
+            conexao.cancelar(requestId);
+            metricas.falhou(peer.toString(), String.valueOf(dados.get("tipo")));
+            throw new IOException("Sem resposta do peer " + peer + " em " + timeoutMs + " ms");
+        } catch (InterruptedException e) {
+            conexao.cancelar(requestId);
+            Thread.currentThread().interrupt();
+            throw new IOException("Envio para o peer " + peer + " interrompido");
+        }
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Object>> requisitarAssincrono(EnderecoPeer peer, Map<String, Object> dados, long timeoutMs) {
+        ConexaoPeer conexao = conexao(peer);
+        long requestId = conexao.novoRequestId();
+        return conexao.enviar(requestId, dados)
+            .orTimeout(timeoutMs, TimeUnit.MILLISECONDS)
+            .whenComplete((resposta, erro) -> {
+                if (erro != null) {
+                    conexao.cancelar(requestId);
+                    metricas.falhou(peer.toString(), String.valueOf(dados.get("tipo")));
+                }
+            });
+    }
+
+    @Override
+    public void reconectar(EnderecoPeer peer) {
+        conexao(peer).reconectar();
+    }
+
+    @Override
+    public void fechar(EnderecoPeer peer) {
+        ConexaoPeer conexao = conexoes.remove(peer);
+        if (conexao != null) {
+            conexao.fechar();
+        }
+    }
+
+    @Override
+    public void fecharTodas() {
+        for (ConexaoPeer conexao : conexoes.values()) {
+            conexao.fechar();
+        }
+        conexoes.clear();
+    }
+}
@@ -0,0 +1,317 @@
+package br.com.servico_mensagens;
+
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Scanner;
+import java.util.function.IntFunction;
+
+
+// Menu de texto do cliente; tudo o que ele faz passa pela ApiMural
+class InterfaceConsole {
+    private static final int MENSAGENS_POR_TELA = 50;
+
+    private final ApiMural api;
+    private final String nome;
+    private final Scanner scanner;
+    private String nickUsuario;
+    private boolean autenticado;
+
+    InterfaceConsole(ApiMural api) {
+        this.api = api;
+        this.nome = api.getNome();
+        this.scanner = new Scanner(System.in);
+        this.autenticado = false;
+        this.nickUsuario = null;
+    }
+
+    // Mostra o menu até o usuário escolher sair ou a entrada terminar
+    void executar() {
+        System.out.println("\n=== " + nome.toUpperCase() + " ===");
+
+        // As mensagens postadas aqui já aparecem como postadas; as demais são avisadas assim que chegam
+        try (ApiMural.Assinatura assinatura = api.assinar(this::avisarNovaMensagem)) {
+            while (true) {
+                exibirMenu();
+                String opcao = scanner.nextLine().trim();
+
+                switch (opcao) {
+                    case "1":
+                        realizarAutenticacao();
+                        break;
+                    case "2":
+                        solicitarMensagem();
+                        break;
+                    case "3":
+                        verMural();
+                        break;
+                    case "4":
+                        extrairMuralPDF();
+                        break;
+                    case "5":
+                        exibirMembros();
+                        break;
+                    case "6":
+                        System.out.println("Encerrando " + nome + "...");
+                        return;
+                    default:
+                        System.out.println("Opção inválida. Tente novamente.\n");
+                }
+            }
+        } catch (NoSuchElementException e) {
+            // Fim da entrada (Ctrl+D ou entrada redirecionada de um arquivo): encerra como na opção 6
+            System.out.println("\nEntrada encerrada. Encerrando " + nome + "...");
+        }
+    }
+
+    private void avisarNovaMensagem(Mensagem mensagem) {
+        if (!nome.equals(mensagem.getOrigem())) {
+            System.out.println("\n[NOVA MENSAGEM RECEBIDA] " + mensagem);
+        }
+    }
+
+    // Faz o login do usuário com nick e senha
+    private void realizarAutenticacao() {
+        if (autenticado) {
+            System.out.println("\nVocê já está autenticado como: " + nickUsuario);
+            System.out.print("Deseja fazer login com outro usuário? (s/n): ");
+            String resposta = scanner.nextLine().trim().toLowerCase();
+            if (!resposta.equals("s") && !resposta.equals("sim")) {
+                return;
+            }
+        }
+        System.out.println("\n=== AUTENTICAÇÃO - " + nome.toUpperCase() + " ===");
+
+        while (true) {
+            System.out.print("Digite seu nick: ");
+            String nick = scanner.nextLine().trim();
+
+            if (nick.isEmpty()) {
+                System.out.println("Nick não pode estar vazio. Tente novamente.");
+                continue;
+            }
+
+            this.nickUsuario = nick;
+            break;
+        }
+
+        while (true) {
+            System.out.print("Digite sua senha: ");
+            String senha = scanner.nextLine().trim();
+
+            if (senha.isEmpty()) {
+                System.out.println("Senha não pode estar vazia. Tente novamente.");
+                continue;
+            }
+
+            System.out.print("Confirme sua senha: ");
+            String confirmacao = scanner.nextLine().trim();
+
+            if (senha.equals(confirmacao)) {
+                this.autenticado = true;
+                System.out.println("Autenticação realizada com sucesso!\n");
+                System.out.println("Bem-vindo, " + nickUsuario + "!");
+                return;
+            } else {
+                System.out.println("Senhas não coincidem. Tente novamente.\n");
+            }
+        }
+    }
+
+    // Mostra o menu de opções para o usuário
+    private void exibirMenu() {
+        System.out.println("\n=== MENU PRINCIPAL ===");
+        if (autenticado) {
+            System.out.println("[Usuário: " + nickUsuario + " - Autenticado]");
+        } else {
+            System.out.println("[Não autenticado]");
+        }
+        System.out.println("1. Fazer login/autenticação");
+        System.out.println("2. Postar mensagem");
+        System.out.println("3. Ver mural");
+        System.out.println("4. Extrair mural em PDF");
+        System.out.println("5. Ver clientes conectados");
+        System.out.println("6. Sair");
+        System.out.print("Escolha uma opção: ");
+    }
+
+    // Exibe submenu para visualizar mensagens públicas ou privadas
+    private void verMural() {
+        System.out.println("\n=== VER MURAL ===");
+        System.out.println("1. Ver mensagens públicas");
+        System.out.println("2. Ver mensagens privadas");
+        System.out.println("3. Ver todas as mensagens");
+        System.out.print("Escolha uma opção: ");
+
+        String opcao = scanner.nextLine().trim();
+
+        switch (opcao) {
+            case "1":
+                exibirMensagensPorTipo("publica");
+                break;
+            case "2":
+                if (!autenticado) {
+                    System.out.println("\nVocê precisa estar autenticado para ver mensagens privadas.");
+                    System.out.print("Deseja fazer login agora? (s/n): ");
+                    String resposta = scanner.nextLine().trim().toLowerCase();
+                    if (resposta.equals("s") || resposta.equals("sim")) {
+                        realizarAutenticacao();
+                        if (autenticado) {
+                            exibirMensagensPorTipo("privada");
+                        }
+                    }
+                } else {
+                    exibirMensagensPorTipo("privada");
+                }
+                break;
+            case "3":
+                if (!autenticado) {
+                    System.out.println("\nVocê precisa estar autenticado para ver todas as mensagens.");
+                    System.out.print("Deseja fazer login agora? (s/n): ");
+                    String resposta = scanner.nextLine().trim().toLowerCase();
+                    if (resposta.equals("s") || resposta.equals("sim")) {
+                        realizarAutenticacao();
+                        if (autenticado) {
+                            exibirTodasMensagens();
+                        }
+                    } else {
+                        // Se não autenticado, mostra apenas as públicas
+                        exibirMensagensPorTipo("publica");
+                    }
+                } else {
+                    exibirTodasMensagens();
+                }
+                break;
+            default:
+                System.out.println("Opção inválida.");
+        }
+    }
+
+    // Exibe mensagens filtradas por tipo, das mais recentes para as mais antigas
+    private void exibirMensagensPorTipo(String tipo) {
+        int total = api.contarPorTipo(tipo);
+        if (total == 0) {
+            System.out.println("\nNenhuma mensagem " + tipo + " encontrada.");
+        } else {
+            System.out.println("\n=== MENSAGENS " + tipo.toUpperCase() + "S ===");
+            exibirEmTelas(total, "", pular -> api.getUltimasPorTipo(tipo, MENSAGENS_POR_TELA, pular));
+        }
+    }
+
+    // Exibe todas as mensagens (públicas e privadas), das mais recentes para as mais antigas
+    private void exibirTodasMensagens() {
+        System.out.println("=== MURAL DE MENSAGENS ===");
+        System.out.println("Contador: " + api.getContador());
+        int total = api.getTamanho();
+        if (total == 0) {
+            System.out.println("Mensagens: Nenhuma");
+        } else {
+            System.out.println("Mensagens:");
+            exibirEmTelas(total, "  ", pular -> api.getUltimas(MENSAGENS_POR_TELA, pular));
+        }
+    }
+
+    // Mostra as mensagens mais recentes e oferece as anteriores uma tela por vez, sem ler o mural inteiro
+    private void exibirEmTelas(int total, String recuo, IntFunction<List<Mensagem>> tela) {
+        int exibidas = 0;
+        while (true) {
+            List<Mensagem> mensagens = tela.apply(exibidas);
+            for (Mensagem msg : mensagens) {
+                System.out.println(recuo + msg.toString());
+            }
+            exibidas += mensagens.size();
+            if (mensagens.isEmpty() || exibidas >= total) {
+                return;
+            }
+            System.out.print("\nExibidas as " + exibidas + " mais recentes de " + total + ". Ver as anteriores? (s/n): ");
+            String resposta = scanner.nextLine().trim().toLowerCase();
+            if (!resposta.equals("s") && !resposta.equals("sim")) {
+                return;
+            }
+        }
+    }
+
+    // Pede para o usuário digitar uma mensagem e a posta em nome do usuário autenticado
+    private void solicitarMensagem() {
+        if (!autenticado) {
+            System.out.println("\nVocê precisa estar autenticado para enviar mensagens.");
+            System.out.print("Deseja fazer login agora? (s/n): ");
+            String resposta = scanner.nextLine().trim().toLowerCase();
+            if (resposta.equals("s") || resposta.equals("sim")) {
+                realizarAutenticacao();
+                if (!autenticado) {
+                    return;
+                }
+            } else {
+                return;
+            }
+        }
+        System.out.print("\nDigite sua mensagem: ");
+        String mensagem = scanner.nextLine().trim();
+
+        if (mensagem.isEmpty()) {
+            System.out.println("Mensagem não pode estar vazia.");
+            return;
+        }
+
+        System.out.println("\nTipo de mensagem:");
+        System.out.println("1. Pública (visível para todos)");
+        System.out.println("2. Privada (apenas para usuários autenticados)");
+        System.out.print("Escolha o tipo (1 ou 2): ");
+        String tipoEscolha = scanner.nextLine().trim();
+
+        String tipoMensagem = "publica"; // padrão
+        if ("2".equals(tipoEscolha)) {
+            tipoMensagem = "privada";
+        } else if (!"1".equals(tipoEscolha)) {
+            System.out.println("Opção inválida. Usando tipo público como padrão.");
+        }
+        postarMensagem(mensagem, tipoMensagem);
+    }
+
+    // Posta uma mensagem no mural e avisa se nenhum peer está ativo para recebê-la agora
+    private void postarMensagem(String conteudo, String tipo) {
+        try {
+            Mensagem mensagem = api.postar(nickUsuario, conteudo, tipo);
+            if (!api.getMembros().containsValue(true)) {
+                System.out.println("[AVISO] Nenhuma conexão ativa. A mensagem fica na caixa de saída até os outros clientes voltarem.");
+            }
+            System.out.println("[MENSAGEM POSTADA] " + mensagem);
+
+        } catch (Exception e) {
+            System.err.println("Erro ao postar mensagem: " + e.getMessage());
+        }
+    }
+
+    // Mostra a visão atual dos membros, mantida em segundo plano pelas batidas
+    private void exibirMembros() {
+        System.out.println("\n=== CLIENTES CONECTADOS ===");
+        Map<EnderecoPeer, Boolean> situacao = api.getMembros();
+        int vivos = 0;
+        for (Map.Entry<EnderecoPeer, Boolean> membro : situacao.entrySet()) {
+            if (membro.getValue()) {
+                vivos++;
+                System.out.println(membro.getKey() + " ✓ Ativo");
+            } else {
+                System.out.println(membro.getKey() + " ✗ Inativo");
+            }
+        }
+        System.out.println("\nConexões ativas: " + vivos + "/" + situacao.size());
+        if (vivos == 0) {
+            System.out.println("Nenhuma conexão ativa. Mensagens serão armazenadas localmente.");
+        }
+    }
+
+    // Gera o PDF do mural em segundo plano; as mensagens privadas só entram para usuários autenticados
+    private void extrairMuralPDF() {
+        if (!api.exportarPdf(autenticado)) {
+            System.out.println("\nJá existe uma exportação de PDF em andamento.");
+            return;
+        }
+        if (autenticado) {
+            System.out.println("\nGerando o PDF em segundo plano; o progresso aparece aqui.");
+        } else {
+            System.out.println("\nGerando o PDF em segundo plano só com as mensagens públicas; faça login para incluir as privadas.");
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package br.com.servico_mensagens;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+
+// Inicia um nó de um cluster de qualquer tamanho, com os peers lidos de um arquivo ou de uma lista de sementes
+public class LancadorCluster {
+    private static final String PREFIXO_NO = "no.";
+
+    // Uso: --config cluster.properties --nome Cliente7
+    //   ou --nome Cliente7 [--host 10.0.0.7] --porta 8007 --seeds host1:8001,host2:8002 [--fanout 4]
+    public static void main(String[] args) {
+        Map<String, String> opcoes;
+        try {
+            opcoes = lerOpcoes(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            exibirUso();
+            return;
+        }
+        String nome = opcoes.get("nome");
+        if (nome == null) {
+            exibirUso();
+            return;
+        }
+
+        Cliente cliente;
+        try {
+            cliente = opcoes.containsKey("config")
+                ? criarDoArquivo(nome, Path.of(opcoes.get("config")), opcoes.get("fanout"))
+                : criarDasSementes(nome, opcoes);
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Erro na configuração do cluster: " + e.getMessage());
+            return;
+        }
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            System.out.println("\nEncerrando " + nome + "...");
+            cliente.parar();
+        }));
+
+        try {
+            cliente.iniciar();
+        } catch (Exception e) {
+            System.err.println("Erro no " + nome + ": " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    // O arquivo lista todos os nós como "no.<nome>=host:porta" e, opcionalmente, "difusao.fanout=N"
+    private static Cliente criarDoArquivo(String nome, Path arquivo, String fanoutOpcao) throws IOException {
+        Properties propriedades = new Properties();
+        try (Reader reader = Files.newBufferedReader(arquivo, StandardCharsets.UTF_8)) {
+            propriedades.load(reader);
+        }
+        EnderecoPeer proprio = null;
+        List<EnderecoPeer> peers = new ArrayList<>();
+        for (String chave : propriedades.stringPropertyNames()) {
+            if (!chave.startsWith(PREFIXO_NO)) {
+                continue;
+            }
+            EnderecoPeer endereco = EnderecoPeer.deTexto(propriedades.getProperty(chave));
+            if (chave.substring(PREFIXO_NO.length()).equals(nome)) {
+                proprio = endereco;
+            } else {
+                peers.add(endereco);
+            }
+        }
+        if (proprio == null) {
+            throw new IllegalArgumentException("nó " + nome + " não está em " + arquivo);
+        }
+        String fanout = fanoutOpcao != null ? fanoutOpcao : propriedades.getProperty("difusao.fanout");
+        return new Cliente(nome, proprio, peers, lerFanout(fanout));
+    }
+
+    private static Cliente criarDasSementes(String nome, Map<String, String> opcoes) {
+        if (!opcoes.containsKey("porta") || !opcoes.containsKey("seeds")) {
+            throw new IllegalArgumentException("informe --config ou --porta e --seeds");
+        }
+        // O host é o endereço pelo qual os outros nós alcançam este; ele é divulgado aos membros do cluster
+        EnderecoPeer proprio = new EnderecoPeer(opcoes.getOrDefault("host", "localhost"), Integer.parseInt(opcoes.get("porta")));
+        return new Cliente(nome, proprio, EnderecoPeer.deLista(opcoes.get("seeds")), lerFanout(opcoes.get("fanout")));
+    }
+
+    private static int lerFanout(String valor) {
+        if (valor == null) {
+            return Cliente.fanoutPadrao();
+        }
+        int fanout = Integer.parseInt(valor.trim());
+        if (fanout < 1) {
+            throw new IllegalArgumentException("fanout deve ser pelo menos 1: " + valor);
+        }
+        return fanout;
+    }
+
+    private static Map<String, String> lerOpcoes(String[] args) {
+        Map<String, String> opcoes = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                throw new IllegalArgumentException("Opção inválida: " + args[i]);
+            }
+            opcoes.put(args[i].substring(2), args[++i]);
+        }
+        return opcoes;
+    }
+
+    private static void exibirUso() {
+        System.out.println("Uso: LancadorCluster --config cluster.properties --nome <nó>");
+        System.out.println("  ou LancadorCluster --nome <nó> [--host <host>] --porta <porta> --seeds host:porta,host:porta [--fanout N]");
+    }
+}
@@ -0,0 +1,46 @@
+package br.com.servico_mensagens;
+
+import java.util.Arrays;
+
+
+// Lista de posições do mural guardada em um int[], sem um Integer por mensagem como em List<Integer>
+final class ListaPosicoes {
+    private int[] posicoes = new int[4];
+    private int tamanho;
+
+    void adicionar(int posicao) {
+        inserir(tamanho, posicao);
+    }
+
+    // Abre espaço em indice deslocando as seguintes; nos índices ordenados quase sempre é o fim da lista
+    void inserir(int indice, int posicao) {
+        if (tamanho == posicoes.length) {
+            posicoes = Arrays.copyOf(posicoes, tamanho + (tamanho >> 1) + 1);
+        }
+        System.arraycopy(posicoes, indice, posicoes, indice + 1, tamanho - indice);
+        posicoes[indice] = posicao;
+        tamanho++;
+    }
+
+    int get(int indice) {
+        if (indice >= tamanho) {
+            throw new IndexOutOfBoundsException("posição " + indice + " de " + tamanho);
+        }
+        return posicoes[indice];
+    }
+
+    int tamanho() {
+        return tamanho;
+    }
+
+    void limpar() {
+        posicoes = new int[4];
+        tamanho = 0;
+    }
+
+    // Índice da primeira posição maior que a informada, numa lista em ordem crescente
+    int proximoIndice(int posicao) {
+        int indice = Arrays.binarySearch(posicoes, 0, tamanho, posicao);
+        return indice >= 0 ? indice + 1 : -indice - 1;
+    }
+}
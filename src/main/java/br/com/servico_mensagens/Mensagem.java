@@ -1,8 +1,12 @@
 package br.com.servico_mensagens;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 
 public class Mensagem {
@@ -23,6 +27,15 @@ public class Mensagem {
     
     @JsonProperty("tipo")
     private String tipo; 
+    
+    // Cliente que postou a mensagem e a posição dela entre as mensagens desse cliente (1, 2, 3...)
+    @JsonProperty("origem")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String origem;
+    
+    @JsonProperty("sequencia")
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    private long sequencia;
 
     public Mensagem() {}
     
@@ -44,6 +57,34 @@ public class Mensagem {
         this.timestamp = LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
     }
     
+    // Monta a mensagem a partir do mapa lido de uma requisição JSON
+    public static Mensagem deMapa(Map<String, Object> dados) {
+        String tipo = dados.containsKey("tipo") ? (String) dados.get("tipo") : "publica";
+        Mensagem mensagem = new Mensagem(
+            (String) dados.get("id"),
+            (String) dados.get("conteudo"),
+            (String) dados.get("autor"),
+            ((Number) dados.get("lamportClock")).intValue(),
+            tipo
+        );
+        mensagem.setTimestamp((String) dados.get("timestamp"));
+        if (dados.get("origem") != null) {
+            mensagem.setOrigem((String) dados.get("origem"), ((Number) dados.get("sequencia")).longValue());
+        }
+        return mensagem;
+    }
+    
+    // Converte a lista de mensagens de uma resposta; pelo gRPC ela já chega como Mensagem
+    public static List<Mensagem> deLista(Object mensagensData) {
+        List<Mensagem> mensagens = new ArrayList<>();
+        for (Object msgData : (List<Object>) mensagensData) {
+            mensagens.add(msgData instanceof Mensagem
+                ? (Mensagem) msgData
+                : deMapa((Map<String, Object>) msgData));
+        }
+        return mensagens;
+    }
+    
     public String getId() {
         return id;
     }
@@ -92,6 +133,19 @@ public class Mensagem {
         this.tipo = tipo;
     }
     
+    public String getOrigem() {
+        return origem;
+    }
+    
+    public long getSequencia() {
+        return sequencia;
+    }
+    
+    public void setOrigem(String origem, long sequencia) {
+        this.origem = origem;
+        this.sequencia = sequencia;
+    }
+    
     @Override
     public String toString() {
         String tipoIndicador = "publica".equals(tipo) ? "[PÚBLICA]" : "[PRIVADA]";
@@ -0,0 +1,35 @@
+package br.com.servico_mensagens;
+
+import java.util.function.LongSupplier;
+
+
+// Por onde os componentes registram contadores, medidores e tempos sem saber como eles são exportados
+public interface Metricas {
+    // Descarta tudo; usada por quem cria os componentes fora de um Cliente, como os benchmarks
+    Metricas NENHUMA = new Metricas() {
+        @Override
+        public void somar(String nome, long valor) {}
+
+        @Override
+        public void registrarTempo(String nome, long nanos) {}
+
+        @Override
+        public void registrarMedidor(String nome, LongSupplier leitura) {}
+    };
+
+    // Soma ao contador, criando-o no primeiro uso
+    void somar(String nome, long valor);
+
+    default void incrementar(String nome) {
+        somar(nome, 1);
+    }
+
+    // Acrescenta uma duração ao temporizador: conta, soma e guarda a maior
+    void registrarTempo(String nome, long nanos);
+
+    // Registra um valor lido na hora da exportação, como o tamanho de uma fila
+    void registrarMedidor(String nome, LongSupplier leitura);
+
+    // Deixa de exportar um medidor, como o da caixa de saída de um peer removido
+    default void removerMedidor(String nome) {}
+}
@@ -0,0 +1,53 @@
+package br.com.servico_mensagens;
+
+
+// Métricas comuns aos transportes: bytes por peer, bytes e tempo de resposta por tipo de requisição e falhas
+class MetricasTransporte {
+    private final Metricas metricas;
+
+    MetricasTransporte(Metricas metricas) {
+        this.metricas = metricas;
+    }
+
+    void enviado(String peer, String tipo, long bytes) {
+        metricas.somar("peer." + peer + ".bytes_enviados", bytes);
+        metricas.somar("requisicao." + tipo + ".bytes_enviados", bytes);
+        if (ehSincronizacao(tipo)) {
+            metricas.somar("sincronizacao.bytes_enviados", bytes);
+        }
+    }
+
+    // Resposta recebida; o tempo vai do envio da requisição até a resposta chegar
+    void respondido(String peer, String tipo, long bytes, long nanos) {
+        metricas.somar("peer." + peer + ".bytes_recebidos", bytes);
+        metricas.somar("requisicao." + tipo + ".bytes_recebidos", bytes);
+        metricas.registrarTempo("requisicao." + tipo, nanos);
+        if (ehSincronizacao(tipo)) {
+            metricas.somar("sincronizacao.bytes_recebidos", bytes);
+        }
+    }
+
+    void falhou(String peer, String tipo) {
+        metricas.incrementar("peer." + peer + ".falhas");
+        metricas.incrementar("requisicao." + tipo + ".falhas");
+    }
+
+    // Pedidos de sincronização, reparo e verificação, e o envio de deltas
+    private static boolean ehSincronizacao(String tipo) {
+        return tipo.startsWith("SOLICITAR_") || "ENVIO_DELTA".equals(tipo);
+    }
+
+    // Tamanho em UTF-8 sem codificar o texto de novo
+    static long bytesUtf8(String texto) {
+        long bytes = texto.length();
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            if (c >= 0x800 && !Character.isSurrogate(c)) {
+                bytes += 2;
+            } else if (c >= 0x80) {
+                bytes += 1;
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,20 @@
+package br.com.servico_mensagens;
+
+
+public enum ModoCompressao {
+    // As listas de mensagens seguem como JSON puro
+    NENHUMA,
+    // Deflate nas listas de mensagens grandes quando o peer anuncia que aceita; gzip do próprio gRPC no modo GRPC
+    DEFLATE;
+
+    // Lê o modo da propriedade de sistema "cliente.compressao", usando DEFLATE como padrão
+    public static ModoCompressao padrao() {
+        String valor = System.getProperty("cliente.compressao", DEFLATE.name());
+        try {
+            return ModoCompressao.valueOf(valor.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Modo de compressão desconhecido: " + valor + ". Usando " + DEFLATE);
+            return DEFLATE;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package br.com.servico_mensagens;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+
+public enum ModoExecucao {
+    // Threads de plataforma de um pool que cresce com a carga
+    PLATAFORMA,
+    // Uma thread virtual por tarefa (Java 21 ou mais recente)
+    VIRTUAL;
+
+    // Lê o modo da propriedade de sistema "cliente.execucao", usando PLATAFORMA como padrão
+    public static ModoExecucao padrao() {
+        String valor = System.getProperty("cliente.execucao", PLATAFORMA.name());
+        ModoExecucao modo;
+        try {
+            modo = ModoExecucao.valueOf(valor.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Modo de execução desconhecido: " + valor + ". Usando " + PLATAFORMA);
+            return PLATAFORMA;
+        }
+        if (modo == VIRTUAL && !suportaThreadsVirtuais()) {
+            System.err.println("Threads virtuais exigem Java 21 ou mais recente. Usando " + PLATAFORMA);
+            return PLATAFORMA;
+        }
+        return modo;
+    }
+
+    // O projeto compila para Java 11, então as APIs de threads virtuais são chamadas por reflexão
+    static boolean suportaThreadsVirtuais() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    // Cria o executor das tarefas bloqueantes: conexões aceitas, requisições e envios aos peers
+    public ExecutorService criarExecutor() {
+        if (this == PLATAFORMA) {
+            return Executors.newCachedThreadPool();
+        }
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Threads virtuais indisponíveis", e);
+        }
+    }
+
+    // Cria uma thread dedicada ainda não iniciada; as de plataforma são daemon, como as virtuais
+    public Thread novaThread(String nome, Runnable tarefa) {
+        if (this == PLATAFORMA) {
+            Thread thread = new Thread(tarefa, nome);
+            thread.setDaemon(true);
+            return thread;
+        }
+        try {
+            Object construtor = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> tipoConstrutor = Class.forName("java.lang.Thread$Builder");
+            Method nomear = tipoConstrutor.getMethod("name", String.class);
+            Method criar = tipoConstrutor.getMethod("unstarted", Runnable.class);
+            return (Thread) criar.invoke(nomear.invoke(construtor, nome), tarefa);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Threads virtuais indisponíveis", e);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package br.com.servico_mensagens;
+
+
+public enum ModoPersistencia {
+    // Reescreve o arquivo JSON inteiro a cada alteração
+    JSON,
+    // Acrescenta cada alteração em um log e compacta periodicamente no arquivo JSON
+    LOG,
+    // Acrescenta cada mensagem em segmentos de tamanho fixo mapeados em memória, com um índice da posição de cada uma
+    SEGMENTOS;
+
+    // Lê o modo da propriedade de sistema "mural.persistencia", usando LOG como padrão
+    public static ModoPersistencia padrao() {
+        String valor = System.getProperty("mural.persistencia", LOG.name());
+        try {
+            return ModoPersistencia.valueOf(valor.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Modo de persistência desconhecido: " + valor + ". Usando " + LOG);
+            return LOG;
+        }
+    }
+}
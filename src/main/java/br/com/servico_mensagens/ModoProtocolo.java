@@ -0,0 +1,20 @@
+package br.com.servico_mensagens;
+
+
+public enum ModoProtocolo {
+    // Linhas JSON sobre sockets TCP
+    JSON,
+    // Protocol Buffers sobre gRPC, com os esquemas de src/main/proto/mural.proto
+    GRPC;
+
+    // Lê o protocolo da propriedade de sistema "cliente.protocolo", usando JSON como padrão
+    public static ModoProtocolo padrao() {
+        String valor = System.getProperty("cliente.protocolo", JSON.name());
+        try {
+            return ModoProtocolo.valueOf(valor.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Protocolo desconhecido: " + valor + ". Usando " + JSON);
+            return JSON;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package br.com.servico_mensagens;
+
+
+public enum ModoServidor {
+    // Uma thread bloqueante por conexão aceita
+    BLOQUEANTE,
+    // Poucas threads de eventos com java.nio.channels.Selector
+    NIO;
+
+    // Lê o modo da propriedade de sistema "cliente.servidor", usando NIO como padrão
+    public static ModoServidor padrao() {
+        String valor = System.getProperty("cliente.servidor", NIO.name());
+        try {
+            return ModoServidor.valueOf(valor.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Modo de servidor desconhecido: " + valor + ". Usando " + NIO);
+            return NIO;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package br.com.servico_mensagens;
+
+
+public enum ModoSincronizacao {
+    // Pede o mural completo a todos os peers e fica com o maior
+    COMPLETA,
+    // Compara resumos e faz anti-entropia, em blocos, com cada peer de resumo diferente: cada lado envia só o que falta ao outro
+    INCREMENTAL;
+
+    // Lê o modo da propriedade de sistema "cliente.sincronizacao", usando INCREMENTAL como padrão
+    public static ModoSincronizacao padrao() {
+        String valor = System.getProperty("cliente.sincronizacao", INCREMENTAL.name());
+        try {
+            return ModoSincronizacao.valueOf(valor.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Modo de sincronização desconhecido: " + valor + ". Usando " + INCREMENTAL);
+            return INCREMENTAL;
+        }
+    }
+}
@@ -1,158 +1,253 @@
 package br.com.servico_mensagens;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
-
-import java.io.File;
-import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 
 public class MuralMensagens {
-    private final String arquivoJson;
-    private final ObjectMapper objectMapper;
+    private final PersistenciaMural persistencia;
+    private final Metricas metricas;
     private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Avisados de cada mensagem que entra no mural, depois de ela estar visível para leitura
+    private final List<Consumer<Mensagem>> ouvintes = new CopyOnWriteArrayList<>();
     
-    // Cria um mural para um cliente específico e prepara o arquivo JSON
+    // Estado do mural mantido em memória, carregado do disco uma única vez. As mensagens ficam em colunas no
+    // armazém e os índices guardam só posições nele
+    private final ArmazemMensagens armazem = new ArmazemMensagens();
+    private final Map<String, ListaPosicoes> posicoesPorTipo = new HashMap<>();
+    private final Map<String, ListaPosicoes> posicoesPorAutor = new HashMap<>();
+    // Mensagens na ordem total de Lamport, mantida a cada inserção. É concorrente para as leituras em ordem
+    // não disputarem a trava com quem grava no disco
+    private final ConcurrentSkipListSet<ChaveLamport> ordemLamport = new ConcurrentSkipListSet<>();
+    // Posições ordenadas pelo horário de criação em milissegundos e, no mesmo horário, pela ordem de chegada
+    private final ListaPosicoes posicoesPorHorario = new ListaPosicoes();
+    // Posições por origem, ordenadas pela sequência da mensagem naquela origem
+    private final Map<String, ListaPosicoes> posicoesPorOrigem = new TreeMap<>();
+    private final VetorVersao vetorVersao = new VetorVersao();
+    // Árvore de hashes dos IDs e as posições de cada balde, para achar divergências sem transferir o mural
+    private final ArvoreHashes arvoreIds = new ArvoreHashes();
+    private final Map<Integer, ListaPosicoes> posicoesPorBalde = new HashMap<>();
+    private FiltroBloom filtroIds = new FiltroBloom(1024);
+    // XOR dos hashes dos IDs: resume o conjunto de mensagens independente da ordem de chegada
+    private long resumoIds;
+    private int contador;
+
+    // Cria um mural para um cliente específico usando o modo de persistência padrão
     public MuralMensagens(String nomeCliente) {
-        this.arquivoJson = nomeCliente + "_mural.json";
-        this.objectMapper = new ObjectMapper();
-        this.objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
-        inicializarArquivoJson();
+        this(nomeCliente, ModoPersistencia.padrao());
     }
     
-    // Cria o arquivo JSON do mural se ele não existir ainda
-    private void inicializarArquivoJson() {
-        File arquivo = new File(arquivoJson);
-        if (!arquivo.exists()) {
-            try {
-                ObjectNode muralNode = objectMapper.createObjectNode();
-                muralNode.put("contador", 0);
-                muralNode.set("mensagens", objectMapper.createArrayNode());
-                objectMapper.writeValue(arquivo, muralNode);
-            } catch (IOException e) {
-                System.err.println("Erro ao criar arquivo JSON: " + e.getMessage());
-            }
+    // Cria um mural para um cliente específico e carrega o que estiver salvo para a memória
+    public MuralMensagens(String nomeCliente, ModoPersistencia modo) {
+        this(nomeCliente, modo, Metricas.NENHUMA);
+    }
+
+    // Como o anterior, registrando tamanho, tempo de escrita em disco e espera pelas travas nas métricas
+    public MuralMensagens(String nomeCliente, ModoPersistencia modo, Metricas metricas) {
+        this.persistencia = criarPersistencia(nomeCliente, modo);
+        this.metricas = metricas;
+        carregarMural();
+        metricas.registrarMedidor("mural.tamanho", this::getTamanho);
+    }
+
+    static PersistenciaMural criarPersistencia(String nomeCliente, ModoPersistencia modo) {
+        return criarPersistencia(nomeCliente, modo, false);
+    }
+
+    // somenteLeitura lê os arquivos sem criar, truncar nem converter nada, como para ferramentas rodando ao lado do cliente
+    static PersistenciaMural criarPersistencia(String nomeCliente, ModoPersistencia modo, boolean somenteLeitura) {
+        switch (modo) {
+            case LOG:
+                return new PersistenciaLog(nomeCliente, somenteLeitura);
+            case SEGMENTOS:
+                return new PersistenciaSegmentos(nomeCliente, somenteLeitura);
+            default:
+                return new PersistenciaJson(nomeCliente, somenteLeitura);
         }
-     }
-     
-    // Lê o conteúdo do arquivo JSON do mural
-    private JsonNode lerArquivoJson() {
-        try {
-            File arquivo = new File(arquivoJson);
-            if (arquivo.exists()) {
-                return objectMapper.readTree(arquivo);
+    }
+
+    // Lê o mural salvo uma vez e monta o estado e os índices em memória
+    private void carregarMural() {
+        contador = persistencia.carregar(mensagem -> {
+            if (!contemMensagem(mensagem.getId())) {
+                indexarMensagem(mensagem);
             }
-        } catch (IOException e) {
-            System.err.println("Erro ao ler arquivo JSON: " + e.getMessage());
+        });
+    }
+
+    // Persiste mensagens recém-adicionadas, compactando o mural quando necessário
+    private void persistirMensagens(List<Mensagem> novasMensagens) {
+        long inicio = System.nanoTime();
+        persistencia.registrarMensagens(novasMensagens, contador);
+        if (persistencia.precisaCompactar()) {
+            persistencia.salvarSnapshot(armazem.comoLista(), contador);
         }
-        return null;
+        metricas.registrarTempo("mural.escrita", System.nanoTime() - inicio);
     }
-    
-    // Salva o conteúdo no arquivo JSON do mural
-    private void escreverArquivoJson(JsonNode conteudo) {
-        try {
-            objectMapper.writeValue(new File(arquivoJson), conteudo);
-        } catch (IOException e) {
-            System.err.println("Erro ao escrever arquivo JSON: " + e.getMessage());
+
+    // Só mede a espera quando a trava parece ocupada; tryLock furaria a fila dos escritores que já aguardam
+    private void travarLeitura() {
+        if (!lock.isWriteLocked() && !lock.hasQueuedThreads()) {
+            lock.readLock().lock();
+            return;
         }
+        long inicio = System.nanoTime();
+        lock.readLock().lock();
+        metricas.registrarTempo("mural.espera_leitura", System.nanoTime() - inicio);
     }
-     
-    // Adiciona uma nova mensagem no mural e salva no arquivo
-    public void adicionarMensagem(Mensagem mensagem) {
+
+    private void travarEscrita() {
+        if (!lock.isWriteLocked() && lock.getReadLockCount() == 0 && !lock.hasQueuedThreads()) {
+            lock.writeLock().lock();
+            return;
+        }
+        long inicio = System.nanoTime();
         lock.writeLock().lock();
+        metricas.registrarTempo("mural.espera_escrita", System.nanoTime() - inicio);
+    }
+
+    // Coloca a mensagem no fim do mural e atualiza os índices por id e por tipo
+    private void indexarMensagem(Mensagem mensagem) {
+        long hashId = FiltroBloom.hash64(mensagem.getId());
+        int posicao = armazem.adicionar(mensagem, hashId);
+        posicoesPorTipo.computeIfAbsent(mensagem.getTipo(), t -> new ListaPosicoes()).adicionar(posicao);
+        posicoesPorAutor.computeIfAbsent(mensagem.getAutor(), a -> new ListaPosicoes()).adicionar(posicao);
+        ordemLamport.add(armazem.chaveLamport(posicao));
+        if (armazem.temHorario(posicao)) {
+            posicoesPorHorario.inserir(primeiraDepoisDoHorario(armazem.getHorarioMillis(posicao), posicao), posicao);
+        }
+        if (mensagem.getOrigem() != null) {
+            ListaPosicoes daOrigem = posicoesPorOrigem.computeIfAbsent(mensagem.getOrigem(), o -> new ListaPosicoes());
+            // Mensagens de IDs diferentes com a mesma origem e sequência ficam todas, em ordem de chegada: guardar só uma
+            // deixaria as outras de fora do que getMensagensAlemDe envia aos peers
+            daOrigem.inserir(primeiraDepoisDaSequencia(daOrigem, mensagem.getSequencia()), posicao);
+            vetorVersao.registrar(mensagem.getOrigem(), mensagem.getSequencia());
+        }
+        if (filtroIds.cheio()) {
+            reconstruirFiltroIds(filtroIds.getCapacidade() * 2);
+        }
+        filtroIds.adicionar(mensagem.getId());
+        resumoIds ^= hashId;
+        arvoreIds.adicionar(hashId);
+        posicoesPorBalde.computeIfAbsent(ArvoreHashes.balde(hashId), b -> new ListaPosicoes()).adicionar(posicao);
+    }
+
+    // Verifica se uma mensagem já existe no mural pelo ID; o filtro descarta IDs nunca vistos sem consultar a tabela
+    private boolean contemMensagem(String id) {
+        return posicaoDe(id) >= 0;
+    }
+
+    private int posicaoDe(String id) {
+        return filtroIds.talvezContenha(id) ? armazem.posicaoDe(id) : -1;
+    }
+
+    // Recria o filtro de IDs com mais capacidade a partir dos IDs guardados
+    private void reconstruirFiltroIds(int capacidade) {
+        filtroIds = new FiltroBloom(capacidade);
+        for (int posicao = 0; posicao < armazem.getTamanho(); posicao++) {
+            filtroIds.adicionar(armazem.getId(posicao));
+        }
+    }
+
+    // Limpa o estado em memória e os índices
+    private void limparMural() {
+        armazem.limpar();
+        posicoesPorTipo.clear();
+        posicoesPorAutor.clear();
+        ordemLamport.clear();
+        posicoesPorHorario.limpar();
+        posicoesPorOrigem.clear();
+        vetorVersao.limpar();
+        arvoreIds.limpar();
+        posicoesPorBalde.clear();
+        filtroIds = new FiltroBloom(1024);
+        resumoIds = 0;
+        contador = 0;
+    }
+
+    // Adiciona uma nova mensagem no mural e salva no arquivo; retorna false se ela já existia
+    public boolean adicionarMensagem(Mensagem mensagem) {
+        travarEscrita();
         try {
-            JsonNode muralNode = lerArquivoJson();
-            if (muralNode != null) {
-                ObjectNode mural = (ObjectNode) muralNode;
-                ArrayNode mensagens = (ArrayNode) mural.get("mensagens");
-                
-                ObjectNode novaMensagem = objectMapper.createObjectNode();
-                novaMensagem.put("id", mensagem.getId());
-                novaMensagem.put("conteudo", mensagem.getConteudo());
-                novaMensagem.put("autor", mensagem.getAutor());
-                novaMensagem.put("timestamp", mensagem.getTimestamp());
-                novaMensagem.put("lamportClock", mensagem.getLamportClock());
-                novaMensagem.put("tipo", mensagem.getTipo());
-                mensagens.add(novaMensagem);
-                int novoContador = mural.get("contador").asInt() + 1;
-                mural.put("contador", novoContador);
-            
-                escreverArquivoJson(mural);
+            if (contemMensagem(mensagem.getId())) {
+                return false;
             }
+            indexarMensagem(mensagem);
+            contador++;
+            persistirMensagens(Collections.singletonList(mensagem));
         } finally {
             lock.writeLock().unlock();
         }
+        avisarOuvintes(Collections.singletonList(mensagem));
+        return true;
     }
-    
-    // Adiciona várias mensagens de uma vez, evitando duplicatas
-    public void adicionarMensagens(List<Mensagem> novasMensagens) {
-        lock.writeLock().lock();
+
+    // Adiciona várias mensagens de uma vez, evitando duplicatas; retorna quantas foram adicionadas
+    public int adicionarMensagens(List<Mensagem> novasMensagens) {
+        List<Mensagem> adicionadas = new ArrayList<>();
+        travarEscrita();
         try {
-            JsonNode muralNode = lerArquivoJson();
-            if (muralNode != null) {
-                ObjectNode mural = (ObjectNode) muralNode;
-                ArrayNode mensagens = (ArrayNode) mural.get("mensagens");
-                int contador = mural.get("contador").asInt();
-                
-                for (Mensagem mensagem : novasMensagens) {
-                    if (!mensagemExisteNoJson(mensagens, mensagem.getId())) {
-                        ObjectNode novaMensagem = objectMapper.createObjectNode();
-                        novaMensagem.put("id", mensagem.getId());
-                        novaMensagem.put("conteudo", mensagem.getConteudo());
-                        novaMensagem.put("autor", mensagem.getAutor());
-                        novaMensagem.put("timestamp", mensagem.getTimestamp());
-                        novaMensagem.put("lamportClock", mensagem.getLamportClock());
-                        novaMensagem.put("tipo", mensagem.getTipo());
-                        mensagens.add(novaMensagem);
-                        contador++;
-                    }
+            for (Mensagem mensagem : novasMensagens) {
+                if (!contemMensagem(mensagem.getId())) {
+                    indexarMensagem(mensagem);
+                    adicionadas.add(mensagem);
+                    contador++;
                 }
-                mural.put("contador", contador);
-                escreverArquivoJson(mural);
+            }
+            if (!adicionadas.isEmpty()) {
+                persistirMensagens(adicionadas);
             }
         } finally {
             lock.writeLock().unlock();
         }
+        avisarOuvintes(adicionadas);
+        return adicionadas.size();
      }
      
 
-    // Verifica se uma mensagem já existe no mural pelo ID
-    private boolean mensagemExisteNoJson(ArrayNode mensagens, String id) {
-        for (JsonNode mensagem : mensagens) {
-            if (mensagem.get("id").asText().equals(id)) {
-                return true;
+    // Registra quem deve ser avisado das mensagens novas; o aviso roda na thread que adicionou, fora da trava
+    public void adicionarOuvinte(Consumer<Mensagem> ouvinte) {
+        ouvintes.add(ouvinte);
+    }
+
+    public void removerOuvinte(Consumer<Mensagem> ouvinte) {
+        ouvintes.remove(ouvinte);
+    }
+
+    private void avisarOuvintes(List<Mensagem> adicionadas) {
+        for (Consumer<Mensagem> ouvinte : ouvintes) {
+            for (Mensagem mensagem : adicionadas) {
+                ouvinte.accept(mensagem);
             }
         }
-        return false;
     }
-     
 
     // Substitui todo o mural com mensagens de outro cliente 
-    public void substituirMural(List<Map<String, Object>> mensagensData, int novoContador) {
-        lock.writeLock().lock();
+    public void substituirMural(List<Mensagem> novasMensagens, int novoContador) {
+        travarEscrita();
         try {
-            ObjectNode novoMural = objectMapper.createObjectNode();
-            ArrayNode novasMensagens = objectMapper.createArrayNode();
-            
-            for (Map<String, Object> msgData : mensagensData) {
-                ObjectNode mensagem = objectMapper.createObjectNode();
-                mensagem.put("id", (String) msgData.get("id"));
-                mensagem.put("conteudo", (String) msgData.get("conteudo"));
-                mensagem.put("autor", (String) msgData.get("autor"));
-                mensagem.put("timestamp", (String) msgData.get("timestamp"));
-                mensagem.put("lamportClock", (Integer) msgData.get("lamportClock"));
-                novasMensagens.add(mensagem);
+            limparMural();
+            reconstruirFiltroIds(novasMensagens.size());
+            for (Mensagem mensagem : novasMensagens) {
+                if (!contemMensagem(mensagem.getId())) {
+                    indexarMensagem(mensagem);
+                }
             }
-            novoMural.put("contador", novoContador);
-            novoMural.set("mensagens", novasMensagens);
-            escreverArquivoJson(novoMural);
+            contador = novoContador;
+            persistencia.substituir(armazem.comoLista(), contador);
         } finally {
             lock.writeLock().unlock();
         }
@@ -161,22 +256,92 @@ public class MuralMensagens {
 
     // Pega mensagens a partir de uma posição específica 
     public List<Mensagem> getMensagensAPartirDe(int contadorInicial) {
-        lock.readLock().lock();
+        travarLeitura();
+        try {
+            return faixa(Math.max(contadorInicial, 0), armazem.getTamanho());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Pega até limite mensagens a partir de uma posição, para transferir o mural em blocos
+    public List<Mensagem> getBloco(int posicao, int limite) {
+        travarLeitura();
+        try {
+            int inicio = Math.max(posicao, 0);
+            return faixa(inicio, Math.min(inicio + limite, armazem.getTamanho()));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Pega só os IDs de até limite mensagens a partir de uma posição
+    public List<String> getIds(int posicao, int limite) {
+        travarLeitura();
+        try {
+            int inicio = Math.max(posicao, 0);
+            int fim = Math.min(inicio + limite, armazem.getTamanho());
+            List<String> ids = new ArrayList<>(Math.max(fim - inicio, 0));
+            for (int i = inicio; i < fim; i++) {
+                ids.add(armazem.getId(i));
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Pega as mensagens com os IDs informados, ignorando os que não estão no mural
+    public List<Mensagem> getMensagens(Collection<String> ids) {
+        travarLeitura();
+        try {
+            List<Mensagem> resultado = new ArrayList<>(ids.size());
+            for (String id : ids) {
+                int posicao = posicaoDe(id);
+                if (posicao >= 0) {
+                    resultado.add(armazem.get(posicao));
+                }
+            }
+            return resultado;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    // Pega o vetor de versões: para cada origem, até qual sequência o mural tem tudo
+    public Map<String, Long> getVetorVersao() {
+        travarLeitura();
+        try {
+            return vetorVersao.paraMapa();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Pega a maior sequência guardada de uma origem, ou 0 se não houver mensagens dela
+    public long getUltimaSequencia(String origem) {
+        travarLeitura();
+        try {
+            ListaPosicoes posicoes = posicoesPorOrigem.get(origem);
+            return posicoes == null || posicoes.tamanho() == 0 ? 0 : armazem.getSequencia(posicoes.get(posicoes.tamanho() - 1));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Pega até limite mensagens que o vetor informado ainda não cobre, origem por origem em ordem de sequência
+    public List<Mensagem> getMensagensAlemDe(Map<String, Long> vetor, int limite) {
+        travarLeitura();
         try {
             List<Mensagem> resultado = new ArrayList<>();
-            JsonNode muralNode = lerArquivoJson();
-            if (muralNode != null) {
-                ArrayNode mensagens = (ArrayNode) muralNode.get("mensagens");
-                for (int i = contadorInicial; i < mensagens.size(); i++) {
-                    JsonNode msgNode = mensagens.get(i);
-                    Mensagem mensagem = new Mensagem(
-                        msgNode.get("id").asText(),
-                        msgNode.get("conteudo").asText(),
-                        msgNode.get("autor").asText(),
-                        msgNode.get("lamportClock").asInt()
-                    );
-                    mensagem.setTimestamp(msgNode.get("timestamp").asText());
-                    resultado.add(mensagem);
+            for (Map.Entry<String, ListaPosicoes> entry : posicoesPorOrigem.entrySet()) {
+                ListaPosicoes posicoes = entry.getValue();
+                long conhecida = vetor.getOrDefault(entry.getKey(), 0L);
+                for (int i = primeiraDepoisDaSequencia(posicoes, conhecida); i < posicoes.tamanho(); i++) {
+                    if (resultado.size() >= limite) {
+                        return resultado;
+                    }
+                    resultado.add(armazem.get(posicoes.get(i)));
                 }
             }
             return resultado;
@@ -184,74 +349,327 @@ public class MuralMensagens {
             lock.readLock().unlock();
         }
     }
+
+    // Pega os hashes dos nós pedidos da árvore de IDs, na mesma ordem
+    public List<Long> getHashesArvore(List<Integer> nos) {
+        travarLeitura();
+        try {
+            List<Long> hashes = new ArrayList<>(nos.size());
+            for (int no : nos) {
+                hashes.add(arvoreIds.get(no));
+            }
+            return hashes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
     
+    // Pega os IDs das mensagens que caem nos baldes informados
+    public List<String> getIdsBaldes(Collection<Integer> baldes) {
+        travarLeitura();
+        try {
+            List<String> ids = new ArrayList<>();
+            for (int balde : baldes) {
+                ListaPosicoes posicoes = posicoesPorBalde.get(balde);
+                for (int i = 0; posicoes != null && i < posicoes.tamanho(); i++) {
+                    ids.add(armazem.getId(posicoes.get(i)));
+                }
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Pega o resumo do conjunto de mensagens; murais com as mesmas mensagens têm o mesmo resumo
+    public long getResumo() {
+        travarLeitura();
+        try {
+            return resumoIds;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Pega quantas mensagens estão guardadas, que é o limite das posições
+    public int getTamanho() {
+        travarLeitura();
+        try {
+            return armazem.getTamanho();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
     // Pega mensagens filtradas por tipo (publica ou privada)
     public List<Mensagem> getMensagensPorTipo(String tipo) {
-        lock.readLock().lock();
+        travarLeitura();
         try {
-            List<Mensagem> resultado = new ArrayList<>();
-            JsonNode muralNode = lerArquivoJson();
-            if (muralNode != null) {
-                ArrayNode mensagens = (ArrayNode) muralNode.get("mensagens");
-                for (JsonNode msgNode : mensagens) {
-                    String tipoMensagem = msgNode.has("tipo") ? msgNode.get("tipo").asText() : "publica";
-                    if (tipo.equals(tipoMensagem)) {
-                        Mensagem mensagem = new Mensagem(
-                            msgNode.get("id").asText(),
-                            msgNode.get("conteudo").asText(),
-                            msgNode.get("autor").asText(),
-                            msgNode.get("lamportClock").asInt(),
-                            tipoMensagem
-                        );
-                        mensagem.setTimestamp(msgNode.get("timestamp").asText());
-                        resultado.add(mensagem);
+            ListaPosicoes posicoes = posicoesPorTipo.get(tipo);
+            List<Mensagem> resultado = new ArrayList<>(posicoes != null ? posicoes.tamanho() : 0);
+            for (int i = 0; posicoes != null && i < posicoes.tamanho(); i++) {
+                resultado.add(armazem.get(posicoes.get(i)));
+            }
+            return resultado;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Pega quantas mensagens do tipo informado estão no mural
+    public int contarPorTipo(String tipo) {
+        travarLeitura();
+        try {
+            ListaPosicoes posicoes = posicoesPorTipo.get(tipo);
+            return posicoes != null ? posicoes.tamanho() : 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Pega as últimas quantidade mensagens, em ordem de chegada, depois de pular as pular mais recentes
+    public List<Mensagem> getUltimas(int quantidade, int pular) {
+        travarLeitura();
+        try {
+            int fim = Math.max(armazem.getTamanho() - Math.max(pular, 0), 0);
+            return faixa(Math.max(fim - quantidade, 0), fim);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Como getUltimas, mas só entre as mensagens do tipo informado
+    public List<Mensagem> getUltimasPorTipo(String tipo, int quantidade, int pular) {
+        travarLeitura();
+        try {
+            ListaPosicoes posicoes = posicoesPorTipo.get(tipo);
+            int fim = Math.max((posicoes != null ? posicoes.tamanho() : 0) - Math.max(pular, 0), 0);
+            int inicio = Math.max(fim - quantidade, 0);
+            List<Mensagem> resultado = new ArrayList<>(fim - inicio);
+            for (int i = inicio; i < fim; i++) {
+                resultado.add(armazem.get(posicoes.get(i)));
+            }
+            return resultado;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Consulta as mensagens em ordem de chegada a partir de uma posição
+    public ConsultaMural consultarAPartirDe(int posicao) {
+        return new ConsultaMural(0, Math.max(posicao, 0) - 1, (consulta, limite) -> {
+            travarLeitura();
+            try {
+                int inicio = consulta.posicao + 1;
+                int fim = Math.min(inicio + limite, armazem.getTamanho());
+                if (inicio >= fim) {
+                    return new ArrayList<>();
+                }
+                consulta.posicao = fim - 1;
+                return faixa(inicio, fim);
+            } finally {
+                lock.readLock().unlock();
+            }
+        });
+    }
+
+    // Consulta as mensagens de um tipo em ordem de chegada
+    public ConsultaMural consultarPorTipo(String tipo) {
+        return consultarPosicoes(() -> posicoesPorTipo.get(tipo));
+    }
+
+    // Consulta as mensagens de um autor em ordem de chegada
+    public ConsultaMural consultarPorAutor(String autor) {
+        return consultarPosicoes(() -> posicoesPorAutor.get(autor));
+    }
+
+    // Consulta as mensagens com relógio de Lamport entre de e ate, inclusive, na ordem total de Lamport
+    public ConsultaMural consultarPorClock(int de, int ate) {
+        return consultarOrdemLamport(de, (long) ate + 1);
+    }
+
+    // Consulta as mensagens com relógio de Lamport maior que clock, na ordem total de Lamport
+    public ConsultaMural consultarDepoisDoClock(int clock) {
+        return clock == Integer.MAX_VALUE ? consultarOrdemLamport(clock, clock) : consultarOrdemLamport(clock + 1, Long.MAX_VALUE);
+    }
+
+    // Consulta o mural inteiro na ordem total de Lamport
+    public ConsultaMural consultarEmOrdemLamport() {
+        return consultarOrdemLamport(Integer.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    // Consulta as mensagens criadas a partir de de e antes de ate, em ordem de horário
+    // Percorre o índice por horário de de até antes de ate; no mesmo horário, as posições seguem a ordem de chegada
+    public ConsultaMural consultarPorHorario(LocalDateTime de, LocalDateTime ate) {
+        long fim = emMillis(ate);
+        return new ConsultaMural(emMillis(de), -1, (consulta, limite) -> {
+            travarLeitura();
+            try {
+                List<Mensagem> pagina = new ArrayList<>();
+                for (int i = primeiraDepoisDoHorario(consulta.chave, consulta.posicao);
+                     i < posicoesPorHorario.tamanho() && pagina.size() < limite; i++) {
+                    int posicao = posicoesPorHorario.get(i);
+                    long horario = armazem.getHorarioMillis(posicao);
+                    if (horario >= fim) {
+                        break;
                     }
+                    consulta.chave = horario;
+                    consulta.posicao = posicao;
+                    pagina.add(armazem.get(posicao));
                 }
+                return pagina;
+            } finally {
+                lock.readLock().unlock();
             }
-            return resultado;
+        });
+    }
+
+    // A lista do índice é buscada a cada página, então mensagens que chegam depois da consulta criada também aparecem
+    private ConsultaMural consultarPosicoes(Supplier<ListaPosicoes> indice) {
+        return new ConsultaMural(0, -1, (consulta, limite) -> {
+            travarLeitura();
+            try {
+                ListaPosicoes posicoes = indice.get();
+                List<Mensagem> pagina = new ArrayList<>();
+                if (posicoes == null) {
+                    return pagina;
+                }
+                for (int i = posicoes.proximoIndice(consulta.posicao); i < posicoes.tamanho() && pagina.size() < limite; i++) {
+                    consulta.posicao = posicoes.get(i);
+                    pagina.add(armazem.get(consulta.posicao));
+                }
+                return pagina;
+            } finally {
+                lock.readLock().unlock();
+            }
+        });
+    }
+
+    // Cada página continua depois da última chave entregue. Mensagens que chegarem com chave anterior a essa
+    // ficam de fora da consulta, mesmo que cheguem depois de criada
+    private ConsultaMural consultarOrdemLamport(int de, long ate) {
+        ChaveLamport inicio = ChaveLamport.inicio(de);
+        return new ConsultaMural(0, -1, (consulta, limite) -> {
+            travarLeitura();
+            try {
+                List<Mensagem> pagina = new ArrayList<>();
+                NavigableSet<ChaveLamport> restantes = consulta.ultimaChave == null
+                    ? ordemLamport.tailSet(inicio, true)
+                    : ordemLamport.tailSet(consulta.ultimaChave, false);
+                for (ChaveLamport chave : restantes) {
+                    if (pagina.size() == limite || chave.clock >= ate) {
+                        break;
+                    }
+                    consulta.ultimaChave = chave;
+                    pagina.add(armazem.get(chave.posicao));
+                }
+                return pagina;
+            } finally {
+                lock.readLock().unlock();
+            }
+        });
+    }
+
+    // Índice, no índice por horário, da primeira mensagem depois de (horario, posicao) nessa ordem
+    private int primeiraDepoisDoHorario(long horario, int posicao) {
+        int inicio = 0;
+        int fim = posicoesPorHorario.tamanho();
+        while (inicio < fim) {
+            int meio = (inicio + fim) >>> 1;
+            int atual = posicoesPorHorario.get(meio);
+            long horarioAtual = armazem.getHorarioMillis(atual);
+            if (horarioAtual < horario || (horarioAtual == horario && atual <= posicao)) {
+                inicio = meio + 1;
+            } else {
+                fim = meio;
+            }
+        }
+        return inicio;
+    }
+
+    // Índice da primeira mensagem com sequência maior que a informada nas posições de uma origem
+    private int primeiraDepoisDaSequencia(ListaPosicoes posicoes, long sequencia) {
+        int inicio = 0;
+        int fim = posicoes.tamanho();
+        while (inicio < fim) {
+            int meio = (inicio + fim) >>> 1;
+            if (armazem.getSequencia(posicoes.get(meio)) <= sequencia) {
+                inicio = meio + 1;
+            } else {
+                fim = meio;
+            }
+        }
+        return inicio;
+    }
+
+    // Monta as mensagens das posições de inicio até antes de fim
+    private List<Mensagem> faixa(int inicio, int fim) {
+        List<Mensagem> resultado = new ArrayList<>(Math.max(fim - inicio, 0));
+        for (int posicao = inicio; posicao < fim; posicao++) {
+            resultado.add(armazem.get(posicao));
+        }
+        return resultado;
+    }
+
+    private static long emMillis(LocalDateTime horario) {
+        return horario.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    // Verifica se o mural já tem a mensagem com o ID informado
+    public boolean possuiMensagem(String id) {
+        travarLeitura();
+        try {
+            return contemMensagem(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Pega uma mensagem pelo ID, ou null se ela não estiver no mural
+    public Mensagem getMensagem(String id) {
+        travarLeitura();
+        try {
+            int posicao = posicaoDe(id);
+            return posicao >= 0 ? armazem.get(posicao) : null;
         } finally {
             lock.readLock().unlock();
         }
     }
 
+    // Compacta o mural no snapshot e garante que tudo está no disco
     public void salvar() {
+        travarEscrita();
+        try {
+            persistencia.salvarSnapshot(armazem.comoLista(), contador);
+            persistencia.sincronizar();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
 
+    // Salva o mural e libera os recursos da persistência
+    public void fechar() {
+        salvar();
+        persistencia.fechar();
     }
-    
+
     // Pega quantas mensagens tem no mural
     public int getContador() {
-        lock.readLock().lock();
+        travarLeitura();
         try {
-            JsonNode muralNode = lerArquivoJson();
-            if (muralNode != null) {
-                return muralNode.get("contador").asInt();
-            }
-            return 0;
+            return contador;
         } finally {
             lock.readLock().unlock();
         }
     }
-    
-    // Pega todas as mensagens do mural
+
+    // Pega todas as mensagens do mural na ordem total de Lamport
     public List<Mensagem> getMensagens() {
-        lock.readLock().lock();
+        travarLeitura();
         try {
-            List<Mensagem> resultado = new ArrayList<>();
-            JsonNode muralNode = lerArquivoJson();
-            if (muralNode != null) {
-                ArrayNode mensagens = (ArrayNode) muralNode.get("mensagens");
-                for (JsonNode msgNode : mensagens) {
-                    String tipoMensagem = msgNode.has("tipo") ? msgNode.get("tipo").asText() : "publica";
-                    Mensagem mensagem = new Mensagem(
-                        msgNode.get("id").asText(),
-                        msgNode.get("conteudo").asText(),
-                        msgNode.get("autor").asText(),
-                        msgNode.get("lamportClock").asInt(),
-                        tipoMensagem
-                    );
-                    mensagem.setTimestamp(msgNode.get("timestamp").asText());
-                    resultado.add(mensagem);
-                }
+            List<Mensagem> resultado = new ArrayList<>(ordemLamport.size());
+            for (ChaveLamport chave : ordemLamport) {
+                resultado.add(armazem.get(chave.posicao));
             }
             return resultado;
         } finally {
@@ -262,30 +680,18 @@ public class MuralMensagens {
     // Transforma o mural em uma string para mostrar no console
     @Override
     public String toString() {
-        lock.readLock().lock();
+        travarLeitura();
         try {
             StringBuilder sb = new StringBuilder();
             sb.append("=== MURAL DE MENSAGENS ===").append("\n");
-            
-            JsonNode muralNode = lerArquivoJson();
-            if (muralNode != null) {
-                sb.append("Contador: ").append(muralNode.get("contador").asInt()).append("\n");
+            sb.append("Contador: ").append(contador).append("\n");
+            if (armazem.getTamanho() == 0) {
+                sb.append("Mensagens: Nenhuma\n");
+            } else {
                 sb.append("Mensagens:").append("\n");
-                
-                ArrayNode mensagens = (ArrayNode) muralNode.get("mensagens");
-                for (JsonNode msgNode : mensagens) {
-                    Mensagem mensagem = new Mensagem(
-                        msgNode.get("id").asText(),
-                        msgNode.get("conteudo").asText(),
-                        msgNode.get("autor").asText(),
-                        msgNode.get("lamportClock").asInt()
-                    );
-                    mensagem.setTimestamp(msgNode.get("timestamp").asText());
-                    sb.append("  ").append(mensagem.toString()).append("\n");
+                for (ChaveLamport chave : ordemLamport) {
+                    sb.append("  ").append(armazem.get(chave.posicao)).append("\n");
                 }
-            } else {
-                sb.append("Contador: 0\n");
-                sb.append("Mensagens: Nenhuma\n");
             }
             return sb.toString();
         } finally {
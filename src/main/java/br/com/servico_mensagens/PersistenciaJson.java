@@ -0,0 +1,183 @@
+package br.com.servico_mensagens;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Consumer;
+
+
+class PersistenciaJson implements PersistenciaMural {
+    protected final String arquivoJson;
+    protected final ObjectMapper objectMapper;
+
+    // Prepara a persistência no arquivo <nome>_mural.json
+    PersistenciaJson(String nomeCliente) {
+        this(nomeCliente, false);
+    }
+
+    // somenteLeitura serve para ler o mural de outro processo, como o de um cliente rodando: nenhum arquivo é criado
+    PersistenciaJson(String nomeCliente, boolean somenteLeitura) {
+        this.arquivoJson = nomeCliente + "_mural.json";
+        this.objectMapper = new ObjectMapper();
+        if (!somenteLeitura) {
+            inicializarArquivoJson();
+        }
+    }
+
+    // Cria o arquivo JSON do mural se ele não existir ainda
+    private void inicializarArquivoJson() {
+        File arquivo = new File(arquivoJson);
+        if (!arquivo.exists()) {
+            try {
+                ObjectNode muralNode = objectMapper.createObjectNode();
+                muralNode.put("contador", 0);
+                muralNode.set("mensagens", objectMapper.createArrayNode());
+                objectMapper.writer(SerializationFeature.INDENT_OUTPUT).writeValue(arquivo, muralNode);
+            } catch (IOException e) {
+                System.err.println("Erro ao criar arquivo JSON: " + e.getMessage());
+            }
+        }
+    }
+
+    // Lê o arquivo JSON do mural e entrega as mensagens em ordem, uma árvore pequena por mensagem em vez do arquivo inteiro
+    @Override
+    public int carregar(Consumer<Mensagem> destino) {
+        File arquivo = new File(arquivoJson);
+        if (!arquivo.exists()) {
+            return 0;
+        }
+        Integer contador = null;
+        int lidas = 0;
+        try (JsonParser parser = objectMapper.getFactory().createParser(arquivo)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("o mural não é um objeto JSON");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String campo = parser.getCurrentName();
+                JsonToken valor = parser.nextToken();
+                if ("mensagens".equals(campo) && valor == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        destino.accept(lerMensagem(parser.readValueAsTree()));
+                        lidas++;
+                    }
+                } else if ("contador".equals(campo) && valor.isNumeric()) {
+                    contador = parser.getIntValue();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Erro ao ler arquivo JSON: " + e.getMessage());
+        }
+        return contador != null ? contador : lidas;
+    }
+
+    // No modo JSON nada é acumulado: cada alteração regrava o arquivo inteiro
+    @Override
+    public void registrarMensagens(List<Mensagem> novasMensagens, int contador) {
+    }
+
+    @Override
+    public boolean precisaCompactar() {
+        return true;
+    }
+
+    @Override
+    public void salvarSnapshot(List<Mensagem> mensagens, int contador) {
+        gravarArquivoJson(mensagens, contador);
+    }
+
+    // Grava o mural em um arquivo temporário e troca pelo atual, para não corromper a cópia existente.
+    // As mensagens vão direto para o arquivo, sem montar a árvore JSON do mural inteiro na memória.
+    // Retorna true só depois que o arquivo novo e a troca de nome estão no disco
+    protected boolean gravarArquivoJson(List<Mensagem> mensagens, int contador) {
+        try {
+            Path destino = Path.of(arquivoJson).toAbsolutePath();
+            Path temporario = destino.resolveSibling(destino.getFileName() + ".tmp");
+            try (FileChannel canal = FileChannel.open(temporario,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                 JsonGenerator gerador = objectMapper.getFactory().createGenerator(Channels.newOutputStream(canal), JsonEncoding.UTF8)) {
+                gerador.useDefaultPrettyPrinter();
+                gerador.writeStartObject();
+                gerador.writeNumberField("contador", contador);
+                gerador.writeArrayFieldStart("mensagens");
+                for (Mensagem mensagem : mensagens) {
+                    objectMapper.writeTree(gerador, escreverMensagem(mensagem));
+                }
+                gerador.writeEndArray();
+                gerador.writeEndObject();
+                gerador.flush();
+                canal.force(true);
+            }
+            Files.move(temporario, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            sincronizarDiretorio(destino);
+            return true;
+        } catch (IOException e) {
+            System.err.println("Erro ao escrever arquivo JSON: " + e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public void sincronizar() {
+    }
+
+    // Garante no disco a troca de nome feita no diretório do arquivo, que o force do próprio arquivo não cobre
+    static void sincronizarDiretorio(Path arquivo) throws IOException {
+        try (FileChannel diretorio = FileChannel.open(arquivo.toAbsolutePath().getParent(), StandardOpenOption.READ)) {
+            diretorio.force(true);
+        }
+    }
+
+    @Override
+    public void fechar() {
+    }
+
+    // Converte uma mensagem para o nó JSON gravado em disco
+    protected ObjectNode escreverMensagem(Mensagem mensagem) {
+        ObjectNode msgNode = objectMapper.createObjectNode();
+        msgNode.put("id", mensagem.getId());
+        msgNode.put("conteudo", mensagem.getConteudo());
+        msgNode.put("autor", mensagem.getAutor());
+        msgNode.put("timestamp", mensagem.getTimestamp());
+        msgNode.put("lamportClock", mensagem.getLamportClock());
+        msgNode.put("tipo", mensagem.getTipo());
+        if (mensagem.getOrigem() != null) {
+            msgNode.put("origem", mensagem.getOrigem());
+            msgNode.put("sequencia", mensagem.getSequencia());
+        }
+        return msgNode;
+    }
+
+    // Converte um nó JSON do arquivo em mensagem
+    protected Mensagem lerMensagem(JsonNode msgNode) {
+        String tipoMensagem = msgNode.has("tipo") ? msgNode.get("tipo").asText() : "publica";
+        Mensagem mensagem = new Mensagem(
+            msgNode.get("id").asText(),
+            msgNode.get("conteudo").asText(),
+            msgNode.get("autor").asText(),
+            msgNode.get("lamportClock").asInt(),
+            tipoMensagem
+        );
+        mensagem.setTimestamp(msgNode.get("timestamp").asText());
+        if (msgNode.hasNonNull("origem")) {
+            mensagem.setOrigem(msgNode.get("origem").asText(), msgNode.get("sequencia").asLong());
+        }
+        return mensagem;
+    }
+}
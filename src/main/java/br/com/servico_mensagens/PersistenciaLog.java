@@ -0,0 +1,177 @@
+package br.com.servico_mensagens;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+
+class PersistenciaLog extends PersistenciaJson {
+    private static final int REGISTROS_POR_SINCRONIZACAO = 64;
+    private static final long INTERVALO_SINCRONIZACAO_MS = 50;
+    private static final int REGISTROS_PARA_COMPACTAR = 10_000;
+
+    private final Path arquivoLog;
+    private final ScheduledExecutorService sincronizador;
+    private FileChannel canal;
+    private int registrosNoLog;
+    private int registrosPendentes;
+
+    // Usa <nome>_mural.json como snapshot e <nome>_mural.log para as mensagens registradas depois dele
+    PersistenciaLog(String nomeCliente) {
+        this(nomeCliente, false);
+    }
+
+    // Em somenteLeitura o log não é aberto para escrita, então carregar não trunca o registro que outro processo
+    // ainda está gravando
+    PersistenciaLog(String nomeCliente, boolean somenteLeitura) {
+        super(nomeCliente, somenteLeitura);
+        this.arquivoLog = Path.of(nomeCliente + "_mural.log");
+        this.sincronizador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, nomeCliente + "-log-mural");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (somenteLeitura) {
+            return;
+        }
+        try {
+            this.canal = FileChannel.open(arquivoLog,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            System.err.println("Erro ao abrir log do mural: " + e.getMessage());
+        }
+        sincronizador.scheduleWithFixedDelay(this::sincronizar,
+            INTERVALO_SINCRONIZACAO_MS, INTERVALO_SINCRONIZACAO_MS, TimeUnit.MILLISECONDS);
+    }
+
+    // Carrega o snapshot e reaplica os registros do log; um registro incompleto no fim é descartado
+    @Override
+    public synchronized int carregar(Consumer<Mensagem> destino) {
+        int contador = super.carregar(destino);
+        if (!Files.exists(arquivoLog)) {
+            return contador;
+        }
+        long posicaoValida = 0;
+        try (InputStream entrada = new BufferedInputStream(Files.newInputStream(arquivoLog))) {
+            ByteArrayOutputStream linha = new ByteArrayOutputStream();
+            long posicao = 0;
+            int b;
+            while ((b = entrada.read()) != -1) {
+                posicao++;
+                if (b != '\n') {
+                    linha.write(b);
+                    continue;
+                }
+                JsonNode registro = objectMapper.readTree(linha.toByteArray());
+                destino.accept(lerMensagem(registro.get("mensagem")));
+                contador = registro.get("contador").asInt();
+                registrosNoLog++;
+                posicaoValida = posicao;
+                linha.reset();
+            }
+        } catch (Exception e) {
+            System.err.println("Registro inválido no log do mural, descartando o restante: " + e.getMessage());
+        }
+        try {
+            if (canal != null && canal.size() > posicaoValida) {
+                canal.truncate(posicaoValida);
+            }
+        } catch (IOException e) {
+            System.err.println("Erro ao truncar log do mural: " + e.getMessage());
+        }
+        return contador;
+    }
+
+    // Acrescenta uma linha por mensagem no fim do log; o fsync é feito em grupo
+    @Override
+    public synchronized void registrarMensagens(List<Mensagem> novasMensagens, int contador) {
+        if (canal == null || novasMensagens.isEmpty()) {
+            return;
+        }
+        try {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            int contadorRegistro = contador - novasMensagens.size();
+            for (Mensagem mensagem : novasMensagens) {
+                ObjectNode registro = objectMapper.createObjectNode();
+                registro.put("contador", ++contadorRegistro);
+                registro.set("mensagem", escreverMensagem(mensagem));
+                buffer.write(objectMapper.writeValueAsBytes(registro));
+                buffer.write('\n');
+            }
+            ByteBuffer bytes = ByteBuffer.wrap(buffer.toByteArray());
+            while (bytes.hasRemaining()) {
+                canal.write(bytes);
+            }
+            registrosNoLog += novasMensagens.size();
+            registrosPendentes += novasMensagens.size();
+            if (registrosPendentes >= REGISTROS_POR_SINCRONIZACAO) {
+                sincronizar();
+            }
+        } catch (IOException e) {
+            System.err.println("Erro ao escrever no log do mural: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized boolean precisaCompactar() {
+        return registrosNoLog >= REGISTROS_PARA_COMPACTAR;
+    }
+
+    // Grava o snapshot e só esvazia o log, que passa a estar contido nele, depois que o snapshot está no disco
+    @Override
+    public synchronized void salvarSnapshot(List<Mensagem> mensagens, int contador) {
+        if (!gravarArquivoJson(mensagens, contador) || canal == null) {
+            return;
+        }
+        try {
+            canal.truncate(0);
+            canal.force(false);
+            registrosNoLog = 0;
+            registrosPendentes = 0;
+        } catch (IOException e) {
+            System.err.println("Erro ao compactar log do mural: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void sincronizar() {
+        if (canal == null || registrosPendentes == 0) {
+            return;
+        }
+        try {
+            canal.force(false);
+            registrosPendentes = 0;
+        } catch (IOException e) {
+            System.err.println("Erro ao sincronizar log do mural: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void fechar() {
+        sincronizador.shutdown();
+        synchronized (this) {
+            sincronizar();
+            try {
+                if (canal != null) {
+                    canal.close();
+                }
+            } catch (IOException e) {
+                System.err.println("Erro ao fechar log do mural: " + e.getMessage());
+            }
+        }
+    }
+}
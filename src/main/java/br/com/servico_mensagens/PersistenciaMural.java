@@ -0,0 +1,30 @@
+package br.com.servico_mensagens;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+
+interface PersistenciaMural {
+    // Lê o mural salvo, entrega cada mensagem na ordem original e retorna o contador
+    int carregar(Consumer<Mensagem> destino);
+
+    // Registra mensagens recém-adicionadas; contador é o valor do mural depois delas
+    void registrarMensagens(List<Mensagem> novasMensagens, int contador);
+
+    // Indica se o mural completo deve ser regravado com salvarSnapshot
+    boolean precisaCompactar();
+
+    // Grava o mural completo, descartando o que foi registrado antes
+    void salvarSnapshot(List<Mensagem> mensagens, int contador);
+
+    // Troca tudo o que está salvo pelas mensagens informadas, como quando o mural inteiro vem de outro cliente
+    default void substituir(List<Mensagem> mensagens, int contador) {
+        salvarSnapshot(mensagens, contador);
+    }
+
+    // Garante que tudo que foi registrado está no disco
+    void sincronizar();
+
+    // Libera arquivos e threads usados pela persistência
+    void fechar();
+}
@@ -0,0 +1,317 @@
+package br.com.servico_mensagens;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+
+// Guarda as mensagens em arquivos de segmento de tamanho fixo mapeados em memória, só acrescentando, e em um índice
+// também mapeado onde começa cada uma, que confere a ordem dos registros ao carregar. O mural continua todo em memória:
+// os segmentos servem para gravar cada mensagem sem snapshot nem compactação e para carregar mais rápido que o JSON.
+// Os registros usam o formato binário de CodecMensagem; os gravados em JSON por versões anteriores continuam legíveis
+class PersistenciaSegmentos implements PersistenciaMural {
+    static final int TAMANHO_SEGMENTO = 32 << 20;
+    // Cada região mapeada do índice guarda as posições de 1M mensagens, 8 bytes cada
+    private static final int ENTRADAS_POR_REGIAO = 1 << 20;
+    // Cabeçalho do índice: marca do formato, contador do mural e quantidade de mensagens gravadas
+    private static final int TAMANHO_CABECALHO = 16;
+    private static final int MARCA = 0x4D524C31;
+    private static final int REGISTROS_POR_SINCRONIZACAO = 64;
+    private static final long INTERVALO_SINCRONIZACAO_MS = 50;
+
+    private final String nomeCliente;
+    private final Path arquivoIndice;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final CodecMensagem codec = new CodecMensagem();
+    private final ScheduledExecutorService sincronizador;
+    private final boolean somenteLeitura;
+    private final List<MappedByteBuffer> segmentos = new ArrayList<>();
+    private final List<MappedByteBuffer> regioesIndice = new ArrayList<>();
+    private MappedByteBuffer cabecalho;
+    private long quantidade;
+    // Contador do mural que vai para o cabeçalho na próxima sincronização, junto com a quantidade
+    private int contadorMural;
+    // Posição global, em bytes desde o início do primeiro segmento, onde entra o próximo registro
+    private long fim;
+    private int registrosPendentes;
+    // Primeiro segmento e primeira região do índice com escritas ainda sem fsync
+    private int primeiroSegmentoPendente;
+    private int primeiraRegiaoPendente;
+
+    // Usa <nome>_mural.idx como índice e <nome>_mural_00000.seg, <nome>_mural_00001.seg, ... para as mensagens
+    PersistenciaSegmentos(String nomeCliente) {
+        this(nomeCliente, false);
+    }
+
+    // Em somenteLeitura os arquivos são mapeados só para leitura e nada é criado, corrigido ou importado, para ler
+    // o mural de um cliente que pode estar rodando
+    PersistenciaSegmentos(String nomeCliente, boolean somenteLeitura) {
+        this.nomeCliente = nomeCliente;
+        this.somenteLeitura = somenteLeitura;
+        this.arquivoIndice = Path.of(nomeCliente + "_mural.idx");
+        this.sincronizador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, nomeCliente + "-segmentos-mural");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (somenteLeitura) {
+            if (Files.exists(arquivoIndice)) {
+                try (FileChannel canal = FileChannel.open(arquivoIndice, StandardOpenOption.READ)) {
+                    cabecalho = canal.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(canal.size(), TAMANHO_CABECALHO));
+                } catch (IOException e) {
+                    System.err.println("Erro ao abrir índice do mural: " + e.getMessage());
+                }
+            }
+            return;
+        }
+        try (FileChannel canal = FileChannel.open(arquivoIndice,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            cabecalho = canal.map(FileChannel.MapMode.READ_WRITE, 0, TAMANHO_CABECALHO);
+        } catch (IOException e) {
+            System.err.println("Erro ao abrir índice do mural: " + e.getMessage());
+        }
+        sincronizador.scheduleWithFixedDelay(this::sincronizar,
+            INTERVALO_SINCRONIZACAO_MS, INTERVALO_SINCRONIZACAO_MS, TimeUnit.MILLISECONDS);
+    }
+
+    // Entrega as mensagens na ordem gravada; um registro ilegível, deixado por uma queda, descarta ele e os seguintes.
+    // Na primeira vez, importa o mural salvo pelos modos JSON e LOG
+    @Override
+    public synchronized int carregar(Consumer<Mensagem> destino) {
+        if (somenteLeitura && (cabecalho == null || cabecalho.capacity() < TAMANHO_CABECALHO || cabecalho.getInt(0) != MARCA)) {
+            // Ainda não convertido: o mural está nos arquivos dos modos JSON e LOG
+            PersistenciaLog anterior = new PersistenciaLog(nomeCliente, true);
+            int contador = anterior.carregar(destino);
+            anterior.fechar();
+            return contador;
+        }
+        if (cabecalho == null) {
+            return 0;
+        }
+        if (cabecalho.getInt(0) != MARCA) {
+            return importar(destino);
+        }
+        int contador = cabecalho.getInt(4);
+        contadorMural = contador;
+        long gravadas = cabecalho.getLong(8);
+        for (quantidade = 0; quantidade < gravadas; quantidade++) {
+            try {
+                long posicao = posicaoDe(quantidade);
+                // Cada registro começa onde o anterior terminou ou no início do segmento seguinte
+                if (posicao != fim && posicao != (fim / TAMANHO_SEGMENTO + 1) * TAMANHO_SEGMENTO) {
+                    throw new IOException("posição fora de ordem no índice: " + posicao);
+                }
+                destino.accept(lerRegistro(posicao));
+                fim = posicao + 4 + segmentoDe(posicao).getInt(deslocamento(posicao));
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Registro inválido na mensagem " + quantidade + " do mural, descartando o restante: " + e.getMessage());
+                if (!somenteLeitura) {
+                    cabecalho.putLong(8, quantidade);
+                }
+                break;
+            }
+        }
+        return contador;
+    }
+
+    // Grava no novo formato o mural dos arquivos <nome>_mural.json e <nome>_mural.log, que são mantidos como estão
+    private int importar(Consumer<Mensagem> destino) {
+        cabecalho.putInt(0, MARCA);
+        if (!Files.exists(Path.of(nomeCliente + "_mural.json")) && !Files.exists(Path.of(nomeCliente + "_mural.log"))) {
+            return 0;
+        }
+        List<Mensagem> mensagens = new ArrayList<>();
+        PersistenciaLog anterior = new PersistenciaLog(nomeCliente);
+        int contador = anterior.carregar(mensagens::add);
+        anterior.fechar();
+        registrarMensagens(mensagens, contador);
+        sincronizar();
+        mensagens.forEach(destino);
+        System.out.println("[MURAL] " + mensagens.size() + " mensagens importadas de " + nomeCliente + "_mural.json para os segmentos");
+        return contador;
+    }
+
+    // Acrescenta cada mensagem no segmento atual, ou no próximo se ela não couber, e anota a posição no índice
+    @Override
+    public synchronized void registrarMensagens(List<Mensagem> novasMensagens, int contador) {
+        if (cabecalho == null || novasMensagens.isEmpty()) {
+            return;
+        }
+        int nomesConhecidos = codec.getTamanhoDicionario();
+        try {
+            for (Mensagem mensagem : novasMensagens) {
+                nomesConhecidos = codec.getTamanhoDicionario();
+                acrescentar(codec.codificar(mensagem));
+            }
+            contadorMural = contador;
+            registrosPendentes += novasMensagens.size();
+            if (registrosPendentes >= REGISTROS_POR_SINCRONIZACAO) {
+                sincronizar();
+            }
+        } catch (IOException e) {
+            // Nomes que só o registro recusado definia não podem ser referenciados pelos próximos
+            codec.truncarDicionario(nomesConhecidos);
+            System.err.println("Erro ao escrever nos segmentos do mural: " + e.getMessage());
+        }
+    }
+
+    private void acrescentar(byte[] registro) throws IOException {
+        int tamanho = 4 + registro.length;
+        if (tamanho > TAMANHO_SEGMENTO) {
+            throw new IOException("mensagem de " + registro.length + " bytes não cabe em um segmento");
+        }
+        if (deslocamento(fim) + tamanho > TAMANHO_SEGMENTO) {
+            fim = (fim / TAMANHO_SEGMENTO + 1) * TAMANHO_SEGMENTO;
+        }
+        MappedByteBuffer segmento = segmentoDe(fim);
+        segmento.putInt(deslocamento(fim), registro.length);
+        ByteBuffer destino = segmento.duplicate();
+        destino.position(deslocamento(fim) + 4);
+        destino.put(registro);
+        regiaoDe(quantidade).putLong(entradaDe(quantidade), fim);
+        quantidade++;
+        fim += tamanho;
+    }
+
+    // Os segmentos já são o mural completo: não há o que compactar
+    @Override
+    public boolean precisaCompactar() {
+        return false;
+    }
+
+    // Tudo o que o mural tem já foi registrado nos segmentos; só o contador e o fsync ficam por fazer
+    @Override
+    public synchronized void salvarSnapshot(List<Mensagem> mensagens, int contador) {
+        if (cabecalho == null) {
+            return;
+        }
+        contadorMural = contador;
+        registrosPendentes++;
+        sincronizar();
+    }
+
+    // Regrava as mensagens desde o início do primeiro segmento; o que sobrar depois delas deixa de estar no índice
+    @Override
+    public synchronized void substituir(List<Mensagem> mensagens, int contador) {
+        quantidade = 0;
+        fim = 0;
+        codec.limpar();
+        primeiroSegmentoPendente = 0;
+        primeiraRegiaoPendente = 0;
+        registrarMensagens(mensagens, contador);
+        salvarSnapshot(mensagens, contador);
+    }
+
+    // Bytes em uso nos segmentos e no índice; os arquivos em si já nascem com o tamanho fixo
+    synchronized long getBytesOcupados() {
+        return fim + TAMANHO_CABECALHO + quantidade * 8;
+    }
+
+    private Mensagem lerRegistro(long posicao) throws IOException {
+        MappedByteBuffer segmento = segmentoDe(posicao);
+        int tamanho = segmento.getInt(deslocamento(posicao));
+        if (tamanho <= 0 || deslocamento(posicao) + 4 + tamanho > TAMANHO_SEGMENTO) {
+            throw new IOException("tamanho de registro inválido: " + tamanho);
+        }
+        ByteBuffer registro = segmento.duplicate();
+        registro.position(deslocamento(posicao) + 4);
+        registro.limit(deslocamento(posicao) + 4 + tamanho);
+        if (registro.get(registro.position()) != '{') {
+            return codec.decodificar(registro);
+        }
+        byte[] json = new byte[tamanho];
+        registro.get(json);
+        return Mensagem.deMapa(objectMapper.readValue(json, Map.class));
+    }
+
+    private long posicaoDe(long indice) throws IOException {
+        return regiaoDe(indice).getLong(entradaDe(indice));
+    }
+
+    private static int deslocamento(long posicao) {
+        return (int) (posicao % TAMANHO_SEGMENTO);
+    }
+
+    private static int entradaDe(long indice) {
+        return (int) (indice % ENTRADAS_POR_REGIAO) * 8;
+    }
+
+    // Mapeia o segmento que contém a posição, criando os arquivos que faltarem; o arquivo já nasce com o tamanho fixo
+    private MappedByteBuffer segmentoDe(long posicao) throws IOException {
+        int numero = (int) (posicao / TAMANHO_SEGMENTO);
+        while (segmentos.size() <= numero) {
+            Path arquivo = Path.of(String.format("%s_mural_%05d.seg", nomeCliente, segmentos.size()));
+            if (somenteLeitura) {
+                try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+                    segmentos.add(canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size()));
+                }
+                continue;
+            }
+            try (FileChannel canal = FileChannel.open(arquivo,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                segmentos.add(canal.map(FileChannel.MapMode.READ_WRITE, 0, TAMANHO_SEGMENTO));
+            }
+        }
+        return segmentos.get(numero);
+    }
+
+    private MappedByteBuffer regiaoDe(long indice) throws IOException {
+        int numero = (int) (indice / ENTRADAS_POR_REGIAO);
+        while (regioesIndice.size() <= numero) {
+            long inicio = TAMANHO_CABECALHO + (long) regioesIndice.size() * ENTRADAS_POR_REGIAO * 8;
+            if (somenteLeitura) {
+                try (FileChannel canal = FileChannel.open(arquivoIndice, StandardOpenOption.READ)) {
+                    long tamanho = Math.min((long) ENTRADAS_POR_REGIAO * 8, Math.max(canal.size() - inicio, 0));
+                    regioesIndice.add(canal.map(FileChannel.MapMode.READ_ONLY, inicio, tamanho));
+                }
+                continue;
+            }
+            try (FileChannel canal = FileChannel.open(arquivoIndice, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                regioesIndice.add(canal.map(FileChannel.MapMode.READ_WRITE, inicio, (long) ENTRADAS_POR_REGIAO * 8));
+            }
+        }
+        return regioesIndice.get(numero);
+    }
+
+    // Força os segmentos e o índice antes de escrever no cabeçalho o contador e a quantidade, que só então passa
+    // a contar as mensagens novas
+    @Override
+    public synchronized void sincronizar() {
+        if (cabecalho == null || registrosPendentes == 0) {
+            return;
+        }
+        for (int i = primeiroSegmentoPendente; i < segmentos.size(); i++) {
+            segmentos.get(i).force();
+        }
+        for (int i = primeiraRegiaoPendente; i < regioesIndice.size(); i++) {
+            regioesIndice.get(i).force();
+        }
+        cabecalho.putInt(4, contadorMural);
+        cabecalho.putLong(8, quantidade);
+        cabecalho.force();
+        primeiroSegmentoPendente = Math.max(segmentos.size() - 1, 0);
+        primeiraRegiaoPendente = Math.max(regioesIndice.size() - 1, 0);
+        registrosPendentes = 0;
+    }
+
+    @Override
+    public void fechar() {
+        sincronizador.shutdown();
+        synchronized (this) {
+            sincronizar();
+        }
+    }
+}
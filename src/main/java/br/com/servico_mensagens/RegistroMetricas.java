@@ -0,0 +1,215 @@
+package br.com.servico_mensagens;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+
+// Guarda as métricas de um cliente em memória e as exporta por JMX e em <nome>_metricas.txt
+class RegistroMetricas implements Metricas, DynamicMBean {
+    private static final long INTERVALO_ARQUIVO_MS = 10_000;
+
+    private final String nome;
+    private final Map<String, LongAdder> contadores = new ConcurrentHashMap<>();
+    private final Map<String, Temporizador> temporizadores = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> medidores = new ConcurrentHashMap<>();
+    private final Path arquivo;
+    private ScheduledExecutorService agendador;
+    private ObjectName nomeJmx;
+
+    RegistroMetricas(String nome) {
+        this.nome = nome;
+        this.arquivo = Path.of(nome + "_metricas.txt");
+    }
+
+    @Override
+    public void somar(String nome, long valor) {
+        contadores.computeIfAbsent(nome, n -> new LongAdder()).add(valor);
+    }
+
+    @Override
+    public void registrarTempo(String nome, long nanos) {
+        temporizadores.computeIfAbsent(nome, n -> new Temporizador()).registrar(nanos);
+    }
+
+    @Override
+    public void registrarMedidor(String nome, LongSupplier leitura) {
+        medidores.put(nome, leitura);
+    }
+
+    @Override
+    public void removerMedidor(String nome) {
+        medidores.remove(nome);
+    }
+
+    // Publica no servidor JMX da JVM e passa a regravar o arquivo de texto periodicamente
+    synchronized void iniciar() {
+        try {
+            nomeJmx = new ObjectName("br.com.servico_mensagens:type=Cliente,name=" + ObjectName.quote(nome));
+            MBeanServer servidor = ManagementFactory.getPlatformMBeanServer();
+            if (servidor.isRegistered(nomeJmx)) {
+                servidor.unregisterMBean(nomeJmx);
+            }
+            servidor.registerMBean(this, nomeJmx);
+        } catch (JMException e) {
+            System.err.println("Erro ao publicar métricas por JMX: " + e.getMessage());
+            nomeJmx = null;
+        }
+        agendador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, nome + "-metricas");
+            thread.setDaemon(true);
+            return thread;
+        });
+        agendador.scheduleWithFixedDelay(this::gravarArquivo, INTERVALO_ARQUIVO_MS, INTERVALO_ARQUIVO_MS, TimeUnit.MILLISECONDS);
+    }
+
+    // Grava os valores finais e sai do JMX; chamadas repetidas só regravam o arquivo
+    synchronized void parar() {
+        if (agendador != null) {
+            agendador.shutdownNow();
+        }
+        gravarArquivo();
+        if (nomeJmx != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(nomeJmx);
+            } catch (JMException e) {
+                System.err.println("Erro ao remover métricas do JMX: " + e.getMessage());
+            }
+            nomeJmx = null;
+        }
+    }
+
+    // Todos os valores achatados em nome -> número; cada temporizador vira quantidade, total, média e máximo
+    SortedMap<String, Number> valores() {
+        SortedMap<String, Number> valores = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> contador : contadores.entrySet()) {
+            valores.put(contador.getKey(), contador.getValue().sum());
+        }
+        for (Map.Entry<String, LongSupplier> medidor : medidores.entrySet()) {
+            try {
+                valores.put(medidor.getKey(), medidor.getValue().getAsLong());
+            } catch (RuntimeException e) {
+                System.err.println("Erro ao ler a métrica " + medidor.getKey() + ": " + e.getMessage());
+            }
+        }
+        for (Map.Entry<String, Temporizador> temporizador : temporizadores.entrySet()) {
+            temporizador.getValue().exportar(temporizador.getKey(), valores);
+        }
+        return valores;
+    }
+
+    // Uma métrica por linha, "nome valor", em ordem alfabética
+    String emTexto() {
+        StringBuilder texto = new StringBuilder("# Métricas de " + nome + " em " + LocalDateTime.now() + "\n");
+        for (Map.Entry<String, Number> valor : valores().entrySet()) {
+            texto.append(valor.getKey()).append(' ').append(valor.getValue()).append('\n');
+        }
+        return texto.toString();
+    }
+
+    private synchronized void gravarArquivo() {
+        try {
+            Path temporario = Path.of(arquivo + ".tmp");
+            Files.write(temporario, emTexto().getBytes(StandardCharsets.UTF_8));
+            Files.move(temporario, arquivo, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            System.err.println("Erro ao gravar métricas: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public Object getAttribute(String atributo) throws AttributeNotFoundException {
+        Number valor = valores().get(atributo);
+        if (valor == null) {
+            throw new AttributeNotFoundException(atributo);
+        }
+        return valor;
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] atributos) {
+        SortedMap<String, Number> valores = valores();
+        AttributeList lista = new AttributeList();
+        for (String atributo : atributos) {
+            if (valores.containsKey(atributo)) {
+                lista.add(new Attribute(atributo, valores.get(atributo)));
+            }
+        }
+        return lista;
+    }
+
+    // As métricas são só de leitura
+    @Override
+    public void setAttribute(Attribute atributo) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Métrica somente de leitura: " + atributo.getName());
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList atributos) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String operacao, Object[] parametros, String[] assinatura) throws ReflectionException {
+        throw new ReflectionException(new NoSuchMethodException(operacao));
+    }
+
+    // Montado a cada consulta: contadores por peer e por tipo de requisição aparecem com o uso
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        List<MBeanAttributeInfo> atributos = new ArrayList<>();
+        for (Map.Entry<String, Number> valor : valores().entrySet()) {
+            atributos.add(new MBeanAttributeInfo(valor.getKey(), valor.getValue().getClass().getName(),
+                valor.getKey(), true, false, false));
+        }
+        return new MBeanInfo(getClass().getName(), "Métricas de " + nome,
+            atributos.toArray(new MBeanAttributeInfo[0]), null, null, null);
+    }
+
+    private static class Temporizador {
+        private final LongAdder quantidade = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maiorNanos = new LongAccumulator(Math::max, 0);
+
+        void registrar(long nanos) {
+            quantidade.increment();
+            totalNanos.add(nanos);
+            maiorNanos.accumulate(nanos);
+        }
+
+        void exportar(String nome, Map<String, Number> valores) {
+            long total = quantidade.sum();
+            double totalMs = totalNanos.sum() / 1e6;
+            valores.put(nome + ".quantidade", total);
+            valores.put(nome + ".total_ms", totalMs);
+            valores.put(nome + ".media_ms", total > 0 ? totalMs / total : 0.0);
+            valores.put(nome + ".max_ms", maiorNanos.get() / 1e6);
+        }
+    }
+}
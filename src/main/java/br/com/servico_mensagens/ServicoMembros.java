@@ -0,0 +1,429 @@
+package br.com.servico_mensagens;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+
+// Acompanha quais peers estão vivos como no SWIM: a cada período uma batida a um só membro, em rodízio,
+// com detecção de falha phi accrual alimentada pelas batidas, pelos pings recebidos e pelos contatos que os peers relatam
+class ServicoMembros {
+    private static final long INTERVALO_BATIDA_MS = 200;
+    private static final long TIMEOUT_PING_MS = 500;
+    // Suspeita a partir da qual o peer é dado como inativo, medida sobre os intervalos já observados com ele
+    private static final double LIMIAR_PHI = 8.0;
+    private static final int JANELA_INTERVALOS = 100;
+    private static final double DESVIO_MINIMO_MS = 50;
+    // Quantos membros vivos tentam alcançar um peer que não respondeu antes de ele ser dado como inativo
+    private static final int PINGS_INDIRETOS = 2;
+    // A lista de membros conhecidos vai junto com uma a cada tantas batidas
+    private static final int BATIDAS_POR_LISTA = 10;
+    // Tempo inativo depois do qual o peer sai da lista de membros, pela propriedade cliente.membros.remocaoMs
+    private static final long REMOCAO_PADRAO_MS = 10 * 60 * 1000;
+
+    private final String nome;
+    private final EnderecoPeer proprio;
+    private final TransportePeers transporte;
+    private final ExecutorService executor;
+    private final Map<EnderecoPeer, Membro> membros = new ConcurrentHashMap<>();
+    // Peers removidos por inatividade; se um deles voltar, é tratado como uma volta e não como um membro novo
+    private final Set<EnderecoPeer> removidos = ConcurrentHashMap.newKeySet();
+    private final long remocaoMs;
+    // Ordem embaralhada em que os membros recebem as batidas; só a thread do agendador mexe nela
+    private final List<EnderecoPeer> rodizio = new ArrayList<>();
+    private int proximoDoRodizio;
+    private Consumer<EnderecoPeer> aoVoltar = peer -> {};
+    private Consumer<EnderecoPeer> aoRemover = peer -> {};
+    private ScheduledExecutorService agendador;
+    private long batidas;
+
+    ServicoMembros(String nome, EnderecoPeer proprio, Collection<EnderecoPeer> sementes,
+                   TransportePeers transporte, ExecutorService executor) {
+        this.nome = nome;
+        this.proprio = proprio;
+        this.transporte = transporte;
+        this.executor = executor;
+        this.remocaoMs = Long.getLong("cliente.membros.remocaoMs", REMOCAO_PADRAO_MS);
+        for (EnderecoPeer semente : sementes) {
+            if (!semente.equals(proprio)) {
+                membros.put(semente, new Membro(semente, false));
+            }
+        }
+    }
+
+    // Começa as batidas; aoVoltar é chamado quando um peer dado como inativo volta a responder,
+    // e aoRemover quando um peer passa do tempo de remoção sem responder e sai da lista de membros
+    void iniciar(Consumer<EnderecoPeer> aoVoltar, Consumer<EnderecoPeer> aoRemover) {
+        this.aoVoltar = aoVoltar;
+        this.aoRemover = aoRemover;
+        agendador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, nome + "-membros");
+            thread.setDaemon(true);
+            return thread;
+        });
+        agendador.scheduleWithFixedDelay(this::rodada, 0, INTERVALO_BATIDA_MS, TimeUnit.MILLISECONDS);
+    }
+
+    void parar() {
+        if (agendador != null) {
+            agendador.shutdownNow();
+        }
+    }
+
+    // Todos os membros conhecidos, vivos ou não
+    List<EnderecoPeer> getConhecidos() {
+        return new ArrayList<>(membros.keySet());
+    }
+
+    // Membros que estão respondendo às batidas
+    List<EnderecoPeer> getVivos() {
+        List<EnderecoPeer> vivos = new ArrayList<>();
+        for (Membro membro : membros.values()) {
+            if (membro.vivo) {
+                vivos.add(membro.endereco);
+            }
+        }
+        return vivos;
+    }
+
+    boolean isVivo(EnderecoPeer peer) {
+        Membro membro = membros.get(peer);
+        return membro != null && membro.vivo;
+    }
+
+    // Responde à batida de um peer, que também conta como batida dele, e aprende os membros que ele conhece
+    Map<String, Object> responderPing(Map<String, Object> dados) {
+        if (dados.get("origem") instanceof String) {
+            EnderecoPeer origem = EnderecoPeer.deTexto((String) dados.get("origem"));
+            if (!origem.equals(proprio)) {
+                conhecer(origem);
+                Membro membro = membros.get(origem);
+                if (membro != null) {
+                    registrarBatida(membro, true);
+                }
+            }
+        }
+        ouvirContatos(dados.get("contatos"));
+        Map<String, Object> resposta = new HashMap<>();
+        resposta.put("tipo", "PONG");
+        if (dados.containsKey("membros")) {
+            aprender(dados.get("membros"));
+            resposta.put("membros", listarMembros());
+        }
+        resposta.put("contatos", listarContatos());
+        resposta.put("remetente", nome);
+        return resposta;
+    }
+
+    // Tenta alcançar o alvo a pedido de um peer que não conseguiu falar com ele; a resposta sai quando o alvo responder
+    // ou o prazo acabar, sem prender o trabalhador do servidor. Abrir a conexão com o alvo pode demorar, então o envio
+    // sai pelo executor
+    CompletableFuture<Map<String, Object>> responderPingIndireto(Map<String, Object> dados) {
+        EnderecoPeer alvo = EnderecoPeer.deTexto((String) dados.get("alvo"));
+        return CompletableFuture.supplyAsync(() -> transporte.requisitarAssincrono(alvo, criarPing(false), TIMEOUT_PING_MS), executor)
+            .thenCompose(ping -> ping)
+            .handle((pong, erro) -> {
+                Map<String, Object> resposta = new HashMap<>();
+                resposta.put("tipo", "RESPOSTA_PING_INDIRETO");
+                resposta.put("alcancado", erro == null);
+                resposta.put("remetente", nome);
+                return resposta;
+            });
+    }
+
+    // Dá como inativos os peers cuja suspeita passou do limiar, remove os inativos há mais que o tempo de remoção
+    // e manda a batida do período ao próximo membro do rodízio, para que o tráfego de cada nó fique constante com o
+    // tamanho do cluster
+    private void rodada() {
+        long agora = System.currentTimeMillis();
+        // Uma volta inteira do rodízio sem notícia direta de um peer é normal e não conta como atraso
+        long pausaAceitavel = INTERVALO_BATIDA_MS * Math.max(1, membros.size());
+        for (Membro membro : membros.values()) {
+            if (membro.vivo && membro.phi(agora, pausaAceitavel) > LIMIAR_PHI) {
+                marcarInativo(membro, "sem resposta há " + (agora - membro.getUltimaBatida()) + " ms");
+            }
+            if (!membro.vivo && agora - membro.getUltimaBatida() > remocaoMs) {
+                remover(membro, agora);
+            }
+        }
+        Membro membro = proximoDoRodizio();
+        // Um peer lento não acumula batidas: a próxima só sai depois que a anterior terminar
+        if (membro == null || !membro.sondando.compareAndSet(false, true)) {
+            return;
+        }
+        Map<String, Object> ping = criarPing(batidas++ % BATIDAS_POR_LISTA == 0);
+        try {
+            executor.submit(() -> {
+                try {
+                    sondar(membro, ping);
+                } finally {
+                    membro.sondando.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            membro.sondando.set(false);
+        }
+    }
+
+    // Percorre os membros numa ordem embaralhada e reembaralha ao fim de cada volta, como no SWIM:
+    // todo membro recebe uma batida a cada volta, sem depender da sorte de um sorteio
+    private Membro proximoDoRodizio() {
+        for (int tentativas = 0; tentativas <= rodizio.size(); tentativas++) {
+            if (proximoDoRodizio >= rodizio.size()) {
+                rodizio.clear();
+                rodizio.addAll(membros.keySet());
+                Collections.shuffle(rodizio, ThreadLocalRandom.current());
+                proximoDoRodizio = 0;
+                if (rodizio.isEmpty()) {
+                    return null;
+                }
+            }
+            Membro membro = membros.get(rodizio.get(proximoDoRodizio++));
+            if (membro != null) {
+                return membro;
+            }
+        }
+        return null;
+    }
+
+    // Manda a batida direto ao peer; se ela falhar, pede a outros membros que tentem antes de dá-lo como inativo
+    private void sondar(Membro membro, Map<String, Object> ping) {
+        // Se o peer voltar com uma batida dele enquanto esta sonda falha, a falha é de antes da volta e não o derruba
+        boolean estavaVivo = membro.vivo;
+        if (!estavaVivo) {
+            transporte.reconectar(membro.endereco);
+        }
+        try {
+            Map<String, Object> resposta = transporte.requisitar(membro.endereco, ping, TIMEOUT_PING_MS);
+            registrarBatida(membro, true);
+            if (resposta != null) {
+                aprender(resposta.get("membros"));
+                ouvirContatos(resposta.get("contatos"));
+            }
+        } catch (IOException e) {
+            if (!estavaVivo) {
+                return;
+            }
+            if (confirmarIndiretamente(membro.endereco)) {
+                registrarBatida(membro, false);
+            } else {
+                marcarInativo(membro, e.getMessage());
+            }
+        }
+    }
+
+    private boolean confirmarIndiretamente(EnderecoPeer alvo) {
+        List<EnderecoPeer> intermediarios = getVivos();
+        intermediarios.remove(alvo);
+        Collections.shuffle(intermediarios, ThreadLocalRandom.current());
+        Map<String, Object> pedido = new HashMap<>();
+        pedido.put("tipo", "PING_INDIRETO");
+        pedido.put("alvo", alvo.toString());
+        pedido.put("remetente", nome);
+        for (EnderecoPeer intermediario : intermediarios.subList(0, Math.min(PINGS_INDIRETOS, intermediarios.size()))) {
+            try {
+                Map<String, Object> resposta = transporte.requisitar(intermediario, pedido, 2 * TIMEOUT_PING_MS);
+                if (resposta != null && Boolean.TRUE.equals(resposta.get("alcancado"))) {
+                    return true;
+                }
+            } catch (IOException e) {
+                // Um intermediário que também não responde só passa a vez ao próximo; a falha já conta nas métricas do transporte
+            }
+        }
+        return false;
+    }
+
+    // direto indica que o próprio peer nos respondeu ou pingou, e não que outro relatou tê-lo ouvido
+    private void registrarBatida(Membro membro, boolean direto) {
+        if (membro.registrar(System.currentTimeMillis(), direto)) {
+            System.out.println("\n[MEMBROS] Peer " + membro.endereco + " voltou");
+            aoVoltar.accept(membro.endereco);
+        }
+    }
+
+    private void remover(Membro membro, long agora) {
+        if (!membros.remove(membro.endereco, membro)) {
+            return;
+        }
+        removidos.add(membro.endereco);
+        System.out.println("\n[MEMBROS] Peer " + membro.endereco + " removido: sem resposta há "
+            + (agora - membro.getUltimaBatida()) / 1000 + " s");
+        aoRemover.accept(membro.endereco);
+    }
+
+    private void marcarInativo(Membro membro, String motivo) {
+        if (membro.marcarInativo()) {
+            System.out.println("\n[MEMBROS] Peer " + membro.endereco + " inativo: " + motivo);
+        }
+    }
+
+    private Map<String, Object> criarPing(boolean comMembros) {
+        Map<String, Object> ping = new HashMap<>();
+        ping.put("tipo", "PING");
+        ping.put("origem", proprio.toString());
+        if (comMembros) {
+            ping.put("membros", listarMembros());
+        }
+        ping.put("contatos", listarContatos());
+        ping.put("remetente", nome);
+        return ping;
+    }
+
+    // O próprio endereço vai junto, para que os peers que só conhecíamos pelas sementes passem a nos conhecer
+    private List<String> listarMembros() {
+        List<String> lista = new ArrayList<>();
+        lista.add(proprio.toString());
+        for (EnderecoPeer peer : membros.keySet()) {
+            lista.add(peer.toString());
+        }
+        return lista;
+    }
+
+    // Membros com quem houve contato direto no último período; só o contato direto é relatado, para que um boato
+    // de que um peer está vivo não fique circulando depois que ele caiu
+    private List<String> listarContatos() {
+        long limite = System.currentTimeMillis() - INTERVALO_BATIDA_MS;
+        List<String> lista = new ArrayList<>();
+        for (Membro membro : membros.values()) {
+            if (membro.vivo && membro.getUltimoContato() >= limite) {
+                lista.add(membro.endereco.toString());
+            }
+        }
+        return lista;
+    }
+
+    // Conta como batida os contatos diretos que outro peer relatou com membros que já conhecemos
+    private void ouvirContatos(Object lista) {
+        if (!(lista instanceof List)) {
+            return;
+        }
+        for (Object item : (List<Object>) lista) {
+            Membro membro = membros.get(EnderecoPeer.deTexto((String) item));
+            if (membro != null) {
+                registrarBatida(membro, false);
+            }
+        }
+    }
+
+    private void aprender(Object lista) {
+        if (lista == null) {
+            return;
+        }
+        for (Object item : (List<Object>) lista) {
+            EnderecoPeer peer = EnderecoPeer.deTexto((String) item);
+            if (!peer.equals(proprio)) {
+                conhecer(peer);
+            }
+        }
+    }
+
+    private void conhecer(EnderecoPeer peer) {
+        if (membros.containsKey(peer)) {
+            return;
+        }
+        boolean removido = removidos.remove(peer);
+        if (membros.putIfAbsent(peer, new Membro(peer, removido)) == null) {
+            System.out.println("\n[MEMBROS] " + (removido ? "Peer removido reapareceu: " : "Novo membro ") + peer);
+        }
+    }
+
+    private static class Membro {
+        private final EnderecoPeer endereco;
+        private final AtomicBoolean sondando = new AtomicBoolean();
+        // Intervalos entre as últimas batidas respondidas, base da suspeita de falha
+        private final ArrayDeque<Long> intervalos = new ArrayDeque<>();
+        private double soma;
+        private double somaQuadrados;
+        private long ultimaBatida;
+        private long ultimoContato;
+        private boolean jaRespondeu;
+        private volatile boolean vivo;
+
+        // jaRespondeu faz a primeira batida contar como volta, para um peer removido que reaparece trocar o que perdeu;
+        // a última batida começa na criação, para um membro que nunca responde também chegar ao tempo de remoção
+        Membro(EnderecoPeer endereco, boolean jaRespondeu) {
+            this.endereco = endereco;
+            this.jaRespondeu = jaRespondeu;
+            this.ultimaBatida = System.currentTimeMillis();
+        }
+
+        // Registra uma batida respondida; retorna true se o peer tinha sido dado como inativo e voltou
+        synchronized boolean registrar(long agora, boolean direto) {
+            if (direto) {
+                ultimoContato = agora;
+            }
+            // Batidas que chegam juntas, pela sondagem e pelos relatos de outros peers, contam como uma só;
+            // senão os intervalos curtos puxariam a média para baixo e qualquer atraso viraria suspeita
+            if (vivo && agora - ultimaBatida < INTERVALO_BATIDA_MS / 2) {
+                return false;
+            }
+            if (vivo) {
+                long intervalo = agora - ultimaBatida;
+                intervalos.addLast(intervalo);
+                soma += intervalo;
+                somaQuadrados += (double) intervalo * intervalo;
+                if (intervalos.size() > JANELA_INTERVALOS) {
+                    long antigo = intervalos.removeFirst();
+                    soma -= antigo;
+                    somaQuadrados -= (double) antigo * antigo;
+                }
+            }
+            ultimaBatida = agora;
+            boolean voltou = !vivo && jaRespondeu;
+            vivo = true;
+            jaRespondeu = true;
+            return voltou;
+        }
+
+        // Retorna true se o peer estava vivo; a história de intervalos recomeça quando ele voltar
+        synchronized boolean marcarInativo() {
+            if (!vivo) {
+                return false;
+            }
+            vivo = false;
+            intervalos.clear();
+            soma = 0;
+            somaQuadrados = 0;
+            return true;
+        }
+
+        synchronized long getUltimaBatida() {
+            return ultimaBatida;
+        }
+
+        synchronized long getUltimoContato() {
+            return ultimoContato;
+        }
+
+        // Suspeita phi accrual: -log10 da chance de ficar tanto tempo sem batida, dada a distribuição dos intervalos
+        // acrescida da pausa aceitável, como no detector do Akka
+        synchronized double phi(long agora, long pausaAceitavel) {
+            int n = intervalos.size();
+            double observada = n == 0 ? INTERVALO_BATIDA_MS : soma / n;
+            double variancia = n == 0 ? 0 : Math.max(0, somaQuadrados / n - observada * observada);
+            double media = observada + pausaAceitavel;
+            double desvio = Math.max(DESVIO_MINIMO_MS, Math.sqrt(variancia));
+            double atraso = agora - ultimaBatida;
+            // Aproximação logística da normal acumulada, como nos detectores phi accrual usuais
+            double y = (atraso - media) / desvio;
+            double e = Math.exp(-y * (1.5976 + 0.070566 * y * y));
+            return atraso > media ? -Math.log10(e / (1 + e)) : -Math.log10(1 - 1 / (1 + e));
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package br.com.servico_mensagens;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+
+// Endpoint local da ApiMural: uma linha JSON por comando e uma por resposta, aceitando conexões só do próprio computador.
+// Como o console, não mostra mensagens privadas a quem não se autenticou: só as entrega com cliente.api.privadas=true
+class ServidorApi {
+    private static final int LIMITE_PADRAO = 50;
+    private static final int LIMITE_MAXIMO = 500;
+    // Mensagens que uma assinatura pode acumular sem o programa do outro lado ler; passou disso, ela é encerrada
+    private static final int FILA_ASSINATURA = 10_000;
+
+    private final int porta;
+    private final ApiMural api;
+    private final ObjectMapper objectMapper;
+    private final ExecutorService executor;
+    private final boolean privadas;
+    private final Set<Socket> conexoes = ConcurrentHashMap.newKeySet();
+    private ServerSocket serverSocket;
+    private volatile boolean ativo;
+
+    ServidorApi(int porta, ApiMural api, ObjectMapper objectMapper, ExecutorService executor) {
+        this(porta, api, objectMapper, executor, privadasConfiguradas());
+    }
+
+    ServidorApi(int porta, ApiMural api, ObjectMapper objectMapper, ExecutorService executor, boolean privadas) {
+        this.porta = porta;
+        this.api = api;
+        this.objectMapper = objectMapper;
+        this.executor = executor;
+        this.privadas = privadas;
+    }
+
+    // Porta da propriedade de sistema "cliente.api.porta"; sem ela o endpoint não é aberto
+    static Integer portaConfigurada() {
+        return Integer.getInteger("cliente.api.porta");
+    }
+
+    // Mensagens privadas só saem pela API com a propriedade "cliente.api.privadas=true"
+    static boolean privadasConfiguradas() {
+        return Boolean.getBoolean("cliente.api.privadas");
+    }
+
+    void iniciar() throws IOException {
+        serverSocket = new ServerSocket(porta, 50, InetAddress.getLoopbackAddress());
+        ativo = true;
+        executor.submit(() -> {
+            while (ativo) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    executor.submit(() -> atender(socket));
+                } catch (IOException e) {
+                    if (ativo) {
+                        System.err.println("Erro ao aceitar conexão da API: " + e.getMessage());
+                    }
+                }
+            }
+        });
+    }
+
+    void parar() {
+        ativo = false;
+        try {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Erro ao fechar a API: " + e.getMessage());
+        }
+        for (Socket socket : conexoes) {
+            fechar(socket);
+        }
+    }
+
+    // Atende os comandos de uma conexão em ordem; depois de "assinar" a conexão só recebe as mensagens novas
+    private void atender(Socket socket) {
+        conexoes.add(socket);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)))) {
+            socket.setTcpNoDelay(true);
+            Sessao sessao = new Sessao();
+
+            String linha;
+            while (ativo && (linha = reader.readLine()) != null) {
+                Map<String, Object> comando;
+                try {
+                    comando = objectMapper.readValue(linha, Map.class);
+                } catch (JsonProcessingException e) {
+                    escrever(writer, erro(null, "JSON inválido: " + e.getOriginalMessage()));
+                    continue;
+                }
+                if ("assinar".equals(comando.get("operacao"))) {
+                    transmitir(socket, writer, comando.get("requestId"));
+                    return;
+                }
+                escrever(writer, executar(comando, sessao));
+            }
+        } catch (IOException e) {
+            if (ativo) {
+                System.err.println("Erro na conexão da API: " + e.getMessage());
+            }
+        } finally {
+            conexoes.remove(socket);
+            fechar(socket);
+        }
+    }
+
+    private Map<String, Object> executar(Map<String, Object> comando, Sessao sessao) {
+        Object requestId = comando.get("requestId");
+        String operacao = (String) comando.get("operacao");
+        if (operacao == null) {
+            return erro(requestId, "informe a operacao");
+        }
+        Map<String, Object> resposta = new HashMap<>();
+        try {
+            switch (operacao) {
+                case "postar":
+                    resposta.put("mensagem", api.postar(texto(comando, "autor", api.getNome()),
+                        texto(comando, "conteudo", null), texto(comando, "tipo", "publica")));
+                    break;
+                case "ultimas": {
+                    int quantidade = limite(comando);
+                    int pular = inteiro(comando, "pular", 0);
+                    Object tipo = comando.get("tipo");
+                    if (tipo != null) {
+                        exigirPermitido(tipo.toString());
+                        resposta.put("mensagens", api.getUltimasPorTipo(tipo.toString(), quantidade, pular));
+                    } else {
+                        resposta.put("mensagens", privadas
+                            ? api.getUltimas(quantidade, pular)
+                            : api.getUltimasPorTipo("publica", quantidade, pular));
+                    }
+                    break;
+                }
+                case "consultar":
+                    sessao.consulta = privadas ? consultar(comando) : soPublicas(consultar(comando));
+                    paginar(sessao.consulta, limite(comando), resposta);
+                    break;
+                case "continuar":
+                    if (sessao.consulta == null) {
+                        return erro(requestId, "nenhuma consulta em andamento nesta conexão");
+                    }
+                    paginar(sessao.consulta, limite(comando), resposta);
+                    break;
+                case "sincronizar":
+                    api.sincronizar();
+                    resposta.put("tamanho", api.getTamanho());
+                    break;
+                case "membros": {
+                    List<Map<String, Object>> membros = new ArrayList<>();
+                    for (Map.Entry<EnderecoPeer, Boolean> membro : api.getMembros().entrySet()) {
+                        Map<String, Object> item = new HashMap<>();
+                        item.put("endereco", membro.getKey().toString());
+                        item.put("ativo", membro.getValue());
+                        membros.add(item);
+                    }
+                    resposta.put("membros", membros);
+                    break;
+                }
+                case "metricas":
+                    resposta.put("metricas", api.getMetricas());
+                    break;
+                default:
+                    return erro(requestId, "operação desconhecida: " + operacao);
+            }
+        } catch (IllegalArgumentException | ClassCastException | DateTimeParseException e) {
+            return erro(requestId, e.getMessage());
+        }
+        resposta.put("ok", true);
+        if (requestId != null) {
+            resposta.put("requestId", requestId);
+        }
+        return resposta;
+    }
+
+    // "por" escolhe o índice: posicao (de), tipo ou autor (valor), clock (de, ate), lamport (depois de de)
+    // ou horario (de, ate no formato ISO)
+    private ConsultaMural consultar(Map<String, Object> comando) {
+        String por = texto(comando, "por", "posicao");
+        switch (por) {
+            case "posicao":
+                return api.consultarAPartirDe(inteiro(comando, "de", 0));
+            case "tipo":
+                exigirPermitido(texto(comando, "valor", null));
+                return api.consultarPorTipo(texto(comando, "valor", null));
+            case "autor":
+                return api.consultarPorAutor(texto(comando, "valor", null));
+            case "clock":
+                return api.consultarPorClock(inteiro(comando, "de", 0), inteiro(comando, "ate", Integer.MAX_VALUE));
+            case "lamport":
+                return api.consultarDepoisDoClock(inteiro(comando, "de", -1));
+            case "horario":
+                return api.consultarPorHorario(LocalDateTime.parse(texto(comando, "de", null)),
+                    LocalDateTime.parse(texto(comando, "ate", null)));
+            default:
+                throw new IllegalArgumentException("consulta desconhecida: " + por);
+        }
+    }
+
+    // Recusa pedir pelo tipo as mensagens que a API não entrega
+    private void exigirPermitido(String tipo) {
+        if (!privadas && !"publica".equals(tipo)) {
+            throw new IllegalArgumentException("mensagens do tipo " + tipo + " não são entregues pela API (use -Dcliente.api.privadas=true)");
+        }
+    }
+
+    // Lê a consulta deixando só as públicas; cada página é completada com as seguintes até o limite ou o fim
+    private static ConsultaMural soPublicas(ConsultaMural consulta) {
+        return new ConsultaMural(0, -1, (filtrada, limite) -> {
+            List<Mensagem> pagina = new ArrayList<>();
+            while (pagina.size() < limite && consulta.temMais()) {
+                for (Mensagem mensagem : consulta.proximaPagina(limite - pagina.size())) {
+                    if ("publica".equals(mensagem.getTipo())) {
+                        pagina.add(mensagem);
+                    }
+                }
+            }
+            return pagina;
+        });
+    }
+
+    private static void paginar(ConsultaMural consulta, int limite, Map<String, Object> resposta) {
+        resposta.put("mensagens", consulta.proximaPagina(limite));
+        resposta.put("temMais", consulta.temMais());
+    }
+
+    // Repassa cada mensagem nova como {"evento":"mensagem",...} até a conexão fechar ou a fila transbordar
+    private void transmitir(Socket socket, PrintWriter writer, Object requestId) throws IOException {
+        BlockingQueue<Mensagem> fila = new ArrayBlockingQueue<>(FILA_ASSINATURA);
+        Mensagem transbordou = new Mensagem();
+        ApiMural.Assinatura assinatura = api.assinar(mensagem -> {
+            if (!privadas && !"publica".equals(mensagem.getTipo())) {
+                return;
+            }
+            if (!fila.offer(mensagem)) {
+                fila.clear();
+                fila.offer(transbordou);
+            }
+        });
+        try {
+            Map<String, Object> confirmacao = new HashMap<>();
+            confirmacao.put("ok", true);
+            if (requestId != null) {
+                confirmacao.put("requestId", requestId);
+            }
+            escrever(writer, confirmacao);
+
+            Map<String, Object> evento = new HashMap<>();
+            evento.put("evento", "mensagem");
+            while (ativo && !socket.isClosed()) {
+                Mensagem mensagem = fila.poll(1, TimeUnit.SECONDS);
+                if (mensagem == transbordou) {
+                    escrever(writer, erro(requestId, "assinatura encerrada: mais de " + FILA_ASSINATURA + " mensagens sem leitura"));
+                    return;
+                }
+                if (mensagem != null) {
+                    evento.put("mensagem", mensagem);
+                    writer.println(objectMapper.writeValueAsString(evento));
+                }
+                // Junta em uma escrita no socket as mensagens que chegaram juntas
+                if (fila.isEmpty()) {
+                    writer.flush();
+                    if (writer.checkError()) {
+                        return;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            assinatura.close();
+        }
+    }
+
+    private void escrever(PrintWriter writer, Map<String, Object> resposta) throws IOException {
+        writer.println(objectMapper.writeValueAsString(resposta));
+        writer.flush();
+    }
+
+    private static Map<String, Object> erro(Object requestId, String mensagem) {
+        Map<String, Object> resposta = new HashMap<>();
+        resposta.put("ok", false);
+        resposta.put("erro", mensagem);
+        if (requestId != null) {
+            resposta.put("requestId", requestId);
+        }
+        return resposta;
+    }
+
+    private static String texto(Map<String, Object> comando, String chave, String padrao) {
+        Object valor = comando.get(chave);
+        if (valor == null) {
+            if (padrao == null) {
+                throw new IllegalArgumentException("informe " + chave);
+            }
+            return padrao;
+        }
+        return valor.toString();
+    }
+
+    private static int inteiro(Map<String, Object> comando, String chave, int padrao) {
+        Object valor = comando.get(chave);
+        return valor == null ? padrao : ((Number) valor).intValue();
+    }
+
+    private static int limite(Map<String, Object> comando) {
+        int limite = inteiro(comando, "limite", LIMITE_PADRAO);
+        if (limite < 1 || limite > LIMITE_MAXIMO) {
+            throw new IllegalArgumentException("limite deve estar entre 1 e " + LIMITE_MAXIMO);
+        }
+        return limite;
+    }
+
+    private static void fechar(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {}
+    }
+
+    // Estado de uma conexão: a última consulta, que "continuar" segue lendo
+    private static class Sessao {
+        ConsultaMural consulta;
+    }
+}
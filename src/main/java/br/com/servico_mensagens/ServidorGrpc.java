@@ -0,0 +1,151 @@
+package br.com.servico_mensagens;
+
+import br.com.servico_mensagens.grpc.BlocoMensagens;
+import br.com.servico_mensagens.grpc.Confirmacao;
+import br.com.servico_mensagens.grpc.NovaMensagem;
+import br.com.servico_mensagens.grpc.RequisicaoJson;
+import br.com.servico_mensagens.grpc.RespostaJson;
+import br.com.servico_mensagens.grpc.ServicoMuralGrpc;
+import br.com.servico_mensagens.grpc.SolicitacaoMuralCompleto;
+import br.com.servico_mensagens.grpc.SolicitacaoSincronizacao;
+import io.grpc.Server;
+import io.grpc.ServerBuilder;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+class ServidorGrpc {
+    private static final int MENSAGENS_POR_BLOCO = 500;
+
+    private final Server servidor;
+
+    ServidorGrpc(int porta, Cliente cliente) {
+        this.servidor = ServerBuilder.forPort(porta)
+            .addService(new ServicoMural(cliente))
+            .build();
+    }
+
+    void iniciar() throws IOException {
+        servidor.start();
+    }
+
+    void parar() {
+        servidor.shutdown();
+        try {
+            if (!servidor.awaitTermination(2, TimeUnit.SECONDS)) {
+                servidor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            servidor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class ServicoMural extends ServicoMuralGrpc.ServicoMuralImplBase {
+        private final Cliente cliente;
+
+        ServicoMural(Cliente cliente) {
+            this.cliente = cliente;
+        }
+
+        // Recebe as mensagens do peer em um fluxo contínuo e confirma cada uma pelo número do envio
+        @Override
+        public StreamObserver<NovaMensagem> enviarMensagens(StreamObserver<Confirmacao> confirmacoes) {
+            return new StreamObserver<NovaMensagem>() {
+                private volatile String remetente;
+
+                @Override
+                public void onNext(NovaMensagem novaMensagem) {
+                    remetente = novaMensagem.getRemetente();
+                    // Uma mensagem que não pode ser guardada é confirmada mesmo assim: reenviada, falharia de novo
+                    // e prenderia a caixa de saída do peer
+                    try {
+                        Mensagem mensagem = ConversorProto.deProto(novaMensagem.getMensagem());
+                        cliente.receberNovaMensagem(mensagem, novaMensagem.getLamportClock());
+                    } catch (RuntimeException e) {
+                        System.err.println("Mensagem inválida de " + novaMensagem.getRemetente() + " descartada: " + e.getMessage());
+                    }
+                    synchronized (confirmacoes) {
+                        confirmacoes.onNext(Confirmacao.newBuilder()
+                            .setId(novaMensagem.getMensagem().getId())
+                            .setEnvio(novaMensagem.getEnvio())
+                            .build());
+                    }
+                }
+
+                @Override
+                public void onError(Throwable erro) {
+                    System.err.println("Fluxo de mensagens" + (remetente != null ? " de " + remetente : "")
+                        + " encerrado com erro: " + erro.getMessage());
+                }
+
+                @Override
+                public void onCompleted() {
+                    synchronized (confirmacoes) {
+                        confirmacoes.onCompleted();
+                    }
+                }
+            };
+        }
+
+        @Override
+        public void sincronizar(SolicitacaoSincronizacao solicitacao, StreamObserver<BlocoMensagens> blocos) {
+            comprimir(blocos);
+            MuralMensagens mural = cliente.getMural();
+            enviarEmBlocos(mural.getContador(), mural.getMensagensAPartirDe(solicitacao.getContador()), blocos);
+        }
+
+        @Override
+        public void muralCompleto(SolicitacaoMuralCompleto solicitacao, StreamObserver<BlocoMensagens> blocos) {
+            comprimir(blocos);
+            MuralMensagens mural = cliente.getMural();
+            enviarEmBlocos(mural.getContador(), mural.getMensagens(), blocos);
+        }
+
+        @Override
+        public void requisitar(RequisicaoJson requisicao, StreamObserver<RespostaJson> resposta) {
+            comprimir(resposta);
+            // A resposta sai quando o futuro completar, sem segurar a thread do gRPC se ela depender de outro peer
+            cliente.processarLinha(requisicao.getJson()).whenComplete((json, erro) -> {
+                if (erro != null) {
+                    // A requisição JSON pelo gRPC não tem requestId; o erro volta como status da chamada
+                    Throwable causa = erro.getCause() != null ? erro.getCause() : erro;
+                    System.err.println("Erro ao processar requisição: " + causa.getMessage());
+                    resposta.onError(Status.INTERNAL.withDescription(causa.getMessage()).asRuntimeException());
+                    return;
+                }
+                resposta.onNext(RespostaJson.newBuilder().setJson(json != null ? json : "").build());
+                resposta.onCompleted();
+            });
+        }
+
+        // Respostas em gzip; o gRPC só comprime se o cliente o listou em grpc-accept-encoding, senão manda sem compressão
+        private void comprimir(StreamObserver<?> resposta) {
+            if (cliente.getCompressao().isAtiva()) {
+                ((ServerCallStreamObserver<?>) resposta).setCompression("gzip");
+            }
+        }
+
+        // Divide as mensagens em blocos de tamanho fixo; sempre envia ao menos um bloco com o contador
+        private void enviarEmBlocos(int contador, List<Mensagem> mensagens, StreamObserver<BlocoMensagens> blocos) {
+            int inicio = 0;
+            do {
+                int fim = Math.min(inicio + MENSAGENS_POR_BLOCO, mensagens.size());
+                BlocoMensagens.Builder bloco = BlocoMensagens.newBuilder()
+                    .setContador(contador)
+                    .setRemetente(cliente.getNome());
+                for (Mensagem mensagem : mensagens.subList(inicio, fim)) {
+                    bloco.addMensagens(ConversorProto.paraProto(mensagem));
+                }
+                blocos.onNext(bloco.build());
+                inicio = fim;
+            } while (inicio < mensagens.size());
+            blocos.onCompleted();
+        }
+    }
+}
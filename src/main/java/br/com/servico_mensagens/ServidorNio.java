@@ -0,0 +1,416 @@
+package br.com.servico_mensagens;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channel;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+
+class ServidorNio {
+    private static final int TAMANHO_BUFFER_LEITURA = 64 * 1024;
+    private static final int TAMANHO_MAXIMO_LINHA = 64 * 1024 * 1024;
+    // Acima destes limites a conexão para de ser lida até a fila esvaziar
+    private static final int LIMITE_REQUISICOES_PENDENTES = 64;
+    private static final int LIMITE_BYTES_SAIDA = 4 * 1024 * 1024;
+    // Conexões que podem esperar na fila dos trabalhadores; as demais param de ser lidas até um trabalhador liberar a vaga
+    private static final int LIMITE_FILA = 1024;
+
+    private final int porta;
+    private final Function<String, CompletableFuture<String>> processador;
+    private final LoopEventos[] loops;
+    private final ThreadPoolExecutor trabalhadores;
+    private final AtomicBoolean ativo = new AtomicBoolean(false);
+    private final AtomicInteger proximoLoop = new AtomicInteger();
+    // Cada conexão em processamento ou na fila dos trabalhadores ocupa uma vaga; quem não acha vaga espera em ordem
+    private final Object travaVagas = new Object();
+    private final Queue<Conexao> aguardandoVaga = new ArrayDeque<>();
+    private int vagasLivres;
+    private ServerSocketChannel canalServidor;
+
+    // Cria o servidor; o processador recebe uma linha de requisição e devolve o futuro da linha de resposta, ou de null
+    ServidorNio(int porta, Function<String, CompletableFuture<String>> processador) {
+        this(porta, processador, LIMITE_FILA);
+    }
+
+    ServidorNio(int porta, Function<String, CompletableFuture<String>> processador, int limiteFila) {
+        this.porta = porta;
+        this.processador = processador;
+        int processadores = Runtime.getRuntime().availableProcessors();
+        this.loops = new LoopEventos[Math.max(1, Math.min(processadores, 4))];
+        int totalTrabalhadores = Math.max(2, processadores);
+        this.vagasLivres = totalTrabalhadores + limiteFila;
+        AtomicInteger contadorThreads = new AtomicInteger();
+        // A fila não precisa de limite próprio: as vagas já limitam o que entra nela, e nada roda na thread de eventos.
+        // Só depois de parar uma tarefa pode ser recusada, e então é descartada
+        this.trabalhadores = new ThreadPoolExecutor(totalTrabalhadores, totalTrabalhadores,
+            0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+            r -> {
+                Thread thread = new Thread(r, "nio-" + porta + "-trabalhador-" + contadorThreads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    // Abre a porta e inicia as threads de eventos
+    void iniciar() throws IOException {
+        ativo.set(true);
+        canalServidor = ServerSocketChannel.open();
+        canalServidor.bind(new InetSocketAddress(porta));
+        canalServidor.configureBlocking(false);
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new LoopEventos(Selector.open());
+            Thread thread = new Thread(loops[i], "nio-" + porta + "-eventos-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        LoopEventos aceitador = loops[0];
+        aceitador.executar(() -> {
+            try {
+                canalServidor.register(aceitador.selector, SelectionKey.OP_ACCEPT);
+            } catch (IOException e) {
+                System.err.println("Erro ao registrar servidor NIO: " + e.getMessage());
+            }
+        });
+    }
+
+    // Requisições aguardando um trabalhador livre
+    int getFila() {
+        return trabalhadores.getQueue().size();
+    }
+
+    int getTrabalhadoresOcupados() {
+        return trabalhadores.getActiveCount();
+    }
+
+    // Conexões com requisições que esperam uma vaga e, enquanto isso, não são lidas
+    int getAguardandoVaga() {
+        synchronized (travaVagas) {
+            return aguardandoVaga.size();
+        }
+    }
+
+    // Reserva uma vaga para a conexão ou a põe no fim da espera
+    private boolean reservarVaga(Conexao conexao) {
+        synchronized (travaVagas) {
+            if (vagasLivres > 0) {
+                vagasLivres--;
+                return true;
+            }
+            aguardandoVaga.add(conexao);
+            return false;
+        }
+    }
+
+    // Passa a vaga direto para a conexão que espera há mais tempo, ou a devolve se ninguém espera
+    private void liberarVaga() {
+        while (true) {
+            Conexao proxima;
+            synchronized (travaVagas) {
+                proxima = aguardandoVaga.poll();
+                if (proxima == null) {
+                    vagasLivres++;
+                    return;
+                }
+            }
+            if (proxima.receberVaga()) {
+                return;
+            }
+        }
+    }
+
+    void parar() {
+        ativo.set(false);
+        try {
+            if (canalServidor != null) {
+                canalServidor.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Erro ao fechar servidor NIO: " + e.getMessage());
+        }
+        for (LoopEventos loop : loops) {
+            if (loop != null) {
+                loop.fechar();
+            }
+        }
+        trabalhadores.shutdownNow();
+    }
+
+    // Aceita as conexões pendentes e distribui entre os loops de eventos
+    private void aceitar() {
+        try {
+            SocketChannel canal;
+            while ((canal = canalServidor.accept()) != null) {
+                canal.configureBlocking(false);
+                canal.socket().setTcpNoDelay(true);
+                LoopEventos loop = loops[Math.floorMod(proximoLoop.getAndIncrement(), loops.length)];
+                SocketChannel canalAceito = canal;
+                loop.executar(() -> loop.registrar(canalAceito));
+            }
+        } catch (IOException e) {
+            if (ativo.get()) {
+                System.err.println("Erro ao aceitar conexão: " + e.getMessage());
+            }
+        }
+    }
+
+    private class LoopEventos implements Runnable {
+        private final Selector selector;
+        private final Queue<Runnable> tarefas = new ConcurrentLinkedQueue<>();
+
+        LoopEventos(Selector selector) {
+            this.selector = selector;
+        }
+
+        // Agenda uma tarefa para rodar na thread deste loop
+        void executar(Runnable tarefa) {
+            tarefas.add(tarefa);
+            selector.wakeup();
+        }
+
+        void registrar(SocketChannel canal) {
+            try {
+                Conexao conexao = new Conexao(canal, this);
+                conexao.chave = canal.register(selector, SelectionKey.OP_READ, conexao);
+            } catch (IOException e) {
+                fecharCanal(canal);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (ativo.get()) {
+                    selector.select();
+                    Runnable tarefa;
+                    while ((tarefa = tarefas.poll()) != null) {
+                        tarefa.run();
+                    }
+                    Iterator<SelectionKey> chaves = selector.selectedKeys().iterator();
+                    while (chaves.hasNext()) {
+                        SelectionKey chave = chaves.next();
+                        chaves.remove();
+                        if (!chave.isValid()) {
+                            continue;
+                        }
+                        if (chave.isAcceptable()) {
+                            aceitar();
+                            continue;
+                        }
+                        Conexao conexao = (Conexao) chave.attachment();
+                        if (chave.isReadable()) {
+                            conexao.ler();
+                        }
+                        if (chave.isValid() && chave.isWritable()) {
+                            conexao.escrever();
+                        }
+                    }
+                }
+            } catch (IOException | ClosedSelectorException e) {
+                if (ativo.get()) {
+                    System.err.println("Erro no loop de eventos NIO: " + e.getMessage());
+                }
+            }
+        }
+
+        void fechar() {
+            try {
+                for (SelectionKey chave : selector.keys()) {
+                    fecharCanal(chave.channel());
+                }
+                selector.close();
+            } catch (IOException | ClosedSelectorException e) {}
+        }
+    }
+
+    private class Conexao {
+        private final SocketChannel canal;
+        private final LoopEventos loop;
+        private final ByteBuffer leitura = ByteBuffer.allocate(TAMANHO_BUFFER_LEITURA);
+        private final ByteArrayOutputStream linhaParcial = new ByteArrayOutputStream();
+        // Filas compartilhadas entre o loop e os trabalhadores, protegidas pelo monitor da conexão
+        private final Queue<String> requisicoes = new ArrayDeque<>();
+        private final Queue<ByteBuffer> saida = new ArrayDeque<>();
+        private int bytesSaida;
+        private boolean processando;
+        private boolean aguardandoVaga;
+        private boolean fechada;
+        private SelectionKey chave;
+
+        Conexao(SocketChannel canal, LoopEventos loop) {
+            this.canal = canal;
+            this.loop = loop;
+        }
+
+        // Lê o que estiver disponível e separa as linhas completas; uma linha pode chegar em várias leituras
+        void ler() {
+            try {
+                int lidos = canal.read(leitura);
+                if (lidos == -1) {
+                    fechar();
+                    return;
+                }
+                leitura.flip();
+                boolean novasRequisicoes = false;
+                while (leitura.hasRemaining()) {
+                    byte b = leitura.get();
+                    if (b != '\n') {
+                        linhaParcial.write(b);
+                        continue;
+                    }
+                    String linha = linhaParcial.toString(StandardCharsets.UTF_8).trim();
+                    linhaParcial.reset();
+                    if (!linha.isEmpty()) {
+                        synchronized (this) {
+                            requisicoes.add(linha);
+                        }
+                        novasRequisicoes = true;
+                    }
+                }
+                leitura.clear();
+                if (linhaParcial.size() > TAMANHO_MAXIMO_LINHA) {
+                    System.err.println("Requisição maior que o limite recebida, fechando conexão");
+                    fechar();
+                    return;
+                }
+                if (novasRequisicoes) {
+                    agendarProcessamento();
+                }
+                atualizarInteresse();
+            } catch (IOException e) {
+                fechar();
+            }
+        }
+
+        // Processa as requisições desta conexão em ordem, uma de cada vez, fora da thread de eventos
+        private synchronized void agendarProcessamento() {
+            if (processando || aguardandoVaga || requisicoes.isEmpty() || fechada) {
+                return;
+            }
+            if (!reservarVaga(this)) {
+                aguardandoVaga = true;
+                return;
+            }
+            processando = true;
+            trabalhadores.execute(this::processarRequisicoes);
+        }
+
+        // Chamado com a vaga de uma conexão que terminou; false se esta já não precisa dela
+        private boolean receberVaga() {
+            synchronized (this) {
+                aguardandoVaga = false;
+                if (requisicoes.isEmpty() || fechada) {
+                    return false;
+                }
+                processando = true;
+                trabalhadores.execute(this::processarRequisicoes);
+            }
+            loop.executar(this::atualizarInteresse);
+            return true;
+        }
+
+        private void processarRequisicoes() {
+            while (true) {
+                String requisicao;
+                synchronized (this) {
+                    requisicao = requisicoes.poll();
+                    if (requisicao == null || fechada) {
+                        processando = false;
+                        break;
+                    }
+                }
+                // Uma resposta que depende de outro peer é enfileirada quando chegar, sem segurar o trabalhador
+                processador.apply(requisicao).thenAccept(resposta -> {
+                    if (resposta != null) {
+                        enfileirarResposta(resposta);
+                    }
+                });
+            }
+            liberarVaga();
+            loop.executar(this::atualizarInteresse);
+        }
+
+        private void enfileirarResposta(String resposta) {
+            ByteBuffer bytes = ByteBuffer.wrap((resposta + "\n").getBytes(StandardCharsets.UTF_8));
+            synchronized (this) {
+                if (fechada) {
+                    return;
+                }
+                saida.add(bytes);
+                bytesSaida += bytes.remaining();
+            }
+            loop.executar(this::atualizarInteresse);
+        }
+
+        // Escreve o que o socket aceitar; o restante fica na fila até a próxima notificação
+        void escrever() {
+            try {
+                synchronized (this) {
+                    while (!saida.isEmpty()) {
+                        ByteBuffer atual = saida.peek();
+                        int escritos = canal.write(atual);
+                        bytesSaida -= escritos;
+                        if (atual.hasRemaining()) {
+                            break;
+                        }
+                        saida.poll();
+                    }
+                }
+                atualizarInteresse();
+            } catch (IOException e) {
+                fechar();
+            }
+        }
+
+        // Liga escrita quando há resposta pendente e desliga leitura enquanto a conexão estiver sobrecarregada
+        // ou esperando uma vaga
+        private void atualizarInteresse() {
+            if (chave == null || !chave.isValid()) {
+                return;
+            }
+            int interesse;
+            synchronized (this) {
+                boolean sobrecarregada = requisicoes.size() >= LIMITE_REQUISICOES_PENDENTES
+                    || bytesSaida >= LIMITE_BYTES_SAIDA || aguardandoVaga;
+                interesse = sobrecarregada ? 0 : SelectionKey.OP_READ;
+                if (!saida.isEmpty()) {
+                    interesse |= SelectionKey.OP_WRITE;
+                }
+            }
+            chave.interestOps(interesse);
+        }
+
+        private void fechar() {
+            synchronized (this) {
+                fechada = true;
+                requisicoes.clear();
+                saida.clear();
+            }
+            fecharCanal(canal);
+        }
+    }
+
+    private static void fecharCanal(Channel canal) {
+        try {
+            canal.close();
+        } catch (IOException e) {}
+    }
+}
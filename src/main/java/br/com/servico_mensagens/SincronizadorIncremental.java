@@ -0,0 +1,236 @@
+package br.com.servico_mensagens;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+
+class SincronizadorIncremental {
+    private static final int MENSAGENS_POR_BLOCO = 500;
+    private static final int IDS_POR_BLOCO = 2000;
+    private static final long TIMEOUT_RESUMOS_MS = 2000;
+
+    private final String nome;
+    private final MuralMensagens mural;
+    private final TransportePeers transporte;
+    private final ExecutorService executorService;
+    private final AntiEntropia antiEntropia;
+    private final Metricas metricas;
+
+    SincronizadorIncremental(String nome, MuralMensagens mural, TransportePeers transporte,
+                             ExecutorService executorService, AntiEntropia antiEntropia, Metricas metricas) {
+        this.nome = nome;
+        this.mural = mural;
+        this.transporte = transporte;
+        this.executorService = executorService;
+        this.antiEntropia = antiEntropia;
+        this.metricas = metricas;
+    }
+
+    // Responde com o resumo do mural: contador, quantidade guardada e hash do conjunto de IDs
+    Map<String, Object> responderResumo(Map<String, Object> dados) {
+        Map<String, Object> resposta = new HashMap<>();
+        resposta.put("tipo", "RESPOSTA_RESUMO");
+        resposta.put("contador", mural.getContador());
+        resposta.put("tamanho", mural.getTamanho());
+        resposta.put("resumo", mural.getResumo());
+        resposta.put("remetente", nome);
+        return resposta;
+    }
+
+    // Responde com um bloco de mensagens a partir da posição pedida
+    Map<String, Object> responderBloco(Map<String, Object> dados) {
+        int posicao = ((Number) dados.get("posicao")).intValue();
+        int limite = Math.min(((Number) dados.get("limite")).intValue(), MENSAGENS_POR_BLOCO);
+        List<Mensagem> mensagens = mural.getBloco(posicao, limite);
+        Map<String, Object> resposta = new HashMap<>();
+        resposta.put("tipo", "RESPOSTA_BLOCO");
+        resposta.put("mensagens", mensagens);
+        resposta.put("fim", mensagens.size() < limite);
+        resposta.put("remetente", nome);
+        return resposta;
+    }
+
+    // Responde com um bloco de IDs a partir da posição pedida
+    Map<String, Object> responderIds(Map<String, Object> dados) {
+        int posicao = ((Number) dados.get("posicao")).intValue();
+        int limite = Math.min(((Number) dados.get("limite")).intValue(), IDS_POR_BLOCO);
+        List<String> ids = mural.getIds(posicao, limite);
+        Map<String, Object> resposta = new HashMap<>();
+        resposta.put("tipo", "RESPOSTA_IDS");
+        resposta.put("ids", ids);
+        resposta.put("fim", ids.size() < limite);
+        resposta.put("remetente", nome);
+        return resposta;
+    }
+
+    // Responde com as mensagens dos IDs pedidos
+    Map<String, Object> responderMensagens(Map<String, Object> dados) {
+        List<String> ids = (List<String>) dados.get("ids");
+        Map<String, Object> resposta = new HashMap<>();
+        resposta.put("tipo", "RESPOSTA_MENSAGENS");
+        resposta.put("mensagens", mural.getMensagens(ids.subList(0, Math.min(ids.size(), MENSAGENS_POR_BLOCO))));
+        resposta.put("remetente", nome);
+        return resposta;
+    }
+
+    // Compara resumos com todos os peers e troca deltas com cada um que divergir
+    void sincronizar(List<EnderecoPeer> peers) {
+        long inicio = System.nanoTime();
+        try {
+            sincronizarComResumos(peers);
+        } finally {
+            metricas.registrarTempo("sincronizacao", System.nanoTime() - inicio);
+        }
+    }
+
+    private void sincronizarComResumos(List<EnderecoPeer> peers) {
+        Map<EnderecoPeer, Map<String, Object>> resumos = pedirResumos(peers);
+        if (resumos.isEmpty()) {
+            System.out.println("[SINCRONIZAÇÃO] Nenhum cliente respondeu. Mantendo mural local.");
+            return;
+        }
+
+        // Começa pelos peers mais completos: os seguintes costumam ter pouco ou nada a acrescentar
+        List<EnderecoPeer> divergentes = new ArrayList<>();
+        for (Map.Entry<EnderecoPeer, Map<String, Object>> entry : resumos.entrySet()) {
+            if (((Number) entry.getValue().get("resumo")).longValue() != mural.getResumo()) {
+                divergentes.add(entry.getKey());
+            }
+        }
+        if (divergentes.isEmpty()) {
+            System.out.println("[SINCRONIZAÇÃO] Mural local está atualizado.");
+            return;
+        }
+        divergentes.sort(Comparator.comparingInt(
+            (EnderecoPeer peer) -> ((Number) resumos.get(peer).get("contador")).intValue()).reversed());
+
+        for (EnderecoPeer peer : divergentes) {
+            String remetente = (String) resumos.get(peer).get("remetente");
+            try {
+                int recebidas = antiEntropia.reconciliar(peer);
+                // Mensagens sem origem (gravadas antes dos vetores de versão) ficam fora do delta
+                if (difereDoLocal(pedirResumo(peer))) {
+                    recebidas += puxarSufixo(peer);
+                    if (difereDoLocal(pedirResumo(peer))) {
+                        recebidas += puxarFaltantes(peer);
+                    }
+                }
+                metricas.somar("sincronizacao.mensagens", recebidas);
+                System.out.println("[SINCRONIZAÇÃO] Recebidas " + recebidas + " mensagens de " + remetente);
+            } catch (IOException e) {
+                System.err.println("[SINCRONIZAÇÃO] Falha ao sincronizar com " + remetente + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private boolean difereDoLocal(Map<String, Object> resumo) {
+        return resumo != null && ((Number) resumo.get("resumo")).longValue() != mural.getResumo();
+    }
+
+    private Map<EnderecoPeer, Map<String, Object>> pedirResumos(List<EnderecoPeer> peers) {
+        Map<EnderecoPeer, CompletableFuture<Map<String, Object>>> pedidos = new HashMap<>();
+        for (EnderecoPeer peer : peers) {
+            pedidos.put(peer, CompletableFuture.supplyAsync(() -> {
+                try {
+                    return pedirResumo(peer);
+                } catch (IOException e) {
+                    System.err.println("[SINCRONIZAÇÃO] Sem resumo do peer " + peer + ": " + e.getMessage());
+                    return null;
+                }
+            }, executorService));
+        }
+        Map<EnderecoPeer, Map<String, Object>> resumos = new HashMap<>();
+        long limite = System.currentTimeMillis() + TIMEOUT_RESUMOS_MS;
+        for (Map.Entry<EnderecoPeer, CompletableFuture<Map<String, Object>>> pedido : pedidos.entrySet()) {
+            try {
+                long espera = Math.max(limite - System.currentTimeMillis(), 1);
+                Map<String, Object> resumo = pedido.getValue().get(espera, TimeUnit.MILLISECONDS);
+                if (resumo != null) {
+                    resumos.put(pedido.getKey(), resumo);
+                }
+            } catch (TimeoutException e) {
+                System.err.println("[SINCRONIZAÇÃO] Sem resumo do peer " + pedido.getKey() + " em " + TIMEOUT_RESUMOS_MS + " ms");
+            } catch (ExecutionException e) {
+                System.err.println("[SINCRONIZAÇÃO] Erro ao pedir o resumo do peer " + pedido.getKey() + ": " + e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return resumos;
+    }
+
+    private Map<String, Object> pedirResumo(EnderecoPeer peer) throws IOException {
+        Map<String, Object> solicitacao = new HashMap<>();
+        solicitacao.put("tipo", "SOLICITAR_RESUMO");
+        solicitacao.put("remetente", nome);
+        return transporte.requisitar(peer, solicitacao);
+    }
+
+    // Caso comum de quem ficou fora do ar: o mural local é um prefixo do mural do peer
+    private int puxarSufixo(EnderecoPeer peer) throws IOException {
+        int posicao = mural.getTamanho();
+        int recebidas = 0;
+        while (true) {
+            Map<String, Object> solicitacao = new HashMap<>();
+            solicitacao.put("tipo", "SOLICITAR_BLOCO");
+            solicitacao.put("posicao", posicao);
+            solicitacao.put("limite", MENSAGENS_POR_BLOCO);
+            solicitacao.put("remetente", nome);
+            Map<String, Object> resposta = transporte.requisitar(peer, solicitacao);
+            List<Mensagem> mensagens = Mensagem.deLista(resposta.get("mensagens"));
+            recebidas += mural.adicionarMensagens(mensagens);
+            posicao += mensagens.size();
+            if (Boolean.TRUE.equals(resposta.get("fim")) || mensagens.isEmpty()) {
+                return recebidas;
+            }
+        }
+    }
+
+    // Quando os murais divergem fora do sufixo: percorre os IDs do peer e pede só as mensagens ausentes
+    private int puxarFaltantes(EnderecoPeer peer) throws IOException {
+        int posicao = 0;
+        int recebidas = 0;
+        while (true) {
+            Map<String, Object> solicitacao = new HashMap<>();
+            solicitacao.put("tipo", "SOLICITAR_IDS");
+            solicitacao.put("posicao", posicao);
+            solicitacao.put("limite", IDS_POR_BLOCO);
+            solicitacao.put("remetente", nome);
+            Map<String, Object> resposta = transporte.requisitar(peer, solicitacao);
+            List<String> ids = (List<String>) resposta.get("ids");
+
+            List<String> ausentes = new ArrayList<>();
+            for (String id : ids) {
+                if (!mural.possuiMensagem(id)) {
+                    ausentes.add(id);
+                }
+            }
+            for (int inicio = 0; inicio < ausentes.size(); inicio += MENSAGENS_POR_BLOCO) {
+                recebidas += mural.adicionarMensagens(
+                    pedirMensagens(peer, ausentes.subList(inicio, Math.min(inicio + MENSAGENS_POR_BLOCO, ausentes.size()))));
+            }
+            posicao += ids.size();
+            if (Boolean.TRUE.equals(resposta.get("fim")) || ids.isEmpty()) {
+                return recebidas;
+            }
+        }
+    }
+
+    List<Mensagem> pedirMensagens(EnderecoPeer peer, List<String> ids) throws IOException {
+        Map<String, Object> solicitacao = new HashMap<>();
+        solicitacao.put("tipo", "SOLICITAR_MENSAGENS");
+        solicitacao.put("ids", new ArrayList<>(ids));
+        solicitacao.put("remetente", nome);
+        return Mensagem.deLista(transporte.requisitar(peer, solicitacao).get("mensagens"));
+    }
+}
@@ -0,0 +1,358 @@
+package br.com.servico_mensagens;
+
+import br.com.servico_mensagens.grpc.BlocoMensagens;
+import br.com.servico_mensagens.grpc.Confirmacao;
+import br.com.servico_mensagens.grpc.NovaMensagem;
+import br.com.servico_mensagens.grpc.RequisicaoJson;
+import br.com.servico_mensagens.grpc.RespostaJson;
+import br.com.servico_mensagens.grpc.ServicoMuralGrpc;
+import br.com.servico_mensagens.grpc.SolicitacaoMuralCompleto;
+import br.com.servico_mensagens.grpc.SolicitacaoSincronizacao;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.StreamObserver;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+class TransporteGrpc implements TransportePeers {
+    private static final long TIMEOUT_RESPOSTA_MS = 5000;
+
+    private final ObjectMapper objectMapper;
+    private final MetricasTransporte metricas;
+    // Comprime com o gzip do gRPC as requisições e o fluxo de mensagens; as respostas o servidor comprime se o canal aceitar
+    private final boolean comprimir;
+    private final Map<EnderecoPeer, CanalPeer> canais = new ConcurrentHashMap<>();
+
+    TransporteGrpc(ObjectMapper objectMapper) {
+        this(objectMapper, Metricas.NENHUMA, false);
+    }
+
+    TransporteGrpc(ObjectMapper objectMapper, Metricas metricas, boolean comprimir) {
+        this.objectMapper = objectMapper;
+        this.metricas = new MetricasTransporte(metricas);
+        this.comprimir = comprimir;
+    }
+
+    private CanalPeer canal(EnderecoPeer peer) {
+        return canais.computeIfAbsent(peer, CanalPeer::new);
+    }
+
+    // Usa a RPC tipada de cada requisição conhecida; as demais seguem como JSON pela RPC Requisitar
+    @Override
+    public Map<String, Object> requisitar(EnderecoPeer peer, Map<String, Object> dados) throws IOException {
+        String tipo = (String) dados.get("tipo");
+        CanalPeer canal = canal(peer);
+        try {
+            switch (tipo) {
+                case "NOVA_MENSAGEM":
+                    return canal.enviarNovasMensagens(tipo, List.of(dados), (String) dados.get("remetente"));
+                case "LOTE":
+                    Map<String, Object> confirmacao = canal.enviarNovasMensagens(tipo,
+                        (List<Map<String, Object>>) dados.get("mensagens"), (String) dados.get("remetente"));
+                    // Cada mensagem do lote já foi confirmada no fluxo
+                    confirmacao.put("tipo", "CONFIRMACAO_LOTE");
+                    confirmacao.put("ate", dados.get("ate"));
+                    return confirmacao;
+                case "SOLICITAR_SINCRONIZACAO":
+                    return canal.sincronizar(dados);
+                case "SOLICITAR_MURAL_COMPLETO":
+                    return canal.muralCompleto(dados);
+                default:
+                    return canal.requisitarJson(dados, TIMEOUT_RESPOSTA_MS);
+            }
+        } catch (StatusRuntimeException e) {
+            metricas.falhou(peer.toString(), tipo);
+            throw new IOException("Falha na chamada gRPC para o peer " + peer + ": " + e.getStatus(), e);
+        } catch (IOException e) {
+            metricas.falhou(peer.toString(), tipo);
+            throw e;
+        }
+    }
+
+    // Requisições com prazo próprio, como as batidas dos membros, seguem sempre como JSON
+    @Override
+    public Map<String, Object> requisitar(EnderecoPeer peer, Map<String, Object> dados, long timeoutMs) throws IOException {
+        try {
+            return canal(peer).requisitarJson(dados, timeoutMs);
+        } catch (StatusRuntimeException e) {
+            metricas.falhou(peer.toString(), String.valueOf(dados.get("tipo")));
+            throw new IOException("Falha na chamada gRPC para o peer " + peer + ": " + e.getStatus(), e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Object>> requisitarAssincrono(EnderecoPeer peer, Map<String, Object> dados, long timeoutMs) {
+        CompletableFuture<Map<String, Object>> resposta = canal(peer).requisitarJsonAssincrono(dados, timeoutMs);
+        return resposta.whenComplete((mapa, erro) -> {
+            if (erro != null) {
+                metricas.falhou(peer.toString(), String.valueOf(dados.get("tipo")));
+            }
+        });
+    }
+
+    @Override
+    public void reconectar(EnderecoPeer peer) {
+        canal(peer).canal.resetConnectBackoff();
+    }
+
+    @Override
+    public void fechar(EnderecoPeer peer) {
+        CanalPeer canal = canais.remove(peer);
+        if (canal != null) {
+            canal.fechar();
+        }
+    }
+
+    @Override
+    public void fecharTodas() {
+        for (CanalPeer canal : canais.values()) {
+            canal.fechar();
+        }
+        canais.clear();
+    }
+
+    private class CanalPeer {
+        private final EnderecoPeer peer;
+        private final ManagedChannel canal;
+        private final ServicoMuralGrpc.ServicoMuralBlockingStub stub;
+        private final ServicoMuralGrpc.ServicoMuralStub stubAssincrono;
+        // Por número do envio: a mesma mensagem reenviada antes da confirmação anterior chegar tem outra entrada
+        private final Map<Long, CompletableFuture<Void>> confirmacoes = new ConcurrentHashMap<>();
+        private final AtomicLong ultimoEnvio = new AtomicLong();
+        private StreamObserver<NovaMensagem> fluxoMensagens;
+
+        CanalPeer(EnderecoPeer peer) {
+            this.peer = peer;
+            this.canal = ManagedChannelBuilder.forAddress(peer.getHost(), peer.getPorta()).usePlaintext().build();
+            ServicoMuralGrpc.ServicoMuralBlockingStub bloqueante = ServicoMuralGrpc.newBlockingStub(canal);
+            ServicoMuralGrpc.ServicoMuralStub assincrono = ServicoMuralGrpc.newStub(canal);
+            this.stub = comprimir ? bloqueante.withCompression("gzip") : bloqueante;
+            this.stubAssincrono = comprimir ? assincrono.withCompression("gzip") : assincrono;
+        }
+
+        // Envia as mensagens pelo fluxo bidirecional aberto com o peer e espera a confirmação de cada envio.
+        // Um item que não dá para converter é registrado e fica de fora, com a sequência em "descartadas", como faz
+        // o receptor JSON: reenviado, ele falharia de novo e pararia a caixa de saída
+        Map<String, Object> enviarNovasMensagens(String tipo, List<Map<String, Object>> itens, String remetente) throws IOException {
+            long inicio = System.nanoTime();
+            long bytes = 0;
+            List<NovaMensagem> novasMensagens = new ArrayList<>(itens.size());
+            List<Long> envios = new ArrayList<>(itens.size());
+            List<Object> descartadas = new ArrayList<>();
+            for (Map<String, Object> item : itens) {
+                NovaMensagem novaMensagem;
+                try {
+                    Object conteudo = item.get("mensagem");
+                    Mensagem mensagem = conteudo instanceof Mensagem
+                        ? (Mensagem) conteudo
+                        : Mensagem.deMapa((Map<String, Object>) conteudo);
+                    novaMensagem = NovaMensagem.newBuilder()
+                        .setMensagem(ConversorProto.paraProto(mensagem))
+                        .setLamportClock(((Number) item.get("lamportClock")).intValue())
+                        .setRemetente(remetente)
+                        .setEnvio(ultimoEnvio.incrementAndGet())
+                        .build();
+                } catch (RuntimeException e) {
+                    System.err.println("Mensagem inválida no lote para " + peer + " (seq " + item.get("seq") + ") descartada: "
+                        + e.getMessage());
+                    descartadas.add(item.get("seq"));
+                    continue;
+                }
+                novasMensagens.add(novaMensagem);
+                bytes += novaMensagem.getSerializedSize();
+                envios.add(novaMensagem.getEnvio());
+            }
+            metricas.enviado(peer.toString(), tipo, bytes);
+
+            List<CompletableFuture<Void>> aguardando = new ArrayList<>(envios.size());
+            for (NovaMensagem novaMensagem : novasMensagens) {
+                CompletableFuture<Void> confirmacao = new CompletableFuture<>();
+                confirmacoes.put(novaMensagem.getEnvio(), confirmacao);
+                aguardando.add(confirmacao);
+            }
+            synchronized (this) {
+                if (fluxoMensagens == null) {
+                    fluxoMensagens = stubAssincrono.enviarMensagens(new ReceptorConfirmacoes());
+                }
+                for (NovaMensagem novaMensagem : novasMensagens) {
+                    fluxoMensagens.onNext(novaMensagem);
+                }
+            }
+            try {
+                CompletableFuture.allOf(aguardando.toArray(new CompletableFuture[0]))
+                    .get(TIMEOUT_RESPOSTA_MS, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                throw new IOException("Falha ao enviar mensagens para o peer " + peer, e.getCause());
+            } catch (TimeoutException e) {
+                throw new IOException("Sem confirmação do peer " + peer + " em " + TIMEOUT_RESPOSTA_MS + " ms");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Envio para o peer " + peer + " interrompido");
+            } finally {
+                for (Long envio : envios) {
+                    confirmacoes.remove(envio);
+                }
+            }
+            // As confirmações chegam pelo fluxo, sem tamanho por requisição; conta só o tempo
+            metricas.respondido(peer.toString(), tipo, 0, System.nanoTime() - inicio);
+            Map<String, Object> resposta = new HashMap<>();
+            resposta.put("tipo", "OK");
+            if (!descartadas.isEmpty()) {
+                resposta.put("descartadas", descartadas);
+            }
+            return resposta;
+        }
+
+        Map<String, Object> sincronizar(Map<String, Object> dados) {
+            long inicio = System.nanoTime();
+            SolicitacaoSincronizacao solicitacao = SolicitacaoSincronizacao.newBuilder()
+                .setContador(((Number) dados.get("contador")).intValue())
+                .setRemetente((String) dados.get("remetente"))
+                .build();
+            metricas.enviado(peer.toString(), "SOLICITAR_SINCRONIZACAO", solicitacao.getSerializedSize());
+            return juntarBlocos("SOLICITAR_SINCRONIZACAO", "RESPOSTA_SINCRONIZACAO", inicio,
+                stub.withDeadlineAfter(TIMEOUT_RESPOSTA_MS, TimeUnit.MILLISECONDS).sincronizar(solicitacao));
+        }
+
+        Map<String, Object> muralCompleto(Map<String, Object> dados) {
+            long inicio = System.nanoTime();
+            SolicitacaoMuralCompleto solicitacao = SolicitacaoMuralCompleto.newBuilder()
+                .setContador(((Number) dados.get("contador")).intValue())
+                .setRemetente((String) dados.get("remetente"))
+                .build();
+            metricas.enviado(peer.toString(), "SOLICITAR_MURAL_COMPLETO", solicitacao.getSerializedSize());
+            return juntarBlocos("SOLICITAR_MURAL_COMPLETO", "RESPOSTA_MURAL_COMPLETO", inicio,
+                stub.withDeadlineAfter(TIMEOUT_RESPOSTA_MS, TimeUnit.MILLISECONDS).muralCompleto(solicitacao));
+        }
+
+        Map<String, Object> requisitarJson(Map<String, Object> dados, long timeoutMs) throws IOException {
+            long inicio = System.nanoTime();
+            String tipo = String.valueOf(dados.get("tipo"));
+            RequisicaoJson requisicao = RequisicaoJson.newBuilder().setJson(objectMapper.writeValueAsString(dados)).build();
+            metricas.enviado(peer.toString(), tipo, requisicao.getSerializedSize());
+            RespostaJson resposta = stub.withDeadlineAfter(timeoutMs, TimeUnit.MILLISECONDS).requisitar(requisicao);
+            metricas.respondido(peer.toString(), tipo, resposta.getSerializedSize(), System.nanoTime() - inicio);
+            return lerRespostaJson(resposta);
+        }
+
+        // Como requisitarJson, pelo stub assíncrono; o prazo da chamada é o timeout
+        CompletableFuture<Map<String, Object>> requisitarJsonAssincrono(Map<String, Object> dados, long timeoutMs) {
+            long inicio = System.nanoTime();
+            String tipo = String.valueOf(dados.get("tipo"));
+            CompletableFuture<Map<String, Object>> futuro = new CompletableFuture<>();
+            RequisicaoJson requisicao;
+            try {
+                requisicao = RequisicaoJson.newBuilder().setJson(objectMapper.writeValueAsString(dados)).build();
+            } catch (IOException e) {
+                futuro.completeExceptionally(e);
+                return futuro;
+            }
+            metricas.enviado(peer.toString(), tipo, requisicao.getSerializedSize());
+            stubAssincrono.withDeadlineAfter(timeoutMs, TimeUnit.MILLISECONDS).requisitar(requisicao, new StreamObserver<RespostaJson>() {
+                @Override
+                public void onNext(RespostaJson resposta) {
+                    metricas.respondido(peer.toString(), tipo, resposta.getSerializedSize(), System.nanoTime() - inicio);
+                    try {
+                        futuro.complete(lerRespostaJson(resposta));
+                    } catch (IOException e) {
+                        futuro.completeExceptionally(e);
+                    }
+                }
+
+                @Override
+                public void onError(Throwable erro) {
+                    futuro.completeExceptionally(new IOException("Falha na chamada gRPC para o peer " + peer + ": "
+                        + (erro instanceof StatusRuntimeException ? ((StatusRuntimeException) erro).getStatus() : erro.getMessage()), erro));
+                }
+
+                @Override
+                public void onCompleted() {
+                    futuro.complete(null);
+                }
+            });
+            return futuro;
+        }
+
+        private Map<String, Object> lerRespostaJson(RespostaJson resposta) throws IOException {
+            if (resposta.getJson().isEmpty()) {
+                return null;
+            }
+            Map<String, Object> dadosResposta = objectMapper.readValue(resposta.getJson(), Map.class);
+            if ("ERRO".equals(dadosResposta.get("tipo"))) {
+                throw new IOException("Erro no peer " + peer + ": " + dadosResposta.get("mensagem"));
+            }
+            return dadosResposta;
+        }
+
+        // Junta os blocos recebidos no mesmo formato da resposta JSON, já com as mensagens convertidas
+        private Map<String, Object> juntarBlocos(String tipoRequisicao, String tipo, long inicio, Iterator<BlocoMensagens> blocos) {
+            Map<String, Object> resposta = new HashMap<>();
+            List<Mensagem> mensagens = new ArrayList<>();
+            long bytes = 0;
+            resposta.put("tipo", tipo);
+            while (blocos.hasNext()) {
+                BlocoMensagens bloco = blocos.next();
+                bytes += bloco.getSerializedSize();
+                resposta.put("contador", bloco.getContador());
+                resposta.put("remetente", bloco.getRemetente());
+                mensagens.addAll(ConversorProto.deProto(bloco.getMensagensList()));
+            }
+            resposta.put("mensagens", mensagens);
+            metricas.respondido(peer.toString(), tipoRequisicao, bytes, System.nanoTime() - inicio);
+            return resposta;
+        }
+
+        private void falharConfirmacoes(Throwable causa) {
+            synchronized (this) {
+                fluxoMensagens = null;
+            }
+            for (CompletableFuture<Void> confirmacao : confirmacoes.values()) {
+                confirmacao.completeExceptionally(causa);
+            }
+        }
+
+        void fechar() {
+            synchronized (this) {
+                if (fluxoMensagens != null) {
+                    fluxoMensagens.onCompleted();
+                    fluxoMensagens = null;
+                }
+            }
+            canal.shutdownNow();
+        }
+
+        private class ReceptorConfirmacoes implements StreamObserver<Confirmacao> {
+            @Override
+            public void onNext(Confirmacao confirmacao) {
+                CompletableFuture<Void> pendente = confirmacoes.get(confirmacao.getEnvio());
+                if (pendente != null) {
+                    pendente.complete(null);
+                }
+            }
+
+            @Override
+            public void onError(Throwable erro) {
+                falharConfirmacoes(erro);
+            }
+
+            @Override
+            public void onCompleted() {
+                falharConfirmacoes(new IOException("Fluxo de mensagens encerrado pelo peer " + peer));
+            }
+        }
+    }
+}
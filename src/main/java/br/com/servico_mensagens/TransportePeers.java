@@ -0,0 +1,25 @@
+package br.com.servico_mensagens;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+
+interface TransportePeers {
+    // Envia uma requisição ao peer e espera a resposta correspondente
+    Map<String, Object> requisitar(EnderecoPeer peer, Map<String, Object> dados) throws IOException;
+
+    // Como requisitar, mas desiste se a resposta não chegar em timeoutMs
+    Map<String, Object> requisitar(EnderecoPeer peer, Map<String, Object> dados, long timeoutMs) throws IOException;
+
+    // Como requisitar com prazo, sem bloquear quem chama; o futuro falha se a resposta não chegar em timeoutMs
+    CompletableFuture<Map<String, Object>> requisitarAssincrono(EnderecoPeer peer, Map<String, Object> dados, long timeoutMs);
+
+    // Esquece o intervalo de espera depois de uma falha, para a próxima requisição já tentar se conectar
+    void reconectar(EnderecoPeer peer);
+
+    // Fecha a conexão com um peer que saiu do cluster; se ele voltar, uma nova é aberta no próximo envio
+    void fechar(EnderecoPeer peer);
+
+    void fecharTodas();
+}
@@ -0,0 +1,108 @@
+package br.com.servico_mensagens;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+// Treina o dicionário de compressão das sincronizações com as mensagens mais recentes dos murais salvos.
+// Todos os nós devem receber o mesmo arquivo em -Dcliente.compressao.dicionario; quem não tiver o mesmo usa deflate sem ele
+public class TreinadorDicionario {
+    private static final String SAIDA_PADRAO = "dicionario_mural.bin";
+    // As mensagens recentes representam melhor o que ainda vai circular do que o começo do mural
+    private static final int AMOSTRAS_POR_MURAL = 10_000;
+    private static final int MENSAGENS_POR_LOTE = 128;
+
+    // Uso: TreinadorDicionario --nome Cliente1 [--nome Cliente2 ...] [--saida arquivo]; lê o mural no modo de mural.persistencia
+    public static void main(String[] args) {
+        List<String> nomes = new ArrayList<>();
+        Path saida = Path.of(SAIDA_PADRAO);
+        for (int i = 0; i < args.length; i++) {
+            if ("--nome".equals(args[i]) && i + 1 < args.length) {
+                nomes.add(args[++i]);
+            } else if ("--saida".equals(args[i]) && i + 1 < args.length) {
+                saida = Path.of(args[++i]);
+            } else {
+                System.err.println("Opção inválida: " + args[i]);
+                exibirUso();
+                return;
+            }
+        }
+        if (nomes.isEmpty()) {
+            exibirUso();
+            return;
+        }
+        try {
+            treinar(nomes, saida);
+        } catch (IOException | IllegalStateException e) {
+            System.err.println("Erro ao treinar o dicionário: " + e.getMessage());
+        }
+    }
+
+    private static void treinar(List<String> nomes, Path saida) throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        List<Mensagem> mensagens = new ArrayList<>();
+        for (String nome : nomes) {
+            Deque<Mensagem> recentes = new ArrayDeque<>(AMOSTRAS_POR_MURAL);
+            // Só leitura: o cliente pode estar rodando e gravando nos mesmos arquivos
+            PersistenciaMural persistencia = MuralMensagens.criarPersistencia(nome, ModoPersistencia.padrao(), true);
+            persistencia.carregar(mensagem -> {
+                if (recentes.size() == AMOSTRAS_POR_MURAL) {
+                    recentes.removeFirst();
+                }
+                recentes.addLast(mensagem);
+            });
+            persistencia.fechar();
+            if (recentes.isEmpty()) {
+                System.err.println("Nenhuma mensagem salva para " + nome + " no modo " + ModoPersistencia.padrao());
+            }
+            mensagens.addAll(recentes);
+        }
+        if (mensagens.size() < MENSAGENS_POR_LOTE) {
+            throw new IllegalStateException("são precisas ao menos " + MENSAGENS_POR_LOTE + " mensagens, há " + mensagens.size());
+        }
+
+        List<byte[]> amostras = new ArrayList<>(mensagens.size());
+        for (Mensagem mensagem : mensagens) {
+            amostras.add(objectMapper.writeValueAsBytes(mensagem));
+        }
+        long inicio = System.nanoTime();
+        byte[] dicionario = CompressaoCarga.treinarDicionario(amostras, CompressaoCarga.TAMANHO_DICIONARIO);
+        long treino = System.nanoTime() - inicio;
+        Files.write(saida, dicionario);
+
+        // Um lote de 128 mensagens é onde o dicionário mais ajuda: sem ele, o deflate começa cada lote do zero
+        List<Mensagem> lote = mensagens.subList(mensagens.size() - MENSAGENS_POR_LOTE, mensagens.size());
+        CompressaoCarga comDicionario = new CompressaoCarga(objectMapper, ModoCompressao.DEFLATE, dicionario);
+        CompressaoCarga semDicionario = new CompressaoCarga(objectMapper, ModoCompressao.DEFLATE, null);
+        System.out.printf("%d amostras, dicionário de %,d bytes gravado em %s (%d ms), formato %s%n",
+            amostras.size(), dicionario.length, saida, treino / 1_000_000, comDicionario.getAceitas().get(0));
+        System.out.printf("Lote de %d mensagens: %,d bytes em JSON, %,d com deflate, %,d com deflate e dicionário%n",
+            MENSAGENS_POR_LOTE, objectMapper.writeValueAsBytes(lote).length,
+            tamanhoComprimido(semDicionario, lote), tamanhoComprimido(comDicionario, lote));
+        System.out.println("Para usar o dicionário, inicie todos os clientes com -Dcliente.compressao.dicionario=" + saida);
+    }
+
+    private static int tamanhoComprimido(CompressaoCarga compressao, List<Mensagem> lote) throws IOException {
+        Map<String, Object> carga = new HashMap<>();
+        carga.put("mensagens", lote);
+        compressao.comprimir(carga, compressao.getAceitas());
+        int caracteres = 0;
+        for (Object pedaco : (List<?>) carga.get("mensagensComprimidas")) {
+            caracteres += ((String) pedaco).length();
+        }
+        return caracteres;
+    }
+
+    private static void exibirUso() {
+        System.out.println("Uso: TreinadorDicionario --nome <cliente> [--nome <cliente> ...] [--saida <arquivo>]");
+    }
+}
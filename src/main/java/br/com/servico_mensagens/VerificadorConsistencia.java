@@ -0,0 +1,171 @@
+package br.com.servico_mensagens;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+
+class VerificadorConsistencia {
+    private static final long INTERVALO_VERIFICACAO_MS = 30_000;
+    // Quantos níveis da árvore são pulados por rodada: cada nó divergente vira 32 descendentes
+    private static final int NIVEIS_POR_RODADA = 5;
+    private static final int BALDES_POR_PEDIDO = 64;
+    private static final int MENSAGENS_POR_ENVIO = 500;
+
+    private final String nome;
+    private final MuralMensagens mural;
+    private final TransportePeers transporte;
+    private final SincronizadorIncremental sincronizador;
+    private ScheduledExecutorService agendador;
+
+    VerificadorConsistencia(String nome, MuralMensagens mural, TransportePeers transporte,
+                            SincronizadorIncremental sincronizador) {
+        this.nome = nome;
+        this.mural = mural;
+        this.transporte = transporte;
+        this.sincronizador = sincronizador;
+    }
+
+    // Responde com os hashes dos nós pedidos da árvore de IDs
+    Map<String, Object> responderArvore(Map<String, Object> dados) {
+        Map<String, Object> resposta = new HashMap<>();
+        resposta.put("tipo", "RESPOSTA_ARVORE");
+        resposta.put("hashes", mural.getHashesArvore(lerInteiros(dados.get("nos"))));
+        resposta.put("remetente", nome);
+        return resposta;
+    }
+
+    // Responde com os IDs guardados nos baldes pedidos
+    Map<String, Object> responderBaldes(Map<String, Object> dados) {
+        Map<String, Object> resposta = new HashMap<>();
+        resposta.put("tipo", "RESPOSTA_BALDES");
+        resposta.put("ids", mural.getIdsBaldes(lerInteiros(dados.get("baldes"))));
+        resposta.put("remetente", nome);
+        return resposta;
+    }
+
+    // Verifica periodicamente os peers sorteados a cada rodada; murais iguais custam só a troca do hash da raiz
+    void iniciar(Supplier<List<EnderecoPeer>> peers) {
+        agendador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, nome + "-verificacao");
+            thread.setDaemon(true);
+            return thread;
+        });
+        agendador.scheduleWithFixedDelay(() -> {
+            for (EnderecoPeer peer : peers.get()) {
+                try {
+                    verificar(peer);
+                } catch (IOException e) {
+                    System.err.println("[VERIFICAÇÃO] Erro ao verificar o mural com o peer " + peer + ": " + e.getMessage());
+                }
+            }
+        }, INTERVALO_VERIFICACAO_MS, INTERVALO_VERIFICACAO_MS, TimeUnit.MILLISECONDS);
+    }
+
+    void parar() {
+        if (agendador != null) {
+            agendador.shutdownNow();
+        }
+    }
+
+    // Desce na árvore do peer só pelos nós divergentes e troca as mensagens dos baldes diferentes
+    void verificar(EnderecoPeer peer) throws IOException {
+        List<Integer> baldes = new ArrayList<>();
+        List<Integer> nos = new ArrayList<>();
+        nos.add(1);
+        while (!nos.isEmpty()) {
+            List<Integer> divergentes = compararNos(peer, nos);
+            nos = new ArrayList<>();
+            for (int no : divergentes) {
+                if (no >= ArvoreHashes.BALDES) {
+                    baldes.add(no - ArvoreHashes.BALDES);
+                    continue;
+                }
+                int profundidade = 31 - Integer.numberOfLeadingZeros(no);
+                int salto = Math.min(NIVEIS_POR_RODADA, ArvoreHashes.PROFUNDIDADE - profundidade);
+                for (int i = 0; i < 1 << salto; i++) {
+                    nos.add((no << salto) + i);
+                }
+            }
+        }
+
+        int recebidas = 0;
+        int enviadas = 0;
+        for (int inicio = 0; inicio < baldes.size(); inicio += BALDES_POR_PEDIDO) {
+            List<Integer> grupo = baldes.subList(inicio, Math.min(inicio + BALDES_POR_PEDIDO, baldes.size()));
+            Set<String> idsPeer = new HashSet<>(pedirIdsBaldes(peer, grupo));
+            List<String> ausentes = new ArrayList<>();
+            for (String id : idsPeer) {
+                if (!mural.possuiMensagem(id)) {
+                    ausentes.add(id);
+                }
+            }
+            List<String> sobrando = new ArrayList<>();
+            for (String id : mural.getIdsBaldes(grupo)) {
+                if (!idsPeer.contains(id)) {
+                    sobrando.add(id);
+                }
+            }
+            for (int i = 0; i < ausentes.size(); i += MENSAGENS_POR_ENVIO) {
+                recebidas += mural.adicionarMensagens(sincronizador.pedirMensagens(peer,
+                    ausentes.subList(i, Math.min(i + MENSAGENS_POR_ENVIO, ausentes.size()))));
+            }
+            for (int i = 0; i < sobrando.size(); i += MENSAGENS_POR_ENVIO) {
+                enviadas += enviarMensagens(peer,
+                    mural.getMensagens(sobrando.subList(i, Math.min(i + MENSAGENS_POR_ENVIO, sobrando.size()))));
+            }
+        }
+        if (recebidas > 0 || enviadas > 0) {
+            System.out.println("\n[VERIFICAÇÃO] Peer " + peer + ": recebidas " + recebidas + ", enviadas " + enviadas + " mensagens");
+        }
+    }
+
+    // Pede ao peer os hashes dos nós e retorna os que diferem dos locais
+    private List<Integer> compararNos(EnderecoPeer peer, List<Integer> nos) throws IOException {
+        Map<String, Object> solicitacao = new HashMap<>();
+        solicitacao.put("tipo", "SOLICITAR_ARVORE");
+        solicitacao.put("nos", nos);
+        solicitacao.put("remetente", nome);
+        List<Object> hashesPeer = (List<Object>) transporte.requisitar(peer, solicitacao).get("hashes");
+        List<Long> hashesLocais = mural.getHashesArvore(nos);
+        List<Integer> divergentes = new ArrayList<>();
+        for (int i = 0; i < nos.size(); i++) {
+            if (((Number) hashesPeer.get(i)).longValue() != hashesLocais.get(i)) {
+                divergentes.add(nos.get(i));
+            }
+        }
+        return divergentes;
+    }
+
+    private List<String> pedirIdsBaldes(EnderecoPeer peer, List<Integer> baldes) throws IOException {
+        Map<String, Object> solicitacao = new HashMap<>();
+        solicitacao.put("tipo", "SOLICITAR_BALDES");
+        solicitacao.put("baldes", new ArrayList<>(baldes));
+        solicitacao.put("remetente", nome);
+        return (List<String>) transporte.requisitar(peer, solicitacao).get("ids");
+    }
+
+    private int enviarMensagens(EnderecoPeer peer, List<Mensagem> mensagens) throws IOException {
+        Map<String, Object> envio = new HashMap<>();
+        envio.put("tipo", "ENVIO_DELTA");
+        envio.put("mensagens", mensagens);
+        envio.put("remetente", nome);
+        return ((Number) transporte.requisitar(peer, envio).get("adicionadas")).intValue();
+    }
+
+    private static List<Integer> lerInteiros(Object dados) {
+        List<Integer> valores = new ArrayList<>();
+        for (Object valor : (List<Object>) dados) {
+            valores.add(((Number) valor).intValue());
+        }
+        return valores;
+    }
+}
@@ -0,0 +1,57 @@
+package br.com.servico_mensagens;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+
+class VetorVersao {
+    // Para cada origem, a maior sequência até a qual não falta nenhuma mensagem
+    private final Map<String, Long> contiguo = new HashMap<>();
+    // Sequências recebidas fora de ordem, à espera das que faltam antes delas
+    private final Map<String, TreeSet<Long>> adiantadas = new HashMap<>();
+
+    void registrar(String origem, long sequencia) {
+        long atual = contiguo.getOrDefault(origem, 0L);
+        if (sequencia <= atual) {
+            return;
+        }
+        if (sequencia != atual + 1) {
+            adiantadas.computeIfAbsent(origem, o -> new TreeSet<>()).add(sequencia);
+            return;
+        }
+        atual = sequencia;
+        TreeSet<Long> pendentes = adiantadas.get(origem);
+        while (pendentes != null && pendentes.remove(atual + 1)) {
+            atual++;
+        }
+        if (pendentes != null && pendentes.isEmpty()) {
+            adiantadas.remove(origem);
+        }
+        contiguo.put(origem, atual);
+    }
+
+    long get(String origem) {
+        return contiguo.getOrDefault(origem, 0L);
+    }
+
+    Map<String, Long> paraMapa() {
+        return new HashMap<>(contiguo);
+    }
+
+    void limpar() {
+        contiguo.clear();
+        adiantadas.clear();
+    }
+
+    // Lê o vetor recebido em uma requisição JSON, onde os números podem chegar como Integer ou Long
+    static Map<String, Long> deMapa(Object dados) {
+        Map<String, Long> vetor = new HashMap<>();
+        if (dados != null) {
+            for (Map.Entry<String, Object> entry : ((Map<String, Object>) dados).entrySet()) {
+                vetor.put(entry.getKey(), ((Number) entry.getValue()).longValue());
+            }
+        }
+        return vetor;
+    }
+}
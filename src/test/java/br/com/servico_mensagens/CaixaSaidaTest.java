@@ -0,0 +1,113 @@
+package br.com.servico_mensagens;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+class CaixaSaidaTest {
+    private static final EnderecoPeer PEER = EnderecoPeer.local(8002);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @TempDir
+    Path diretorio;
+
+    @Test
+    void compactaAParteConfirmadaMesmoComMensagensPorConfirmar() throws Exception {
+        CaixaSaida caixa = abrir();
+        for (int i = 0; i < 3000; i++) {
+            caixa.acrescentar(item(i));
+        }
+        Path log = diretorio.resolve("Cliente1_saida_localhost_8002.log");
+        long antes = Files.size(log);
+
+        confirmar(caixa, 2900);
+
+        assertTrue(Files.size(log) < antes / 2, "log com " + Files.size(log) + " bytes");
+        assertEquals(100, caixa.getPendentes());
+        assertEquals(2901L, ((Number) caixa.lerLote(1).itens.get(0).get("seq")).longValue());
+        caixa.fechar();
+
+        CaixaSaida reaberta = abrir();
+        assertEquals(100, reaberta.getPendentes());
+        assertEquals(2901L, ((Number) reaberta.lerLote(1).itens.get(0).get("seq")).longValue());
+        reaberta.fechar();
+    }
+
+    @Test
+    void posicaoConfirmadaSaiDaSequenciaAoReabrir() throws Exception {
+        CaixaSaida caixa = abrir();
+        for (int i = 0; i < 10; i++) {
+            caixa.acrescentar(item(i));
+        }
+        confirmar(caixa, 4);
+        caixa.fechar();
+        // Como se a queda tivesse ocorrido entre a troca do log compactado e a gravação da nova posição
+        Files.writeString(diretorio.resolve("Cliente1_saida_localhost_8002.confirmado"), "999999 4", StandardCharsets.UTF_8);
+
+        CaixaSaida reaberta = abrir();
+        assertEquals(6, reaberta.getPendentes());
+        assertEquals(5L, ((Number) reaberta.lerLote(1).itens.get(0).get("seq")).longValue());
+        reaberta.fechar();
+    }
+
+    @Test
+    void confirmacaoIlegivelReenviaACaixaInteira() throws Exception {
+        CaixaSaida caixa = abrir();
+        for (int i = 0; i < 10; i++) {
+            caixa.acrescentar(item(i));
+        }
+        confirmar(caixa, 4);
+        caixa.fechar();
+        // Como se a queda tivesse deixado o arquivo de confirmação pela metade
+        Files.writeString(diretorio.resolve("Cliente1_saida_localhost_8002.confirmado"), "12", StandardCharsets.UTF_8);
+
+        CaixaSaida reaberta = abrir();
+        assertEquals(10, reaberta.getPendentes());
+        assertEquals(1L, ((Number) reaberta.lerLote(1).itens.get(0).get("seq")).longValue());
+        reaberta.fechar();
+    }
+
+    @Test
+    void descartaAsMaisAntigasAcimaDoLimite() throws Exception {
+        CaixaSaida caixa = abrir();
+        for (int i = 0; i < 50; i++) {
+            caixa.acrescentar(item(i));
+        }
+
+        assertEquals(30, caixa.descartarAntigas(20));
+        assertEquals(20, caixa.getPendentes());
+        assertEquals(31L, ((Number) caixa.lerLote(1).itens.get(0).get("seq")).longValue());
+        caixa.fechar();
+    }
+
+    private CaixaSaida abrir() {
+        return new CaixaSaida(diretorio.resolve("Cliente1").toString(), PEER, objectMapper);
+    }
+
+    private void confirmar(CaixaSaida caixa, int quantidade) throws Exception {
+        while (quantidade > 0) {
+            CaixaSaida.Lote lote = caixa.lerLote(Math.min(quantidade, 128));
+            caixa.confirmar(lote);
+            quantidade -= lote.itens.size();
+        }
+    }
+
+    // Uns 500 bytes por registro, para a parte confirmada passar do limite de compactação
+    private Map<String, Object> item(int i) {
+        Map<String, Object> item = new HashMap<>();
+        item.put("mensagem", Map.of("id", "Cliente1_" + i, "conteudo", "x".repeat(480)));
+        item.put("lamportClock", i);
+        return item;
+    }
+}
@@ -0,0 +1,126 @@
+package br.com.servico_mensagens;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+class CodecMensagemTest {
+
+    @Test
+    void idPadraoEHorarioIsoVoltamIguais() throws Exception {
+        Mensagem mensagem = mensagem("Cliente1_7_42", "Cliente1", 7, "2024-03-05T10:15:30.123456789");
+        mensagem.setOrigem("Cliente1", 42);
+
+        assertIgual(mensagem, idaEVolta(mensagem));
+    }
+
+    @Test
+    void idsForaDoPadraoVoltamComoTexto() throws Exception {
+        for (String id : new String[] {"abc", "Cliente1_7_042", "Cliente1_8_1", "Cliente2_7_1", "Cliente1_7_", "Cliente1_7_1x",
+                "Cliente1_7_12345678901234567890", "id com ç e 😀"}) {
+            Mensagem mensagem = mensagem(id, "Cliente1", 7, "2024-03-05T10:15:30");
+            assertIgual(mensagem, idaEVolta(mensagem));
+        }
+    }
+
+    @Test
+    void horariosForaDoIsoVoltamComoTexto() throws Exception {
+        for (String horario : new String[] {"ontem", "2024-03-05 10:15:30", "2024-03-05T10:15", "2024-03-05T10:15:30.100",
+                "2024-03-05T10:15:30Z", "+10000-01-01T00:00:00", "1900-01-01T00:00:00.000000001"}) {
+            Mensagem mensagem = mensagem("Cliente1_1_1", "Cliente1", 1, horario);
+            assertIgual(mensagem, idaEVolta(mensagem));
+        }
+    }
+
+    @Test
+    void nomesDoDicionarioValemParaOsRegistrosSeguintes() throws Exception {
+        CodecMensagem escrita = new CodecMensagem();
+        CodecMensagem leitura = new CodecMensagem();
+        Mensagem primeira = mensagem("Cliente1_1_1", "Cliente1", 1, "2024-03-05T10:15:30");
+        Mensagem segunda = mensagem("Cliente1_2_2", "Cliente1", 2, "2024-03-05T10:15:31");
+        segunda.setTipo("privada");
+        byte[] registro1 = escrita.codificar(primeira);
+        byte[] registro2 = escrita.codificar(segunda);
+
+        assertTrue(registro2.length < registro1.length);
+        assertIgual(primeira, leitura.decodificar(ByteBuffer.wrap(registro1)));
+        assertIgual(segunda, leitura.decodificar(ByteBuffer.wrap(registro2)));
+        // Sem ter lido o registro que definiu o nome, o segundo não pode ser lido
+        assertThrows(IOException.class, () -> new CodecMensagem().decodificar(ByteBuffer.wrap(registro2)));
+    }
+
+    @Test
+    void registroCorrompidoOuCortadoEhRecusado() {
+        byte[] registro = new CodecMensagem().codificar(mensagem("Cliente1_1_1", "Cliente1", 1, "2024-03-05T10:15:30"));
+        for (int i = 0; i < registro.length; i++) {
+            byte[] corrompido = registro.clone();
+            corrompido[i] ^= 0x10;
+            assertThrows(IOException.class, () -> new CodecMensagem().decodificar(ByteBuffer.wrap(corrompido)), "byte " + i);
+        }
+        for (int tamanho = 0; tamanho < registro.length; tamanho++) {
+            byte[] cortado = Arrays.copyOf(registro, tamanho);
+            assertThrows(IOException.class, () -> new CodecMensagem().decodificar(ByteBuffer.wrap(cortado)), tamanho + " bytes");
+        }
+    }
+
+    @Test
+    void camposNullVoltamComoNull() throws Exception {
+        Mensagem mensagem = new Mensagem();
+        mensagem.setLamportClock(3);
+
+        Mensagem lida = idaEVolta(mensagem);
+
+        assertNull(lida.getId());
+        assertNull(lida.getConteudo());
+        assertNull(lida.getAutor());
+        assertNull(lida.getTimestamp());
+        assertNull(lida.getTipo());
+        assertNull(lida.getOrigem());
+        assertEquals(3, lida.getLamportClock());
+    }
+
+    @Test
+    void textoVazioContinuaVazio() throws Exception {
+        Mensagem mensagem = new Mensagem("", "", "", 1, "");
+        mensagem.setTimestamp("");
+
+        Mensagem lida = idaEVolta(mensagem);
+
+        assertEquals("", lida.getId());
+        assertEquals("", lida.getConteudo());
+        assertEquals("", lida.getAutor());
+        assertEquals("", lida.getTimestamp());
+        assertEquals("", lida.getTipo());
+    }
+
+    private static Mensagem mensagem(String id, String autor, int clock, String horario) {
+        Mensagem mensagem = new Mensagem(id, "olá, mural", autor, clock, "publica");
+        mensagem.setTimestamp(horario);
+        return mensagem;
+    }
+
+    private static void assertIgual(Mensagem esperada, Mensagem lida) {
+        assertEquals(esperada.getId(), lida.getId());
+        assertEquals(esperada.getConteudo(), lida.getConteudo());
+        assertEquals(esperada.getAutor(), lida.getAutor());
+        assertEquals(esperada.getLamportClock(), lida.getLamportClock());
+        assertEquals(esperada.getTimestamp(), lida.getTimestamp());
+        assertEquals(esperada.getTipo(), lida.getTipo());
+        assertEquals(esperada.getOrigem(), lida.getOrigem());
+        assertEquals(esperada.getSequencia(), lida.getSequencia());
+    }
+
+    private static Mensagem idaEVolta(Mensagem mensagem) throws Exception {
+        CodecMensagem escrita = new CodecMensagem();
+        CodecMensagem leitura = new CodecMensagem();
+        return leitura.decodificar(ByteBuffer.wrap(escrita.codificar(mensagem)));
+    }
+}
@@ -0,0 +1,51 @@
+package br.com.servico_mensagens;
+
+import br.com.servico_mensagens.grpc.MensagemProto;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+
+class ConversorProtoTest {
+
+    @Test
+    void camposNullVoltamComoNull() throws Exception {
+        Mensagem mensagem = new Mensagem("Cliente1_1", null, null, 7, "privada");
+        mensagem.setTimestamp(null);
+
+        MensagemProto proto = MensagemProto.parseFrom(ConversorProto.paraProto(mensagem).toByteArray());
+        assertFalse(proto.hasTimestamp());
+        Mensagem lida = ConversorProto.deProto(proto);
+
+        assertEquals("Cliente1_1", lida.getId());
+        assertNull(lida.getConteudo());
+        assertNull(lida.getAutor());
+        assertNull(lida.getTimestamp());
+        assertEquals("privada", lida.getTipo());
+        assertEquals(7, lida.getLamportClock());
+    }
+
+    @Test
+    void textoVazioNaoViraNull() {
+        Mensagem mensagem = new Mensagem("Cliente1_2", "", "", 1, "publica");
+        mensagem.setTimestamp("");
+        mensagem.setOrigem("Cliente1", 2);
+
+        Mensagem lida = ConversorProto.deProto(ConversorProto.paraProto(mensagem));
+
+        assertEquals("", lida.getConteudo());
+        assertEquals("", lida.getAutor());
+        assertEquals("", lida.getTimestamp());
+        assertEquals("Cliente1", lida.getOrigem());
+        assertEquals(2, lida.getSequencia());
+    }
+
+    @Test
+    void semTipoVoltaComoPublica() {
+        Mensagem lida = ConversorProto.deProto(MensagemProto.newBuilder().setId("Cliente1_3").build());
+
+        assertEquals("publica", lida.getTipo());
+    }
+}
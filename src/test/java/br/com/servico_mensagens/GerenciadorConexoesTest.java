@@ -0,0 +1,147 @@
+package br.com.servico_mensagens;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+class GerenciadorConexoesTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private ServerSocket servidor;
+    private GerenciadorConexoes conexoes;
+
+    @BeforeEach
+    void criar() throws IOException {
+        servidor = new ServerSocket(0);
+        conexoes = new GerenciadorConexoes(objectMapper, ModoExecucao.PLATAFORMA);
+    }
+
+    @AfterEach
+    void fechar() throws IOException {
+        conexoes.fecharTodas();
+        servidor.close();
+    }
+
+    @Test
+    void timeoutEsqueceARequisicaoPendente() throws Exception {
+        atender(linha -> null);
+        EnderecoPeer peer = EnderecoPeer.local(servidor.getLocalPort());
+
+        assertThrows(IOException.class, () -> conexoes.requisitar(peer, ping(), 100));
+        assertThrows(IOException.class, () -> conexoes.requisitar(peer, ping(), 100));
+
+        assertEquals(0, conexoes.conexao(peer).getPendentes());
+    }
+
+    @Test
+    void erroDoPeerFalhaARequisicaoSemEsperarOTimeout() throws Exception {
+        atender(linha -> {
+            Map<String, Object> erro = new HashMap<>();
+            erro.put("tipo", "ERRO");
+            erro.put("mensagem", "lote inválido");
+            erro.put("requestId", lerRequestId(linha));
+            return erro;
+        });
+        EnderecoPeer peer = EnderecoPeer.local(servidor.getLocalPort());
+
+        long inicio = System.currentTimeMillis();
+        IOException erro = assertThrows(IOException.class, () -> conexoes.requisitar(peer, ping(), 5000));
+
+        assertTrue(erro.getMessage().contains("lote inválido"), erro.getMessage());
+        assertTrue(System.currentTimeMillis() - inicio < 2000);
+        assertEquals(0, conexoes.conexao(peer).getPendentes());
+    }
+
+    @Test
+    void respostaChegaPeloRequestId() throws Exception {
+        atender(linha -> {
+            Map<String, Object> pong = new HashMap<>();
+            pong.put("tipo", "PONG");
+            pong.put("requestId", lerRequestId(linha));
+            return pong;
+        });
+        EnderecoPeer peer = EnderecoPeer.local(servidor.getLocalPort());
+
+        assertEquals("PONG", conexoes.requisitar(peer, ping(), 2000).get("tipo"));
+        assertEquals(0, conexoes.conexao(peer).getPendentes());
+    }
+
+    @Test
+    void listaComprimidaInvalidaFalhaSoARequisicao() throws Exception {
+        atender(linha -> {
+            Map<String, Object> resposta = new HashMap<>();
+            resposta.put("tipo", "RESPOSTA_BLOCO");
+            resposta.put("requestId", lerRequestId(linha));
+            if (lerRequisicao(linha).get("invalida") != null) {
+                resposta.put("mensagensComprimidas", List.of(42));
+                resposta.put("compressao", CompressaoCarga.DEFLATE);
+            }
+            return resposta;
+        });
+        EnderecoPeer peer = EnderecoPeer.local(servidor.getLocalPort());
+        Map<String, Object> invalida = ping();
+        invalida.put("invalida", true);
+
+        IOException erro = assertThrows(IOException.class, () -> conexoes.requisitar(peer, invalida, 2000));
+        assertTrue(erro.getMessage().contains("não é texto"), erro.getMessage());
+        // A thread de leitura continua viva e a conexão, aberta
+        assertEquals("RESPOSTA_BLOCO", conexoes.requisitar(peer, ping(), 2000).get("tipo"));
+        assertTrue(conexoes.conexao(peer).isConectada());
+    }
+
+    // Aceita uma conexão e responde cada linha com o mapa dado, ou não responde se ele for null
+    private void atender(Function<String, Map<String, Object>> responder) {
+        Thread thread = new Thread(() -> {
+            try (Socket socket = servidor.accept();
+                 BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                 PrintWriter writer = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.UTF_8)) {
+                String linha;
+                while ((linha = reader.readLine()) != null) {
+                    Map<String, Object> resposta = responder.apply(linha);
+                    if (resposta != null) {
+                        writer.println(objectMapper.writeValueAsString(resposta));
+                    }
+                }
+            } catch (IOException e) {
+                // O teste terminou e fechou o servidor
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private Object lerRequestId(String linha) {
+        return lerRequisicao(linha).get("requestId");
+    }
+
+    private Map<String, Object> lerRequisicao(String linha) {
+        try {
+            return objectMapper.readValue(linha, Map.class);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Map<String, Object> ping() {
+        Map<String, Object> ping = new HashMap<>();
+        ping.put("tipo", "PING");
+        return ping;
+    }
+}
@@ -0,0 +1,52 @@
+package br.com.servico_mensagens;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+
+class MuralMensagensTest {
+    @TempDir
+    Path diretorio;
+
+    private MuralMensagens mural;
+
+    @AfterEach
+    void fechar() {
+        if (mural != null) {
+            mural.fechar();
+        }
+    }
+
+    @Test
+    void mesmaOrigemESequenciaComIdsDiferentesSaemTodas() {
+        mural = new MuralMensagens(diretorio.resolve("Cliente1").toString(), ModoPersistencia.LOG);
+        mural.adicionarMensagem(mensagem("Cliente2_1_1", 1));
+        mural.adicionarMensagem(mensagem("Cliente2_3_3", 3));
+        // Outra mensagem com a sequência 1 de Cliente2, como depois de ele perder o estado e recomeçar a contagem
+        mural.adicionarMensagem(mensagem("Cliente2_1_9", 1));
+        mural.adicionarMensagem(mensagem("Cliente2_2_2", 2));
+
+        assertEquals(List.of("Cliente2_1_1", "Cliente2_1_9", "Cliente2_2_2", "Cliente2_3_3"), ids(mural.getMensagensAlemDe(Map.of(), 10)));
+        assertEquals(List.of("Cliente2_2_2", "Cliente2_3_3"), ids(mural.getMensagensAlemDe(Map.of("Cliente2", 1L), 10)));
+        assertEquals(3, mural.getUltimaSequencia("Cliente2"));
+        assertEquals(3L, mural.getVetorVersao().get("Cliente2"));
+    }
+
+    private static Mensagem mensagem(String id, long sequencia) {
+        Mensagem mensagem = new Mensagem(id, "oi", "Cliente2", (int) sequencia, "publica");
+        mensagem.setOrigem("Cliente2", sequencia);
+        return mensagem;
+    }
+
+    private static List<String> ids(List<Mensagem> mensagens) {
+        return mensagens.stream().map(Mensagem::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,111 @@
+package br.com.servico_mensagens;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+
+class PersistenciaLogTest {
+    @TempDir
+    Path diretorio;
+
+    @Test
+    void registroCortadoNoMeioSaiDoLogEOsAnterioresFicam() throws Exception {
+        String nome = diretorio.resolve("Cliente1").toString();
+        Path log = Path.of(nome + "_mural.log");
+        PersistenciaLog persistencia = new PersistenciaLog(nome);
+        persistencia.carregar(mensagem -> {});
+        List<Mensagem> mensagens = new ArrayList<>();
+        for (int i = 1; i <= 10; i++) {
+            mensagens.add(mensagem(i));
+        }
+        persistencia.registrarMensagens(mensagens.subList(0, 4), 4);
+        persistencia.registrarMensagens(mensagens.subList(4, 10), 10);
+        persistencia.fechar();
+
+        // Como numa queda no meio da escrita: o arquivo termina no meio do sétimo registro
+        long fimDoSexto = fimDaLinha(log, 6);
+        try (FileChannel canal = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            canal.truncate(fimDoSexto + 10);
+        }
+
+        List<Mensagem> lidas = new ArrayList<>();
+        PersistenciaLog reaberta = new PersistenciaLog(nome);
+        assertEquals(6, reaberta.carregar(lidas::add));
+        assertEquals(6, lidas.size());
+        for (int i = 0; i < 6; i++) {
+            assertEquals(mensagens.get(i).getId(), lidas.get(i).getId());
+            assertEquals(mensagens.get(i).getConteudo(), lidas.get(i).getConteudo());
+            assertEquals(mensagens.get(i).getTimestamp(), lidas.get(i).getTimestamp());
+        }
+        assertEquals(fimDoSexto, Files.size(log));
+
+        // O registro seguinte entra logo depois do sexto, sem o pedaço do sétimo no meio
+        reaberta.registrarMensagens(List.of(mensagem(7)), 7);
+        reaberta.fechar();
+        List<Mensagem> depois = new ArrayList<>();
+        PersistenciaLog terceira = new PersistenciaLog(nome);
+        assertEquals(7, terceira.carregar(depois::add));
+        terceira.fechar();
+        assertEquals(7, depois.size());
+        assertEquals("Cliente1_7_7", depois.get(6).getId());
+    }
+
+    @Test
+    void somenteLeituraNaoTruncaORegistroEmAndamentoNemCriaArquivos() throws Exception {
+        String nome = diretorio.resolve("Cliente1").toString();
+        Path log = Path.of(nome + "_mural.log");
+        PersistenciaLog persistencia = new PersistenciaLog(nome);
+        persistencia.carregar(mensagem -> {});
+        List<Mensagem> mensagens = new ArrayList<>();
+        for (int i = 1; i <= 10; i++) {
+            mensagens.add(mensagem(i));
+        }
+        persistencia.registrarMensagens(mensagens, 10);
+        persistencia.fechar();
+        // Como um cliente rodando no meio da escrita do sétimo registro
+        long cortado = fimDaLinha(log, 6) + 10;
+        try (FileChannel canal = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            canal.truncate(cortado);
+        }
+
+        List<Mensagem> lidas = new ArrayList<>();
+        PersistenciaLog leitura = new PersistenciaLog(nome, true);
+        assertEquals(6, leitura.carregar(lidas::add));
+        leitura.fechar();
+        assertEquals(6, lidas.size());
+        assertEquals(cortado, Files.size(log));
+
+        PersistenciaLog inexistente = new PersistenciaLog(diretorio.resolve("Clinete1").toString(), true);
+        assertEquals(0, inexistente.carregar(mensagem -> {}));
+        inexistente.fechar();
+        try (Stream<Path> arquivos = Files.list(diretorio)) {
+            assertFalse(arquivos.anyMatch(arquivo -> arquivo.getFileName().toString().startsWith("Clinete1")));
+        }
+    }
+
+    // Posição logo depois da n-ésima quebra de linha do arquivo
+    private static long fimDaLinha(Path arquivo, int linhas) throws Exception {
+        byte[] bytes = Files.readAllBytes(arquivo);
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] == '\n' && --linhas == 0) {
+                return i + 1;
+            }
+        }
+        throw new IllegalStateException("o log tem menos linhas que o esperado");
+    }
+
+    private static Mensagem mensagem(int i) {
+        return new Mensagem("Cliente1_" + i + "_" + i, "mensagem " + i, "Cliente1", i, "publica");
+    }
+}
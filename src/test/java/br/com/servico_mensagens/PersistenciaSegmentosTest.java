@@ -0,0 +1,119 @@
+package br.com.servico_mensagens;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+
+class PersistenciaSegmentosTest {
+    @TempDir
+    Path diretorio;
+
+    @Test
+    void segmentoCortadoNoMeioDeUmRegistroMantemOsAnteriores() throws Exception {
+        String nome = diretorio.resolve("Cliente1").toString();
+        PersistenciaSegmentos persistencia = new PersistenciaSegmentos(nome);
+        persistencia.carregar(mensagem -> {});
+        List<Mensagem> mensagens = new ArrayList<>();
+        for (int i = 1; i <= 100; i++) {
+            mensagens.add(mensagem(i));
+        }
+        persistencia.registrarMensagens(mensagens, 100);
+        persistencia.fechar();
+
+        // Como numa queda com parte do segmento ainda fora do disco: o arquivo termina no meio do registro 61
+        long posicao = posicaoNoIndice(nome, 60);
+        try (FileChannel canal = FileChannel.open(Path.of(nome + "_mural_00000.seg"), StandardOpenOption.WRITE)) {
+            canal.truncate(posicao + 6);
+        }
+
+        List<Mensagem> lidas = new ArrayList<>();
+        PersistenciaSegmentos reaberta = new PersistenciaSegmentos(nome);
+        assertEquals(100, reaberta.carregar(lidas::add));
+        assertEquals(60, lidas.size());
+        for (int i = 0; i < 60; i++) {
+            assertEquals(mensagens.get(i).getId(), lidas.get(i).getId());
+            assertEquals(mensagens.get(i).getConteudo(), lidas.get(i).getConteudo());
+        }
+
+        // O que for gravado depois continua onde a parte legível terminou
+        reaberta.registrarMensagens(List.of(mensagem(101)), 101);
+        reaberta.fechar();
+        List<Mensagem> depois = new ArrayList<>();
+        PersistenciaSegmentos terceira = new PersistenciaSegmentos(nome);
+        assertEquals(101, terceira.carregar(depois::add));
+        terceira.fechar();
+        assertEquals(61, depois.size());
+        assertEquals("Cliente1_101_101", depois.get(60).getId());
+        assertEquals("Cliente1", depois.get(60).getAutor());
+    }
+
+    @Test
+    void somenteLeituraNaoMexeNosArquivos() throws Exception {
+        String nome = diretorio.resolve("Cliente1").toString();
+        PersistenciaSegmentos persistencia = new PersistenciaSegmentos(nome);
+        persistencia.carregar(mensagem -> {});
+        List<Mensagem> mensagens = new ArrayList<>();
+        for (int i = 1; i <= 100; i++) {
+            mensagens.add(mensagem(i));
+        }
+        persistencia.registrarMensagens(mensagens, 100);
+        persistencia.fechar();
+        long posicao = posicaoNoIndice(nome, 60);
+        try (FileChannel canal = FileChannel.open(Path.of(nome + "_mural_00000.seg"), StandardOpenOption.WRITE)) {
+            canal.truncate(posicao + 6);
+        }
+        byte[] indice = Files.readAllBytes(Path.of(nome + "_mural.idx"));
+
+        List<Mensagem> lidas = new ArrayList<>();
+        PersistenciaSegmentos leitura = new PersistenciaSegmentos(nome, true);
+        assertEquals(100, leitura.carregar(lidas::add));
+        leitura.fechar();
+        assertEquals(60, lidas.size());
+        assertArrayEquals(indice, Files.readAllBytes(Path.of(nome + "_mural.idx")));
+        assertEquals(posicao + 6, Files.size(Path.of(nome + "_mural_00000.seg")));
+    }
+
+    @Test
+    void somenteLeituraLeOMuralAindaNaoConvertidoSemImportar() throws Exception {
+        String nome = diretorio.resolve("Cliente2").toString();
+        PersistenciaLog anterior = new PersistenciaLog(nome);
+        anterior.carregar(mensagem -> {});
+        anterior.registrarMensagens(List.of(mensagem(1), mensagem(2)), 2);
+        anterior.fechar();
+
+        List<Mensagem> lidas = new ArrayList<>();
+        PersistenciaSegmentos leitura = new PersistenciaSegmentos(nome, true);
+        assertEquals(2, leitura.carregar(lidas::add));
+        leitura.fechar();
+        assertEquals(2, lidas.size());
+        assertFalse(Files.exists(Path.of(nome + "_mural.idx")));
+        assertFalse(Files.exists(Path.of(nome + "_mural_00000.seg")));
+    }
+
+    // Entrada do índice: cabeçalho de 16 bytes e a posição de cada registro em 8 bytes
+    private static long posicaoNoIndice(String nome, int registro) throws Exception {
+        try (FileChannel canal = FileChannel.open(Path.of(nome + "_mural.idx"), StandardOpenOption.READ)) {
+            ByteBuffer entrada = ByteBuffer.allocate(8);
+            canal.read(entrada, 16 + registro * 8L);
+            return entrada.flip().getLong();
+        }
+    }
+
+    private static Mensagem mensagem(int i) {
+        Mensagem mensagem = new Mensagem("Cliente1_" + i + "_" + i, "mensagem " + i, "Cliente1", i, "publica");
+        mensagem.setOrigem("Cliente1", i);
+        return mensagem;
+    }
+}
@@ -0,0 +1,107 @@
+package br.com.servico_mensagens;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+
+class ServicoMembrosTest {
+    private final EnderecoPeer alvo = EnderecoPeer.local(9002);
+    private final TransportePeers transporte = mock(TransportePeers.class);
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void parar() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void pingIndiretoRespondeQuandoOAlvoResponder() throws Exception {
+        CompletableFuture<Map<String, Object>> pong = new CompletableFuture<>();
+        when(transporte.requisitarAssincrono(eq(alvo), any(), anyLong())).thenReturn(pong);
+
+        CompletableFuture<Map<String, Object>> resposta = criarServico().responderPingIndireto(pedido());
+        Thread.sleep(50);
+        assertFalse(resposta.isDone());
+
+        pong.complete(new HashMap<>());
+        assertEquals(true, resposta.get(1, TimeUnit.SECONDS).get("alcancado"));
+    }
+
+    @Test
+    void pingIndiretoSemRespostaDoAlvo() throws Exception {
+        when(transporte.requisitarAssincrono(eq(alvo), any(), anyLong()))
+            .thenReturn(CompletableFuture.failedFuture(new IOException("Connection refused")));
+
+        Map<String, Object> resposta = criarServico().responderPingIndireto(pedido()).get(1, TimeUnit.SECONDS);
+
+        assertEquals(false, resposta.get("alcancado"));
+        assertEquals("RESPOSTA_PING_INDIRETO", resposta.get("tipo"));
+    }
+
+    @Test
+    void peerInativoAlemDoTempoDeRemocaoSaiDaListaEVoltaComoVolta() throws Exception {
+        AtomicBoolean alcancavel = new AtomicBoolean();
+        when(transporte.requisitar(eq(alvo), any(), anyLong())).thenAnswer(chamada -> {
+            if (!alcancavel.get()) {
+                throw new IOException("Connection refused");
+            }
+            return new HashMap<>();
+        });
+        System.setProperty("cliente.membros.remocaoMs", "300");
+        ServicoMembros servico;
+        try {
+            servico = criarServico();
+        } finally {
+            System.clearProperty("cliente.membros.remocaoMs");
+        }
+        CountDownLatch removido = new CountDownLatch(1);
+        CountDownLatch voltou = new CountDownLatch(1);
+        servico.iniciar(peer -> voltou.countDown(), peer -> removido.countDown());
+        try {
+            assertTrue(removido.await(3, TimeUnit.SECONDS));
+            assertTrue(servico.getConhecidos().isEmpty());
+
+            alcancavel.set(true);
+            Map<String, Object> ping = new HashMap<>();
+            ping.put("tipo", "PING");
+            ping.put("origem", alvo.toString());
+            servico.responderPing(ping);
+
+            assertTrue(voltou.await(1, TimeUnit.SECONDS));
+            assertEquals(List.of(alvo), servico.getVivos());
+        } finally {
+            servico.parar();
+        }
+    }
+
+    private ServicoMembros criarServico() {
+        return new ServicoMembros("Cliente1", EnderecoPeer.local(9001), List.of(alvo), transporte, executor);
+    }
+
+    private Map<String, Object> pedido() {
+        Map<String, Object> pedido = new HashMap<>();
+        pedido.put("tipo", "PING_INDIRETO");
+        pedido.put("alvo", alvo.toString());
+        return pedido;
+    }
+}
@@ -0,0 +1,170 @@
+package br.com.servico_mensagens;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+
+class ServidorApiTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ApiMural api = mock(ApiMural.class);
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final List<Mensagem> mural = new ArrayList<>();
+    private ServidorApi servidor;
+
+    @AfterEach
+    void parar() {
+        if (servidor != null) {
+            servidor.parar();
+        }
+        executor.shutdownNow();
+    }
+
+    @Test
+    void semAPropriedadeSoEntregaAsPublicas() throws Exception {
+        int porta = iniciar(false);
+
+        try (Socket socket = new Socket("localhost", porta);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter writer = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.UTF_8)) {
+            socket.setSoTimeout(2000);
+
+            writer.println("{\"operacao\":\"ultimas\"}");
+            assertEquals(List.of("p0", "p2", "p4"), ids(ler(reader)));
+
+            writer.println("{\"operacao\":\"ultimas\",\"tipo\":\"privada\"}");
+            assertEquals(false, ler(reader).get("ok"));
+
+            writer.println("{\"operacao\":\"consultar\",\"por\":\"tipo\",\"valor\":\"privada\"}");
+            assertEquals(false, ler(reader).get("ok"));
+
+            // Cada página é completada com as públicas seguintes
+            writer.println("{\"operacao\":\"consultar\",\"por\":\"autor\",\"valor\":\"ana\",\"limite\":2}");
+            Map<String, Object> pagina = ler(reader);
+            assertEquals(List.of("p0", "p2"), ids(pagina));
+            assertEquals(true, pagina.get("temMais"));
+            writer.println("{\"operacao\":\"continuar\",\"limite\":2}");
+            pagina = ler(reader);
+            assertEquals(List.of("p4"), ids(pagina));
+            assertEquals(false, pagina.get("temMais"));
+        }
+    }
+
+    @Test
+    void assinaturaSemAPropriedadeIgnoraAsPrivadas() throws Exception {
+        List<Consumer<Mensagem>> ouvintes = new ArrayList<>();
+        when(api.assinar(any())).thenAnswer(chamada -> {
+            ouvintes.add(chamada.getArgument(0));
+            return (ApiMural.Assinatura) () -> {};
+        });
+        int porta = iniciar(false);
+
+        try (Socket socket = new Socket("localhost", porta);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter writer = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.UTF_8)) {
+            socket.setSoTimeout(2000);
+            writer.println("{\"operacao\":\"assinar\"}");
+            assertEquals(true, ler(reader).get("ok"));
+
+            for (Mensagem mensagem : mural) {
+                ouvintes.get(0).accept(mensagem);
+            }
+            for (String id : List.of("p0", "p2", "p4")) {
+                Map<String, Object> evento = ler(reader);
+                assertEquals(id, ((Map<?, ?>) evento.get("mensagem")).get("id"));
+            }
+        }
+    }
+
+    @Test
+    void comAPropriedadeEntregaTambemAsPrivadas() throws Exception {
+        int porta = iniciar(true);
+
+        try (Socket socket = new Socket("localhost", porta);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter writer = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.UTF_8)) {
+            socket.setSoTimeout(2000);
+
+            writer.println("{\"operacao\":\"ultimas\"}");
+            assertEquals(6, ids(ler(reader)).size());
+
+            writer.println("{\"operacao\":\"consultar\",\"por\":\"autor\",\"valor\":\"ana\"}");
+            assertEquals(6, ids(ler(reader)).size());
+        }
+    }
+
+    // Mural com públicas e privadas alternadas, servido pela api simulada
+    private int iniciar(boolean privadas) throws IOException {
+        for (int i = 0; i < 6; i++) {
+            Mensagem mensagem = new Mensagem();
+            mensagem.setId((i % 2 == 0 ? "p" : "s") + i);
+            mensagem.setAutor("ana");
+            mensagem.setConteudo("m" + i);
+            mensagem.setTipo(i % 2 == 0 ? "publica" : "privada");
+            mural.add(mensagem);
+        }
+        List<Mensagem> publicas = new ArrayList<>();
+        for (Mensagem mensagem : mural) {
+            if ("publica".equals(mensagem.getTipo())) {
+                publicas.add(mensagem);
+            }
+        }
+        when(api.getUltimas(anyInt(), anyInt())).thenReturn(mural);
+        when(api.getUltimasPorTipo(eq("publica"), anyInt(), anyInt())).thenReturn(publicas);
+        when(api.consultarPorAutor("ana")).thenAnswer(chamada -> consulta(mural));
+
+        int porta;
+        try (ServerSocket livre = new ServerSocket(0)) {
+            porta = livre.getLocalPort();
+        }
+        servidor = new ServidorApi(porta, api, objectMapper, executor, privadas);
+        servidor.iniciar();
+        return porta;
+    }
+
+    // Consulta que devolve a lista dada em páginas, como as do mural
+    private static ConsultaMural consulta(List<Mensagem> mensagens) {
+        return new ConsultaMural(0, 0, (consulta, limite) -> {
+            int fim = Math.min(consulta.posicao + limite, mensagens.size());
+            List<Mensagem> pagina = new ArrayList<>(mensagens.subList(consulta.posicao, fim));
+            consulta.posicao = fim;
+            return pagina;
+        });
+    }
+
+    private Map<String, Object> ler(BufferedReader reader) throws IOException {
+        String linha = reader.readLine();
+        assertTrue(linha != null, "conexão fechada");
+        return objectMapper.readValue(linha, Map.class);
+    }
+
+    private static List<Object> ids(Map<String, Object> resposta) {
+        List<Object> ids = new ArrayList<>();
+        for (Object mensagem : (List<?>) resposta.get("mensagens")) {
+            ids.add(((Map<?, ?>) mensagem).get("id"));
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,112 @@
+package br.com.servico_mensagens;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+class ServidorNioTest {
+    private ServidorNio servidor;
+
+    @AfterEach
+    void parar() {
+        if (servidor != null) {
+            servidor.parar();
+        }
+    }
+
+    @Test
+    void respostaAtrasadaNaoSeguraAsSeguintes() throws Exception {
+        CompletableFuture<String> atrasada = new CompletableFuture<>();
+        int porta = iniciar(linha -> "espera".equals(linha) ? atrasada : CompletableFuture.completedFuture("eco " + linha));
+
+        try (Socket socket = new Socket("localhost", porta);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter writer = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.UTF_8)) {
+            socket.setSoTimeout(2000);
+            writer.println("espera");
+            writer.println("a");
+            writer.println("b");
+            assertEquals("eco a", reader.readLine());
+            assertEquals("eco b", reader.readLine());
+
+            atrasada.complete("agora");
+            assertEquals("agora", reader.readLine());
+        }
+    }
+
+    @Test
+    void semVagaAConexaoEsperaEmVezDeRodarNaThreadDeEventos() throws Exception {
+        CountDownLatch liberar = new CountDownLatch(1);
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        int porta = iniciar(linha -> {
+            threads.add(Thread.currentThread().getName());
+            try {
+                liberar.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return CompletableFuture.completedFuture("ok " + linha);
+        }, 1);
+        // Todos os trabalhadores presos, uma conexão na fila e duas sem vaga
+        int conexoes = Math.max(2, Runtime.getRuntime().availableProcessors()) + 3;
+        List<Socket> sockets = new ArrayList<>();
+        try {
+            for (int i = 0; i < conexoes; i++) {
+                Socket socket = new Socket("localhost", porta);
+                socket.setSoTimeout(2000);
+                new PrintWriter(socket.getOutputStream(), true, StandardCharsets.UTF_8).println("r" + i);
+                sockets.add(socket);
+            }
+            long prazo = System.currentTimeMillis() + 2000;
+            while (servidor.getAguardandoVaga() < 2 && System.currentTimeMillis() < prazo) {
+                Thread.sleep(10);
+            }
+            assertEquals(2, servidor.getAguardandoVaga());
+
+            liberar.countDown();
+            for (int i = 0; i < conexoes; i++) {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(sockets.get(i).getInputStream(), StandardCharsets.UTF_8));
+                assertEquals("ok r" + i, reader.readLine());
+            }
+            assertEquals(0, servidor.getAguardandoVaga());
+            assertTrue(threads.stream().allMatch(nome -> nome.contains("-trabalhador-")), threads.toString());
+        } finally {
+            liberar.countDown();
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+        }
+    }
+
+    private int iniciar(Function<String, CompletableFuture<String>> processador) throws IOException {
+        return iniciar(processador, 1024);
+    }
+
+    private int iniciar(Function<String, CompletableFuture<String>> processador, int limiteFila) throws IOException {
+        int porta;
+        try (ServerSocket livre = new ServerSocket(0)) {
+            porta = livre.getLocalPort();
+        }
+        servidor = new ServidorNio(porta, processador, limiteFila);
+        servidor.iniciar();
+        return porta;
+    }
+}
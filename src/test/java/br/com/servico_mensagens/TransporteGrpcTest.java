@@ -0,0 +1,146 @@
+package br.com.servico_mensagens;
+
+import br.com.servico_mensagens.grpc.Confirmacao;
+import br.com.servico_mensagens.grpc.NovaMensagem;
+import br.com.servico_mensagens.grpc.ServicoMuralGrpc;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.grpc.Server;
+import io.grpc.ServerBuilder;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+class TransporteGrpcTest {
+    private final TransporteGrpc transporte = new TransporteGrpc(new ObjectMapper());
+    private Server servidor;
+
+    @AfterEach
+    void parar() {
+        transporte.fecharTodas();
+        if (servidor != null) {
+            servidor.shutdownNow();
+        }
+    }
+
+    @Test
+    void reenvioDaMesmaMensagemNaoTomaAConfirmacaoDoPrimeiro() throws Exception {
+        List<NovaMensagem> recebidas = new CopyOnWriteArrayList<>();
+        CompletableFuture<StreamObserver<Confirmacao>> fluxo = new CompletableFuture<>();
+        // Confirma só a partir do segundo envio; o primeiro fica para o teste confirmar depois
+        servidor = ServerBuilder.forPort(0).addService(new ServicoMuralGrpc.ServicoMuralImplBase() {
+            @Override
+            public StreamObserver<NovaMensagem> enviarMensagens(StreamObserver<Confirmacao> confirmacoes) {
+                fluxo.complete(confirmacoes);
+                return new StreamObserver<NovaMensagem>() {
+                    @Override
+                    public void onNext(NovaMensagem novaMensagem) {
+                        recebidas.add(novaMensagem);
+                        if (recebidas.size() > 1) {
+                            confirmar(confirmacoes, novaMensagem);
+                        }
+                    }
+
+                    @Override
+                    public void onError(Throwable erro) {}
+
+                    @Override
+                    public void onCompleted() {}
+                };
+            }
+        }).build().start();
+        EnderecoPeer peer = EnderecoPeer.local(servidor.getPort());
+
+        CompletableFuture<Map<String, Object>> primeiro = CompletableFuture.supplyAsync(() -> enviar(peer));
+        while (recebidas.isEmpty()) {
+            Thread.sleep(10);
+        }
+        assertEquals("OK", enviar(peer).get("tipo"));
+        assertFalse(primeiro.isDone());
+
+        confirmar(fluxo.get(), recebidas.get(0));
+        assertEquals("OK", primeiro.get(2, TimeUnit.SECONDS).get("tipo"));
+        assertTrue(recebidas.get(0).getEnvio() != recebidas.get(1).getEnvio());
+    }
+
+    @Test
+    void itemInvalidoDoLoteFicaDeForaEOLoteEConfirmado() throws Exception {
+        List<NovaMensagem> recebidas = new CopyOnWriteArrayList<>();
+        servidor = ServerBuilder.forPort(0).addService(new ServicoMuralGrpc.ServicoMuralImplBase() {
+            @Override
+            public StreamObserver<NovaMensagem> enviarMensagens(StreamObserver<Confirmacao> confirmacoes) {
+                return new StreamObserver<NovaMensagem>() {
+                    @Override
+                    public void onNext(NovaMensagem novaMensagem) {
+                        recebidas.add(novaMensagem);
+                        confirmar(confirmacoes, novaMensagem);
+                    }
+
+                    @Override
+                    public void onError(Throwable erro) {}
+
+                    @Override
+                    public void onCompleted() {}
+                };
+            }
+        }).build().start();
+        EnderecoPeer peer = EnderecoPeer.local(servidor.getPort());
+        Map<String, Object> valido = new HashMap<>();
+        valido.put("seq", 1L);
+        valido.put("mensagem", Map.of("id", "Cliente1_1", "conteudo", "oi", "autor", "Cliente1", "lamportClock", 1));
+        valido.put("lamportClock", 1);
+        Map<String, Object> semRelogio = new HashMap<>();
+        semRelogio.put("seq", 2L);
+        semRelogio.put("mensagem", Map.of("id", "Cliente1_2", "conteudo", "oi", "autor", "Cliente1", "lamportClock", 2));
+        Map<String, Object> dados = new HashMap<>();
+        dados.put("tipo", "LOTE");
+        dados.put("mensagens", List.of(valido, semRelogio));
+        dados.put("ate", 2L);
+        dados.put("remetente", "Cliente1");
+
+        Map<String, Object> resposta = transporte.requisitar(peer, dados);
+
+        assertEquals("CONFIRMACAO_LOTE", resposta.get("tipo"));
+        assertEquals(List.of(2L), resposta.get("descartadas"));
+        assertEquals(1, recebidas.size());
+        assertEquals("Cliente1_1", recebidas.get(0).getMensagem().getId());
+    }
+
+    private Map<String, Object> enviar(EnderecoPeer peer) {
+        Map<String, Object> mensagem = new HashMap<>();
+        mensagem.put("id", "Cliente1_1");
+        mensagem.put("conteudo", "oi");
+        mensagem.put("autor", "Cliente1");
+        mensagem.put("lamportClock", 1);
+        Map<String, Object> dados = new HashMap<>();
+        dados.put("tipo", "NOVA_MENSAGEM");
+        dados.put("mensagem", mensagem);
+        dados.put("lamportClock", 1);
+        dados.put("remetente", "Cliente1");
+        try {
+            return transporte.requisitar(peer, dados);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void confirmar(StreamObserver<Confirmacao> confirmacoes, NovaMensagem novaMensagem) {
+        synchronized (confirmacoes) {
+            confirmacoes.onNext(Confirmacao.newBuilder()
+                .setId(novaMensagem.getMensagem().getId())
+                .setEnvio(novaMensagem.getEnvio())
+                .build());
+        }
+    }
+}